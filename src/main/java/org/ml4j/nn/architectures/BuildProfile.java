@@ -0,0 +1,37 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.architectures;
+
+/**
+ * The use a definition's component graph is built for.
+ * 
+ * @author Michael Lavelle
+ */
+public enum BuildProfile {
+
+	/**
+	 * Components are configured for training - with the freeze-out, regularisation and dropout settings of the
+	 * definition.
+	 */
+	TRAINING,
+
+	/**
+	 * Components are configured for serving only - all axons are frozen out, so their weights are not updated, and
+	 * no regularisation or dropout is configured.  Whether the components then avoid computing gradients or
+	 * caching inputs for back propagation is up to the component factory the graph is created with.
+	 */
+	INFERENCE
+}
@@ -0,0 +1,250 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.architectures.concat;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.List;
+
+import org.ml4j.nn.architectures.yolo.yolov2.SpaceToDepth.Layout;
+import org.ml4j.nn.components.NeuralComponent;
+import org.ml4j.nn.neurons.Neurons;
+import org.ml4j.nn.neurons.Neurons3D;
+
+/**
+ * The layout of the output buffer of a filter concatenation, which is shared by the paths being concatenated, each
+ * of which writes its output directly into its own channel slice of the buffer.
+ *
+ * The features of a 3D activation are ordered by channel, then row, then column, and the activations of a batch are
+ * a features x examples matrix stored in either SpaceToDepth.Layout.  In the FEATURE_MAJOR layout - a row of example
+ * values for each feature - the channel slice of each path is a single contiguous range of the buffer, starting at
+ * getOffset(pathIndex, examples).  In the EXAMPLE_MAJOR layout - a column of feature values for each example - it is
+ * a range of getPathDepth(pathIndex) * width * height values for each example, the first starting at
+ * getOffset(pathIndex, examples) and each of the others getDepth() * width * height values after the previous one.
+ * Either way a path can write its output into the buffer in place of a separate activation, and read its gradients
+ * straight back out of the gradients of the concatenation rather than from a split copy.
+ *
+ * A bipole graph allocates a new buffer for each forward propagation, on the thread running the graph, and hands
+ * it to each of its paths - which may run on other threads, eg. with a PathScheduler.  The buffer then becomes the
+ * output activation of the graph, so concurrent forward propagations of the same graph never share a buffer, and
+ * the buffer of a forward propagation is not overwritten by the next one while back propagation still needs it.
+ *
+ * @author Michael Lavelle
+ */
+public class FilterConcatBuffer implements Serializable {
+
+	/**
+	 * Default serialization id.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	private int width;
+	private int height;
+	private int[] pathDepths;
+	private int[] channelOffsets;
+	private int depth;
+	private Layout layout;
+
+	/**
+	 * @param width The width of the output of each path.
+	 * @param height The height of the output of each path.
+	 * @param pathDepths The depth of the output of each path, in the order in which the paths are concatenated.
+	 */
+	public FilterConcatBuffer(int width, int height, int[] pathDepths) {
+		this(width, height, pathDepths, Layout.FEATURE_MAJOR);
+	}
+
+	/**
+	 * @param width The width of the output of each path.
+	 * @param height The height of the output of each path.
+	 * @param pathDepths The depth of the output of each path, in the order in which the paths are concatenated.
+	 * @param layout The layout of the activations of the paths and of the buffer, and of their gradients.
+	 */
+	public FilterConcatBuffer(int width, int height, int[] pathDepths, Layout layout) {
+		this.width = width;
+		this.height = height;
+		this.layout = layout;
+		this.pathDepths = pathDepths.clone();
+		this.channelOffsets = new int[pathDepths.length];
+		for (int i = 0; i < pathDepths.length; i++) {
+			channelOffsets[i] = depth;
+			depth += pathDepths[i];
+		}
+	}
+
+	/**
+	 * @param paths The paths being concatenated, each with 3D output neurons of the same width and height.
+	 * @return A buffer for the concatenation of the outputs of the paths, in the FEATURE_MAJOR layout.
+	 */
+	public static FilterConcatBuffer forPaths(List<? extends NeuralComponent<?>> paths) {
+		return forPaths(paths, Layout.FEATURE_MAJOR);
+	}
+
+	/**
+	 * @param paths The paths being concatenated, each with 3D output neurons of the same width and height.
+	 * @param layout The layout of the activations of the paths, and of their gradients.
+	 * @return A buffer for the concatenation of the outputs of the paths.
+	 */
+	public static FilterConcatBuffer forPaths(List<? extends NeuralComponent<?>> paths, Layout layout) {
+		if (paths.isEmpty()) {
+			throw new IllegalArgumentException("No paths to concatenate");
+		}
+		int[] pathDepths = new int[paths.size()];
+		Neurons3D first = getOutputNeurons3D(paths.get(0));
+		for (int i = 0; i < pathDepths.length; i++) {
+			Neurons3D outputNeurons = getOutputNeurons3D(paths.get(i));
+			if (outputNeurons.getWidth() != first.getWidth() || outputNeurons.getHeight() != first.getHeight()) {
+				throw new IllegalArgumentException("Path " + paths.get(i).getName() + " has output of "
+						+ outputNeurons.getWidth() + "x" + outputNeurons.getHeight() + " but the output of "
+						+ paths.get(0).getName() + " is " + first.getWidth() + "x" + first.getHeight());
+			}
+			pathDepths[i] = outputNeurons.getDepth();
+		}
+		return new FilterConcatBuffer(first.getWidth(), first.getHeight(), pathDepths, layout);
+	}
+
+	private static Neurons3D getOutputNeurons3D(NeuralComponent<?> path) {
+		Neurons outputNeurons = path.getOutputNeurons();
+		if (!(outputNeurons instanceof Neurons3D)) {
+			throw new IllegalArgumentException("Path " + path.getName() + " does not have 3D output neurons");
+		}
+		return (Neurons3D) outputNeurons;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * @return The depth of the concatenated output.
+	 */
+	public int getDepth() {
+		return depth;
+	}
+
+	public Layout getLayout() {
+		return layout;
+	}
+
+	public int getPathCount() {
+		return pathDepths.length;
+	}
+
+	/**
+	 * @param pathIndex The index of a path.
+	 * @return The depth of the output of the path.
+	 */
+	public int getPathDepth(int pathIndex) {
+		return pathDepths[pathIndex];
+	}
+
+	/**
+	 * @param pathIndex The index of a path.
+	 * @return The channel of the concatenated output at which the output of the path begins.
+	 */
+	public int getChannelOffset(int pathIndex) {
+		return channelOffsets[pathIndex];
+	}
+
+	/**
+	 * @param pathIndex The index of a path.
+	 * @param examples The number of examples.
+	 * @return The index of the buffer at which the output of the path begins - in the EXAMPLE_MAJOR layout, the
+	 *         output of the path for the first example.
+	 */
+	public int getOffset(int pathIndex, int examples) {
+		if (layout == Layout.EXAMPLE_MAJOR) {
+			return channelOffsets[pathIndex] * width * height;
+		}
+		return channelOffsets[pathIndex] * width * height * examples;
+	}
+
+	/**
+	 * @param pathIndex The index of a path.
+	 * @param examples The number of examples.
+	 * @return The number of values of the output of the path - in the EXAMPLE_MAJOR layout, spread over a range of
+	 *         the buffer for each example.
+	 */
+	public int getLength(int pathIndex, int examples) {
+		return pathDepths[pathIndex] * width * height * examples;
+	}
+
+	/**
+	 * @param examples The number of examples.
+	 * @return A new buffer for the concatenated output of the given number of examples - allocated once for each
+	 *         forward propagation of the graph.
+	 */
+	public float[] allocate(int examples) {
+		return new float[depth * width * height * examples];
+	}
+
+	/**
+	 * Copy the output of a path into its slice of the buffer - for paths which cannot write their output into the
+	 * buffer in place.
+	 *
+	 * @param pathIndex The index of the path.
+	 * @param pathOutput The output of the path.
+	 * @param buffer The buffer.
+	 * @param examples The number of examples.
+	 */
+	public void write(int pathIndex, float[] pathOutput, float[] buffer, int examples) {
+		if (layout == Layout.EXAMPLE_MAJOR) {
+			int pathFeatureCount = pathDepths[pathIndex] * width * height;
+			int featureCount = depth * width * height;
+			int offset = getOffset(pathIndex, examples);
+			for (int example = 0; example < examples; example++) {
+				System.arraycopy(pathOutput, example * pathFeatureCount, buffer, example * featureCount + offset,
+						pathFeatureCount);
+			}
+		} else {
+			System.arraycopy(pathOutput, 0, buffer, getOffset(pathIndex, examples), getLength(pathIndex, examples));
+		}
+	}
+
+	/**
+	 * Copy the gradients of a path out of the gradients of the concatenation - for paths which cannot read their
+	 * gradients from the gradients of the concatenation in place.
+	 *
+	 * @param pathIndex The index of the path.
+	 * @param gradients The gradients of the concatenation.
+	 * @param pathGradients The buffer for the gradients of the path.
+	 * @param examples The number of examples.
+	 */
+	public void read(int pathIndex, float[] gradients, float[] pathGradients, int examples) {
+		if (layout == Layout.EXAMPLE_MAJOR) {
+			int pathFeatureCount = pathDepths[pathIndex] * width * height;
+			int featureCount = depth * width * height;
+			int offset = getOffset(pathIndex, examples);
+			for (int example = 0; example < examples; example++) {
+				System.arraycopy(gradients, example * featureCount + offset, pathGradients, example * pathFeatureCount,
+						pathFeatureCount);
+			}
+		} else {
+			System.arraycopy(gradients, getOffset(pathIndex, examples), pathGradients, 0,
+					getLength(pathIndex, examples));
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "FilterConcatBuffer [width=" + width + ", height=" + height + ", pathDepths="
+				+ Arrays.toString(pathDepths) + ", layout=" + layout + "]";
+	}
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.architectures.concat;
+
+import java.util.List;
+
+import org.ml4j.nn.architectures.yolo.yolov2.SpaceToDepth.Layout;
+import org.ml4j.nn.components.NeuralComponent;
+import org.ml4j.nn.components.factories.NeuralComponentFactory;
+import org.ml4j.nn.components.manytoone.PathCombinationStrategy;
+import org.ml4j.nn.neurons.Neurons;
+
+/**
+ * A NeuralComponentFactory whose filter concatenations allocate their output once, with each path writing its
+ * output directly into its channel slice of a FilterConcatBuffer, rather than each path producing its own
+ * activation which is then copied into the concatenated activation.
+ *
+ * Every endParallelPaths(name, PathCombinationStrategy.FILTER_CONCAT) of the Inception modules and of the YOLO v2
+ * passthrough is created through createDirectedComponentBipoleGraph, so a factory implementing this interface
+ * concatenates in place without any change to the definitions - removing a copy of the output of every module,
+ * eg. 17x17x1024 per example for each Inception B module.
+ *
+ * The bipole graphs allocate a buffer with FilterConcatBuffer.allocate once for each forward propagation, on the
+ * thread running the graph, and hand it to each of their paths.  SchedulingComponentFactory passes the buffer on
+ * to the bipole graphs of a delegate implementing this interface, so that the paths it schedules concurrently
+ * have their outputs concatenated by the delegate graph in the same way.
+ *
+ * @author Michael Lavelle
+ *
+ * @param <T> The type of NeuralComponent created by this factory.
+ */
+public interface InPlaceConcatComponentFactory<T extends NeuralComponent<?>> extends NeuralComponentFactory<T> {
+
+	/**
+	 * @param name The name of the bipole graph.
+	 * @param inputNeurons The input neurons of each path.
+	 * @param outputNeurons The output neurons of the combined paths.
+	 * @param parallelComponents The paths.
+	 * @param pathCombinationStrategy How the outputs of the paths are combined.
+	 * @param concatBuffer The buffer into which the paths write their output for a FILTER_CONCAT, or null for
+	 *            other strategies.
+	 * @return A bipole graph whose paths write their output into a buffer allocated with the concat buffer for each
+	 *         forward propagation.
+	 */
+	T createDirectedComponentBipoleGraph(String name, Neurons inputNeurons, Neurons outputNeurons,
+			List<T> parallelComponents, PathCombinationStrategy pathCombinationStrategy,
+			FilterConcatBuffer concatBuffer);
+
+	/**
+	 * @return The layout of the activations of the components created by this factory, and so of the buffers of
+	 *         its filter concatenations - FEATURE_MAJOR unless overridden.
+	 */
+	default Layout getConcatBufferLayout() {
+		return Layout.FEATURE_MAJOR;
+	}
+
+	@Override
+	default T createDirectedComponentBipoleGraph(String name, Neurons inputNeurons, Neurons outputNeurons,
+			List<T> parallelComponents, PathCombinationStrategy pathCombinationStrategy) {
+		return createDirectedComponentBipoleGraph(name, inputNeurons, outputNeurons, parallelComponents,
+				pathCombinationStrategy, pathCombinationStrategy == PathCombinationStrategy.FILTER_CONCAT
+						? FilterConcatBuffer.forPaths(parallelComponents, getConcatBufferLayout()) : null);
+	}
+
+	/**
+	 * @param neuralComponentFactory The factory a bipole graph with a concat buffer is being created with.
+	 * @return The factory, as an InPlaceConcatComponentFactory.
+	 * @throws IllegalArgumentException If the factory cannot create bipole graphs with a concat buffer.
+	 */
+	@SuppressWarnings("unchecked")
+	static <T extends NeuralComponent<?>> InPlaceConcatComponentFactory<T> getInPlaceConcatComponentFactory(
+			NeuralComponentFactory<T> neuralComponentFactory) {
+		if (!(neuralComponentFactory instanceof InPlaceConcatComponentFactory)) {
+			throw new IllegalArgumentException("In place concatenation requires an InPlaceConcatComponentFactory, but "
+					+ "the graph is being created with " + neuralComponentFactory.getClass().getName());
+		}
+		return (InPlaceConcatComponentFactory<T>) neuralComponentFactory;
+	}
+}
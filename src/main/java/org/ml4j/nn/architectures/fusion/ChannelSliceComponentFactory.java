@@ -0,0 +1,70 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.architectures.fusion;
+
+import org.ml4j.nn.components.NeuralComponent;
+import org.ml4j.nn.components.NeuralComponentBaseType;
+import org.ml4j.nn.components.NeuralComponentType;
+import org.ml4j.nn.components.factories.NeuralComponentFactory;
+import org.ml4j.nn.neurons.Neurons3D;
+
+/**
+ * A NeuralComponentFactory which can also create channel slice components - components which pass through a
+ * contiguous range of the channels of their input.
+ *
+ * Channel slices allow sibling convolutional layers over the same input to be merged into a single wider
+ * convolutional layer, whose output channels are then sliced back out into the paths of the siblings.
+ *
+ * Definitions with merged convolutions enabled emit channel slice components, and so must be created with a factory
+ * implementing this interface - they fail rather than silently creating separate convolutional layers.
+ *
+ * @author Michael Lavelle
+ *
+ * @param <T> The type of NeuralComponent created by this factory.
+ */
+public interface ChannelSliceComponentFactory<T extends NeuralComponent<?>> extends NeuralComponentFactory<T> {
+
+	/**
+	 * The type of the channel slice components.
+	 */
+	NeuralComponentType CHANNEL_SLICE
+		= NeuralComponentType.createSubType(NeuralComponentBaseType.AXONS, "CHANNEL_SLICE");
+
+	/**
+	 * @param name The name of the component.
+	 * @param inputNeurons The input neurons.
+	 * @param outputNeurons The output neurons, with the same width and height as the input neurons and a depth
+	 *            of the number of channels in the slice.
+	 * @param channelOffset The index of the first input channel in the slice.
+	 * @return A component of type CHANNEL_SLICE.
+	 */
+	T createChannelSliceComponent(String name, Neurons3D inputNeurons, Neurons3D outputNeurons, int channelOffset);
+
+	/**
+	 * @param neuralComponentFactory The factory a definition with merged convolutions enabled is created with.
+	 * @return The factory, as a ChannelSliceComponentFactory.
+	 * @throws IllegalArgumentException If the factory cannot create channel slice components.
+	 */
+	@SuppressWarnings("unchecked")
+	static <T extends NeuralComponent<?>> ChannelSliceComponentFactory<T> getChannelSliceComponentFactory(
+			NeuralComponentFactory<T> neuralComponentFactory) {
+		if (!(neuralComponentFactory instanceof ChannelSliceComponentFactory)) {
+			throw new IllegalArgumentException("Merged convolutions require a ChannelSliceComponentFactory, but the "
+					+ "graph is being created with " + neuralComponentFactory.getClass().getName());
+		}
+		return (ChannelSliceComponentFactory<T>) neuralComponentFactory;
+	}
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.architectures.fusion;
+
+import java.io.Serializable;
+
+import org.ml4j.nn.activationfunctions.ActivationFunctionProperties;
+import org.ml4j.nn.activationfunctions.ActivationFunctionType;
+import org.ml4j.nn.axons.BiasVector;
+import org.ml4j.nn.axons.FeaturesVector;
+import org.ml4j.nn.axons.WeightsMatrix;
+import org.ml4j.nn.axons.WeightsVector;
+
+/**
+ * The parameters of a fused convolution / batch norm / activation component.
+ * 
+ * The biases are present when the convolution has a bias unit, and the batch norm parameters are present unless
+ * the batch norm layer has been folded into the convolutional weights and biases. The gamma is absent for batch
+ * norm layers which are not scaled.
+ * 
+ * @author Michael Lavelle
+ */
+public class ConvolutionBatchNormActivationConfig implements Serializable {
+
+	/**
+	 * Default serialization id.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	private int filterWidth;
+	private int filterHeight;
+	private int strideWidth;
+	private int strideHeight;
+	private int paddingWidth;
+	private int paddingHeight;
+	private WeightsMatrix weights;
+	private BiasVector biases;
+	private WeightsVector batchNormGamma;
+	private BiasVector batchNormBeta;
+	private FeaturesVector batchNormMean;
+	private FeaturesVector batchNormVariance;
+	private float batchNormEpsilon;
+	private ActivationFunctionType activationFunctionType;
+	private ActivationFunctionProperties activationFunctionProperties;
+	private boolean freezeOut;
+	private float regularisationLambda;
+	private float batchNormRegularisationLambda;
+
+	public ConvolutionBatchNormActivationConfig(WeightsMatrix weights, int filterWidth, int filterHeight) {
+		this.weights = weights;
+		this.filterWidth = filterWidth;
+		this.filterHeight = filterHeight;
+		this.strideWidth = 1;
+		this.strideHeight = 1;
+	}
+
+	public ConvolutionBatchNormActivationConfig withStride(int strideWidth, int strideHeight) {
+		this.strideWidth = strideWidth;
+		this.strideHeight = strideHeight;
+		return this;
+	}
+
+	public ConvolutionBatchNormActivationConfig withPadding(int paddingWidth, int paddingHeight) {
+		this.paddingWidth = paddingWidth;
+		this.paddingHeight = paddingHeight;
+		return this;
+	}
+
+	public ConvolutionBatchNormActivationConfig withBiases(BiasVector biases) {
+		this.biases = biases;
+		return this;
+	}
+
+	/**
+	 * @param gamma The batch norm gamma, or null if the batch norm layer is not scaled.
+	 * @param beta The batch norm beta.
+	 * @param mean The moving mean.
+	 * @param variance The moving variance.
+	 * @param epsilon The epsilon added to the variance, which must be that the weights were trained with - eg.
+	 *            BatchNormFoldingTensorSource.DEFAULT_EPSILON for Keras, or DARKNET_EPSILON for Darknet.
+	 * @return This config.
+	 */
+	public ConvolutionBatchNormActivationConfig withBatchNorm(WeightsVector gamma, BiasVector beta,
+			FeaturesVector mean, FeaturesVector variance, float epsilon) {
+		this.batchNormGamma = gamma;
+		this.batchNormBeta = beta;
+		this.batchNormMean = mean;
+		this.batchNormVariance = variance;
+		this.batchNormEpsilon = epsilon;
+		return this;
+	}
+
+	public ConvolutionBatchNormActivationConfig withActivationFunction(ActivationFunctionType activationFunctionType,
+			ActivationFunctionProperties activationFunctionProperties) {
+		this.activationFunctionType = activationFunctionType;
+		this.activationFunctionProperties = activationFunctionProperties;
+		return this;
+	}
+
+	/**
+	 * @param freezeOut Whether the weights, biases and batch norm parameters are frozen out.
+	 * @return This config.
+	 */
+	public ConvolutionBatchNormActivationConfig withFreezeOut(boolean freezeOut) {
+		this.freezeOut = freezeOut;
+		return this;
+	}
+
+	/**
+	 * @param regularisationLambda The regularisation lambda of the convolutional weights.
+	 * @return This config.
+	 */
+	public ConvolutionBatchNormActivationConfig withRegularisationLambda(float regularisationLambda) {
+		this.regularisationLambda = regularisationLambda;
+		return this;
+	}
+
+	/**
+	 * @param batchNormRegularisationLambda The regularisation lambda of the batch norm parameters.
+	 * @return This config.
+	 */
+	public ConvolutionBatchNormActivationConfig withBatchNormRegularisationLambda(
+			float batchNormRegularisationLambda) {
+		this.batchNormRegularisationLambda = batchNormRegularisationLambda;
+		return this;
+	}
+
+	public int getFilterWidth() {
+		return filterWidth;
+	}
+
+	public int getFilterHeight() {
+		return filterHeight;
+	}
+
+	public int getStrideWidth() {
+		return strideWidth;
+	}
+
+	public int getStrideHeight() {
+		return strideHeight;
+	}
+
+	public int getPaddingWidth() {
+		return paddingWidth;
+	}
+
+	public int getPaddingHeight() {
+		return paddingHeight;
+	}
+
+	public WeightsMatrix getWeights() {
+		return weights;
+	}
+
+	/**
+	 * @return The biases of the convolution, or null if the convolution has no bias unit.
+	 */
+	public BiasVector getBiases() {
+		return biases;
+	}
+
+	public boolean hasBatchNorm() {
+		return batchNormVariance != null;
+	}
+
+	/**
+	 * @return The batch norm gamma, or null if there is no batch norm or it is not scaled.
+	 */
+	public WeightsVector getBatchNormGamma() {
+		return batchNormGamma;
+	}
+
+	public BiasVector getBatchNormBeta() {
+		return batchNormBeta;
+	}
+
+	public FeaturesVector getBatchNormMean() {
+		return batchNormMean;
+	}
+
+	public FeaturesVector getBatchNormVariance() {
+		return batchNormVariance;
+	}
+
+	/**
+	 * @return The epsilon added to the batch norm variance, or 0 if there is no batch norm.
+	 */
+	public float getBatchNormEpsilon() {
+		return batchNormEpsilon;
+	}
+
+	public ActivationFunctionType getActivationFunctionType() {
+		return activationFunctionType;
+	}
+
+	public ActivationFunctionProperties getActivationFunctionProperties() {
+		return activationFunctionProperties;
+	}
+
+	public boolean isFreezeOut() {
+		return freezeOut;
+	}
+
+	/**
+	 * @return The regularisation lambda of the convolutional weights, or 0 if they are not regularised.
+	 */
+	public float getRegularisationLambda() {
+		return regularisationLambda;
+	}
+
+	/**
+	 * @return The regularisation lambda of the batch norm parameters, or 0 if they are not regularised.
+	 */
+	public float getBatchNormRegularisationLambda() {
+		return batchNormRegularisationLambda;
+	}
+}
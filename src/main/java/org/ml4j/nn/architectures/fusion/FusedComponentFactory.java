@@ -0,0 +1,71 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.architectures.fusion;
+
+import org.ml4j.nn.components.NeuralComponent;
+import org.ml4j.nn.components.NeuralComponentBaseType;
+import org.ml4j.nn.components.NeuralComponentType;
+import org.ml4j.nn.components.factories.NeuralComponentFactory;
+import org.ml4j.nn.neurons.Neurons3D;
+
+/**
+ * A NeuralComponentFactory which can also create fused convolution / batch norm / activation components.
+ * 
+ * A fused component computes the convolution and then applies the biases, the batch norm scale and shift and the
+ * activation function in the epilogue of the convolution in a single pass over the output, rather than
+ * materialising the output of each of the three steps.
+ * 
+ * Definitions with fused convolutions enabled emit such components, and so must be created with a factory
+ * implementing this interface - they fail rather than silently creating separate convolutional axons, batch norm
+ * axons and activation function components.
+ * 
+ * @author Michael Lavelle
+ *
+ * @param <T> The type of NeuralComponent created by this factory.
+ */
+public interface FusedComponentFactory<T extends NeuralComponent<?>> extends NeuralComponentFactory<T> {
+
+	/**
+	 * The type of the fused convolution / batch norm / activation components.
+	 */
+	NeuralComponentType CONVOLUTION_BATCH_NORM_ACTIVATION 
+		= NeuralComponentType.createSubType(NeuralComponentBaseType.AXONS, "CONVOLUTION_BATCH_NORM_ACTIVATION");
+
+	/**
+	 * @param name The name of the component - the name of the convolutional layer.
+	 * @param inputNeurons The input neurons of the convolution.
+	 * @param outputNeurons The output neurons of the activation function.
+	 * @param config The parameters of the convolution, batch norm and activation function.
+	 * @return A component of type CONVOLUTION_BATCH_NORM_ACTIVATION.
+	 */
+	T createConvolutionBatchNormActivationComponent(String name, Neurons3D inputNeurons, Neurons3D outputNeurons,
+			ConvolutionBatchNormActivationConfig config);
+
+	/**
+	 * @param neuralComponentFactory The factory a definition with fused convolutions enabled is created with.
+	 * @return The factory, as a FusedComponentFactory.
+	 * @throws IllegalArgumentException If the factory cannot create fused components.
+	 */
+	@SuppressWarnings("unchecked")
+	static <T extends NeuralComponent<?>> FusedComponentFactory<T> getFusedComponentFactory(
+			NeuralComponentFactory<T> neuralComponentFactory) {
+		if (!(neuralComponentFactory instanceof FusedComponentFactory)) {
+			throw new IllegalArgumentException("Fused convolutions require a FusedComponentFactory, but the graph is "
+					+ "being created with " + neuralComponentFactory.getClass().getName());
+		}
+		return (FusedComponentFactory<T>) neuralComponentFactory;
+	}
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.architectures.inception.inceptionv4;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.ml4j.nn.architectures.weights.SharedWeightsCache;
+import org.ml4j.nn.architectures.weights.WeightsRequest;
+
+/**
+ * InceptionV4WeightsLoader decorator which serves weights from a SharedWeightsCache, so that several definitions
+ * sharing the Inception V4 backbone - for example an InceptionV4Definition, an InceptionV4WithoutTailDefinition
+ * and several UntrainedTailInceptionV4Definitions - hold a single copy of each tensor.
+ * 
+ * Each loader holds one reference to each tensor it has served until it is closed.
+ * 
+ * @author Michael Lavelle
+ */
+public class CachingInceptionV4WeightsLoader extends AbstractInceptionV4WeightsLoader implements Closeable {
+
+	/**
+	 * Default serialization id.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	private InceptionV4WeightsLoader delegate;
+	private String sourceId;
+	private transient SharedWeightsCache cache;
+	private transient Set<SharedWeightsCache.Key> acquired;
+
+	/**
+	 * @param delegate The loader to load weights from on a cache miss.
+	 * @param sourceId Identifies the source of the delegate's weights, eg. the path of the weights file.
+	 */
+	public CachingInceptionV4WeightsLoader(InceptionV4WeightsLoader delegate, String sourceId) {
+		this(delegate, sourceId, SharedWeightsCache.getDefault());
+	}
+
+	public CachingInceptionV4WeightsLoader(InceptionV4WeightsLoader delegate, String sourceId,
+			SharedWeightsCache cache) {
+		this.delegate = delegate;
+		this.sourceId = sourceId;
+		this.cache = cache;
+		this.acquired = new LinkedHashSet<>();
+	}
+
+	@Override
+	public boolean isMergedConvolutions() {
+		return delegate.isMergedConvolutions();
+	}
+
+	@Override
+	public String getConfigurationFingerprint() {
+		return getClass().getName() + "(" + delegate.getConfigurationFingerprint() + ")";
+	}
+
+	@Override
+	protected Object load(WeightsRequest request) {
+		SharedWeightsCache.Key key = new SharedWeightsCache.Key(sourceId, request);
+		boolean firstReference;
+		synchronized (acquired) {
+			firstReference = acquired.add(key);
+		}
+		Object weights;
+		try {
+			weights = cache.acquire(key, () -> load(delegate, request));
+		} catch (RuntimeException e) {
+			if (firstReference) {
+				synchronized (acquired) {
+					acquired.remove(key);
+				}
+			}
+			throw e;
+		}
+		if (!firstReference) {
+			// This loader already holds a reference to these weights
+			cache.release(key);
+		}
+		return weights;
+	}
+
+	/**
+	 * Release this loader's references to the cached weights.
+	 */
+	@Override
+	public void close() {
+		synchronized (acquired) {
+			for (SharedWeightsCache.Key key : acquired) {
+				cache.release(key);
+			}
+			acquired.clear();
+		}
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		this.cache = SharedWeightsCache.getDefault();
+		this.acquired = new LinkedHashSet<>();
+	}
+}
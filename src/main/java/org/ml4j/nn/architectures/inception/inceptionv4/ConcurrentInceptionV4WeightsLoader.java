@@ -0,0 +1,80 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.architectures.inception.inceptionv4;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import org.ml4j.nn.architectures.weights.DeferredWeights;
+import org.ml4j.nn.architectures.weights.WeightsRequest;
+
+/**
+ * InceptionV4WeightsLoader decorator which starts loading each requested tensor on a ForkJoinPool as soon as it
+ * is requested, returning a deferred handle which waits for the load the first time it is used.
+ * 
+ * While the component graph is walked in order, the weights of every module - and of every layer within a
+ * module - are read and converted concurrently, so the time spent loading weights scales with the available
+ * cores.
+ * 
+ * @author Michael Lavelle
+ */
+public class ConcurrentInceptionV4WeightsLoader extends AbstractInceptionV4WeightsLoader {
+
+	/**
+	 * Default serialization id.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	private InceptionV4WeightsLoader delegate;
+	private transient ForkJoinPool pool;
+	private transient Map<WeightsRequest, ForkJoinTask<Object>> loads;
+
+	public ConcurrentInceptionV4WeightsLoader(InceptionV4WeightsLoader delegate, ForkJoinPool pool) {
+		this.delegate = delegate;
+		this.pool = pool;
+		this.loads = new ConcurrentHashMap<>();
+	}
+
+	public ConcurrentInceptionV4WeightsLoader(InceptionV4WeightsLoader delegate) {
+		this(delegate, ForkJoinPool.commonPool());
+	}
+
+	@Override
+	public boolean isMergedConvolutions() {
+		return delegate.isMergedConvolutions();
+	}
+
+	@Override
+	public String getConfigurationFingerprint() {
+		return getClass().getName() + "(" + delegate.getConfigurationFingerprint() + ")";
+	}
+
+	@Override
+	protected Object load(WeightsRequest request) {
+		loads.computeIfAbsent(request, r -> pool.submit(() -> load(delegate, r)));
+		@SuppressWarnings("unchecked")
+		Class<Object> weightsType = (Class<Object>) getWeightsType(request.getKind());
+		return DeferredWeights.defer(weightsType, request.getName(), () -> await(request));
+	}
+
+	private Object await(WeightsRequest request) {
+		// Loads are not serialized, so a deserialized handle loads directly from the delegate
+		ForkJoinTask<Object> load = loads == null ? null : loads.remove(request);
+		return load == null ? load(delegate, request) : load.join();
+	}
+}
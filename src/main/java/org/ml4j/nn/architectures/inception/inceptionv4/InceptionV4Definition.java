@@ -15,13 +15,8 @@
  */
 package org.ml4j.nn.architectures.inception.inceptionv4;
 
-import org.ml4j.nn.architectures.inception.inceptionv4.modules.InceptionADefinition;
-import org.ml4j.nn.architectures.inception.inceptionv4.modules.InceptionBDefinition;
-import org.ml4j.nn.architectures.inception.inceptionv4.modules.InceptionCDefinition;
-import org.ml4j.nn.architectures.inception.inceptionv4.modules.InceptionV4StemDefinition;
+import org.ml4j.nn.architectures.BuildProfile;
 import org.ml4j.nn.architectures.inception.inceptionv4.modules.InceptionV4TailDefinition;
-import org.ml4j.nn.architectures.inception.inceptionv4.modules.ReductionADefinition;
-import org.ml4j.nn.architectures.inception.inceptionv4.modules.ReductionBDefinition;
 import org.ml4j.nn.components.NeuralComponent;
 import org.ml4j.nn.components.builders.componentsgraph.InitialComponents3DGraphBuilder;
 import org.ml4j.nn.components.builders.componentsgraph.InitialComponentsGraphBuilder;
@@ -41,18 +36,56 @@ public class InceptionV4Definition implements Component3DtoNon3DGraphDefinition
 	private static final long serialVersionUID = 1L;
 	
 	private InceptionV4WeightsLoader weightsLoader;
+	private InceptionV4Resolution resolution;
+	private InceptionV4Width width;
 	private float finalDenseLayerRegularisationLambda;
 	private float finalDenseLayerInputDropoutKeepProbability;
+	private boolean concurrentConstruction;
+	private boolean batchNormFolding;
+	private boolean fusedConvolutions;
+	private boolean mergedConvolutions;
+	private BuildProfile buildProfile;
 
 	public InceptionV4Definition(
 			InceptionV4WeightsLoader weightsLoader) {
+		this(weightsLoader, InceptionV4Resolution.DEFAULT);
+	}
+
+	/**
+	 * @param weightsLoader The loader of the pre-trained weights.
+	 * @param resolution The input resolution - as the network is fully convolutional up to the
+	 * global average pool of the tail, the same weights apply at any supported resolution.
+	 */
+	public InceptionV4Definition(
+			InceptionV4WeightsLoader weightsLoader, InceptionV4Resolution resolution) {
+		this(weightsLoader, resolution, InceptionV4Width.DEFAULT);
+	}
+
+	/**
+	 * @param weightsLoader The loader of weights trained at the given width.
+	 * @param resolution The input resolution.
+	 * @param width The width of the network - the multiplier applied to the filter count of every layer.
+	 */
+	public InceptionV4Definition(
+			InceptionV4WeightsLoader weightsLoader, InceptionV4Resolution resolution, InceptionV4Width width) {
 		this.weightsLoader = weightsLoader;
+		this.resolution = resolution;
+		this.width = width;
+		this.buildProfile = BuildProfile.TRAINING;
 		this.finalDenseLayerInputDropoutKeepProbability = 1f;
 	}
 
+	public InceptionV4Resolution getResolution() {
+		return resolution;
+	}
+
+	public InceptionV4Width getWidth() {
+		return width;
+	}
+
 	@Override
 	public Neurons3D getInputNeurons() {
-		return new Neurons3D(299, 299, 3, false);
+		return new Neurons3D(resolution.getInputSize(), resolution.getInputSize(), 3, false);
 	}
 
 	@Override
@@ -64,36 +97,24 @@ public class InceptionV4Definition implements Component3DtoNon3DGraphDefinition
 	public <T extends NeuralComponent<?>> InitialComponentsGraphBuilder<T> createComponentGraph(
 			InitialComponents3DGraphBuilder<T> start, NeuralComponentFactory<T> neuralComponentFactory) {
 		
-		InceptionV4TailDefinition tailDefinition = new InceptionV4TailDefinition(weightsLoader);
+		// In concurrent mode the weights of every module are loaded in parallel while the graph is walked
+		InceptionV4WeightsLoader loader = concurrentConstruction
+				? new ConcurrentInceptionV4WeightsLoader(weightsLoader) : weightsLoader;
+
+		InceptionV4TailDefinition tailDefinition = new InceptionV4TailDefinition(loader, resolution, width);
 		tailDefinition.setDropoutKeepProbability(finalDenseLayerInputDropoutKeepProbability);
 		tailDefinition.setRegularisationLambda(finalDenseLayerRegularisationLambda);
+		tailDefinition.setBuildProfile(buildProfile);
 		
-		return start
-				// Initial Stem...
-				.withComponentDefinition(new InceptionV4StemDefinition(weightsLoader))
-				// followed by 4 InceptionA modules...
-				.withComponentDefinition(new InceptionADefinition(weightsLoader, 0))
-				.withComponentDefinition(new InceptionADefinition(weightsLoader, 1))
-				.withComponentDefinition(new InceptionADefinition(weightsLoader, 2))
-				.withComponentDefinition(new InceptionADefinition(weightsLoader, 3))
-				// followed by a ReductionA module...
-				.withComponentDefinition(new ReductionADefinition(weightsLoader))
-				// followed by 7 InceptionB modules...
-				.withComponentDefinition(new InceptionBDefinition(weightsLoader, 0))
-				.withComponentDefinition(new InceptionBDefinition(weightsLoader, 1))
-				.withComponentDefinition(new InceptionBDefinition(weightsLoader, 2))
-				.withComponentDefinition(new InceptionBDefinition(weightsLoader, 3))
-				.withComponentDefinition(new InceptionBDefinition(weightsLoader, 4))
-				.withComponentDefinition(new InceptionBDefinition(weightsLoader, 5))
-				.withComponentDefinition(new InceptionBDefinition(weightsLoader, 6))
-				// followed by a ReductionB module...
-				.withComponentDefinition(new ReductionBDefinition(weightsLoader))
-				// followed by 3 InceptionC modules...
-				.withComponentDefinition(new InceptionCDefinition(weightsLoader, 0))
-				.withComponentDefinition(new InceptionCDefinition(weightsLoader, 1))
-				.withComponentDefinition(new InceptionCDefinition(weightsLoader, 2))
-				// ending with final Tail
-				.withComponentDefinition(tailDefinition);
+		if (mergedConvolutions) {
+			InceptionV4Module.validateMergedConvolutions(loader, neuralComponentFactory);
+		}
+		InitialComponents3DGraphBuilder<T> builder = start;
+		for (InceptionV4Module module : InceptionV4Module.values()) {
+			builder = builder.withComponentDefinition(module.createDefinition(loader, resolution, width,
+					batchNormFolding, fusedConvolutions, mergedConvolutions, buildProfile));
+		}
+		return builder.withComponentDefinition(tailDefinition);
 	}
 
 	public void setFinalDenseLayerRegularisationLambda(float finalDenseLayerRegularisationLambda) {
@@ -104,6 +125,49 @@ public class InceptionV4Definition implements Component3DtoNon3DGraphDefinition
 		this.finalDenseLayerInputDropoutKeepProbability = finalDenseLayerInputDropoutKeepProbability;
 	}
 
+	/**
+	 * @param concurrentConstruction Whether to load the weights of all modules concurrently while the component
+	 *            graph is built, on the common ForkJoinPool.
+	 */
+	public void setConcurrentConstruction(boolean concurrentConstruction) {
+		this.concurrentConstruction = concurrentConstruction;
+	}
+
+	/**
+	 * @param batchNormFolding Whether to build an inference graph in which each batch norm layer is folded into the
+	 *            weights and biases of the preceding convolutional layer - requires a weights loader which serves
+	 *            the folded weights, such as TensorSourceInceptionV4WeightsLoader.withBatchNormFolding().
+	 */
+	public void setBatchNormFolding(boolean batchNormFolding) {
+		this.batchNormFolding = batchNormFolding;
+	}
+
+	/**
+	 * @param fusedConvolutions Whether to create each convolutional layer as a single fused convolution / batch
+	 *            norm / activation component - requires the graph to be created with a FusedComponentFactory.
+	 */
+	public void setFusedConvolutions(boolean fusedConvolutions) {
+		this.fusedConvolutions = fusedConvolutions;
+	}
+
+	/**
+	 * @param mergedConvolutions Whether to merge the sibling 1x1 convolutional layers over the input of each
+	 *            Inception module into a single convolutional layer - requires the graph to be created with a
+	 *            ChannelSliceComponentFactory, and a weights loader which serves the concatenated weights, such as
+	 *            TensorSourceInceptionV4WeightsLoader.withMergedConvolutions().
+	 */
+	public void setMergedConvolutions(boolean mergedConvolutions) {
+		this.mergedConvolutions = mergedConvolutions;
+	}
+
+	/**
+	 * @param buildProfile Whether to configure the components for training, or for inference only in which case
+	 *            all axons are frozen out and no regularisation or dropout is configured.
+	 */
+	public void setBuildProfile(BuildProfile buildProfile) {
+		this.buildProfile = buildProfile;
+	}
+
 	@Override
 	public String getName() {
 		return "inception_v4_graph";
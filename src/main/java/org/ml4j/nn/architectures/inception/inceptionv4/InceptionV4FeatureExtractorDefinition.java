@@ -0,0 +1,179 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.architectures.inception.inceptionv4;
+
+import java.util.Locale;
+
+import org.ml4j.nn.architectures.BuildProfile;
+import org.ml4j.nn.components.NeuralComponent;
+import org.ml4j.nn.components.builders.componentsgraph.InitialComponents3DGraphBuilder;
+import org.ml4j.nn.components.factories.NeuralComponentFactory;
+import org.ml4j.nn.definitions.Component3Dto3DGraphDefinition;
+import org.ml4j.nn.neurons.Neurons3D;
+
+/**
+ * An Inception V4 feature extractor - the modules of Inception V4 from the Stem up to and including a chosen
+ * module, optionally followed by a global average pool to produce a compact 1x1 embedding.
+ * 
+ * The modules after the chosen module are not created, so their weights are never requested from the weights
+ * loader.
+ * 
+ * @author Michael Lavelle
+ */
+public class InceptionV4FeatureExtractorDefinition implements Component3Dto3DGraphDefinition {
+
+	/**
+	 * Default serialization id.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	private InceptionV4WeightsLoader weightsLoader;
+	private InceptionV4Resolution resolution;
+	private InceptionV4Width width;
+	private InceptionV4Module lastModule;
+	private boolean globalAveragePooling;
+	private boolean batchNormFolding;
+	private boolean fusedConvolutions;
+	private boolean mergedConvolutions;
+	private BuildProfile buildProfile;
+
+	/**
+	 * @param weightsLoader The loader of the pre-trained weights.
+	 * @param lastModule The module whose output is the extracted features.
+	 */
+	public InceptionV4FeatureExtractorDefinition(InceptionV4WeightsLoader weightsLoader,
+			InceptionV4Module lastModule) {
+		this(weightsLoader, InceptionV4Resolution.DEFAULT, lastModule);
+	}
+
+	/**
+	 * @param weightsLoader The loader of the pre-trained weights.
+	 * @param resolution The input resolution.
+	 * @param lastModule The module whose output is the extracted features.
+	 */
+	public InceptionV4FeatureExtractorDefinition(InceptionV4WeightsLoader weightsLoader,
+			InceptionV4Resolution resolution, InceptionV4Module lastModule) {
+		this(weightsLoader, resolution, InceptionV4Width.DEFAULT, lastModule);
+	}
+
+	/**
+	 * @param weightsLoader The loader of weights trained at the given width.
+	 * @param resolution The input resolution.
+	 * @param width The width of the network.
+	 * @param lastModule The module whose output is the extracted features.
+	 */
+	public InceptionV4FeatureExtractorDefinition(InceptionV4WeightsLoader weightsLoader,
+			InceptionV4Resolution resolution, InceptionV4Width width, InceptionV4Module lastModule) {
+		this.weightsLoader = weightsLoader;
+		this.resolution = resolution;
+		this.width = width;
+		this.lastModule = lastModule;
+		this.buildProfile = BuildProfile.TRAINING;
+	}
+
+	public InceptionV4Resolution getResolution() {
+		return resolution;
+	}
+
+	public InceptionV4Width getWidth() {
+		return width;
+	}
+
+	public InceptionV4Module getLastModule() {
+		return lastModule;
+	}
+
+	@Override
+	public Neurons3D getInputNeurons() {
+		return new Neurons3D(resolution.getInputSize(), resolution.getInputSize(), 3, false);
+	}
+
+	@Override
+	public Neurons3D getOutputNeurons() {
+		if (globalAveragePooling) {
+			return new Neurons3D(1, 1, width.scale(lastModule.getOutputDepth()), false);
+		}
+		return lastModule.getOutputNeurons(resolution, width);
+	}
+
+	@Override
+	public <T extends NeuralComponent<?>> InitialComponents3DGraphBuilder<T> createComponentGraph(
+			InitialComponents3DGraphBuilder<T> start, NeuralComponentFactory<T> neuralComponentFactory) {
+		if (mergedConvolutions) {
+			InceptionV4Module.validateMergedConvolutions(weightsLoader, neuralComponentFactory);
+		}
+		InitialComponents3DGraphBuilder<T> builder = start;
+		for (InceptionV4Module module : InceptionV4Module.values()) {
+			if (module.ordinal() > lastModule.ordinal()) {
+				break;
+			}
+			builder = builder.withComponentDefinition(module.createDefinition(weightsLoader, resolution, width,
+					batchNormFolding, fusedConvolutions, mergedConvolutions, buildProfile));
+		}
+		if (!globalAveragePooling) {
+			return builder;
+		}
+		int poolSize = lastModule.getOutputSize(resolution);
+		return builder
+				.withAveragePoolingAxons("global_average_pooling")
+				.withStride(1, 1).withFilterSize(poolSize, poolSize).withValidPadding()
+				.withConnectionToNeurons(getOutputNeurons());
+	}
+
+	/**
+	 * @param globalAveragePooling Whether to average the features of the last module over their spatial extent.
+	 */
+	public void setGlobalAveragePooling(boolean globalAveragePooling) {
+		this.globalAveragePooling = globalAveragePooling;
+	}
+
+	/**
+	 * @param batchNormFolding Whether to fold each batch norm layer into the preceding convolutional layer.
+	 * @see InceptionV4Definition#setBatchNormFolding(boolean)
+	 */
+	public void setBatchNormFolding(boolean batchNormFolding) {
+		this.batchNormFolding = batchNormFolding;
+	}
+
+	/**
+	 * @param fusedConvolutions Whether to create each convolutional layer as a single fused component.
+	 * @see InceptionV4Definition#setFusedConvolutions(boolean)
+	 */
+	public void setFusedConvolutions(boolean fusedConvolutions) {
+		this.fusedConvolutions = fusedConvolutions;
+	}
+
+	/**
+	 * @param mergedConvolutions Whether to merge the sibling 1x1 convolutional layers of the Inception modules.
+	 * @see InceptionV4Definition#setMergedConvolutions(boolean)
+	 */
+	public void setMergedConvolutions(boolean mergedConvolutions) {
+		this.mergedConvolutions = mergedConvolutions;
+	}
+
+	/**
+	 * @param buildProfile Whether to configure the components for training or for inference only.
+	 * @see InceptionV4Definition#setBuildProfile(BuildProfile)
+	 */
+	public void setBuildProfile(BuildProfile buildProfile) {
+		this.buildProfile = buildProfile;
+	}
+
+	@Override
+	public String getName() {
+		return "inception_v4_features_" + lastModule.name().toLowerCase(Locale.ROOT);
+	}
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.architectures.inception.inceptionv4;
+
+import org.ml4j.nn.architectures.BuildProfile;
+import org.ml4j.nn.architectures.fusion.ChannelSliceComponentFactory;
+import org.ml4j.nn.architectures.inception.inceptionv4.modules.InceptionADefinition;
+import org.ml4j.nn.architectures.inception.inceptionv4.modules.InceptionBDefinition;
+import org.ml4j.nn.architectures.inception.inceptionv4.modules.InceptionCDefinition;
+import org.ml4j.nn.architectures.inception.inceptionv4.modules.InceptionV4StemDefinition;
+import org.ml4j.nn.architectures.inception.inceptionv4.modules.ReductionADefinition;
+import org.ml4j.nn.architectures.inception.inceptionv4.modules.ReductionBDefinition;
+import org.ml4j.nn.components.factories.NeuralComponentFactory;
+import org.ml4j.nn.definitions.Component3Dto3DGraphDefinition;
+import org.ml4j.nn.neurons.Neurons3D;
+
+/**
+ * The 17 modules of Inception V4, in the order in which they appear in the network, from the initial Stem to the
+ * final InceptionC module.
+ *
+ * @author Michael Lavelle
+ */
+public enum InceptionV4Module {
+
+	STEM(Stage.STEM, 0),
+	INCEPTION_A_0(Stage.INCEPTION_A, 0), INCEPTION_A_1(Stage.INCEPTION_A, 1),
+	INCEPTION_A_2(Stage.INCEPTION_A, 2), INCEPTION_A_3(Stage.INCEPTION_A, 3),
+	REDUCTION_A(Stage.REDUCTION_A, 0),
+	INCEPTION_B_0(Stage.INCEPTION_B, 0), INCEPTION_B_1(Stage.INCEPTION_B, 1),
+	INCEPTION_B_2(Stage.INCEPTION_B, 2), INCEPTION_B_3(Stage.INCEPTION_B, 3),
+	INCEPTION_B_4(Stage.INCEPTION_B, 4), INCEPTION_B_5(Stage.INCEPTION_B, 5),
+	INCEPTION_B_6(Stage.INCEPTION_B, 6),
+	REDUCTION_B(Stage.REDUCTION_B, 0),
+	INCEPTION_C_0(Stage.INCEPTION_C, 0), INCEPTION_C_1(Stage.INCEPTION_C, 1),
+	INCEPTION_C_2(Stage.INCEPTION_C, 2);
+
+	private enum Stage {
+		STEM, INCEPTION_A, REDUCTION_A, INCEPTION_B, REDUCTION_B, INCEPTION_C
+	}
+
+	private Stage stage;
+	private int moduleIndex;
+
+	private InceptionV4Module(Stage stage, int moduleIndex) {
+		this.stage = stage;
+		this.moduleIndex = moduleIndex;
+	}
+
+	/**
+	 * @return The depth of the output of this module in the published network.
+	 */
+	public int getOutputDepth() {
+		switch (stage) {
+		case STEM:
+		case INCEPTION_A:
+			return 384;
+		case REDUCTION_A:
+		case INCEPTION_B:
+			return 1024;
+		default:
+			return 1536;
+		}
+	}
+
+	/**
+	 * @param resolution The input resolution of the network.
+	 * @return The width and height of the output of this module.
+	 */
+	public int getOutputSize(InceptionV4Resolution resolution) {
+		switch (stage) {
+		case STEM:
+		case INCEPTION_A:
+			return resolution.getInceptionASize();
+		case REDUCTION_A:
+		case INCEPTION_B:
+			return resolution.getInceptionBSize();
+		default:
+			return resolution.getInceptionCSize();
+		}
+	}
+
+	/**
+	 * @param resolution The input resolution of the network.
+	 * @param width The width of the network.
+	 * @return The output neurons of this module.
+	 */
+	public Neurons3D getOutputNeurons(InceptionV4Resolution resolution, InceptionV4Width width) {
+		int size = getOutputSize(resolution);
+		return new Neurons3D(size, size, width.scale(getOutputDepth()), false);
+	}
+
+	/**
+	 * Checks that modules with merged convolutions can be created, before any of their components are.
+	 * 
+	 * @param weightsLoader The loader of the pre-trained weights.
+	 * @param neuralComponentFactory The factory the modules are to be created with.
+	 * @throws IllegalArgumentException If the factory cannot create channel slice components, or the loader does
+	 *             not serve the concatenated weights of the merged convolutional layers.
+	 */
+	public static void validateMergedConvolutions(InceptionV4WeightsLoader weightsLoader,
+			NeuralComponentFactory<?> neuralComponentFactory) {
+		ChannelSliceComponentFactory.getChannelSliceComponentFactory(neuralComponentFactory);
+		if (!weightsLoader.isMergedConvolutions()) {
+			throw new IllegalArgumentException("Merged convolutions require a weights loader which serves the "
+					+ "concatenated weights, such as TensorSourceInceptionV4WeightsLoader.withMergedConvolutions(), "
+					+ "but the weights loader is " + weightsLoader.getClass().getName());
+		}
+	}
+
+	/**
+	 * @param weightsLoader The loader of the pre-trained weights.
+	 * @param resolution The input resolution of the network.
+	 * @param width The width of the network.
+	 * @param batchNormFolding Whether to fold each batch norm layer into the preceding convolutional layer.
+	 * @param fusedConvolutions Whether to create each convolutional layer as a single fused component.
+	 * @param mergedConvolutions Whether to merge the sibling 1x1 convolutional layers of the Inception modules.
+	 * @param buildProfile Whether to configure the components for training or for inference only.
+	 * @return The definition of this module.
+	 */
+	public Component3Dto3DGraphDefinition createDefinition(InceptionV4WeightsLoader weightsLoader,
+			InceptionV4Resolution resolution, InceptionV4Width width, boolean batchNormFolding, boolean fusedConvolutions,
+			boolean mergedConvolutions, BuildProfile buildProfile) {
+		switch (stage) {
+		case STEM:
+			return new InceptionV4StemDefinition(weightsLoader, resolution, width).withBatchNormFolding(batchNormFolding)
+					.withFusedConvolutions(fusedConvolutions).withBuildProfile(buildProfile);
+		case INCEPTION_A:
+			return new InceptionADefinition(weightsLoader, resolution, width, moduleIndex)
+					.withBatchNormFolding(batchNormFolding).withFusedConvolutions(fusedConvolutions)
+					.withBuildProfile(buildProfile).withMergedConvolutions(mergedConvolutions);
+		case REDUCTION_A:
+			return new ReductionADefinition(weightsLoader, resolution, width).withBatchNormFolding(batchNormFolding)
+					.withFusedConvolutions(fusedConvolutions).withBuildProfile(buildProfile);
+		case INCEPTION_B:
+			return new InceptionBDefinition(weightsLoader, resolution, width, moduleIndex)
+					.withBatchNormFolding(batchNormFolding).withFusedConvolutions(fusedConvolutions)
+					.withBuildProfile(buildProfile).withMergedConvolutions(mergedConvolutions);
+		case REDUCTION_B:
+			return new ReductionBDefinition(weightsLoader, resolution, width).withBatchNormFolding(batchNormFolding)
+					.withFusedConvolutions(fusedConvolutions).withBuildProfile(buildProfile);
+		default:
+			return new InceptionCDefinition(weightsLoader, resolution, width, moduleIndex)
+					.withBatchNormFolding(batchNormFolding).withFusedConvolutions(fusedConvolutions)
+					.withBuildProfile(buildProfile).withMergedConvolutions(mergedConvolutions);
+		}
+	}
+}
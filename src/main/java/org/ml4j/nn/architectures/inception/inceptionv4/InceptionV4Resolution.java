@@ -0,0 +1,124 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.architectures.inception.inceptionv4;
+
+import java.io.Serializable;
+
+/**
+ * The input resolution of an Inception V4 network, and the spatial sizes it produces at each stage.
+ * 
+ * Every stage reduces the spatial size either with a valid 3x3 convolution, (n - 3) + 1, or with a valid 3x3
+ * convolution or pooling of stride 2, (n - 3) / 2 + 1, giving the 299, 149, 147, 73, 71, 35, 17, 8 chain for
+ * the default resolution.  The pretrained weights do not depend on the resolution.
+ * 
+ * @author Michael Lavelle
+ */
+public class InceptionV4Resolution implements Serializable {
+
+	/**
+	 * Default serialization id.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The resolution the published weights were trained at.
+	 */
+	public static final InceptionV4Resolution DEFAULT = new InceptionV4Resolution(299);
+
+	private int inputSize;
+
+	/**
+	 * @param inputSize The width and height of the input images - at least 75.
+	 */
+	public InceptionV4Resolution(int inputSize) {
+		this.inputSize = inputSize;
+		if (getInceptionCSize() < 1) {
+			throw new IllegalArgumentException("Input size " + inputSize + " is too small for Inception V4");
+		}
+	}
+
+	public int getInputSize() {
+		return inputSize;
+	}
+
+	/**
+	 * @return The size after the first, stride 2, stem convolution - 149 by default.
+	 */
+	public int getStemConvolution1Size() {
+		return reduce(inputSize);
+	}
+
+	/**
+	 * @return The size after the second stem convolution - 147 by default.
+	 */
+	public int getStemConvolution2Size() {
+		return getStemConvolution1Size() - 2;
+	}
+
+	/**
+	 * @return The size after the first stem concatenation - 73 by default.
+	 */
+	public int getStemConcatenation1Size() {
+		return reduce(getStemConvolution2Size());
+	}
+
+	/**
+	 * @return The size after the second stem concatenation - 71 by default.
+	 */
+	public int getStemConcatenation2Size() {
+		return getStemConcatenation1Size() - 2;
+	}
+
+	/**
+	 * @return The size of the InceptionA modules - 35 by default.
+	 */
+	public int getInceptionASize() {
+		return reduce(getStemConcatenation2Size());
+	}
+
+	/**
+	 * @return The size of the InceptionB modules - 17 by default.
+	 */
+	public int getInceptionBSize() {
+		return reduce(getInceptionASize());
+	}
+
+	/**
+	 * @return The size of the InceptionC modules, and so of the tail's global average pool - 8 by default.
+	 */
+	public int getInceptionCSize() {
+		return reduce(getInceptionBSize());
+	}
+
+	private static int reduce(int size) {
+		return size < 3 ? 0 : (size - 3) / 2 + 1;
+	}
+
+	@Override
+	public int hashCode() {
+		return inputSize;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		return obj instanceof InceptionV4Resolution && ((InceptionV4Resolution) obj).inputSize == inputSize;
+	}
+
+	@Override
+	public String toString() {
+		return "InceptionV4Resolution [inputSize=" + inputSize + "]";
+	}
+}
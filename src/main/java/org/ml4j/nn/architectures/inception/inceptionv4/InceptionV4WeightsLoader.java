@@ -15,8 +15,7 @@
  */
 package org.ml4j.nn.architectures.inception.inceptionv4;
 
-import java.io.Serializable;
-
+import org.ml4j.nn.architectures.weights.WeightsLoader;
 import org.ml4j.nn.axons.BiasVector;
 import org.ml4j.nn.axons.FeaturesVector;
 import org.ml4j.nn.axons.WeightsMatrix;
@@ -27,7 +26,7 @@ import org.ml4j.nn.axons.WeightsMatrix;
  * @author Michael Lavelle
  *
  */
-public interface InceptionV4WeightsLoader extends Serializable {
+public interface InceptionV4WeightsLoader extends WeightsLoader {
 	
 	WeightsMatrix getDenseLayerWeights(String name, int rows, int columns);
 	
@@ -35,6 +34,22 @@ public interface InceptionV4WeightsLoader extends Serializable {
 
 	WeightsMatrix getConvolutionalLayerWeights(String name, int width, int height, int inputDepth, int outputDepth);
 	
+	/**
+	 * The Inception V4 convolutional layers have no biases of their own, so these are only requested by definitions
+	 * built with batch norm folding, for the biases the batch norm layers are folded into.
+	 * 
+	 * @param name The name of the folded biases.
+	 * @param outputDepth The output depth of the convolutional layer.
+	 * @return The biases of the convolutional layer.
+	 * @throws IllegalStateException By default, as loaders which do not fold batch norm layers have no such biases.
+	 */
+	default BiasVector getConvolutionalLayerBiases(String name, int outputDepth) {
+		throw new IllegalStateException("Convolutional layer biases " + name + " are only served to definitions built "
+				+ "with batch norm folding, by a loader which folds batch norm layers, such as a loader created by "
+				+ "TensorSourceInceptionV4WeightsLoader.withBatchNormFolding() - but were requested from "
+				+ getClass().getName());
+	}
+	
 	WeightsMatrix getBatchNormLayerWeights(String name, int outputDepth);
 	
 	BiasVector getBatchNormLayerBiases(String name, int outputDepth);
@@ -43,4 +58,12 @@ public interface InceptionV4WeightsLoader extends Serializable {
 
 	FeaturesVector getBatchNormLayerVariance(String name, int outputDepth);
 
+	/**
+	 * @return Whether this loader serves the concatenated weights requested by definitions built with merged
+	 *         convolutions, such as a loader created by TensorSourceInceptionV4WeightsLoader.withMergedConvolutions().
+	 */
+	default boolean isMergedConvolutions() {
+		return false;
+	}
+
 }
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.architectures.inception.inceptionv4;
+
+import java.io.Serializable;
+
+/**
+ * The width of an Inception V4 network - a multiplier applied to the filter count of every convolutional layer,
+ * and so to the depth of every module input, output and concatenation.
+ * 
+ * Every filter count of Inception V4 is a multiple of 32, so the multiplier must be a multiple of 1/32 (eg. 0.25,
+ * 0.5 or 0.75) for the scaled filter counts to be whole numbers and for the depths of the concatenated paths to
+ * still add up to the depth of each module.  Networks of reduced width need weights trained at that width.
+ * 
+ * @author Michael Lavelle
+ */
+public class InceptionV4Width implements Serializable {
+
+	/**
+	 * Default serialization id.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The width of the published network.
+	 */
+	public static final InceptionV4Width DEFAULT = new InceptionV4Width(1f);
+
+	private static final int GRANULARITY = 32;
+
+	private int scaledGranularity;
+
+	/**
+	 * @param multiplier The width multiplier - a positive multiple of 1/32, eg. 0.5 or 0.75.
+	 */
+	public InceptionV4Width(float multiplier) {
+		float scaled = multiplier * GRANULARITY;
+		this.scaledGranularity = Math.round(scaled);
+		if (scaledGranularity <= 0 || Math.abs(scaled - scaledGranularity) > 1e-4f) {
+			throw new IllegalArgumentException("Width multiplier must be a positive multiple of 1/" + GRANULARITY
+					+ " but was " + multiplier);
+		}
+	}
+
+	public float getMultiplier() {
+		return (float) scaledGranularity / GRANULARITY;
+	}
+
+	/**
+	 * @param depth The depth, or filter count, in the published network - a multiple of 32.
+	 * @return The depth at this width.
+	 */
+	public int scale(int depth) {
+		if (depth % GRANULARITY != 0) {
+			throw new IllegalArgumentException("Depth " + depth + " is not a multiple of " + GRANULARITY);
+		}
+		return depth / GRANULARITY * scaledGranularity;
+	}
+
+	@Override
+	public int hashCode() {
+		return scaledGranularity;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		return obj instanceof InceptionV4Width && ((InceptionV4Width) obj).scaledGranularity == scaledGranularity;
+	}
+
+	@Override
+	public String toString() {
+		return "InceptionV4Width [multiplier=" + getMultiplier() + "]";
+	}
+}
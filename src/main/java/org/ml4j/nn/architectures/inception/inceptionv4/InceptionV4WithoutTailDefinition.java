@@ -18,12 +18,7 @@ package org.ml4j.nn.architectures.inception.inceptionv4;
 import org.ml4j.nn.activationfunctions.ActivationFunctionBaseType;
 import org.ml4j.nn.activationfunctions.ActivationFunctionProperties;
 import org.ml4j.nn.activationfunctions.ActivationFunctionType;
-import org.ml4j.nn.architectures.inception.inceptionv4.modules.InceptionADefinition;
-import org.ml4j.nn.architectures.inception.inceptionv4.modules.InceptionBDefinition;
-import org.ml4j.nn.architectures.inception.inceptionv4.modules.InceptionCDefinition;
-import org.ml4j.nn.architectures.inception.inceptionv4.modules.InceptionV4StemDefinition;
-import org.ml4j.nn.architectures.inception.inceptionv4.modules.ReductionADefinition;
-import org.ml4j.nn.architectures.inception.inceptionv4.modules.ReductionBDefinition;
+import org.ml4j.nn.architectures.BuildProfile;
 import org.ml4j.nn.components.NeuralComponent;
 import org.ml4j.nn.components.builders.componentsgraph.InitialComponents3DGraphBuilder;
 import org.ml4j.nn.components.factories.NeuralComponentFactory;
@@ -41,54 +36,103 @@ public class InceptionV4WithoutTailDefinition implements Component3Dto3DGraphDef
 	private static final long serialVersionUID = 1L;
 	
 	private InceptionV4WeightsLoader weightsLoader;
+	private InceptionV4Resolution resolution;
+	private InceptionV4Width width;
+	private boolean batchNormFolding;
+	private boolean fusedConvolutions;
+	private boolean mergedConvolutions;
+	private BuildProfile buildProfile;
 
 	public InceptionV4WithoutTailDefinition(
 			InceptionV4WeightsLoader weightsLoader) {
+		this(weightsLoader, InceptionV4Resolution.DEFAULT);
+	}
+
+	public InceptionV4WithoutTailDefinition(
+			InceptionV4WeightsLoader weightsLoader, InceptionV4Resolution resolution) {
+		this(weightsLoader, resolution, InceptionV4Width.DEFAULT);
+	}
+
+	/**
+	 * @param weightsLoader The loader of weights trained at the given width.
+	 * @param resolution The input resolution.
+	 * @param width The width of the network - the multiplier applied to the filter count of every layer.
+	 */
+	public InceptionV4WithoutTailDefinition(
+			InceptionV4WeightsLoader weightsLoader, InceptionV4Resolution resolution, InceptionV4Width width) {
 		this.weightsLoader = weightsLoader;
+		this.resolution = resolution;
+		this.width = width;
+		this.buildProfile = BuildProfile.TRAINING;
+	}
+
+	public InceptionV4Resolution getResolution() {
+		return resolution;
+	}
+
+	public InceptionV4Width getWidth() {
+		return width;
 	}
 
 	@Override
 	public Neurons3D getInputNeurons() {
-		return new Neurons3D(299, 299, 3, false);
+		return new Neurons3D(resolution.getInputSize(), resolution.getInputSize(), 3, false);
 	}
 
 	@Override
 	public Neurons3D getOutputNeurons() {
-		return new Neurons3D(8, 8, 1536, false);
+		return new Neurons3D(resolution.getInceptionCSize(), resolution.getInceptionCSize(), width.scale(1536), false);
 	}
 
 	@Override
 	public <T extends NeuralComponent<?>> InitialComponents3DGraphBuilder<T> createComponentGraph(
 			InitialComponents3DGraphBuilder<T> start, NeuralComponentFactory<T> neuralComponentFactory) {
-		return start
-				// Initial Stem...
-				.withComponentDefinition(new InceptionV4StemDefinition(weightsLoader))
-				// followed by 4 InceptionA modules...
-				.withComponentDefinition(new InceptionADefinition(weightsLoader, 0))
-				.withComponentDefinition(new InceptionADefinition(weightsLoader, 1))
-				.withComponentDefinition(new InceptionADefinition(weightsLoader, 2))
-				.withComponentDefinition(new InceptionADefinition(weightsLoader, 3))
-				// followed by a ReductionA module...
-				.withComponentDefinition(new ReductionADefinition(weightsLoader))
-				// followed by 7 InceptionB modules...
-				.withComponentDefinition(new InceptionBDefinition(weightsLoader, 0))
-				.withComponentDefinition(new InceptionBDefinition(weightsLoader, 1))
-				.withComponentDefinition(new InceptionBDefinition(weightsLoader, 2))
-				.withComponentDefinition(new InceptionBDefinition(weightsLoader, 3))
-				.withComponentDefinition(new InceptionBDefinition(weightsLoader, 4))
-				.withComponentDefinition(new InceptionBDefinition(weightsLoader, 5))
-				.withComponentDefinition(new InceptionBDefinition(weightsLoader, 6))
-				// followed by a ReductionB module...
-				.withComponentDefinition(new ReductionBDefinition(weightsLoader))
-				// followed by 3 InceptionC modules...
-				.withComponentDefinition(new InceptionCDefinition(weightsLoader, 0))
-				.withComponentDefinition(new InceptionCDefinition(weightsLoader, 1))
-				.withComponentDefinition(new InceptionCDefinition(weightsLoader, 2))
+		if (mergedConvolutions) {
+			InceptionV4Module.validateMergedConvolutions(weightsLoader, neuralComponentFactory);
+		}
+		InitialComponents3DGraphBuilder<T> builder = start;
+		for (InceptionV4Module module : InceptionV4Module.values()) {
+			builder = builder.withComponentDefinition(module.createDefinition(weightsLoader, resolution, width,
+					batchNormFolding, fusedConvolutions, mergedConvolutions, buildProfile));
+		}
+		return builder
 				// ending with final Tail
 				.withActivationFunction("linear", ActivationFunctionType.getBaseType(ActivationFunctionBaseType.RELU), new ActivationFunctionProperties());
 
 	}
 
+	/**
+	 * @param batchNormFolding Whether to fold each batch norm layer into the preceding convolutional layer.
+	 * @see InceptionV4Definition#setBatchNormFolding(boolean)
+	 */
+	public void setBatchNormFolding(boolean batchNormFolding) {
+		this.batchNormFolding = batchNormFolding;
+	}
+
+	/**
+	 * @param fusedConvolutions Whether to create each convolutional layer as a single fused component.
+	 * @see InceptionV4Definition#setFusedConvolutions(boolean)
+	 */
+	public void setFusedConvolutions(boolean fusedConvolutions) {
+		this.fusedConvolutions = fusedConvolutions;
+	}
+
+	/**
+	 * @param mergedConvolutions Whether to merge the sibling 1x1 convolutional layers of the Inception modules.
+	 * @see InceptionV4Definition#setMergedConvolutions(boolean)
+	 */
+	public void setMergedConvolutions(boolean mergedConvolutions) {
+		this.mergedConvolutions = mergedConvolutions;
+	}
+
+	/**
+	 * @param buildProfile Whether to configure the components for training or for inference only.
+	 * @see InceptionV4Definition#setBuildProfile(BuildProfile)
+	 */
+	public void setBuildProfile(BuildProfile buildProfile) {
+		this.buildProfile = buildProfile;
+	}
+
 	@Override
 	public String getName() {
 		return "inception_v4_graph_without_tail";
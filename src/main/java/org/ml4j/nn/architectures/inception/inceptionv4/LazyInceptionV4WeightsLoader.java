@@ -0,0 +1,117 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.architectures.inception.inceptionv4;
+
+import java.io.File;
+
+import org.ml4j.nn.architectures.weights.DeferredWeights;
+import org.ml4j.nn.architectures.weights.WeightsTensorFactory;
+import org.ml4j.nn.axons.BiasVector;
+import org.ml4j.nn.axons.FeaturesVector;
+import org.ml4j.nn.axons.WeightsMatrix;
+
+/**
+ * InceptionV4WeightsLoader decorator which returns deferred handles instead of loading weights eagerly.
+ * 
+ * Definitions constructed with this loader can build component graphs - for example with a metadata-only
+ * NeuralComponentFactory, for shape checks, or for truncated graphs - without reading the weights of every
+ * layer.  The weights of a layer are only read from the delegate loader the first time a component uses them.
+ * 
+ * @author Michael Lavelle
+ */
+public class LazyInceptionV4WeightsLoader implements InceptionV4WeightsLoader {
+
+	/**
+	 * Default serialization id.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	private InceptionV4WeightsLoader delegate;
+
+	public LazyInceptionV4WeightsLoader(InceptionV4WeightsLoader delegate) {
+		this.delegate = delegate;
+	}
+
+	@Override
+	public boolean isMergedConvolutions() {
+		return delegate.isMergedConvolutions();
+	}
+
+	@Override
+	public String getConfigurationFingerprint() {
+		return getClass().getName() + "(" + delegate.getConfigurationFingerprint() + ")";
+	}
+
+	@Override
+	public WeightsMatrix getDenseLayerWeights(String name, int rows, int columns) {
+		return DeferredWeights.defer(WeightsMatrix.class, name,
+				() -> delegate.getDenseLayerWeights(name, rows, columns));
+	}
+
+	@Override
+	public BiasVector getDenseLayerBiases(String name, int rows, int columns) {
+		return DeferredWeights.defer(BiasVector.class, name, () -> delegate.getDenseLayerBiases(name, rows, columns));
+	}
+
+	@Override
+	public WeightsMatrix getConvolutionalLayerWeights(String name, int width, int height, int inputDepth,
+			int outputDepth) {
+		return DeferredWeights.defer(WeightsMatrix.class, name,
+				() -> delegate.getConvolutionalLayerWeights(name, width, height, inputDepth, outputDepth));
+	}
+
+	@Override
+	public BiasVector getConvolutionalLayerBiases(String name, int outputDepth) {
+		return DeferredWeights.defer(BiasVector.class, name,
+				() -> delegate.getConvolutionalLayerBiases(name, outputDepth));
+	}
+
+	@Override
+	public WeightsMatrix getBatchNormLayerWeights(String name, int outputDepth) {
+		return DeferredWeights.defer(WeightsMatrix.class, name,
+				() -> delegate.getBatchNormLayerWeights(name, outputDepth));
+	}
+
+	@Override
+	public BiasVector getBatchNormLayerBiases(String name, int outputDepth) {
+		return DeferredWeights.defer(BiasVector.class, name, () -> delegate.getBatchNormLayerBiases(name, outputDepth));
+	}
+
+	@Override
+	public FeaturesVector getBatchNormLayerMean(String name, int outputDepth) {
+		return DeferredWeights.defer(FeaturesVector.class, name,
+				() -> delegate.getBatchNormLayerMean(name, outputDepth));
+	}
+
+	@Override
+	public FeaturesVector getBatchNormLayerVariance(String name, int outputDepth) {
+		return DeferredWeights.defer(FeaturesVector.class, name,
+				() -> delegate.getBatchNormLayerVariance(name, outputDepth));
+	}
+
+	/**
+	 * Convenience method for a loader over a memory-mapped WeightsBundle which reads - and for reduced-precision
+	 * bundles, widens - each tensor only when the component using it first needs it.
+	 * 
+	 * @param bundle The bundle file.
+	 * @param weightsTensorFactory The factory used to create the ml4j weights types.
+	 * @return The loader.
+	 */
+	public static LazyInceptionV4WeightsLoader fromWeightsBundle(File bundle, WeightsTensorFactory weightsTensorFactory) {
+		return new LazyInceptionV4WeightsLoader(
+				TensorSourceInceptionV4WeightsLoader.fromWeightsBundle(bundle, weightsTensorFactory));
+	}
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.architectures.inception.inceptionv4;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+
+import org.ml4j.nn.architectures.weights.WeightsPrefetcher;
+import org.ml4j.nn.architectures.weights.WeightsRequest;
+
+/**
+ * InceptionV4WeightsLoader decorator which discovers the full manifest of tensors a definition needs up front,
+ * and then loads them all in parallel.
+ * 
+ * Usage is in two phases - a dry run of the graph construction to record the manifest, followed by a parallel
+ * prefetch of every tensor in it:
+ * 
+ * <pre>
+ * PrefetchingInceptionV4WeightsLoader loader = new PrefetchingInceptionV4WeightsLoader(delegate);
+ * loader.recordManifest(dryRunLoader -&gt; metadataSession.buildComponentGraph()
+ * 		.startWith(new InceptionV4Definition(dryRunLoader)));
+ * loader.prefetch(ForkJoinPool.commonPool());
+ * session.buildComponentGraph().startWith(new InceptionV4Definition(loader));
+ * </pre>
+ * 
+ * The loader passed to the dry run records each request and returns a deferred handle, so the dry run itself
+ * does not read any weights.  Requests which were not prefetched fall back to the delegate loader.  The
+ * recording and prefetching are performed by a WeightsPrefetcher.
+ * 
+ * @author Michael Lavelle
+ */
+public class PrefetchingInceptionV4WeightsLoader extends AbstractInceptionV4WeightsLoader {
+
+	/**
+	 * Default serialization id.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	private WeightsPrefetcher prefetcher;
+	private String delegateConfigurationFingerprint;
+	private boolean mergedConvolutions;
+
+	public PrefetchingInceptionV4WeightsLoader(InceptionV4WeightsLoader delegate) {
+		this.prefetcher = new WeightsPrefetcher(request -> load(delegate, request));
+		this.mergedConvolutions = delegate.isMergedConvolutions();
+		this.delegateConfigurationFingerprint = delegate.getConfigurationFingerprint();
+	}
+
+	/**
+	 * @param delegate The loader to prefetch from.
+	 * @param manifest A previously recorded manifest, allowing the dry run to be skipped.
+	 */
+	public PrefetchingInceptionV4WeightsLoader(InceptionV4WeightsLoader delegate, Collection<WeightsRequest> manifest) {
+		this(delegate);
+		this.prefetcher.recordAll(manifest);
+	}
+
+	/**
+	 * Phase one - record the manifest of tensors requested during a dry run.
+	 * 
+	 * @param dryRun Builds a component graph using the supplied recording loader.
+	 * @return This loader.
+	 */
+	public PrefetchingInceptionV4WeightsLoader recordManifest(Consumer<InceptionV4WeightsLoader> dryRun) {
+		dryRun.accept(new RecordingInceptionV4WeightsLoader());
+		return this;
+	}
+
+	/**
+	 * Phase two - load every tensor in the manifest in parallel.
+	 * 
+	 * @param pool The pool on which to load the tensors.
+	 * @return This loader.
+	 */
+	public PrefetchingInceptionV4WeightsLoader prefetch(ForkJoinPool pool) {
+		prefetcher.prefetch(pool);
+		return this;
+	}
+
+	public PrefetchingInceptionV4WeightsLoader prefetch() {
+		return prefetch(ForkJoinPool.commonPool());
+	}
+
+	public List<WeightsRequest> getManifest() {
+		return prefetcher.getManifest();
+	}
+
+	/**
+	 * Release the prefetched weights once the component graph has been built.
+	 */
+	public void clear() {
+		prefetcher.clear();
+	}
+
+	@Override
+	public boolean isMergedConvolutions() {
+		return mergedConvolutions;
+	}
+
+	@Override
+	public String getConfigurationFingerprint() {
+		return getClass().getName() + "(" + delegateConfigurationFingerprint + ")";
+	}
+
+	@Override
+	protected Object load(WeightsRequest request) {
+		return prefetcher.load(request);
+	}
+
+	private class RecordingInceptionV4WeightsLoader extends AbstractInceptionV4WeightsLoader {
+
+		/**
+		 * Default serialization id.
+		 */
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public boolean isMergedConvolutions() {
+			return mergedConvolutions;
+		}
+
+		@Override
+		protected Object load(WeightsRequest request) {
+			return prefetcher.recordDeferred(request, getWeightsType(request.getKind()));
+		}
+	}
+}
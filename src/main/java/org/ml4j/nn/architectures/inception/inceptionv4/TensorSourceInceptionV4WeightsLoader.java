@@ -0,0 +1,223 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.architectures.inception.inceptionv4;
+
+import java.io.File;
+import java.util.function.Consumer;
+
+import org.ml4j.nn.architectures.weights.BatchNormFoldingTensorSource;
+import org.ml4j.nn.architectures.weights.ConcatenatingTensorSource;
+import org.ml4j.nn.architectures.weights.KerasHdf5TensorSource;
+import org.ml4j.nn.architectures.weights.NumPyTensorSource;
+import org.ml4j.nn.architectures.weights.TensorSource;
+import org.ml4j.nn.architectures.weights.WeightsBundle;
+import org.ml4j.nn.architectures.weights.WeightsCompiler;
+import org.ml4j.nn.architectures.weights.WeightsRequest;
+import org.ml4j.nn.architectures.weights.WeightsRequest.Kind;
+import org.ml4j.nn.architectures.weights.WeightsTensorFactory;
+import org.ml4j.nn.axons.BiasVector;
+import org.ml4j.nn.axons.FeaturesVector;
+import org.ml4j.nn.axons.WeightsMatrix;
+
+/**
+ * InceptionV4WeightsLoader which reads tensors from a TensorSource, such as a memory-mapped WeightsBundle,
+ * and creates the ml4j weights types using an application-supplied WeightsTensorFactory.
+ * 
+ * @author Michael Lavelle
+ */
+public class TensorSourceInceptionV4WeightsLoader implements InceptionV4WeightsLoader {
+
+	/**
+	 * Default serialization id.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	private TensorSource tensorSource;
+	private WeightsTensorFactory weightsTensorFactory;
+	private boolean mergedConvolutions;
+
+	public TensorSourceInceptionV4WeightsLoader(TensorSource tensorSource, WeightsTensorFactory weightsTensorFactory) {
+		this(tensorSource, weightsTensorFactory, false);
+	}
+
+	private TensorSourceInceptionV4WeightsLoader(TensorSource tensorSource, WeightsTensorFactory weightsTensorFactory,
+			boolean mergedConvolutions) {
+		this.tensorSource = tensorSource;
+		this.weightsTensorFactory = weightsTensorFactory;
+		this.mergedConvolutions = mergedConvolutions;
+	}
+
+	@Override
+	public boolean isMergedConvolutions() {
+		return mergedConvolutions;
+	}
+
+	@Override
+	public String getConfigurationFingerprint() {
+		return getClass().getName() + "(" + tensorSource.getConfigurationFingerprint() + ", mergedConvolutions="
+				+ mergedConvolutions + ")";
+	}
+
+	@Override
+	public WeightsMatrix getDenseLayerWeights(String name, int rows, int columns) {
+		return weightsTensorFactory.createDenseLayerWeights(
+				tensorSource.getTensor(WeightsRequest.denseWeights(name, rows, columns)), rows, columns);
+	}
+
+	@Override
+	public BiasVector getDenseLayerBiases(String name, int rows, int columns) {
+		return weightsTensorFactory.createBiasVector(
+				tensorSource.getTensor(WeightsRequest.denseBiases(name, rows, columns)), rows * columns);
+	}
+
+	@Override
+	public WeightsMatrix getConvolutionalLayerWeights(String name, int width, int height, int inputDepth,
+			int outputDepth) {
+		return weightsTensorFactory.createConvolutionalLayerWeights(
+				tensorSource.getTensor(
+						WeightsRequest.convolutionalWeights(name, width, height, inputDepth, outputDepth)),
+				width, height, inputDepth, outputDepth);
+	}
+
+	@Override
+	public BiasVector getConvolutionalLayerBiases(String name, int outputDepth) {
+		return weightsTensorFactory.createBiasVector(
+				tensorSource.getTensor(WeightsRequest.vector(Kind.CONVOLUTIONAL_BIASES, name, outputDepth)),
+				outputDepth);
+	}
+
+	@Override
+	public WeightsMatrix getBatchNormLayerWeights(String name, int outputDepth) {
+		return weightsTensorFactory.createBatchNormLayerWeights(
+				tensorSource.getTensor(WeightsRequest.vector(Kind.BATCH_NORM_GAMMA, name, outputDepth)), outputDepth);
+	}
+
+	@Override
+	public BiasVector getBatchNormLayerBiases(String name, int outputDepth) {
+		return weightsTensorFactory.createBiasVector(
+				tensorSource.getTensor(WeightsRequest.vector(Kind.BATCH_NORM_BETA, name, outputDepth)), outputDepth);
+	}
+
+	@Override
+	public FeaturesVector getBatchNormLayerMean(String name, int outputDepth) {
+		return weightsTensorFactory.createFeaturesVector(
+				tensorSource.getTensor(WeightsRequest.vector(Kind.BATCH_NORM_MEAN, name, outputDepth)), outputDepth);
+	}
+
+	@Override
+	public FeaturesVector getBatchNormLayerVariance(String name, int outputDepth) {
+		return weightsTensorFactory.createFeaturesVector(
+				tensorSource.getTensor(WeightsRequest.vector(Kind.BATCH_NORM_VARIANCE, name, outputDepth)),
+				outputDepth);
+	}
+
+	/**
+	 * @return A loader which additionally serves the folded convolutional weights and biases requested by
+	 *         definitions built with batch norm folding enabled, using the default batch norm epsilon.
+	 */
+	public TensorSourceInceptionV4WeightsLoader withBatchNormFolding() {
+		return withBatchNormFolding(BatchNormFoldingTensorSource.DEFAULT_EPSILON);
+	}
+
+	/**
+	 * @param epsilon The batch norm epsilon the weights were trained with.
+	 * @return A loader which additionally serves the folded convolutional weights and biases requested by
+	 *         definitions built with batch norm folding enabled.
+	 */
+	public TensorSourceInceptionV4WeightsLoader withBatchNormFolding(float epsilon) {
+		return new TensorSourceInceptionV4WeightsLoader(new BatchNormFoldingTensorSource(tensorSource, false, epsilon), weightsTensorFactory,
+				mergedConvolutions);
+	}
+
+	/**
+	 * @return A loader which additionally serves the concatenated weights requested by definitions built with
+	 *         merged convolutions.  When combined with batch norm folding, withBatchNormFolding must be applied
+	 *         first, so that the folded weights of each merged layer are concatenated.
+	 */
+	public TensorSourceInceptionV4WeightsLoader withMergedConvolutions() {
+		return new TensorSourceInceptionV4WeightsLoader(new ConcatenatingTensorSource(tensorSource), weightsTensorFactory, true);
+	}
+
+	/**
+	 * Compile the tensors a InceptionV4Definition requests from this loader into a WeightsBundle in canonical layout,
+	 * or reuse the bundle compiled by an earlier startup.
+	 * 
+	 * @param sourceFile The file this loader reads its tensors from.
+	 * @param compiler The compiler, holding the cache directory.
+	 * @param dryRun Builds a component graph using the supplied recording loader - only invoked on a cache miss.
+	 * @return A loader serving the compiled tensors.
+	 */
+	public TensorSourceInceptionV4WeightsLoader compile(File sourceFile, WeightsCompiler compiler,
+			Consumer<InceptionV4WeightsLoader> dryRun) {
+		return compile(sourceFile, compiler, InceptionV4Definition.class.getName(), dryRun);
+	}
+
+	/**
+	 * Compile the tensors a definition requests from this loader into a WeightsBundle in canonical layout,
+	 * or reuse the bundle compiled by an earlier startup.
+	 * 
+	 * @param sourceFile The file this loader reads its tensors from.
+	 * @param compiler The compiler, holding the cache directory.
+	 * @param definitionId Identifies the definition and any parameters which affect the tensors it requests.
+	 * @param dryRun Builds a component graph using the supplied recording loader - only invoked on a cache miss.
+	 * @return A loader serving the compiled tensors.
+	 */
+	public TensorSourceInceptionV4WeightsLoader compile(File sourceFile, WeightsCompiler compiler, String definitionId,
+			Consumer<InceptionV4WeightsLoader> dryRun) {
+		return new TensorSourceInceptionV4WeightsLoader(compiler.compile(sourceFile, tensorSource, definitionId,
+				() -> new PrefetchingInceptionV4WeightsLoader(this).recordManifest(dryRun).getManifest()), weightsTensorFactory,
+				mergedConvolutions);
+	}
+
+	/**
+	 * Convenience method for a loader which serves every tensor as a view onto a memory-mapped WeightsBundle.
+	 * 
+	 * @param bundle The bundle file.
+	 * @param weightsTensorFactory The factory used to create the ml4j weights types.
+	 * @return The loader.
+	 */
+	public static TensorSourceInceptionV4WeightsLoader fromWeightsBundle(File bundle,
+			WeightsTensorFactory weightsTensorFactory) {
+		return new TensorSourceInceptionV4WeightsLoader(WeightsBundle.open(bundle), weightsTensorFactory);
+	}
+
+	/**
+	 * Convenience method for a loader which reads tensors saved by NumPy from Keras, either as a directory of
+	 * .npy files or as an uncompressed .npz archive.
+	 * 
+	 * @param numPyFile The directory of .npy files, or the .npz archive.
+	 * @param weightsTensorFactory The factory used to create the ml4j weights types.
+	 * @return The loader.
+	 */
+	public static TensorSourceInceptionV4WeightsLoader fromNumPy(File numPyFile,
+			WeightsTensorFactory weightsTensorFactory) {
+		return new TensorSourceInceptionV4WeightsLoader(numPyFile.isDirectory()
+				? NumPyTensorSource.fromDirectory(numPyFile) : NumPyTensorSource.fromArchive(numPyFile),
+				weightsTensorFactory);
+	}
+
+	/**
+	 * Convenience method for a loader which reads a published Keras weights file (.h5) as-is.
+	 * 
+	 * @param kerasWeightsFile The Keras HDF5 weights file.
+	 * @param weightsTensorFactory The factory used to create the ml4j weights types.
+	 * @return The loader.
+	 */
+	public static TensorSourceInceptionV4WeightsLoader fromKerasHdf5(File kerasWeightsFile,
+			WeightsTensorFactory weightsTensorFactory) {
+		return new TensorSourceInceptionV4WeightsLoader(KerasHdf5TensorSource.open(kerasWeightsFile), weightsTensorFactory);
+	}
+}
@@ -15,13 +15,8 @@
  */
 package org.ml4j.nn.architectures.inception.inceptionv4;
 
-import org.ml4j.nn.architectures.inception.inceptionv4.modules.InceptionADefinition;
-import org.ml4j.nn.architectures.inception.inceptionv4.modules.InceptionBDefinition;
-import org.ml4j.nn.architectures.inception.inceptionv4.modules.InceptionCDefinition;
+import org.ml4j.nn.architectures.BuildProfile;
 import org.ml4j.nn.architectures.inception.inceptionv4.modules.InceptionV4CustomTailDefinition;
-import org.ml4j.nn.architectures.inception.inceptionv4.modules.InceptionV4StemDefinition;
-import org.ml4j.nn.architectures.inception.inceptionv4.modules.ReductionADefinition;
-import org.ml4j.nn.architectures.inception.inceptionv4.modules.ReductionBDefinition;
 import org.ml4j.nn.axons.BiasVector;
 import org.ml4j.nn.axons.WeightsMatrix;
 import org.ml4j.nn.components.NeuralComponent;
@@ -43,26 +38,52 @@ public class UntrainedTailInceptionV4Definition implements Component3DtoNon3DGra
 	private static final long serialVersionUID = 1L;
 	
 	private InceptionV4WeightsLoader weightsLoader;
+	private InceptionV4Resolution resolution;
+	private InceptionV4Width width;
 	private WeightsMatrix denseWeights;
 	private BiasVector denseBiases;
 	private int neuronsCount;
 	protected float regularisationLambda;
 	protected float dropoutKeepPropability;
+	private boolean batchNormFolding;
+	private BuildProfile buildProfile;
 
 	public UntrainedTailInceptionV4Definition(
 			InceptionV4WeightsLoader weightsLoader, WeightsMatrix denseWeights, BiasVector denseBiases, int neuronsCount, 
 			float regularisationLambda, float dropoutKeepPropability) {
+		this(weightsLoader, denseWeights, denseBiases, neuronsCount, regularisationLambda, dropoutKeepPropability,
+				InceptionV4Resolution.DEFAULT);
+	}
+
+	public UntrainedTailInceptionV4Definition(
+			InceptionV4WeightsLoader weightsLoader, WeightsMatrix denseWeights, BiasVector denseBiases, int neuronsCount, 
+			float regularisationLambda, float dropoutKeepPropability, InceptionV4Resolution resolution) {
+		this(weightsLoader, denseWeights, denseBiases, neuronsCount, regularisationLambda, dropoutKeepPropability,
+				resolution, InceptionV4Width.DEFAULT);
+	}
+
+	/**
+	 * @param width The width of the network - the dense weights must have a column for each of the
+	 *            width.scale(1536) features of the final InceptionC module.
+	 */
+	public UntrainedTailInceptionV4Definition(
+			InceptionV4WeightsLoader weightsLoader, WeightsMatrix denseWeights, BiasVector denseBiases, int neuronsCount, 
+			float regularisationLambda, float dropoutKeepPropability, InceptionV4Resolution resolution,
+			InceptionV4Width width) {
 		this.weightsLoader = weightsLoader;
+		this.resolution = resolution;
+		this.width = width;
 		this.neuronsCount = neuronsCount;
 		this.denseWeights = denseWeights;
 		this.denseBiases = denseBiases;
 		this.regularisationLambda = regularisationLambda;
 		this.dropoutKeepPropability = dropoutKeepPropability;
+		this.buildProfile = BuildProfile.TRAINING;
 	}
 
 	@Override
 	public Neurons3D getInputNeurons() {
-		return new Neurons3D(299, 299, 3, false);
+		return new Neurons3D(resolution.getInputSize(), resolution.getInputSize(), 3, false);
 	}
 
 	@Override
@@ -73,33 +94,33 @@ public class UntrainedTailInceptionV4Definition implements Component3DtoNon3DGra
 	@Override
 	public <T extends NeuralComponent<?>> InitialComponentsGraphBuilder<T> createComponentGraph(
 			InitialComponents3DGraphBuilder<T> start, NeuralComponentFactory<T> neuralComponentFactory) {
-		return start
-				// Initial Stem...
-				.withComponentDefinition(new InceptionV4StemDefinition(weightsLoader))
-				// followed by 4 InceptionA modules...
-				.withComponentDefinition(new InceptionADefinition(weightsLoader, 0))
-				.withComponentDefinition(new InceptionADefinition(weightsLoader, 1))
-				.withComponentDefinition(new InceptionADefinition(weightsLoader, 2))
-				.withComponentDefinition(new InceptionADefinition(weightsLoader, 3))
-				// followed by a ReductionA module...
-				.withComponentDefinition(new ReductionADefinition(weightsLoader))
-				// followed by 7 InceptionB modules...
-				.withComponentDefinition(new InceptionBDefinition(weightsLoader, 0))
-				.withComponentDefinition(new InceptionBDefinition(weightsLoader, 1))
-				.withComponentDefinition(new InceptionBDefinition(weightsLoader, 2))
-				.withComponentDefinition(new InceptionBDefinition(weightsLoader, 3))
-				.withComponentDefinition(new InceptionBDefinition(weightsLoader, 4))
-				.withComponentDefinition(new InceptionBDefinition(weightsLoader, 5))
-				.withComponentDefinition(new InceptionBDefinition(weightsLoader, 6))
-				// followed by a ReductionB module...
-				.withComponentDefinition(new ReductionBDefinition(weightsLoader))
-				// followed by 3 InceptionC modules...
-				.withComponentDefinition(new InceptionCDefinition(weightsLoader, 0))
-				.withComponentDefinition(new InceptionCDefinition(weightsLoader, 1))
-				.withComponentDefinition(new InceptionCDefinition(weightsLoader, 2))
-				// ending with final Tail
-				.withComponentDefinition(new InceptionV4CustomTailDefinition(neuronsCount, denseWeights, denseBiases, regularisationLambda, dropoutKeepPropability));
+		InceptionV4CustomTailDefinition tailDefinition = new InceptionV4CustomTailDefinition(neuronsCount, denseWeights,
+				denseBiases, regularisationLambda, dropoutKeepPropability, resolution, width);
+		tailDefinition.setBuildProfile(buildProfile);
+		
+		InitialComponents3DGraphBuilder<T> builder = start;
+		for (InceptionV4Module module : InceptionV4Module.values()) {
+			builder = builder.withComponentDefinition(module.createDefinition(weightsLoader, resolution, width,
+					batchNormFolding, false, false, buildProfile));
+		}
+		return builder.withComponentDefinition(tailDefinition);
+
+	}
 
+	/**
+	 * @param batchNormFolding Whether to fold each batch norm layer into the preceding convolutional layer.
+	 * @see InceptionV4Definition#setBatchNormFolding(boolean)
+	 */
+	public void setBatchNormFolding(boolean batchNormFolding) {
+		this.batchNormFolding = batchNormFolding;
+	}
+
+	/**
+	 * @param buildProfile Whether to configure the components for training or for inference only.
+	 * @see InceptionV4Definition#setBuildProfile(BuildProfile)
+	 */
+	public void setBuildProfile(BuildProfile buildProfile) {
+		this.buildProfile = buildProfile;
 	}
 
 	@Override
@@ -15,11 +15,13 @@
  */
 package org.ml4j.nn.architectures.inception.inceptionv4.modules;
 
-import org.ml4j.nn.activationfunctions.ActivationFunctionBaseType;
-import org.ml4j.nn.activationfunctions.ActivationFunctionProperties;
-import org.ml4j.nn.activationfunctions.ActivationFunctionType;
+import org.ml4j.nn.architectures.BuildProfile;
+import org.ml4j.nn.architectures.fusion.ChannelSliceComponentFactory;
 import org.ml4j.nn.architectures.inception.InceptionModuleDefinition;
+import org.ml4j.nn.architectures.inception.inceptionv4.InceptionV4Module;
+import org.ml4j.nn.architectures.inception.inceptionv4.InceptionV4Resolution;
 import org.ml4j.nn.architectures.inception.inceptionv4.InceptionV4WeightsLoader;
+import org.ml4j.nn.architectures.inception.inceptionv4.InceptionV4Width;
 import org.ml4j.nn.components.NeuralComponent;
 import org.ml4j.nn.components.builders.componentsgraph.InitialComponents3DGraphBuilder;
 import org.ml4j.nn.components.factories.NeuralComponentFactory;
@@ -37,152 +39,157 @@ public class InceptionADefinition implements InceptionModuleDefinition {
 	private static final long serialVersionUID = 1L;
 
 	private InceptionV4WeightsLoader weightsLoader;
+	private InceptionV4Resolution resolution;
+	private InceptionV4Width width;
 	private int inceptionAModuleIndex;
 	private boolean withFreezeOut;
+	private boolean batchNormFolding;
+	private boolean fusedConvolutions;
+	private boolean mergedConvolutions;
+	private BuildProfile buildProfile;
 
 	public InceptionADefinition(InceptionV4WeightsLoader weightsLoader, int inceptionAModuleIndex) {
+		this(weightsLoader, InceptionV4Resolution.DEFAULT, inceptionAModuleIndex);
+	}
+
+	public InceptionADefinition(InceptionV4WeightsLoader weightsLoader, InceptionV4Resolution resolution, int inceptionAModuleIndex) {
+		this(weightsLoader, resolution, InceptionV4Width.DEFAULT, inceptionAModuleIndex);
+	}
+
+	public InceptionADefinition(InceptionV4WeightsLoader weightsLoader, InceptionV4Resolution resolution, InceptionV4Width width,
+			int inceptionAModuleIndex) {
 		this.inceptionAModuleIndex = inceptionAModuleIndex;
 		this.weightsLoader = weightsLoader;
+		this.resolution = resolution;
+		this.width = width;
+		this.buildProfile = BuildProfile.TRAINING;
+	}
+
+	/**
+	 * @param batchNormFolding Whether to fold each batch norm layer into the preceding convolutional layer, for
+	 *            inference - requires a weights loader which serves the folded weights, such as a
+	 *            TensorSourceInceptionV4WeightsLoader created with batch norm folding.
+	 * @return This definition.
+	 */
+	public InceptionADefinition withBatchNormFolding(boolean batchNormFolding) {
+		this.batchNormFolding = batchNormFolding;
+		return this;
+	}
+
+	/**
+	 * @param fusedConvolutions Whether to create each convolutional layer as a single fused convolution / batch
+	 *            norm / activation component - requires a FusedComponentFactory.
+	 * @return This definition.
+	 */
+	public InceptionADefinition withFusedConvolutions(boolean fusedConvolutions) {
+		this.fusedConvolutions = fusedConvolutions;
+		return this;
+	}
+
+	/**
+	 * @param mergedConvolutions Whether to merge the three sibling 1x1 convolutional layers over the input of the
+	 *            module into a single convolutional layer, when created with a ChannelSliceComponentFactory -
+	 *            requires a weights loader which serves the concatenated weights, such as a
+	 *            TensorSourceInceptionV4WeightsLoader created with merged convolutions.
+	 * @return This definition.
+	 */
+	public InceptionADefinition withMergedConvolutions(boolean mergedConvolutions) {
+		this.mergedConvolutions = mergedConvolutions;
+		return this;
+	}
+
+	/**
+	 * @param buildProfile Whether to configure the components for training or for inference only.
+	 * @return This definition.
+	 */
+	public InceptionADefinition withBuildProfile(BuildProfile buildProfile) {
+		this.buildProfile = buildProfile;
+		return this;
 	}
 
 	@Override
 	public Neurons3D getInputNeurons() {
-		return new Neurons3D(35, 35, 384, false);
+		return new Neurons3D(resolution.getInceptionASize(), resolution.getInceptionASize(), width.scale(384), false);
 	}
 
 	@Override
 	public <T extends NeuralComponent<?>> InitialComponents3DGraphBuilder<T> createComponentGraph(
 			InitialComponents3DGraphBuilder<T> start, NeuralComponentFactory<T> neuralComponentFactory) {
+		if (mergedConvolutions) {
+			InceptionV4Module.validateMergedConvolutions(weightsLoader, neuralComponentFactory);
+			return createMergedComponentGraph(start,
+					ChannelSliceComponentFactory.getChannelSliceComponentFactory(neuralComponentFactory));
+		}
+		int size = resolution.getInceptionASize();
 		
 		int initialComponentIndex = inceptionAModuleIndex * 7 + 12;
 		return start
 				.withParallelPaths().withPath()
-				.withConvolutionalAxons("conv2d_" + initialComponentIndex)
-				.withConnectionWeights(weightsLoader.getConvolutionalLayerWeights(
-						"conv2d_" + initialComponentIndex + "_kernel0", 1, 1, 384, 96))
-				.withFilterSize(1, 1).withFilterCount(96).withSamePadding()
-				.withAxonsContextConfigurer(
-						c -> c.withFreezeOut(withFreezeOut))
-				.withConnectionToNeurons(new Neurons3D(35, 35, 96, false)).withBatchNormAxons("batch_normalization_" + initialComponentIndex).withBiasUnit()
-				.withBeta(weightsLoader.getBatchNormLayerBiases(
-						"batch_normalization_" + initialComponentIndex + "_beta0", 96))
-				.withMean(weightsLoader.getBatchNormLayerMean(
-						"batch_normalization_" + initialComponentIndex + "_moving_mean0", 96))
-				.withVariance(weightsLoader.getBatchNormLayerVariance(
-						"batch_normalization_" + initialComponentIndex + "_moving_variance0", 96))
-				.withAxonsContextConfigurer(
-						c -> c.withFreezeOut(withFreezeOut))
-				.withConnectionToNeurons(new Neurons3D(35, 35, 96, false))
-				.withActivationFunction("relu_" + initialComponentIndex,
-						ActivationFunctionType.getBaseType(ActivationFunctionBaseType.RELU), new ActivationFunctionProperties()).endPath().withPath()
-				.withConvolutionalAxons("conv2d_" + (initialComponentIndex + 1))
-				.withConnectionWeights(weightsLoader.getConvolutionalLayerWeights(
-						"conv2d_" + (initialComponentIndex + 1) + "_kernel0", 1, 1, 384, 64))
-				.withFilterSize(1, 1).withFilterCount(64).withSamePadding()
-				.withAxonsContextConfigurer(
-						c -> c.withFreezeOut(withFreezeOut))
-				.withConnectionToNeurons(new Neurons3D(35, 35, 64, false)).withBatchNormAxons("batch_normalization_" + (initialComponentIndex + 1)).withBiasUnit()
-				.withBeta(weightsLoader.getBatchNormLayerBiases(
-						"batch_normalization_" + (initialComponentIndex + 1) + "_beta0", 64))
-				.withMean(weightsLoader.getBatchNormLayerMean(
-						"batch_normalization_" + (initialComponentIndex + 1) + "_moving_mean0", 64))
-				.withVariance(weightsLoader.getBatchNormLayerVariance(
-						"batch_normalization_" + (initialComponentIndex + 1) + "_moving_variance0", 64))
-				.withAxonsContextConfigurer(
-						c -> c.withFreezeOut(withFreezeOut))
-				.withConnectionToNeurons(new Neurons3D(35, 35, 64, false))
-				.withActivationFunction("relu_" + (initialComponentIndex + 1), ActivationFunctionType.getBaseType(ActivationFunctionBaseType.RELU), new ActivationFunctionProperties())
-				.withConvolutionalAxons("conv2d_" + (initialComponentIndex + 2))
-				.withConnectionWeights(weightsLoader.getConvolutionalLayerWeights(
-						"conv2d_" + (initialComponentIndex + 2) + "_kernel0", 3, 3, 64, 96))
-				.withFilterSize(3, 3).withFilterCount(96).withSamePadding()
-				.withAxonsContextConfigurer(
-						c -> c.withFreezeOut(withFreezeOut))
-				.withConnectionToNeurons(new Neurons3D(35, 35, 96, false)).withBatchNormAxons("batch_normalization_" + (initialComponentIndex + 2)).withBiasUnit()
-				.withBeta(weightsLoader.getBatchNormLayerBiases(
-						"batch_normalization_" + (initialComponentIndex + 2) + "_beta0", 96))
-				.withMean(weightsLoader.getBatchNormLayerMean(
-						"batch_normalization_" + (initialComponentIndex + 2) + "_moving_mean0", 96))
-				.withVariance(weightsLoader.getBatchNormLayerVariance(
-						"batch_normalization_" + (initialComponentIndex + 2) + "_moving_variance0", 96))
-				.withAxonsContextConfigurer(
-						c -> c.withFreezeOut(withFreezeOut))
-				.withConnectionToNeurons(new Neurons3D(35, 35, 96, false))
-				.withActivationFunction("relu_" + (initialComponentIndex + 2), ActivationFunctionType.getBaseType(ActivationFunctionBaseType.RELU), new ActivationFunctionProperties()).endPath().withPath()
-				.withConvolutionalAxons("conv2d_" + (initialComponentIndex + 3))
-				.withConnectionWeights(weightsLoader.getConvolutionalLayerWeights(
-						"conv2d_" + (initialComponentIndex + 3) + "_kernel0", 1, 1, 384, 64))
-				.withFilterSize(1, 1).withFilterCount(64).withSamePadding()
-				.withAxonsContextConfigurer(
-						c -> c.withFreezeOut(withFreezeOut))
-				.withConnectionToNeurons(new Neurons3D(35, 35, 64, false)).withBatchNormAxons("batch_normalization_" + (initialComponentIndex + 3)).withBiasUnit()
-				.withBeta(weightsLoader.getBatchNormLayerBiases(
-						"batch_normalization_" + (initialComponentIndex + 3) + "_beta0", 64))
-				.withMean(weightsLoader.getBatchNormLayerMean(
-						"batch_normalization_" + (initialComponentIndex + 3) + "_moving_mean0", 64))
-				.withVariance(weightsLoader.getBatchNormLayerVariance(
-						"batch_normalization_" + (initialComponentIndex + 3) + "_moving_variance0", 64))
-				.withAxonsContextConfigurer(
-						c -> c.withFreezeOut(withFreezeOut))
-				.withConnectionToNeurons(new Neurons3D(35, 35, 64, false))
-				.withActivationFunction("relu_" + (initialComponentIndex + 3), ActivationFunctionType.getBaseType(ActivationFunctionBaseType.RELU), new ActivationFunctionProperties())
-				.withConvolutionalAxons("conv2d_" + (initialComponentIndex + 4))
-				.withConnectionWeights(weightsLoader.getConvolutionalLayerWeights(
-						"conv2d_" + (initialComponentIndex + 4) + "_kernel0", 3, 3, 64, 96))
-				.withFilterSize(3, 3).withFilterCount(96).withSamePadding()
-				.withAxonsContextConfigurer(
-						c -> c.withFreezeOut(withFreezeOut))
-				.withConnectionToNeurons(new Neurons3D(35, 35, 96, false)).withBatchNormAxons("batch_normalization_" + (initialComponentIndex + 4)).withBiasUnit()
-				.withBeta(weightsLoader.getBatchNormLayerBiases(
-						"batch_normalization_" + (initialComponentIndex + 4) + "_beta0", 96))
-				.withMean(weightsLoader.getBatchNormLayerMean(
-						"batch_normalization_" + (initialComponentIndex + 4) + "_moving_mean0", 96))
-				.withVariance(weightsLoader.getBatchNormLayerVariance(
-						"batch_normalization_" + (initialComponentIndex + 4) + "_moving_variance0", 96))
-				.withAxonsContextConfigurer(
-						c -> c.withFreezeOut(withFreezeOut))
-				.withConnectionToNeurons(new Neurons3D(35, 35, 96, false))
-				.withActivationFunction("relu_" + (initialComponentIndex + 4), ActivationFunctionType.getBaseType(ActivationFunctionBaseType.RELU), new ActivationFunctionProperties())
-				.withConvolutionalAxons("conv2d_" + (initialComponentIndex + 5))
-				.withConnectionWeights(weightsLoader.getConvolutionalLayerWeights(
-						"conv2d_" + (initialComponentIndex + 5) + "_kernel0", 3, 3, 96, 96))
-				.withFilterSize(3, 3).withFilterCount(96).withSamePadding()
-				.withAxonsContextConfigurer(
-						c -> c.withFreezeOut(withFreezeOut))
-				.withConnectionToNeurons(new Neurons3D(35, 35, 96, false)).withBatchNormAxons("batch_normalization_" + (initialComponentIndex + 5)).withBiasUnit()
-				.withBeta(weightsLoader.getBatchNormLayerBiases(
-						"batch_normalization_" + (initialComponentIndex + 5) + "_beta0", 96))
-				.withMean(weightsLoader.getBatchNormLayerMean(
-						"batch_normalization_" + (initialComponentIndex + 5) + "_moving_mean0", 96))
-				.withVariance(weightsLoader.getBatchNormLayerVariance(
-						"batch_normalization_" + (initialComponentIndex + 5) + "_moving_variance0", 96))
-				.withAxonsContextConfigurer(
-						c -> c.withFreezeOut(withFreezeOut))
-				.withConnectionToNeurons(new Neurons3D(35, 35, 96, false))
-				.withActivationFunction("relu_" + (initialComponentIndex + 5), ActivationFunctionType.getBaseType(ActivationFunctionBaseType.RELU), new ActivationFunctionProperties()).endPath().withPath()
+				.withComponentDefinition(convolution(initialComponentIndex, getInputNeurons(),
+						new Neurons3D(size, size, width.scale(96), false)).withFilterSize(1, 1).withSamePadding()).endPath().withPath()
+				.withComponentDefinition(convolution(initialComponentIndex + 1, getInputNeurons(),
+						new Neurons3D(size, size, width.scale(64), false)).withFilterSize(1, 1).withSamePadding())
+				.withComponentDefinition(convolution(initialComponentIndex + 2, new Neurons3D(size, size, width.scale(64), false),
+						new Neurons3D(size, size, width.scale(96), false)).withFilterSize(3, 3).withSamePadding()).endPath().withPath()
+				.withComponentDefinition(convolution(initialComponentIndex + 3, getInputNeurons(),
+						new Neurons3D(size, size, width.scale(64), false)).withFilterSize(1, 1).withSamePadding())
+				.withComponentDefinition(convolution(initialComponentIndex + 4, new Neurons3D(size, size, width.scale(64), false),
+						new Neurons3D(size, size, width.scale(96), false)).withFilterSize(3, 3).withSamePadding())
+				.withComponentDefinition(convolution(initialComponentIndex + 5, new Neurons3D(size, size, width.scale(96), false),
+						new Neurons3D(size, size, width.scale(96), false)).withFilterSize(3, 3).withSamePadding()).endPath().withPath()
 
 				.withAveragePoolingAxons("average_pooling_1").withFilterSize(3, 3).withStride(1, 1).withSamePadding()
-				.withConnectionToNeurons(new Neurons3D(35, 35, 384, false)).withConvolutionalAxons("conv2d_" + (initialComponentIndex + 6))
-				.withConnectionWeights(weightsLoader.getConvolutionalLayerWeights(
-						"conv2d_" + (initialComponentIndex + 6) + "_kernel0", 1, 1, 384, 96))
-				.withFilterSize(1, 1).withFilterCount(96).withSamePadding()
-				.withAxonsContextConfigurer(
-						c -> c.withFreezeOut(withFreezeOut))
-				.withConnectionToNeurons(new Neurons3D(35, 35, 96, false)).withBatchNormAxons("batch_normalization_" + (initialComponentIndex + 6)).withBiasUnit()
-				.withBeta(weightsLoader.getBatchNormLayerBiases(
-						"batch_normalization_" + (initialComponentIndex + 6) + "_beta0", 96))
-				.withMean(weightsLoader.getBatchNormLayerMean(
-						"batch_normalization_" + (initialComponentIndex + 6) + "_moving_mean0", 96))
-				.withVariance(weightsLoader.getBatchNormLayerVariance(
-						"batch_normalization_" + (initialComponentIndex + 6) + "_moving_variance0", 96))
-				.withAxonsContextConfigurer(
-						c -> c.withFreezeOut(withFreezeOut))
-				.withConnectionToNeurons(new Neurons3D(35, 35, 96, false))
-				.withActivationFunction("relu_" + (initialComponentIndex + 6), ActivationFunctionType.getBaseType(ActivationFunctionBaseType.RELU), new ActivationFunctionProperties()).endPath()
+				.withConnectionToNeurons(new Neurons3D(size, size, width.scale(384), false)).withComponentDefinition(convolution(initialComponentIndex + 6, new Neurons3D(size, size, width.scale(384), false),
+						new Neurons3D(size, size, width.scale(96), false)).withFilterSize(1, 1).withSamePadding()).endPath()
 				.endParallelPaths("inception_a_concat_" + inceptionAModuleIndex, PathCombinationStrategy.FILTER_CONCAT);
 		
 	}
 
+	/**
+	 * Creates the module with the 1x1 convolutional layers which begin the first three paths merged into a single
+	 * convolutional layer, whose output channels are sliced back out into those paths.
+	 */
+	private <T extends NeuralComponent<?>> InitialComponents3DGraphBuilder<T> createMergedComponentGraph(
+			InitialComponents3DGraphBuilder<T> start, ChannelSliceComponentFactory<T> neuralComponentFactory) {
+		int size = resolution.getInceptionASize();
+
+		int initialComponentIndex = inceptionAModuleIndex * 7 + 12;
+		InceptionV4ConvolutionDefinition mergedConvolution = new InceptionV4ConvolutionDefinition(weightsLoader,
+				new int[] { initialComponentIndex, initialComponentIndex + 1, initialComponentIndex + 3 },
+				getInputNeurons(), new int[] { width.scale(96), width.scale(64), width.scale(64) })
+				.withBatchNormFolding(batchNormFolding).withFusedConvolutions(fusedConvolutions)
+				.withBuildProfile(buildProfile).withFreezeOut(withFreezeOut).withSamePadding();
+		Neurons3D mergedNeurons = mergedConvolution.getOutputNeurons();
+		String sliceName = "inception_a_slice_" + inceptionAModuleIndex + "_";
+		return start
+				.withParallelPaths().withPath()
+				.withComponentDefinition(mergedConvolution)
+				.withParallelPaths().withPath()
+				.with3DComponent(neuralComponentFactory.createChannelSliceComponent(sliceName + 0, mergedNeurons,
+						new Neurons3D(size, size, width.scale(96), false), 0), new Neurons3D(size, size, width.scale(96), false)).endPath().withPath()
+				.with3DComponent(neuralComponentFactory.createChannelSliceComponent(sliceName + 1, mergedNeurons,
+						new Neurons3D(size, size, width.scale(64), false), width.scale(96)), new Neurons3D(size, size, width.scale(64), false))
+				.withComponentDefinition(convolution(initialComponentIndex + 2, new Neurons3D(size, size, width.scale(64), false),
+						new Neurons3D(size, size, width.scale(96), false)).withFilterSize(3, 3).withSamePadding()).endPath().withPath()
+				.with3DComponent(neuralComponentFactory.createChannelSliceComponent(sliceName + 2, mergedNeurons,
+						new Neurons3D(size, size, width.scale(64), false), width.scale(160)), new Neurons3D(size, size, width.scale(64), false))
+				.withComponentDefinition(convolution(initialComponentIndex + 4, new Neurons3D(size, size, width.scale(64), false),
+						new Neurons3D(size, size, width.scale(96), false)).withFilterSize(3, 3).withSamePadding())
+				.withComponentDefinition(convolution(initialComponentIndex + 5, new Neurons3D(size, size, width.scale(96), false),
+						new Neurons3D(size, size, width.scale(96), false)).withFilterSize(3, 3).withSamePadding()).endPath()
+				.endParallelPaths("inception_a_concat_" + inceptionAModuleIndex + "_0", PathCombinationStrategy.FILTER_CONCAT).endPath().withPath()
+				.withAveragePoolingAxons("average_pooling_1").withFilterSize(3, 3).withStride(1, 1).withSamePadding()
+				.withConnectionToNeurons(new Neurons3D(size, size, width.scale(384), false)).withComponentDefinition(convolution(initialComponentIndex + 6, new Neurons3D(size, size, width.scale(384), false),
+						new Neurons3D(size, size, width.scale(96), false)).withFilterSize(1, 1).withSamePadding()).endPath()
+				.endParallelPaths("inception_a_concat_" + inceptionAModuleIndex, PathCombinationStrategy.FILTER_CONCAT);
+	}
+
+	private InceptionV4ConvolutionDefinition convolution(int index, Neurons3D inputNeurons, Neurons3D outputNeurons) {
+		return new InceptionV4ConvolutionDefinition(weightsLoader, index, inputNeurons, outputNeurons)
+				.withBatchNormFolding(batchNormFolding).withFusedConvolutions(fusedConvolutions)
+				.withBuildProfile(buildProfile).withFreezeOut(withFreezeOut);
+	}
+
 	@Override
 	public String getName() {
 		return "inception_a_" + inceptionAModuleIndex;
@@ -15,11 +15,13 @@
  */
 package org.ml4j.nn.architectures.inception.inceptionv4.modules;
 
-import org.ml4j.nn.activationfunctions.ActivationFunctionBaseType;
-import org.ml4j.nn.activationfunctions.ActivationFunctionProperties;
-import org.ml4j.nn.activationfunctions.ActivationFunctionType;
+import org.ml4j.nn.architectures.BuildProfile;
+import org.ml4j.nn.architectures.fusion.ChannelSliceComponentFactory;
 import org.ml4j.nn.architectures.inception.InceptionModuleDefinition;
+import org.ml4j.nn.architectures.inception.inceptionv4.InceptionV4Module;
+import org.ml4j.nn.architectures.inception.inceptionv4.InceptionV4Resolution;
 import org.ml4j.nn.architectures.inception.inceptionv4.InceptionV4WeightsLoader;
+import org.ml4j.nn.architectures.inception.inceptionv4.InceptionV4Width;
 import org.ml4j.nn.components.NeuralComponent;
 import org.ml4j.nn.components.builders.componentsgraph.InitialComponents3DGraphBuilder;
 import org.ml4j.nn.components.factories.NeuralComponentFactory;
@@ -37,206 +39,180 @@ public class InceptionCDefinition implements InceptionModuleDefinition {
 	private static final long serialVersionUID = 1L;
 
 	private InceptionV4WeightsLoader weightsLoader;
+	private InceptionV4Resolution resolution;
+	private InceptionV4Width width;
 	private int inceptionCModuleIndex;
 	private boolean withFreezeOut;
+	private boolean batchNormFolding;
+	private boolean fusedConvolutions;
+	private boolean mergedConvolutions;
+	private BuildProfile buildProfile;
 
 	public InceptionCDefinition(InceptionV4WeightsLoader weightsLoader, int inceptionCModuleIndex) {
+		this(weightsLoader, InceptionV4Resolution.DEFAULT, inceptionCModuleIndex);
+	}
+
+	public InceptionCDefinition(InceptionV4WeightsLoader weightsLoader, InceptionV4Resolution resolution, int inceptionCModuleIndex) {
+		this(weightsLoader, resolution, InceptionV4Width.DEFAULT, inceptionCModuleIndex);
+	}
+
+	public InceptionCDefinition(InceptionV4WeightsLoader weightsLoader, InceptionV4Resolution resolution, InceptionV4Width width,
+			int inceptionCModuleIndex) {
 		this.inceptionCModuleIndex = inceptionCModuleIndex;
 		this.weightsLoader = weightsLoader;
+		this.resolution = resolution;
+		this.width = width;
+		this.buildProfile = BuildProfile.TRAINING;
+	}
+
+	/**
+	 * @param batchNormFolding Whether to fold each batch norm layer into the preceding convolutional layer, for
+	 *            inference - requires a weights loader which serves the folded weights, such as a
+	 *            TensorSourceInceptionV4WeightsLoader created with batch norm folding.
+	 * @return This definition.
+	 */
+	public InceptionCDefinition withBatchNormFolding(boolean batchNormFolding) {
+		this.batchNormFolding = batchNormFolding;
+		return this;
+	}
+
+	/**
+	 * @param fusedConvolutions Whether to create each convolutional layer as a single fused convolution / batch
+	 *            norm / activation component - requires a FusedComponentFactory.
+	 * @return This definition.
+	 */
+	public InceptionCDefinition withFusedConvolutions(boolean fusedConvolutions) {
+		this.fusedConvolutions = fusedConvolutions;
+		return this;
+	}
+
+	/**
+	 * @param mergedConvolutions Whether to merge the three sibling 1x1 convolutional layers over the input of the
+	 *            module into a single convolutional layer, when created with a ChannelSliceComponentFactory -
+	 *            requires a weights loader which serves the concatenated weights, such as a
+	 *            TensorSourceInceptionV4WeightsLoader created with merged convolutions.
+	 * @return This definition.
+	 */
+	public InceptionCDefinition withMergedConvolutions(boolean mergedConvolutions) {
+		this.mergedConvolutions = mergedConvolutions;
+		return this;
+	}
+
+	/**
+	 * @param buildProfile Whether to configure the components for training or for inference only.
+	 * @return This definition.
+	 */
+	public InceptionCDefinition withBuildProfile(BuildProfile buildProfile) {
+		this.buildProfile = buildProfile;
+		return this;
 	}
 
 	@Override
 	public Neurons3D getInputNeurons() {
-		return new Neurons3D(8, 8, 1536, false);
+		return new Neurons3D(resolution.getInceptionCSize(), resolution.getInceptionCSize(), width.scale(1536), false);
 	}
 
 	@Override
 	public <T extends NeuralComponent<?>> InitialComponents3DGraphBuilder<T> createComponentGraph(
 			InitialComponents3DGraphBuilder<T> start, NeuralComponentFactory<T> neuralComponentFactory) {
+		if (mergedConvolutions) {
+			InceptionV4Module.validateMergedConvolutions(weightsLoader, neuralComponentFactory);
+			return createMergedComponentGraph(start,
+					ChannelSliceComponentFactory.getChannelSliceComponentFactory(neuralComponentFactory));
+		}
+		int size = resolution.getInceptionCSize();
 		
 		int initialComponentIndex = inceptionCModuleIndex * 10 + 120;
 		return start
 				.withParallelPaths()
-				.withPath().withConvolutionalAxons("conv2d_" + initialComponentIndex)
-				.withConnectionWeights(weightsLoader.getConvolutionalLayerWeights(
-						"conv2d_" + initialComponentIndex + "_kernel0", 1, 1, 1536, 256))
-				.withFilterSize(1, 1).withFilterCount(256).withSamePadding()
-				.withAxonsContextConfigurer(
-						c -> c.withFreezeOut(withFreezeOut))
-				.withConnectionToNeurons(new Neurons3D(8, 8, 256, false)).withBatchNormAxons("batch_normalization_" + initialComponentIndex).withBiasUnit()
-				.withBeta(weightsLoader.getBatchNormLayerBiases(
-						"batch_normalization_" + initialComponentIndex + "_beta0", 256))
-				.withMean(weightsLoader.getBatchNormLayerMean(
-						"batch_normalization_" + initialComponentIndex + "_moving_mean0", 256))
-				.withVariance(weightsLoader.getBatchNormLayerVariance(
-						"batch_normalization_" + initialComponentIndex + "_moving_variance0", 256))
-				.withAxonsContextConfigurer(
-						c -> c.withFreezeOut(withFreezeOut))
-				.withConnectionToNeurons(new Neurons3D(8, 8, 256, false))
-				.withActivationFunction("relu_" + initialComponentIndex, ActivationFunctionType.getBaseType(ActivationFunctionBaseType.RELU), new ActivationFunctionProperties()).endPath().withPath()
-				.withConvolutionalAxons("conv2d_" + (initialComponentIndex + 1))
-				.withConnectionWeights(weightsLoader.getConvolutionalLayerWeights(
-						"conv2d_" + (initialComponentIndex + 1) + "_kernel0", 1, 1, 1536, 384))
-				.withFilterSize(1, 1).withFilterCount(384).withSamePadding()
-				.withAxonsContextConfigurer(
-						c -> c.withFreezeOut(withFreezeOut))
-				.withConnectionToNeurons(new Neurons3D(8, 8, 384, false)).withBatchNormAxons("batch_normalization_" + (initialComponentIndex + 1)).withBiasUnit()
-				.withBeta(weightsLoader.getBatchNormLayerBiases(
-						"batch_normalization_" + (initialComponentIndex + 1) + "_beta0", 384))
-				.withMean(weightsLoader.getBatchNormLayerMean(
-						"batch_normalization_" + (initialComponentIndex + 1) + "_moving_mean0", 384))
-				.withVariance(weightsLoader.getBatchNormLayerVariance(
-						"batch_normalization_" + (initialComponentIndex + 1) + "_moving_variance0", 384))
-				.withAxonsContextConfigurer(
-						c -> c.withFreezeOut(withFreezeOut))
-				.withConnectionToNeurons(new Neurons3D(8, 8, 384, false))
-				.withActivationFunction("relu_" + (initialComponentIndex + 1), ActivationFunctionType.getBaseType(ActivationFunctionBaseType.RELU), new ActivationFunctionProperties()).withParallelPaths()
+				.withPath().withComponentDefinition(convolution(initialComponentIndex, getInputNeurons(),
+						new Neurons3D(size, size, width.scale(256), false)).withFilterSize(1, 1).withSamePadding()).endPath().withPath()
+				.withComponentDefinition(convolution(initialComponentIndex + 1, getInputNeurons(),
+						new Neurons3D(size, size, width.scale(384), false)).withFilterSize(1, 1).withSamePadding()).withParallelPaths()
 				.withPath()
-				.withConvolutionalAxons("conv2d_" + (initialComponentIndex + 2))
-				.withConnectionWeights(weightsLoader.getConvolutionalLayerWeights(
-						"conv2d_" + (initialComponentIndex + 2) + "_kernel0", 3, 1, 384, 256))
-				.withFilterSize(3, 1).withFilterCount(256).withSamePadding()
-				.withAxonsContextConfigurer(
-						c -> c.withFreezeOut(withFreezeOut))
-				.withConnectionToNeurons(new Neurons3D(8, 8, 256, false)).withBatchNormAxons("batch_normalization_" + (initialComponentIndex + 2)).withBiasUnit()
-				.withBeta(weightsLoader.getBatchNormLayerBiases(
-						"batch_normalization_" + (initialComponentIndex + 2) + "_beta0", 256))
-				.withMean(weightsLoader.getBatchNormLayerMean(
-						"batch_normalization_" + (initialComponentIndex + 2) + "_moving_mean0", 256))
-				.withVariance(weightsLoader.getBatchNormLayerVariance(
-						"batch_normalization_" + (initialComponentIndex + 2) + "_moving_variance0", 256))
-				.withAxonsContextConfigurer(
-						c -> c.withFreezeOut(withFreezeOut))
-				.withConnectionToNeurons(new Neurons3D(8, 8, 256, false))
-				.withActivationFunction("relu_" + (initialComponentIndex + 2), ActivationFunctionType.getBaseType(ActivationFunctionBaseType.RELU), new ActivationFunctionProperties()).endPath().withPath()
-				.withConvolutionalAxons("conv2d_" + (initialComponentIndex + 3))
-				.withConnectionWeights(weightsLoader.getConvolutionalLayerWeights(
-						"conv2d_" + (initialComponentIndex + 3) + "_kernel0", 1, 3, 384, 256))
-				.withFilterSize(1, 3).withFilterCount(256).withSamePadding()
-				.withAxonsContextConfigurer(
-						c -> c.withFreezeOut(withFreezeOut))
-				.withConnectionToNeurons(new Neurons3D(8, 8, 256, false)).withBatchNormAxons("batch_normalization_" + (initialComponentIndex + 3)).withBiasUnit()
-				.withBeta(weightsLoader.getBatchNormLayerBiases(
-						"batch_normalization_" + (initialComponentIndex + 3) + "_beta0", 256))
-				.withMean(weightsLoader.getBatchNormLayerMean(
-						"batch_normalization_" + (initialComponentIndex + 3) + "_moving_mean0", 256))
-				.withVariance(weightsLoader.getBatchNormLayerVariance(
-						"batch_normalization_" + (initialComponentIndex + 3) + "_moving_variance0", 256))
-				.withAxonsContextConfigurer(
-						c -> c.withFreezeOut(withFreezeOut))
-				.withConnectionToNeurons(new Neurons3D(8, 8, 256, false))
-				.withActivationFunction("relu_" + (initialComponentIndex + 3), ActivationFunctionType.getBaseType(ActivationFunctionBaseType.RELU), new ActivationFunctionProperties()).endPath()
+				.withComponentDefinition(convolution(initialComponentIndex + 2, new Neurons3D(size, size, width.scale(384), false),
+						new Neurons3D(size, size, width.scale(256), false)).withFilterSize(3, 1).withSamePadding()).endPath().withPath()
+				.withComponentDefinition(convolution(initialComponentIndex + 3, new Neurons3D(size, size, width.scale(384), false),
+						new Neurons3D(size, size, width.scale(256), false)).withFilterSize(1, 3).withSamePadding()).endPath()
 				.endParallelPaths("inception_c_concat_" + inceptionCModuleIndex + "_0", PathCombinationStrategy.FILTER_CONCAT).endPath().withPath()
 				// 124
-				.withConvolutionalAxons("conv2d_" + (initialComponentIndex + 4))
-				.withConnectionWeights(weightsLoader.getConvolutionalLayerWeights(
-						"conv2d_" + (initialComponentIndex + 4) + "_kernel0", 1, 1, 1536, 384))
-				.withFilterSize(1, 1).withFilterCount(384).withSamePadding()
-				.withAxonsContextConfigurer(
-						c -> c.withFreezeOut(withFreezeOut))
-				.withConnectionToNeurons(new Neurons3D(8, 8, 384, false)).withBatchNormAxons("batch_normalization_" + (initialComponentIndex + 4)).withBiasUnit()
-				.withBeta(weightsLoader.getBatchNormLayerBiases(
-						"batch_normalization_" + (initialComponentIndex + 4) + "_beta0", 384))
-				.withMean(weightsLoader.getBatchNormLayerMean(
-						"batch_normalization_" + (initialComponentIndex + 4) + "_moving_mean0", 384))
-				.withVariance(weightsLoader.getBatchNormLayerVariance(
-						"batch_normalization_" + (initialComponentIndex + 4) + "_moving_variance0", 384))
-				.withAxonsContextConfigurer(
-						c -> c.withFreezeOut(withFreezeOut))
-				.withConnectionToNeurons(new Neurons3D(8, 8, 384, false))
-				.withActivationFunction("relu_" + (initialComponentIndex + 4), ActivationFunctionType.getBaseType(ActivationFunctionBaseType.RELU), new ActivationFunctionProperties())
-				.withConvolutionalAxons("conv2d_" + (initialComponentIndex + 5))
-				.withConnectionWeights(weightsLoader.getConvolutionalLayerWeights(
-						"conv2d_" + (initialComponentIndex + 5) + "_kernel0", 1, 3, 384, 448))
-				.withFilterSize(1, 3).withFilterCount(448).withSamePadding()
-				.withAxonsContextConfigurer(
-						c -> c.withFreezeOut(withFreezeOut))
-				.withConnectionToNeurons(new Neurons3D(8, 8, 448, false)).withBatchNormAxons("batch_normalization_" + (initialComponentIndex + 5)).withBiasUnit()
-				.withBeta(weightsLoader.getBatchNormLayerBiases(
-						"batch_normalization_" + (initialComponentIndex + 5) + "_beta0", 448))
-				.withMean(weightsLoader.getBatchNormLayerMean(
-						"batch_normalization_" + (initialComponentIndex + 5) + "_moving_mean0", 448))
-				.withVariance(weightsLoader.getBatchNormLayerVariance(
-						"batch_normalization_" + (initialComponentIndex + 5) + "_moving_variance0", 448))
-				.withAxonsContextConfigurer(
-						c -> c.withFreezeOut(withFreezeOut))
-				.withConnectionToNeurons(new Neurons3D(8, 8, 448, false))
-				.withActivationFunction("relu_" + (initialComponentIndex + 5), ActivationFunctionType.getBaseType(ActivationFunctionBaseType.RELU), new ActivationFunctionProperties())
-				.withConvolutionalAxons("conv2d_" + (initialComponentIndex + 6))
-				.withConnectionWeights(weightsLoader.getConvolutionalLayerWeights(
-						"conv2d_" + (initialComponentIndex + 6) + "_kernel0", 3, 1, 448, 512))
-				.withFilterSize(3, 1).withFilterCount(512).withSamePadding()
-				.withAxonsContextConfigurer(
-						c -> c.withFreezeOut(withFreezeOut))
-				.withConnectionToNeurons(new Neurons3D(8, 8, 512, false)).withBatchNormAxons("batch_normalization_" + (initialComponentIndex + 6)).withBiasUnit()
-				.withBeta(weightsLoader.getBatchNormLayerBiases(
-						"batch_normalization_" + (initialComponentIndex + 6) + "_beta0", 512))
-				.withMean(weightsLoader.getBatchNormLayerMean(
-						"batch_normalization_" + (initialComponentIndex + 6) + "_moving_mean0", 512))
-				.withVariance(weightsLoader.getBatchNormLayerVariance(
-						"batch_normalization_" + (initialComponentIndex + 6) + "_moving_variance0", 512))
-				.withAxonsContextConfigurer(
-						c -> c.withFreezeOut(withFreezeOut))
-				.withConnectionToNeurons(new Neurons3D(8, 8, 512, false))
-				.withActivationFunction("relu_" + (initialComponentIndex + 6), ActivationFunctionType.getBaseType(ActivationFunctionBaseType.RELU), new ActivationFunctionProperties()).withParallelPaths()
+				.withComponentDefinition(convolution(initialComponentIndex + 4, getInputNeurons(),
+						new Neurons3D(size, size, width.scale(384), false)).withFilterSize(1, 1).withSamePadding())
+				.withComponentDefinition(convolution(initialComponentIndex + 5, new Neurons3D(size, size, width.scale(384), false),
+						new Neurons3D(size, size, width.scale(448), false)).withFilterSize(1, 3).withSamePadding())
+				.withComponentDefinition(convolution(initialComponentIndex + 6, new Neurons3D(size, size, width.scale(448), false),
+						new Neurons3D(size, size, width.scale(512), false)).withFilterSize(3, 1).withSamePadding()).withParallelPaths()
 				.withPath()
-				.withConvolutionalAxons("conv2d_" + (initialComponentIndex + 7))
-				.withConnectionWeights(weightsLoader.getConvolutionalLayerWeights(
-						"conv2d_" + (initialComponentIndex + 7) + "_kernel0", 3, 1, 512, 256))
-				.withFilterSize(3, 1).withFilterCount(256).withSamePadding()
-				.withAxonsContextConfigurer(
-						c -> c.withFreezeOut(withFreezeOut))
-				.withConnectionToNeurons(new Neurons3D(8, 8, 256, false)).withBatchNormAxons("batch_normalization_" + (initialComponentIndex + 7) ).withBiasUnit()
-				.withBeta(weightsLoader.getBatchNormLayerBiases(
-						"batch_normalization_" + (initialComponentIndex + 7) + "_beta0", 256))
-				.withMean(weightsLoader.getBatchNormLayerMean(
-						"batch_normalization_" + (initialComponentIndex + 7) + "_moving_mean0", 256))
-				.withVariance(weightsLoader.getBatchNormLayerVariance(
-						"batch_normalization_" + (initialComponentIndex + 7) + "_moving_variance0", 256))
-				.withAxonsContextConfigurer(
-						c -> c.withFreezeOut(withFreezeOut))
-				.withConnectionToNeurons(new Neurons3D(8, 8, 256, false))
-				.withActivationFunction("relu_" + (initialComponentIndex + 7) , ActivationFunctionType.getBaseType(ActivationFunctionBaseType.RELU), new ActivationFunctionProperties()).endPath().withPath()
-				.withConvolutionalAxons("conv2d_" + (initialComponentIndex + 8))
-				.withConnectionWeights(weightsLoader.getConvolutionalLayerWeights(
-						"conv2d_" + (initialComponentIndex + 8) + "_kernel0", 1, 3, 512, 256))
-				.withFilterSize(1, 3).withFilterCount(256).withSamePadding()
-				.withAxonsContextConfigurer(
-						c -> c.withFreezeOut(withFreezeOut))
-				.withConnectionToNeurons(new Neurons3D(8, 8, 256, false)).withBatchNormAxons("batch_normalization_" + (initialComponentIndex + 8)).withBiasUnit()
-				.withBeta(weightsLoader.getBatchNormLayerBiases(
-						"batch_normalization_" + (initialComponentIndex + 8) + "_beta0", 256))
-				.withMean(weightsLoader.getBatchNormLayerMean(
-						"batch_normalization_" + (initialComponentIndex + 8) + "_moving_mean0", 256))
-				.withVariance(weightsLoader.getBatchNormLayerVariance(
-						"batch_normalization_" + (initialComponentIndex + 8) + "_moving_variance0", 256))
-				.withAxonsContextConfigurer(
-						c -> c.withFreezeOut(withFreezeOut))
-				.withConnectionToNeurons(new Neurons3D(8, 8, 256, false))
-				.withActivationFunction("relu_" + (initialComponentIndex + 8), ActivationFunctionType.getBaseType(ActivationFunctionBaseType.RELU), new ActivationFunctionProperties()).endPath()
+				.withComponentDefinition(convolution(initialComponentIndex + 7, new Neurons3D(size, size, width.scale(512), false),
+						new Neurons3D(size, size, width.scale(256), false)).withFilterSize(3, 1).withSamePadding()).endPath().withPath()
+				.withComponentDefinition(convolution(initialComponentIndex + 8, new Neurons3D(size, size, width.scale(512), false),
+						new Neurons3D(size, size, width.scale(256), false)).withFilterSize(1, 3).withSamePadding()).endPath()
 				.endParallelPaths("inception_c_concat_" + inceptionCModuleIndex + "_1", PathCombinationStrategy.FILTER_CONCAT).endPath().withPath().withAveragePoolingAxons("average_pooling_4")
 				.withFilterSize(3, 3).withStride(1, 1).withSamePadding()
-				.withConnectionToNeurons(new Neurons3D(8, 8, 1536, false))
-				.withConvolutionalAxons("conv2d_" + (initialComponentIndex + 9))
-				.withConnectionWeights(weightsLoader.getConvolutionalLayerWeights(
-						"conv2d_" + (initialComponentIndex + 9) + "_kernel0", 1, 1, 1536, 256))
-				.withFilterSize(1, 1).withFilterCount(256).withSamePadding()
-				.withAxonsContextConfigurer(
-						c -> c.withFreezeOut(withFreezeOut))
-				.withConnectionToNeurons(new Neurons3D(8, 8, 256, false)).withBatchNormAxons("batch_normalization_" + (initialComponentIndex + 9)).withBiasUnit()
-				.withBeta(weightsLoader.getBatchNormLayerBiases(
-						"batch_normalization_" + (initialComponentIndex + 9) + "_beta0", 256))
-				.withMean(weightsLoader.getBatchNormLayerMean(
-						"batch_normalization_" + (initialComponentIndex + 9) + "_moving_mean0", 256))
-				.withVariance(weightsLoader.getBatchNormLayerVariance(
-						"batch_normalization_" + (initialComponentIndex + 9) + "_moving_variance0", 256))
-				.withAxonsContextConfigurer(
-						c -> c.withFreezeOut(withFreezeOut))
-				.withConnectionToNeurons(new Neurons3D(8, 8, 256, false))
-				.withActivationFunction("relu_" + (initialComponentIndex + 9), ActivationFunctionType.getBaseType(ActivationFunctionBaseType.RELU), new ActivationFunctionProperties()).endPath()
+				.withConnectionToNeurons(new Neurons3D(size, size, width.scale(1536), false))
+				.withComponentDefinition(convolution(initialComponentIndex + 9, new Neurons3D(size, size, width.scale(1536), false),
+						new Neurons3D(size, size, width.scale(256), false)).withFilterSize(1, 1).withSamePadding()).endPath()
 				.endParallelPaths("inception_c_concat_" + inceptionCModuleIndex, PathCombinationStrategy.FILTER_CONCAT);
 	}
 	
+	/**
+	 * Creates the module with the 1x1 convolutional layers which begin the first three paths merged into a single
+	 * convolutional layer, whose output channels are sliced back out into those paths.
+	 */
+	private <T extends NeuralComponent<?>> InitialComponents3DGraphBuilder<T> createMergedComponentGraph(
+			InitialComponents3DGraphBuilder<T> start, ChannelSliceComponentFactory<T> neuralComponentFactory) {
+		int size = resolution.getInceptionCSize();
+
+		int initialComponentIndex = inceptionCModuleIndex * 10 + 120;
+		InceptionV4ConvolutionDefinition mergedConvolution = new InceptionV4ConvolutionDefinition(weightsLoader,
+				new int[] { initialComponentIndex, initialComponentIndex + 1, initialComponentIndex + 4 },
+				getInputNeurons(), new int[] { width.scale(256), width.scale(384), width.scale(384) })
+				.withBatchNormFolding(batchNormFolding).withFusedConvolutions(fusedConvolutions)
+				.withBuildProfile(buildProfile).withFreezeOut(withFreezeOut).withSamePadding();
+		Neurons3D mergedNeurons = mergedConvolution.getOutputNeurons();
+		String sliceName = "inception_c_slice_" + inceptionCModuleIndex + "_";
+		return start
+				.withParallelPaths().withPath()
+				.withComponentDefinition(mergedConvolution)
+				.withParallelPaths().withPath()
+				.with3DComponent(neuralComponentFactory.createChannelSliceComponent(sliceName + 0, mergedNeurons,
+						new Neurons3D(size, size, width.scale(256), false), 0), new Neurons3D(size, size, width.scale(256), false)).endPath().withPath()
+				.with3DComponent(neuralComponentFactory.createChannelSliceComponent(sliceName + 1, mergedNeurons,
+						new Neurons3D(size, size, width.scale(384), false), width.scale(256)), new Neurons3D(size, size, width.scale(384), false))
+				.withParallelPaths()
+				.withPath()
+				.withComponentDefinition(convolution(initialComponentIndex + 2, new Neurons3D(size, size, width.scale(384), false),
+						new Neurons3D(size, size, width.scale(256), false)).withFilterSize(3, 1).withSamePadding()).endPath().withPath()
+				.withComponentDefinition(convolution(initialComponentIndex + 3, new Neurons3D(size, size, width.scale(384), false),
+						new Neurons3D(size, size, width.scale(256), false)).withFilterSize(1, 3).withSamePadding()).endPath()
+				.endParallelPaths("inception_c_concat_" + inceptionCModuleIndex + "_0", PathCombinationStrategy.FILTER_CONCAT).endPath().withPath()
+				.with3DComponent(neuralComponentFactory.createChannelSliceComponent(sliceName + 2, mergedNeurons,
+						new Neurons3D(size, size, width.scale(384), false), width.scale(640)), new Neurons3D(size, size, width.scale(384), false))
+				.withComponentDefinition(convolution(initialComponentIndex + 5, new Neurons3D(size, size, width.scale(384), false),
+						new Neurons3D(size, size, width.scale(448), false)).withFilterSize(1, 3).withSamePadding())
+				.withComponentDefinition(convolution(initialComponentIndex + 6, new Neurons3D(size, size, width.scale(448), false),
+						new Neurons3D(size, size, width.scale(512), false)).withFilterSize(3, 1).withSamePadding()).withParallelPaths()
+				.withPath()
+				.withComponentDefinition(convolution(initialComponentIndex + 7, new Neurons3D(size, size, width.scale(512), false),
+						new Neurons3D(size, size, width.scale(256), false)).withFilterSize(3, 1).withSamePadding()).endPath().withPath()
+				.withComponentDefinition(convolution(initialComponentIndex + 8, new Neurons3D(size, size, width.scale(512), false),
+						new Neurons3D(size, size, width.scale(256), false)).withFilterSize(1, 3).withSamePadding()).endPath()
+				.endParallelPaths("inception_c_concat_" + inceptionCModuleIndex + "_1", PathCombinationStrategy.FILTER_CONCAT).endPath()
+				.endParallelPaths("inception_c_concat_" + inceptionCModuleIndex + "_2", PathCombinationStrategy.FILTER_CONCAT).endPath().withPath()
+				.withAveragePoolingAxons("average_pooling_4")
+				.withFilterSize(3, 3).withStride(1, 1).withSamePadding()
+				.withConnectionToNeurons(new Neurons3D(size, size, width.scale(1536), false))
+				.withComponentDefinition(convolution(initialComponentIndex + 9, new Neurons3D(size, size, width.scale(1536), false),
+						new Neurons3D(size, size, width.scale(256), false)).withFilterSize(1, 1).withSamePadding()).endPath()
+				.endParallelPaths("inception_c_concat_" + inceptionCModuleIndex, PathCombinationStrategy.FILTER_CONCAT);
+	}
+
+	private InceptionV4ConvolutionDefinition convolution(int index, Neurons3D inputNeurons, Neurons3D outputNeurons) {
+		return new InceptionV4ConvolutionDefinition(weightsLoader, index, inputNeurons, outputNeurons)
+				.withBatchNormFolding(batchNormFolding).withFusedConvolutions(fusedConvolutions)
+				.withBuildProfile(buildProfile).withFreezeOut(withFreezeOut);
+	}
+
 	@Override
 	public String getName() {
 		return "inception_c_" + inceptionCModuleIndex;
@@ -0,0 +1,372 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.architectures.inception.inceptionv4.modules;
+
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+import org.ml4j.nn.activationfunctions.ActivationFunctionBaseType;
+import org.ml4j.nn.activationfunctions.ActivationFunctionProperties;
+import org.ml4j.nn.activationfunctions.ActivationFunctionType;
+import org.ml4j.nn.architectures.BuildProfile;
+import org.ml4j.nn.architectures.fusion.ConvolutionBatchNormActivationConfig;
+import org.ml4j.nn.architectures.fusion.FusedComponentFactory;
+import org.ml4j.nn.architectures.inception.inceptionv4.InceptionV4WeightsLoader;
+import org.ml4j.nn.architectures.weights.BatchNormFoldingTensorSource;
+import org.ml4j.nn.architectures.weights.ConcatenatingTensorSource;
+import org.ml4j.nn.axons.AxonsContextConfig;
+import org.ml4j.nn.axons.BiasVector;
+import org.ml4j.nn.axons.WeightsMatrix;
+import org.ml4j.nn.components.NeuralComponent;
+import org.ml4j.nn.components.builders.componentsgraph.InitialComponents3DGraphBuilder;
+import org.ml4j.nn.components.factories.NeuralComponentFactory;
+import org.ml4j.nn.definitions.Component3Dto3DGraphDefinition;
+import org.ml4j.nn.neurons.Neurons3D;
+
+/**
+ * A convolutional layer of Inception V4 - convolutional axons followed by batch norm axons and a RELU activation,
+ * whose weights are named by the index of the layer (eg. "conv2d_12_kernel0", "batch_normalization_12_beta0").
+ *
+ * With batch norm folding enabled the batch norm axons are omitted, and the convolutional axons are created with
+ * the folded weights and biases served by a loader over a BatchNormFoldingTensorSource instead.
+ *
+ * With fused convolutions enabled the layer is created as a single fused convolution / batch norm / activation
+ * component instead, which requires a FusedComponentFactory - with the freeze out and regularisation lambdas of
+ * the convolutional and batch norm axons carried in its config.
+ *
+ * Sibling 1x1 convolutional layers over the same input can be merged into a single layer, named by the indexes
+ * of the siblings (eg. "conv2d_12_13_15"), whose output channels are those of each sibling in turn - requires a
+ * weights loader which serves concatenated weights, such as a TensorSourceInceptionV4WeightsLoader created with
+ * merged convolutions.
+ *
+ * @author Michael Lavelle
+ */
+public class InceptionV4ConvolutionDefinition implements Component3Dto3DGraphDefinition {
+
+	/**
+	 * Default serialization id.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	private InceptionV4WeightsLoader weightsLoader;
+	private int[] indexes;
+	private int[] outputDepths;
+	private Neurons3D inputNeurons;
+	private Neurons3D outputNeurons;
+	private int filterWidth;
+	private int filterHeight;
+	private int filterCount;
+	private String activationName;
+	private int strideWidth;
+	private int strideHeight;
+	private boolean samePadding;
+	private boolean batchNormFolding;
+	private boolean fusedConvolutions;
+	private boolean withFreezeOut;
+	private Float regularisationLambda;
+	private Float batchNormRegularisationLambda;
+	private BuildProfile buildProfile;
+
+	public InceptionV4ConvolutionDefinition(InceptionV4WeightsLoader weightsLoader, int index,
+			Neurons3D inputNeurons, Neurons3D outputNeurons) {
+		this(weightsLoader, new int[] { index }, new int[] { outputNeurons.getDepth() }, inputNeurons, outputNeurons);
+	}
+
+	/**
+	 * Creates a convolutional layer merging sibling convolutional layers over the same input, which preserve
+	 * the spatial size of the input.
+	 * 
+	 * @param weightsLoader The weights loader.
+	 * @param indexes The index of each sibling layer.
+	 * @param inputNeurons The input neurons shared by the siblings.
+	 * @param outputDepths The output depth of each sibling layer.
+	 */
+	public InceptionV4ConvolutionDefinition(InceptionV4WeightsLoader weightsLoader, int[] indexes,
+			Neurons3D inputNeurons, int[] outputDepths) {
+		this(weightsLoader, indexes, outputDepths, inputNeurons, new Neurons3D(inputNeurons.getWidth(),
+				inputNeurons.getHeight(), getOutputDepth(indexes, outputDepths), false));
+	}
+
+	private InceptionV4ConvolutionDefinition(InceptionV4WeightsLoader weightsLoader, int[] indexes,
+			int[] outputDepths, Neurons3D inputNeurons, Neurons3D outputNeurons) {
+		this.weightsLoader = weightsLoader;
+		this.indexes = indexes.clone();
+		this.outputDepths = outputDepths.clone();
+		this.inputNeurons = inputNeurons;
+		this.outputNeurons = outputNeurons;
+		this.filterWidth = 1;
+		this.filterHeight = 1;
+		this.filterCount = outputNeurons.getDepth();
+		this.strideWidth = 1;
+		this.strideHeight = 1;
+		this.buildProfile = BuildProfile.TRAINING;
+	}
+
+	private static int getOutputDepth(int[] indexes, int[] outputDepths) {
+		if (indexes.length == 0 || indexes.length != outputDepths.length) {
+			throw new IllegalArgumentException("Expected an output depth for each of the " + indexes.length
+					+ " layers but was given " + outputDepths.length);
+		}
+		int outputDepth = 0;
+		for (int depth : outputDepths) {
+			outputDepth = outputDepth + depth;
+		}
+		return outputDepth;
+	}
+
+	public InceptionV4ConvolutionDefinition withFilterSize(int filterWidth, int filterHeight) {
+		this.filterWidth = filterWidth;
+		this.filterHeight = filterHeight;
+		return this;
+	}
+
+	public InceptionV4ConvolutionDefinition withFilterCount(int filterCount) {
+		this.filterCount = filterCount;
+		return this;
+	}
+
+	public InceptionV4ConvolutionDefinition withActivationName(String activationName) {
+		this.activationName = activationName;
+		return this;
+	}
+
+	public InceptionV4ConvolutionDefinition withStride(int strideWidth, int strideHeight) {
+		this.strideWidth = strideWidth;
+		this.strideHeight = strideHeight;
+		return this;
+	}
+
+	public InceptionV4ConvolutionDefinition withSamePadding() {
+		this.samePadding = true;
+		return this;
+	}
+
+	public InceptionV4ConvolutionDefinition withValidPadding() {
+		this.samePadding = false;
+		return this;
+	}
+
+	public InceptionV4ConvolutionDefinition withBatchNormFolding(boolean batchNormFolding) {
+		this.batchNormFolding = batchNormFolding;
+		return this;
+	}
+
+	public InceptionV4ConvolutionDefinition withFusedConvolutions(boolean fusedConvolutions) {
+		this.fusedConvolutions = fusedConvolutions;
+		return this;
+	}
+
+	public InceptionV4ConvolutionDefinition withFreezeOut(boolean withFreezeOut) {
+		this.withFreezeOut = withFreezeOut;
+		return this;
+	}
+
+	/**
+	 * @param regularisationLambda The regularisation lambda of the convolutional axons - by default the axons are
+	 *            configured with freeze out only.
+	 * @return This definition.
+	 */
+	public InceptionV4ConvolutionDefinition withRegularisationLambda(float regularisationLambda) {
+		this.regularisationLambda = regularisationLambda;
+		return this;
+	}
+
+	/**
+	 * @param batchNormRegularisationLambda The regularisation lambda of the batch norm axons - by default the axons
+	 *            are configured with freeze out only.
+	 * @return This definition.
+	 */
+	public InceptionV4ConvolutionDefinition withBatchNormRegularisationLambda(float batchNormRegularisationLambda) {
+		this.batchNormRegularisationLambda = batchNormRegularisationLambda;
+		return this;
+	}
+
+	public InceptionV4ConvolutionDefinition withBuildProfile(BuildProfile buildProfile) {
+		this.buildProfile = buildProfile;
+		return this;
+	}
+
+	@Override
+	public Neurons3D getInputNeurons() {
+		return inputNeurons;
+	}
+
+	@Override
+	public Neurons3D getOutputNeurons() {
+		return outputNeurons;
+	}
+
+	@Override
+	public <T extends NeuralComponent<?>> InitialComponents3DGraphBuilder<T> createComponentGraph(
+			InitialComponents3DGraphBuilder<T> start, NeuralComponentFactory<T> neuralComponentFactory) {
+		String convolutionName = getName();
+		String batchNormName = "batch_normalization_" + getIndexes();
+		int outputDepth = outputNeurons.getDepth();
+		if (fusedConvolutions) {
+			FusedComponentFactory<T> fusedComponentFactory = FusedComponentFactory
+					.getFusedComponentFactory(neuralComponentFactory);
+			return start.with3DComponent(fusedComponentFactory.createConvolutionBatchNormActivationComponent(
+					convolutionName, inputNeurons, outputNeurons, createFusedConfig()), outputNeurons);
+		}
+		if (batchNormFolding) {
+			return withConvolutionalAxons(start,
+					getTensorName(i -> BatchNormFoldingTensorSource.getFoldedWeightsName("conv2d_" + i)),
+					getTensorName(i -> BatchNormFoldingTensorSource.getFoldedBiasesName("conv2d_" + i)))
+					.withActivationFunction(activationName == null ? "relu_" + getIndexes() : activationName,
+							ActivationFunctionType.getBaseType(ActivationFunctionBaseType.RELU), new ActivationFunctionProperties());
+		}
+		return withConvolutionalAxons(start, getTensorName(i -> "conv2d_" + i + "_kernel0"), null)
+				.withBatchNormAxons(batchNormName)
+				.withBiasUnit()
+				.withBeta(weightsLoader.getBatchNormLayerBiases(
+						getTensorName(i -> "batch_normalization_" + i + "_beta0"), outputDepth))
+				.withMean(weightsLoader.getBatchNormLayerMean(
+						getTensorName(i -> "batch_normalization_" + i + "_moving_mean0"), outputDepth))
+				.withVariance(weightsLoader.getBatchNormLayerVariance(
+						getTensorName(i -> "batch_normalization_" + i + "_moving_variance0"), outputDepth))
+				.withAxonsContextConfigurer(axonsContextConfigurer(batchNormRegularisationLambda))
+				.withConnectionToNeurons(outputNeurons)
+				.withActivationFunction(activationName == null ? "relu_" + getIndexes() : activationName,
+						ActivationFunctionType.getBaseType(ActivationFunctionBaseType.RELU), new ActivationFunctionProperties());
+	}
+
+	/**
+	 * Adds the convolutional axons of this layer, with the same or valid padding of the builder.
+	 * 
+	 * @param start The builder.
+	 * @param weightsName The name of the weights of the axons.
+	 * @param biasesName The name of the biases of the axons, or null if the axons have no biases.
+	 * @return The builder, connected to the output neurons of the axons.
+	 */
+	private <T extends NeuralComponent<?>> InitialComponents3DGraphBuilder<T> withConvolutionalAxons(
+			InitialComponents3DGraphBuilder<T> start, String weightsName, String biasesName) {
+		String convolutionName = getName();
+		int inputDepth = inputNeurons.getDepth();
+		int outputDepth = outputNeurons.getDepth();
+		WeightsMatrix weights = weightsLoader.getConvolutionalLayerWeights(weightsName, filterWidth, filterHeight,
+				inputDepth, outputDepth);
+		Consumer<AxonsContextConfig> axonsContextConfigurer = axonsContextConfigurer(regularisationLambda);
+		if (biasesName == null) {
+			if (samePadding) {
+				return start.withConvolutionalAxons(convolutionName).withConnectionWeights(weights)
+						.withFilterSize(filterWidth, filterHeight).withStride(strideWidth, strideHeight)
+						.withFilterCount(filterCount).withSamePadding()
+						.withAxonsContextConfigurer(axonsContextConfigurer).withConnectionToNeurons(outputNeurons);
+			}
+			return start.withConvolutionalAxons(convolutionName).withConnectionWeights(weights)
+					.withFilterSize(filterWidth, filterHeight).withStride(strideWidth, strideHeight)
+					.withFilterCount(filterCount).withValidPadding()
+					.withAxonsContextConfigurer(axonsContextConfigurer).withConnectionToNeurons(outputNeurons);
+		}
+		BiasVector biases = weightsLoader.getConvolutionalLayerBiases(biasesName, outputDepth);
+		if (samePadding) {
+			return start.withConvolutionalAxons(convolutionName).withConnectionWeights(weights)
+					.withBiasUnit().withBiases(biases)
+					.withFilterSize(filterWidth, filterHeight).withStride(strideWidth, strideHeight)
+					.withFilterCount(filterCount).withSamePadding()
+					.withAxonsContextConfigurer(axonsContextConfigurer).withConnectionToNeurons(outputNeurons);
+		}
+		return start.withConvolutionalAxons(convolutionName).withConnectionWeights(weights)
+				.withBiasUnit().withBiases(biases)
+				.withFilterSize(filterWidth, filterHeight).withStride(strideWidth, strideHeight)
+				.withFilterCount(filterCount).withValidPadding()
+				.withAxonsContextConfigurer(axonsContextConfigurer).withConnectionToNeurons(outputNeurons);
+	}
+
+	private Consumer<AxonsContextConfig> axonsContextConfigurer(Float regularisationLambda) {
+		if (buildProfile == BuildProfile.INFERENCE) {
+			return c -> c.withFreezeOut(true);
+		}
+		if (regularisationLambda == null) {
+			return c -> c.withFreezeOut(withFreezeOut);
+		}
+		return c -> c.withRegularisationLambda(regularisationLambda).withFreezeOut(withFreezeOut);
+	}
+
+	private ConvolutionBatchNormActivationConfig createFusedConfig() {
+		int inputDepth = inputNeurons.getDepth();
+		int outputDepth = outputNeurons.getDepth();
+		ConvolutionBatchNormActivationConfig config;
+		if (batchNormFolding) {
+			config = new ConvolutionBatchNormActivationConfig(weightsLoader.getConvolutionalLayerWeights(
+					getTensorName(i -> BatchNormFoldingTensorSource.getFoldedWeightsName("conv2d_" + i)),
+					filterWidth, filterHeight, inputDepth, outputDepth), filterWidth, filterHeight)
+					.withBiases(weightsLoader.getConvolutionalLayerBiases(
+							getTensorName(i -> BatchNormFoldingTensorSource.getFoldedBiasesName("conv2d_" + i)),
+							outputDepth));
+		} else {
+			// The batch norm layers of Inception V4 are not scaled, so have no gamma
+			config = new ConvolutionBatchNormActivationConfig(weightsLoader.getConvolutionalLayerWeights(
+					getTensorName(i -> "conv2d_" + i + "_kernel0"), filterWidth, filterHeight, inputDepth,
+					outputDepth), filterWidth, filterHeight)
+					.withBatchNorm(null, weightsLoader.getBatchNormLayerBiases(
+							getTensorName(i -> "batch_normalization_" + i + "_beta0"), outputDepth),
+							weightsLoader.getBatchNormLayerMean(
+									getTensorName(i -> "batch_normalization_" + i + "_moving_mean0"), outputDepth),
+							weightsLoader.getBatchNormLayerVariance(
+									getTensorName(i -> "batch_normalization_" + i + "_moving_variance0"), outputDepth),
+							BatchNormFoldingTensorSource.DEFAULT_EPSILON);
+		}
+		// Same padding preserves the spatial size at stride 1, which is the only stride it is used with
+		int paddingWidth = samePadding ? (filterWidth - 1) / 2 : 0;
+		int paddingHeight = samePadding ? (filterHeight - 1) / 2 : 0;
+		if (buildProfile == BuildProfile.INFERENCE) {
+			config.withFreezeOut(true);
+		} else {
+			config.withFreezeOut(withFreezeOut);
+			if (regularisationLambda != null) {
+				config.withRegularisationLambda(regularisationLambda);
+			}
+			if (batchNormRegularisationLambda != null && !batchNormFolding) {
+				config.withBatchNormRegularisationLambda(batchNormRegularisationLambda);
+			}
+		}
+		return config.withStride(strideWidth, strideHeight).withPadding(paddingWidth, paddingHeight)
+				.withActivationFunction(ActivationFunctionType.getBaseType(ActivationFunctionBaseType.RELU),
+						new ActivationFunctionProperties());
+	}
+
+	/**
+	 * @param tensorName The name of the tensor of the layer with a given index.
+	 * @return The name of the tensor of this layer - the tensors of merged layers are concatenated.
+	 */
+	private String getTensorName(IntFunction<String> tensorName) {
+		if (indexes.length == 1) {
+			return tensorName.apply(indexes[0]);
+		}
+		String[] names = new String[indexes.length];
+		for (int i = 0; i < indexes.length; i++) {
+			names[i] = tensorName.apply(indexes[i]);
+		}
+		return ConcatenatingTensorSource.getConcatenatedName(names, outputDepths);
+	}
+
+	private String getIndexes() {
+		StringBuilder names = new StringBuilder();
+		for (int i = 0; i < indexes.length; i++) {
+			if (i > 0) {
+				names.append('_');
+			}
+			names.append(indexes[i]);
+		}
+		return names.toString();
+	}
+
+	@Override
+	public String getName() {
+		return "conv2d_" + getIndexes();
+	}
+}
@@ -18,6 +18,9 @@ package org.ml4j.nn.architectures.inception.inceptionv4.modules;
 import org.ml4j.nn.activationfunctions.ActivationFunctionBaseType;
 import org.ml4j.nn.activationfunctions.ActivationFunctionProperties;
 import org.ml4j.nn.activationfunctions.ActivationFunctionType;
+import org.ml4j.nn.architectures.BuildProfile;
+import org.ml4j.nn.architectures.inception.inceptionv4.InceptionV4Resolution;
+import org.ml4j.nn.architectures.inception.inceptionv4.InceptionV4Width;
 import org.ml4j.nn.axons.BiasVector;
 import org.ml4j.nn.axons.WeightsMatrix;
 import org.ml4j.nn.components.NeuralComponent;
@@ -45,18 +48,36 @@ public class InceptionV4CustomTailDefinition implements Component3DtoNon3DGraphD
 	private BiasVector biases;
 	private float regularisationLambda;
 	private float dropoutKeepProbability;
-
+	private InceptionV4Resolution resolution;
+	private InceptionV4Width width;
+	private BuildProfile buildProfile;
 
 	public InceptionV4CustomTailDefinition(int outputNeurons, WeightsMatrix weights, BiasVector biases, float regularisationLambda, float dropoutKeepProbability) {
+		this(outputNeurons, weights, biases, regularisationLambda, dropoutKeepProbability, InceptionV4Resolution.DEFAULT);
+	}
+
+	public InceptionV4CustomTailDefinition(int outputNeurons, WeightsMatrix weights, BiasVector biases,
+			float regularisationLambda, float dropoutKeepProbability, InceptionV4Resolution resolution) {
+		this(outputNeurons, weights, biases, regularisationLambda, dropoutKeepProbability, resolution,
+				InceptionV4Width.DEFAULT);
+	}
+
+	public InceptionV4CustomTailDefinition(int outputNeurons, WeightsMatrix weights, BiasVector biases,
+			float regularisationLambda, float dropoutKeepProbability, InceptionV4Resolution resolution,
+			InceptionV4Width width) {
 		this.outputNeurons = outputNeurons;
+		this.resolution = resolution;
+		this.width = width;
 		this.weights = weights;
 		this.biases = biases;
+		this.regularisationLambda = regularisationLambda;
 		this.dropoutKeepProbability = dropoutKeepProbability;
+		this.buildProfile = BuildProfile.TRAINING;
 	}
 
 	@Override
 	public Neurons3D getInputNeurons() {
-		return new Neurons3D(8, 8, 1536, false);
+		return new Neurons3D(resolution.getInceptionCSize(), resolution.getInceptionCSize(), width.scale(1536), false);
 	}
 	
 	@Override
@@ -66,15 +87,17 @@ public class InceptionV4CustomTailDefinition implements Component3DtoNon3DGraphD
 
 	public <T extends NeuralComponent<?>> InitialComponentsGraphBuilder<T> createComponentGraph(
 			InitialComponents3DGraphBuilder<T> start, NeuralComponentFactory<T> neuralComponentFactory) {
+		int poolSize = resolution.getInceptionCSize();
 		return start
 					.withAveragePoolingAxons("average_pooling_5")
-						.withStride(1, 1).withFilterSize(8, 8).withValidPadding()
-						.withConnectionToNeurons(new Neurons3D(1, 1, 1536, false))
+						.withStride(1, 1).withFilterSize(poolSize, poolSize).withValidPadding()
+						.withConnectionToNeurons(new Neurons3D(1, 1, width.scale(1536), false))
 					.withFullyConnectedAxons("dense_1")
 						.withConnectionWeights(weights)
 						.withBiasUnit()
 						.withBiases(biases)
-						.withAxonsContextConfigurer(c -> c.withRegularisationLambda(regularisationLambda).withLeftHandInputDropoutKeepProbability(dropoutKeepProbability))
+						.withAxonsContextConfigurer(buildProfile == BuildProfile.INFERENCE ? c -> c.withFreezeOut(true)
+								: c -> c.withRegularisationLambda(regularisationLambda).withLeftHandInputDropoutKeepProbability(dropoutKeepProbability))
 					.withConnectionToNeurons(new Neurons(outputNeurons, false))
 					.withActivationFunction("softmax_1", ActivationFunctionType.getBaseType(ActivationFunctionBaseType.SOFTMAX), new ActivationFunctionProperties());
 	}
@@ -88,4 +111,12 @@ public class InceptionV4CustomTailDefinition implements Component3DtoNon3DGraphD
 	public String getName() {
 		return "inceptionv4_tail";
 	}
+
+	/**
+	 * @param buildProfile Whether to configure the final dense layer for training, or for inference only in
+	 *            which case the regularisation lambda and dropout keep probability are ignored.
+	 */
+	public void setBuildProfile(BuildProfile buildProfile) {
+		this.buildProfile = buildProfile;
+	}
 }
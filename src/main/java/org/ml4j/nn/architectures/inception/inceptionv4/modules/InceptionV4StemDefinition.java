@@ -15,10 +15,10 @@
  */
 package org.ml4j.nn.architectures.inception.inceptionv4.modules;
 
-import org.ml4j.nn.activationfunctions.ActivationFunctionBaseType;
-import org.ml4j.nn.activationfunctions.ActivationFunctionProperties;
-import org.ml4j.nn.activationfunctions.ActivationFunctionType;
+import org.ml4j.nn.architectures.BuildProfile;
+import org.ml4j.nn.architectures.inception.inceptionv4.InceptionV4Resolution;
 import org.ml4j.nn.architectures.inception.inceptionv4.InceptionV4WeightsLoader;
+import org.ml4j.nn.architectures.inception.inceptionv4.InceptionV4Width;
 import org.ml4j.nn.components.NeuralComponent;
 import org.ml4j.nn.components.builders.componentsgraph.InitialComponents3DGraphBuilder;
 import org.ml4j.nn.components.factories.NeuralComponentFactory;
@@ -37,253 +37,145 @@ public class InceptionV4StemDefinition implements Component3Dto3DGraphDefinition
 	private static final long serialVersionUID = 1L;
 
 	private InceptionV4WeightsLoader weightsLoader;
+	private InceptionV4Resolution resolution;
+	private InceptionV4Width width;
 	private boolean withFreezeOut;
+	private boolean batchNormFolding;
+	private boolean fusedConvolutions;
+	private BuildProfile buildProfile;
 	private float regularisationLambda;
 	private float batchNormRegularisationLambda;
 
 	public InceptionV4StemDefinition(InceptionV4WeightsLoader weightsLoader) {
+		this(weightsLoader, InceptionV4Resolution.DEFAULT);
+	}
+
+	public InceptionV4StemDefinition(InceptionV4WeightsLoader weightsLoader, InceptionV4Resolution resolution) {
+		this(weightsLoader, resolution, InceptionV4Width.DEFAULT);
+	}
+
+	public InceptionV4StemDefinition(InceptionV4WeightsLoader weightsLoader, InceptionV4Resolution resolution,
+			InceptionV4Width width) {
 		this.weightsLoader = weightsLoader;
+		this.resolution = resolution;
+		this.width = width;
+		this.buildProfile = BuildProfile.TRAINING;
+	}
+
+	/**
+	 * @param batchNormFolding Whether to fold each batch norm layer into the preceding convolutional layer, for
+	 *            inference - requires a weights loader which serves the folded weights, such as a
+	 *            TensorSourceInceptionV4WeightsLoader created with batch norm folding.
+	 * @return This definition.
+	 */
+	public InceptionV4StemDefinition withBatchNormFolding(boolean batchNormFolding) {
+		this.batchNormFolding = batchNormFolding;
+		return this;
+	}
+
+	/**
+	 * @param fusedConvolutions Whether to create each convolutional layer as a single fused convolution / batch
+	 *            norm / activation component - requires a FusedComponentFactory.
+	 * @return This definition.
+	 */
+	public InceptionV4StemDefinition withFusedConvolutions(boolean fusedConvolutions) {
+		this.fusedConvolutions = fusedConvolutions;
+		return this;
+	}
+
+	/**
+	 * @param buildProfile Whether to configure the components for training or for inference only.
+	 * @return This definition.
+	 */
+	public InceptionV4StemDefinition withBuildProfile(BuildProfile buildProfile) {
+		this.buildProfile = buildProfile;
+		return this;
 	}
 
 	@Override
 	public Neurons3D getInputNeurons() {
-		return new Neurons3D(299, 299, 3, false);
+		return new Neurons3D(resolution.getInputSize(), resolution.getInputSize(), 3, false);
 	}
 	
 	@Override
 	public Neurons3D getOutputNeurons() {
-		return new Neurons3D(35, 35, 384, false);
+		return new Neurons3D(resolution.getInceptionASize(), resolution.getInceptionASize(), width.scale(384), false);
 	}
 
 	public <T extends NeuralComponent<?>> InitialComponents3DGraphBuilder<T> createComponentGraph(
 			InitialComponents3DGraphBuilder<T> start, NeuralComponentFactory<T> neuralComponentFactory) {
+		int convolution1Size = resolution.getStemConvolution1Size();
+		int convolution2Size = resolution.getStemConvolution2Size();
+		int concatenation1Size = resolution.getStemConcatenation1Size();
+		int concatenation2Size = resolution.getStemConcatenation2Size();
+		int outputSize = resolution.getInceptionASize();
 		return start
-				.withConvolutionalAxons("conv2d_1")
-					.withConnectionWeights(
-							weightsLoader.getConvolutionalLayerWeights("conv2d_1_kernel0", 3, 3, 3, 32))
-					.withStride(2, 2).withFilterSize(3, 3).withFilterCount(32).withValidPadding()
-					.withAxonsContextConfigurer(
-							c -> c.withRegularisationLambda(regularisationLambda).withFreezeOut(withFreezeOut))
-				.withConnectionToNeurons(new Neurons3D(149, 149, 32, false))
-				.withBatchNormAxons("batch_normalization_1")
-					.withBiasUnit()
-					.withBeta(weightsLoader.getBatchNormLayerBiases("batch_normalization_1_beta0", 32))
-					.withMean(weightsLoader.getBatchNormLayerMean(
-							"batch_normalization_1_moving_mean0", 32))
-					.withVariance(weightsLoader.getBatchNormLayerVariance(
-							"batch_normalization_1_moving_variance0", 32))
-					.withAxonsContextConfigurer( c -> c.withFreezeOut(withFreezeOut))
-					// c.withRegularisationLambda(batchNormRegularisationLambda))
-				.withConnectionToNeurons(new Neurons3D(149, 149, 32, false))
-				.withActivationFunction("relu_1", ActivationFunctionType.getBaseType(ActivationFunctionBaseType.RELU), new ActivationFunctionProperties())
-				.withConvolutionalAxons("conv2d_2")
-					.withConnectionWeights(
-							weightsLoader.getConvolutionalLayerWeights("conv2d_2_kernel0", 3, 3, 32, 32))
-					.withFilterSize(3, 3).withValidPadding()
-					.withAxonsContextConfigurer( c -> c.withFreezeOut(withFreezeOut))
-				.withConnectionToNeurons(new Neurons3D(147, 147, 32, false))
-				.withBatchNormAxons("batch_normalization_2")
-					.withBiasUnit()
-					.withBeta(weightsLoader.getBatchNormLayerBiases("batch_normalization_2_beta0", 32))
-					.withMean(weightsLoader.getBatchNormLayerMean(
-							"batch_normalization_2_moving_mean0", 32))
-					.withVariance(weightsLoader.getBatchNormLayerVariance(
-							"batch_normalization_2_moving_variance0", 32))
-					.withAxonsContextConfigurer( c -> c.withFreezeOut(withFreezeOut))
-					// .withAxonsContextConfigurer( c ->
-					// c.withRegularisationLambda(batchNormRegularisationLambda))
-				.withConnectionToNeurons(new Neurons3D(147, 147, 32, false))
-					.withActivationFunction("relu_2",ActivationFunctionType.getBaseType(ActivationFunctionBaseType.RELU), new ActivationFunctionProperties())
-					.withConvolutionalAxons("conv2d_3")
-						.withConnectionWeights(
-								weightsLoader.getConvolutionalLayerWeights("conv2d_3_kernel0", 3, 3, 32, 64))
-						.withFilterSize(3, 3).withFilterCount(64).withSamePadding()
-						.withAxonsContextConfigurer(
-								c -> c.withRegularisationLambda(regularisationLambda).withFreezeOut(withFreezeOut))
-				.withConnectionToNeurons(new Neurons3D(147, 147, 64, false))
-				.withBatchNormAxons("batch_normalization_3")
-				.withBiasUnit()
-					.withBeta(weightsLoader.getBatchNormLayerBiases("batch_normalization_3_beta0", 64))
-					.withMean(weightsLoader.getBatchNormLayerMean(
-							"batch_normalization_3_moving_mean0", 64))
-					.withVariance(weightsLoader.getBatchNormLayerVariance(
-							"batch_normalization_3_moving_variance0", 64))
-					.withAxonsContextConfigurer(
-							c -> c.withRegularisationLambda(batchNormRegularisationLambda).withFreezeOut(withFreezeOut))
-				.withConnectionToNeurons(new Neurons3D(147, 147, 64, false))
-				.withActivationFunction("relu_3", ActivationFunctionType.getBaseType(ActivationFunctionBaseType.RELU), new ActivationFunctionProperties())
+				.withComponentDefinition(convolution(1, getInputNeurons(),
+						new Neurons3D(convolution1Size, convolution1Size, width.scale(32), false)).withFilterSize(3, 3).withStride(2, 2).withValidPadding())
+				.withComponentDefinition(convolution(2, new Neurons3D(convolution1Size, convolution1Size, width.scale(32), false),
+						new Neurons3D(convolution2Size, convolution2Size, width.scale(32), false)).withFilterSize(3, 3).withValidPadding())
+					.withComponentDefinition(convolution(3, new Neurons3D(convolution2Size, convolution2Size, width.scale(32), false),
+							new Neurons3D(convolution2Size, convolution2Size, width.scale(64), false)).withFilterSize(3, 3).withSamePadding())
 				.withParallelPaths()
 					.withPath()
 						.withMaxPoolingAxons("max_pooling_1")
 							.withStride(2, 2)
 							.withFilterSize(3, 3)
 							.withValidPadding()
-						.withConnectionToNeurons(new Neurons3D(73, 73, 64, false))
+						.withConnectionToNeurons(new Neurons3D(concatenation1Size, concatenation1Size, width.scale(64), false))
 						.endPath()
 					.withPath()
-						.withConvolutionalAxons("conv2d_4")
-							.withConnectionWeights(
-									weightsLoader.getConvolutionalLayerWeights("conv2d_4_kernel0", 3, 3, 64, 96))
-							.withStride(2, 2).withFilterSize(3, 3).withFilterCount(96).withValidPadding()
-							.withAxonsContextConfigurer(
-									c -> c.withRegularisationLambda(regularisationLambda).withFreezeOut(withFreezeOut))
-						.withConnectionToNeurons(new Neurons3D(73, 73, 96, false))
-						.withBatchNormAxons("batch_normalization_4")
-							.withBiasUnit()
-							.withBeta(weightsLoader.getBatchNormLayerBiases("batch_normalization_4_beta0", 96))
-							.withMean(weightsLoader.getBatchNormLayerMean(
-									"batch_normalization_4_moving_mean0", 96))
-							.withVariance(weightsLoader.getBatchNormLayerVariance(
-									"batch_normalization_4_moving_variance0", 96))
-							.withAxonsContextConfigurer(
-									c -> c.withRegularisationLambda(batchNormRegularisationLambda).withFreezeOut(withFreezeOut))
-							.withConnectionToNeurons(new Neurons3D(73, 73, 96, false))
-							.withActivationFunction("relu_4", ActivationFunctionType.getBaseType(ActivationFunctionBaseType.RELU), new ActivationFunctionProperties())
+						.withComponentDefinition(convolution(4, new Neurons3D(convolution2Size, convolution2Size, width.scale(64), false),
+								new Neurons3D(concatenation1Size, concatenation1Size, width.scale(96), false)).withFilterSize(3, 3).withStride(2, 2).withValidPadding())
 						.endPath()
 				.endParallelPaths("inception_v4_stem_concat_0_0", PathCombinationStrategy.FILTER_CONCAT)
 				.withParallelPaths()
 					.withPath()
-						.withConvolutionalAxons("conv2d_5")
-							.withConnectionWeights(
-									weightsLoader.getConvolutionalLayerWeights("conv2d_5_kernel0", 1, 1, 160, 64))
-							.withFilterSize(1, 1).withFilterCount(64).withSamePadding()
-							.withAxonsContextConfigurer(
-									c -> c.withRegularisationLambda(regularisationLambda).withFreezeOut(withFreezeOut))
-							.withConnectionToNeurons(new Neurons3D(73, 73, 64, false))
-						.withBatchNormAxons("batch_normalization_5").withBiasUnit()
-							.withBeta(weightsLoader.getBatchNormLayerBiases("batch_normalization_5_beta0", 64))
-							.withMean(weightsLoader.getBatchNormLayerMean(
-									"batch_normalization_5_moving_mean0", 64))
-							.withVariance(weightsLoader.getBatchNormLayerVariance(
-									"batch_normalization_5_moving_variance0", 64))
-							.withAxonsContextConfigurer(
-									c -> c.withRegularisationLambda(batchNormRegularisationLambda).withFreezeOut(withFreezeOut))
-						.withConnectionToNeurons(new Neurons3D(73, 73, 64, false))
-						.withActivationFunction("relu_5", ActivationFunctionType.getBaseType(ActivationFunctionBaseType.RELU), new ActivationFunctionProperties())
-						.withConvolutionalAxons("conv2d_6")
-							.withConnectionWeights(
-									weightsLoader.getConvolutionalLayerWeights("conv2d_6_kernel0", 3, 3, 64, 96))
-							.withFilterSize(3, 3).withFilterCount(96).withValidPadding()
-							.withAxonsContextConfigurer(
-									c -> c.withRegularisationLambda(regularisationLambda).withFreezeOut(withFreezeOut))
-						.withConnectionToNeurons(new Neurons3D(71, 71, 96, false))
-						.withBatchNormAxons("batch_normalization_6")
-							.withBiasUnit()
-							.withBeta(weightsLoader.getBatchNormLayerBiases("batch_normalization_6_beta0",96))
-							.withMean(weightsLoader.getBatchNormLayerMean(
-									"batch_normalization_6_moving_mean0", 96))
-							.withVariance(weightsLoader.getBatchNormLayerVariance(
-									"batch_normalization_6_moving_variance0",96))
-							.withAxonsContextConfigurer(
-									c -> c.withRegularisationLambda(batchNormRegularisationLambda).withFreezeOut(withFreezeOut))
-						.withConnectionToNeurons(new Neurons3D(71, 71, 96, false))
-						.withActivationFunction("relu_6",ActivationFunctionType.getBaseType(ActivationFunctionBaseType.RELU), new ActivationFunctionProperties())
+						.withComponentDefinition(convolution(5, new Neurons3D(concatenation1Size, concatenation1Size, width.scale(160), false),
+								new Neurons3D(concatenation1Size, concatenation1Size, width.scale(64), false)).withFilterSize(1, 1).withSamePadding())
+						.withComponentDefinition(convolution(6, new Neurons3D(concatenation1Size, concatenation1Size, width.scale(64), false),
+								new Neurons3D(concatenation2Size, concatenation2Size, width.scale(96), false)).withFilterSize(3, 3).withValidPadding())
 					.endPath()
 					.withPath()
-						.withConvolutionalAxons("conv2d_7")
-							.withConnectionWeights(
-									weightsLoader.getConvolutionalLayerWeights("conv2d_7_kernel0", 1, 1, 160, 64))
-							.withFilterSize(1, 1).withFilterCount(64).withSamePadding()
-							.withAxonsContextConfigurer(
-									c -> c.withRegularisationLambda(regularisationLambda).withFreezeOut(withFreezeOut))
-						.withConnectionToNeurons(new Neurons3D(73, 73, 64, false))
-						.withBatchNormAxons("batch_normalization_7")
-							.withBiasUnit()
-							.withBeta(weightsLoader.getBatchNormLayerBiases("batch_normalization_7_beta0", 64))
-							.withMean(weightsLoader.getBatchNormLayerMean(
-									"batch_normalization_7_moving_mean0", 64))
-							.withVariance(weightsLoader.getBatchNormLayerVariance(
-									"batch_normalization_7_moving_variance0", 64))
-							.withAxonsContextConfigurer(
-									c -> c.withRegularisationLambda(batchNormRegularisationLambda).withFreezeOut(withFreezeOut))
-						.withConnectionToNeurons(new Neurons3D(73, 73, 64, false))
-						.withActivationFunction("relu_7", ActivationFunctionType.getBaseType(ActivationFunctionBaseType.RELU), new ActivationFunctionProperties())
-						.withConvolutionalAxons("conv2d_8")
-							.withConnectionWeights(
-									weightsLoader.getConvolutionalLayerWeights("conv2d_8_kernel0", 7, 1, 64, 64))
-							.withFilterSize(7, 1).withFilterCount(64).withSamePadding()
-							.withAxonsContextConfigurer(
-									c -> c.withRegularisationLambda(regularisationLambda).withFreezeOut(withFreezeOut))
-							.withConnectionToNeurons(new Neurons3D(73, 73, 64, false))
-						.withBatchNormAxons("batch_normalization_8")
-							.withBiasUnit()
-							.withBeta(weightsLoader.getBatchNormLayerBiases("batch_normalization_8_beta0", 64))
-							.withMean(weightsLoader.getBatchNormLayerMean(
-									"batch_normalization_8_moving_mean0", 64))
-							.withVariance(weightsLoader.getBatchNormLayerVariance(
-									"batch_normalization_8_moving_variance0", 64))
-							.withAxonsContextConfigurer(
-									c -> c.withRegularisationLambda(batchNormRegularisationLambda).withFreezeOut(withFreezeOut))
-						.withConnectionToNeurons(new Neurons3D(73, 73, 64, false))
-						.withActivationFunction("relu_8", ActivationFunctionType.getBaseType(ActivationFunctionBaseType.RELU), new ActivationFunctionProperties())
-						.withConvolutionalAxons("conv2d_9")
-							.withConnectionWeights(
-									weightsLoader.getConvolutionalLayerWeights("conv2d_9_kernel0", 1, 7, 64, 64))
-							.withFilterSize(1, 7).withFilterCount(64).withSamePadding()
-							.withAxonsContextConfigurer(
-									c -> c.withRegularisationLambda(regularisationLambda).withFreezeOut(withFreezeOut))
-						.withConnectionToNeurons(new Neurons3D(73, 73, 64, false))
-						.withBatchNormAxons("batch_normalization_9")
-						.withBiasUnit()
-							.withBeta(weightsLoader.getBatchNormLayerBiases("batch_normalization_9_beta0", 64))
-							.withMean(weightsLoader.getBatchNormLayerMean(
-									"batch_normalization_9_moving_mean0", 64))
-							.withVariance(weightsLoader.getBatchNormLayerVariance(
-									"batch_normalization_9_moving_variance0", 64))
-							.withAxonsContextConfigurer(
-									c -> c.withRegularisationLambda(batchNormRegularisationLambda).withFreezeOut(withFreezeOut))
-						.withConnectionToNeurons(new Neurons3D(73, 73, 64, false))
-						.withActivationFunction("relu_9", ActivationFunctionType.getBaseType(ActivationFunctionBaseType.RELU), new ActivationFunctionProperties())
-						.withConvolutionalAxons("conv2d_10")
-							.withConnectionWeights(
-									weightsLoader.getConvolutionalLayerWeights("conv2d_10_kernel0", 3, 3, 64, 96))
-							.withFilterSize(3, 3).withFilterCount(96).withValidPadding()
-							.withAxonsContextConfigurer(
-									c -> c.withRegularisationLambda(regularisationLambda).withFreezeOut(withFreezeOut))
-							.withConnectionToNeurons(new Neurons3D(71, 71, 96, false))
-						.withBatchNormAxons("batch_normalization_10")
-							.withBiasUnit()
-							.withBeta(weightsLoader.getBatchNormLayerBiases("batch_normalization_10_beta0", 96))
-							.withMean(weightsLoader.getBatchNormLayerMean(
-									"batch_normalization_10_moving_mean0", 96))
-							.withVariance(weightsLoader.getBatchNormLayerVariance(
-									"batch_normalization_10_moving_variance0",96))
-							.withAxonsContextConfigurer(
-									c -> c.withRegularisationLambda(batchNormRegularisationLambda).withFreezeOut(withFreezeOut))
-						.withConnectionToNeurons(new Neurons3D(71, 71, 96, false))
-						.withActivationFunction("relu_10", ActivationFunctionType.getBaseType(ActivationFunctionBaseType.RELU), new ActivationFunctionProperties())
+						.withComponentDefinition(convolution(7, new Neurons3D(concatenation1Size, concatenation1Size, width.scale(160), false),
+								new Neurons3D(concatenation1Size, concatenation1Size, width.scale(64), false)).withFilterSize(1, 1).withSamePadding())
+						.withComponentDefinition(convolution(8, new Neurons3D(concatenation1Size, concatenation1Size, width.scale(64), false),
+								new Neurons3D(concatenation1Size, concatenation1Size, width.scale(64), false)).withFilterSize(7, 1).withSamePadding())
+						.withComponentDefinition(convolution(9, new Neurons3D(concatenation1Size, concatenation1Size, width.scale(64), false),
+								new Neurons3D(concatenation1Size, concatenation1Size, width.scale(64), false)).withFilterSize(1, 7).withSamePadding())
+						.withComponentDefinition(convolution(10, new Neurons3D(concatenation1Size, concatenation1Size, width.scale(64), false),
+								new Neurons3D(concatenation2Size, concatenation2Size, width.scale(96), false)).withFilterSize(3, 3).withValidPadding())
 					.endPath()
 				.endParallelPaths("inception_v4_stem_concat_0_1", PathCombinationStrategy.FILTER_CONCAT)
 				.withParallelPaths()
 					.withPath()
-						.withConvolutionalAxons("conv2d_11")
-						.withConnectionWeights(
-								weightsLoader.getConvolutionalLayerWeights("conv2d_11_kernel0", 3, 3, 192, 192))
-						.withStride(2, 2).withFilterSize(3, 3).withFilterCount(192).withValidPadding()
-						.withAxonsContextConfigurer(
-								c -> c.withRegularisationLambda(regularisationLambda).withFreezeOut(withFreezeOut))
-						.withConnectionToNeurons(new Neurons3D(35, 35, 192, false))
-						.withBatchNormAxons("batch_normalization_11").withBiasUnit()
-						.withBeta(weightsLoader.getBatchNormLayerBiases("batch_normalization_11_beta0", 192))
-						.withMean(weightsLoader.getBatchNormLayerMean(
-								"batch_normalization_11_moving_mean0", 192))
-						.withVariance(weightsLoader.getBatchNormLayerVariance(
-								"batch_normalization_11_moving_variance0", 192))
-						.withAxonsContextConfigurer(
-								c -> c.withRegularisationLambda(batchNormRegularisationLambda).withFreezeOut(withFreezeOut))
-						.withConnectionToNeurons(new Neurons3D(35, 35, 192, false))
-						.withActivationFunction("relu_11", ActivationFunctionType.getBaseType(ActivationFunctionBaseType.RELU), new ActivationFunctionProperties())
+						.withComponentDefinition(convolution(11, new Neurons3D(concatenation2Size, concatenation2Size, width.scale(192), false),
+								new Neurons3D(outputSize, outputSize, width.scale(192), false)).withFilterSize(3, 3).withStride(2, 2).withValidPadding())
 				.endPath()
 				.withPath()
 					.withMaxPoolingAxons("max_pooling_2")
 						.withFilterSize(3, 3)
 						.withStride(2, 2)
 						.withValidPadding()
-					.withConnectionToNeurons(new Neurons3D(35, 35, 192, false))
+					.withConnectionToNeurons(new Neurons3D(outputSize, outputSize, width.scale(192), false))
 				.endPath()
 			.endParallelPaths("inception_v4_stem_concat_1", PathCombinationStrategy.FILTER_CONCAT);
 	}
 
+	private InceptionV4ConvolutionDefinition convolution(int index, Neurons3D inputNeurons, Neurons3D outputNeurons) {
+		InceptionV4ConvolutionDefinition convolution = new InceptionV4ConvolutionDefinition(weightsLoader, index,
+				inputNeurons, outputNeurons).withBatchNormFolding(batchNormFolding).withFusedConvolutions(fusedConvolutions)
+				.withBuildProfile(buildProfile).withFreezeOut(withFreezeOut);
+		// conv2d_2 is not regularised, and neither are batch_normalization_1 and batch_normalization_2
+		if (index != 2) {
+			convolution.withRegularisationLambda(regularisationLambda);
+		}
+		if (index > 2) {
+			convolution.withBatchNormRegularisationLambda(batchNormRegularisationLambda);
+		}
+		return convolution;
+	}
+
 	@Override
 	public String getName() {
 		return "inceptionv4_stem";
@@ -18,7 +18,10 @@ package org.ml4j.nn.architectures.inception.inceptionv4.modules;
 import org.ml4j.nn.activationfunctions.ActivationFunctionBaseType;
 import org.ml4j.nn.activationfunctions.ActivationFunctionProperties;
 import org.ml4j.nn.activationfunctions.ActivationFunctionType;
+import org.ml4j.nn.architectures.BuildProfile;
+import org.ml4j.nn.architectures.inception.inceptionv4.InceptionV4Resolution;
 import org.ml4j.nn.architectures.inception.inceptionv4.InceptionV4WeightsLoader;
+import org.ml4j.nn.architectures.inception.inceptionv4.InceptionV4Width;
 import org.ml4j.nn.components.NeuralComponent;
 import org.ml4j.nn.components.NeuralComponentBaseType;
 import org.ml4j.nn.components.NeuralComponentType;
@@ -40,17 +43,32 @@ public class InceptionV4TailDefinition implements Component3DtoNon3DGraphDefinit
 	private static final long serialVersionUID = 1L;
 	
 	private InceptionV4WeightsLoader weightsLoader;
+	private InceptionV4Resolution resolution;
+	private InceptionV4Width width;
 	private float regularisationLambda;
 	private float dropoutKeepProbability;
+	private BuildProfile buildProfile;
 
 	public InceptionV4TailDefinition(InceptionV4WeightsLoader weightsLoader) {
+		this(weightsLoader, InceptionV4Resolution.DEFAULT);
+	}
+
+	public InceptionV4TailDefinition(InceptionV4WeightsLoader weightsLoader, InceptionV4Resolution resolution) {
+		this(weightsLoader, resolution, InceptionV4Width.DEFAULT);
+	}
+
+	public InceptionV4TailDefinition(InceptionV4WeightsLoader weightsLoader, InceptionV4Resolution resolution,
+			InceptionV4Width width) {
 		this.weightsLoader = weightsLoader;
+		this.resolution = resolution;
+		this.width = width;
 		this.dropoutKeepProbability = 1f;
+		this.buildProfile = BuildProfile.TRAINING;
 	}
 
 	@Override
 	public Neurons3D getInputNeurons() {
-		return new Neurons3D(8, 8, 1536, false);
+		return new Neurons3D(resolution.getInceptionCSize(), resolution.getInceptionCSize(), width.scale(1536), false);
 	}
 	
 	@Override
@@ -60,15 +78,18 @@ public class InceptionV4TailDefinition implements Component3DtoNon3DGraphDefinit
 
 	public <T extends NeuralComponent<?>> InitialComponentsGraphBuilder<T> createComponentGraph(
 			InitialComponents3DGraphBuilder<T> start, NeuralComponentFactory<T> neuralComponentFactory) {
+		// The global average pool spans whatever spatial extent the final Inception-C module produces
+		int poolSize = resolution.getInceptionCSize();
 		return start
 					.withAveragePoolingAxons("average_pooling_5")
-						.withStride(1, 1).withFilterSize(8, 8).withValidPadding()
-						.withConnectionToNeurons(new Neurons3D(1, 1, 1536, false))
+						.withStride(1, 1).withFilterSize(poolSize, poolSize).withValidPadding()
+						.withConnectionToNeurons(new Neurons3D(1, 1, width.scale(1536), false))
 					.withFullyConnectedAxons("dense_1")
-						.withConnectionWeights(weightsLoader.getDenseLayerWeights("dense_1_kernel0", 1001, 1536))
+						.withConnectionWeights(weightsLoader.getDenseLayerWeights("dense_1_kernel0", 1001, width.scale(1536)))
 						.withBiasUnit()
 						.withBiases(weightsLoader.getDenseLayerBiases("dense_1_bias0", 1001, 1))
-						.withAxonsContextConfigurer(c -> c.withRegularisationLambda(regularisationLambda).withLeftHandInputDropoutKeepProbability(dropoutKeepProbability))
+						.withAxonsContextConfigurer(buildProfile == BuildProfile.INFERENCE ? c -> c.withFreezeOut(true)
+								: c -> c.withRegularisationLambda(regularisationLambda).withLeftHandInputDropoutKeepProbability(dropoutKeepProbability))
 					.withConnectionToNeurons(new Neurons(1001, false))
 					.withActivationFunction("softmax_1", ActivationFunctionType.getBaseType(ActivationFunctionBaseType.SOFTMAX), new ActivationFunctionProperties());
 	}
@@ -90,4 +111,12 @@ public class InceptionV4TailDefinition implements Component3DtoNon3DGraphDefinit
 	public void setDropoutKeepProbability(float dropoutKeepProbability) {
 		this.dropoutKeepProbability = dropoutKeepProbability;
 	}
+
+	/**
+	 * @param buildProfile Whether to configure the final dense layer for training, or for inference only in
+	 *            which case the regularisation lambda and dropout keep probability are ignored.
+	 */
+	public void setBuildProfile(BuildProfile buildProfile) {
+		this.buildProfile = buildProfile;
+	}
 }
@@ -15,10 +15,10 @@
  */
 package org.ml4j.nn.architectures.inception.inceptionv4.modules;
 
-import org.ml4j.nn.activationfunctions.ActivationFunctionBaseType;
-import org.ml4j.nn.activationfunctions.ActivationFunctionProperties;
-import org.ml4j.nn.activationfunctions.ActivationFunctionType;
+import org.ml4j.nn.architectures.BuildProfile;
+import org.ml4j.nn.architectures.inception.inceptionv4.InceptionV4Resolution;
 import org.ml4j.nn.architectures.inception.inceptionv4.InceptionV4WeightsLoader;
+import org.ml4j.nn.architectures.inception.inceptionv4.InceptionV4Width;
 import org.ml4j.nn.components.NeuralComponent;
 import org.ml4j.nn.components.builders.componentsgraph.InitialComponents3DGraphBuilder;
 import org.ml4j.nn.components.factories.NeuralComponentFactory;
@@ -37,82 +37,93 @@ public class ReductionADefinition implements Component3Dto3DGraphDefinition {
 	private static final long serialVersionUID = 1L;
 	
 	private InceptionV4WeightsLoader weightsLoader;
+	private InceptionV4Resolution resolution;
+	private InceptionV4Width width;
 	private boolean withFreezeOut;
+	private boolean batchNormFolding;
+	private boolean fusedConvolutions;
+	private BuildProfile buildProfile;
 
 	public ReductionADefinition(InceptionV4WeightsLoader weightsLoader) {
+		this(weightsLoader, InceptionV4Resolution.DEFAULT);
+	}
+
+	public ReductionADefinition(InceptionV4WeightsLoader weightsLoader, InceptionV4Resolution resolution) {
+		this(weightsLoader, resolution, InceptionV4Width.DEFAULT);
+	}
+
+	public ReductionADefinition(InceptionV4WeightsLoader weightsLoader, InceptionV4Resolution resolution,
+			InceptionV4Width width) {
 		this.weightsLoader = weightsLoader;
+		this.resolution = resolution;
+		this.width = width;
+		this.buildProfile = BuildProfile.TRAINING;
+	}
+
+	/**
+	 * @param batchNormFolding Whether to fold each batch norm layer into the preceding convolutional layer, for
+	 *            inference - requires a weights loader which serves the folded weights, such as a
+	 *            TensorSourceInceptionV4WeightsLoader created with batch norm folding.
+	 * @return This definition.
+	 */
+	public ReductionADefinition withBatchNormFolding(boolean batchNormFolding) {
+		this.batchNormFolding = batchNormFolding;
+		return this;
+	}
+
+	/**
+	 * @param fusedConvolutions Whether to create each convolutional layer as a single fused convolution / batch
+	 *            norm / activation component - requires a FusedComponentFactory.
+	 * @return This definition.
+	 */
+	public ReductionADefinition withFusedConvolutions(boolean fusedConvolutions) {
+		this.fusedConvolutions = fusedConvolutions;
+		return this;
+	}
+
+	/**
+	 * @param buildProfile Whether to configure the components for training or for inference only.
+	 * @return This definition.
+	 */
+	public ReductionADefinition withBuildProfile(BuildProfile buildProfile) {
+		this.buildProfile = buildProfile;
+		return this;
 	}
 
 	@Override
 	public Neurons3D getInputNeurons() {
-		return new Neurons3D(35, 35, 384, false);
+		return new Neurons3D(resolution.getInceptionASize(), resolution.getInceptionASize(), width.scale(384), false);
 	}
 
 	@Override
 	public Neurons3D getOutputNeurons() {
-		return new Neurons3D(17, 17, 1024, false);
+		return new Neurons3D(resolution.getInceptionBSize(), resolution.getInceptionBSize(), width.scale(1024), false);
 	}
 
 	public <T extends NeuralComponent<?>> InitialComponents3DGraphBuilder<T> createComponentGraph(
 			InitialComponents3DGraphBuilder<T> start, NeuralComponentFactory<T> neuralComponentFactory) {
+		int inputSize = resolution.getInceptionASize();
+		int outputSize = resolution.getInceptionBSize();
 		
-		return start.withParallelPaths().withPath().withConvolutionalAxons("conv2d_40").withFilterSize(3, 3)
-				.withConnectionWeights(weightsLoader.getConvolutionalLayerWeights("conv2d_40_kernel0", 3, 3, 384, 384))
-				.withStride(2, 2).withFilterCount(384).withValidPadding()
-				.withAxonsContextConfigurer(
-						context -> context.withFreezeOut(withFreezeOut))
-				.withConnectionToNeurons(new Neurons3D(17, 17, 384, false)).withBatchNormAxons("batch_normalization_40").withBiasUnit()
-				.withBeta(weightsLoader.getBatchNormLayerBiases("batch_normalization_40_beta0", 384))
-				.withMean(weightsLoader.getBatchNormLayerMean("batch_normalization_40_moving_mean0", 384))
-				.withVariance(weightsLoader.getBatchNormLayerVariance("batch_normalization_40_moving_variance0", 384))
-				.withAxonsContextConfigurer(
-						c -> c.withFreezeOut(withFreezeOut))
-				.withConnectionToNeurons(new Neurons3D(17, 17, 384, false))
-				.withActivationFunction("relu_40", ActivationFunctionType.getBaseType(ActivationFunctionBaseType.RELU), new ActivationFunctionProperties()).endPath().withPath()
-				.withConvolutionalAxons("conv2d_41")
-				.withConnectionWeights(weightsLoader.getConvolutionalLayerWeights("conv2d_41_kernel0", 1, 1, 384, 192))
-				.withFilterSize(1, 1).withFilterCount(192).withSamePadding()
-				.withAxonsContextConfigurer(
-						c -> c.withFreezeOut(withFreezeOut))
-				.withConnectionToNeurons(new Neurons3D(35, 35, 192, false)).withBatchNormAxons("batch_normalization_41").withBiasUnit()
-				.withBeta(weightsLoader.getBatchNormLayerBiases("batch_normalization_41_beta0", 192))
-				.withMean(weightsLoader.getBatchNormLayerMean("batch_normalization_41_moving_mean0", 192))
-				.withVariance(weightsLoader.getBatchNormLayerVariance("batch_normalization_41_moving_variance0", 192))
-				.withAxonsContextConfigurer(
-						c -> c.withFreezeOut(withFreezeOut))
-				.withConnectionToNeurons(new Neurons3D(35, 35, 192, false))
-				.withActivationFunction("relu_41", ActivationFunctionType.getBaseType(ActivationFunctionBaseType.RELU), new ActivationFunctionProperties())
-				.withConvolutionalAxons("conv2d_42")
-				.withConnectionWeights(weightsLoader.getConvolutionalLayerWeights("conv2d_42_kernel0", 3, 3, 192, 224))
-				.withFilterSize(3, 3).withFilterCount(224).withSamePadding()
-				.withAxonsContextConfigurer(
-						c -> c.withFreezeOut(withFreezeOut))
-				.withConnectionToNeurons(new Neurons3D(35, 35, 224, false)).withBatchNormAxons("batch_normalization_42").withBiasUnit()
-				.withBeta(weightsLoader.getBatchNormLayerBiases("batch_normalization_42_beta0", 224))
-				.withMean(weightsLoader.getBatchNormLayerMean("batch_normalization_42_moving_mean0", 224))
-				.withVariance(weightsLoader.getBatchNormLayerVariance("batch_normalization_42_moving_variance0", 224))
-				.withAxonsContextConfigurer(
-						c -> c.withFreezeOut(withFreezeOut))
-				.withConnectionToNeurons(new Neurons3D(35, 35, 224, false))
-				.withActivationFunction("relu_42", ActivationFunctionType.getBaseType(ActivationFunctionBaseType.RELU), new ActivationFunctionProperties())
-				.withConvolutionalAxons("conv2d_43")
-				.withConnectionWeights(weightsLoader.getConvolutionalLayerWeights("conv2d_43_kernel0", 3, 3, 224, 256))
-				.withStride(2, 2).withFilterSize(3, 3).withFilterCount(256).withValidPadding()
-				.withAxonsContextConfigurer(
-						c -> c.withFreezeOut(withFreezeOut))
-				.withConnectionToNeurons(new Neurons3D(17, 17, 256, false)).withBatchNormAxons("batch_normalization_43").withBiasUnit()
-				.withBeta(weightsLoader.getBatchNormLayerBiases("batch_normalization_43_beta0", 256))
-				.withMean(weightsLoader.getBatchNormLayerMean("batch_normalization_43_moving_mean0", 256))
-				.withVariance(weightsLoader.getBatchNormLayerVariance("batch_normalization_43_moving_variance0", 256))
-				.withAxonsContextConfigurer(
-						c -> c.withFreezeOut(withFreezeOut))
-				.withConnectionToNeurons(new Neurons3D(17, 17, 256, false))
-				.withActivationFunction("relu_43", ActivationFunctionType.getBaseType(ActivationFunctionBaseType.RELU), new ActivationFunctionProperties()).endPath().withPath()
+		return start.withParallelPaths().withPath().withComponentDefinition(convolution(40, getInputNeurons(),
+				new Neurons3D(outputSize, outputSize, width.scale(384), false)).withFilterSize(3, 3).withStride(2, 2).withValidPadding()).endPath().withPath()
+				.withComponentDefinition(convolution(41, getInputNeurons(),
+						new Neurons3D(inputSize, inputSize, width.scale(192), false)).withFilterSize(1, 1).withSamePadding())
+				.withComponentDefinition(convolution(42, new Neurons3D(inputSize, inputSize, width.scale(192), false),
+						new Neurons3D(inputSize, inputSize, width.scale(224), false)).withFilterSize(3, 3).withSamePadding())
+				.withComponentDefinition(convolution(43, new Neurons3D(inputSize, inputSize, width.scale(224), false),
+						new Neurons3D(outputSize, outputSize, width.scale(256), false)).withFilterSize(3, 3).withStride(2, 2).withValidPadding()).endPath().withPath()
 				.withMaxPoolingAxons("max_pooling_3").withFilterSize(3, 3).withStride(2, 2).withValidPadding()
-				.withConnectionToNeurons(new Neurons3D(17, 17, 384, false)).endPath()
+				.withConnectionToNeurons(new Neurons3D(outputSize, outputSize, width.scale(384), false)).endPath()
 				.endParallelPaths("reduction_a_concat_0", PathCombinationStrategy.FILTER_CONCAT);
 	}
 
+	private InceptionV4ConvolutionDefinition convolution(int index, Neurons3D inputNeurons, Neurons3D outputNeurons) {
+		return new InceptionV4ConvolutionDefinition(weightsLoader, index, inputNeurons, outputNeurons)
+				.withBatchNormFolding(batchNormFolding).withFusedConvolutions(fusedConvolutions)
+				.withBuildProfile(buildProfile).withFreezeOut(withFreezeOut);
+	}
+
 	@Override
 	public String getName() {
 		return "reduction_a";
@@ -15,10 +15,10 @@
  */
 package org.ml4j.nn.architectures.inception.inceptionv4.modules;
 
-import org.ml4j.nn.activationfunctions.ActivationFunctionBaseType;
-import org.ml4j.nn.activationfunctions.ActivationFunctionProperties;
-import org.ml4j.nn.activationfunctions.ActivationFunctionType;
+import org.ml4j.nn.architectures.BuildProfile;
+import org.ml4j.nn.architectures.inception.inceptionv4.InceptionV4Resolution;
 import org.ml4j.nn.architectures.inception.inceptionv4.InceptionV4WeightsLoader;
+import org.ml4j.nn.architectures.inception.inceptionv4.InceptionV4Width;
 import org.ml4j.nn.components.NeuralComponent;
 import org.ml4j.nn.components.builders.componentsgraph.InitialComponents3DGraphBuilder;
 import org.ml4j.nn.components.factories.NeuralComponentFactory;
@@ -37,133 +37,100 @@ public class ReductionBDefinition implements Component3Dto3DGraphDefinition {
 	private static final long serialVersionUID = 1L;
 	
 	private InceptionV4WeightsLoader weightsLoader;
+	private InceptionV4Resolution resolution;
+	private InceptionV4Width width;
 	private boolean withFreezeOut;
+	private boolean batchNormFolding;
+	private boolean fusedConvolutions;
+	private BuildProfile buildProfile;
 
 	public ReductionBDefinition(InceptionV4WeightsLoader weightsLoader) {
+		this(weightsLoader, InceptionV4Resolution.DEFAULT);
+	}
+
+	public ReductionBDefinition(InceptionV4WeightsLoader weightsLoader, InceptionV4Resolution resolution) {
+		this(weightsLoader, resolution, InceptionV4Width.DEFAULT);
+	}
+
+	public ReductionBDefinition(InceptionV4WeightsLoader weightsLoader, InceptionV4Resolution resolution,
+			InceptionV4Width width) {
 		this.weightsLoader = weightsLoader;
+		this.resolution = resolution;
+		this.width = width;
+		this.buildProfile = BuildProfile.TRAINING;
 	}
-	
+
+	/**
+	 * @param batchNormFolding Whether to fold each batch norm layer into the preceding convolutional layer, for
+	 *            inference - requires a weights loader which serves the folded weights, such as a
+	 *            TensorSourceInceptionV4WeightsLoader created with batch norm folding.
+	 * @return This definition.
+	 */
+	public ReductionBDefinition withBatchNormFolding(boolean batchNormFolding) {
+		this.batchNormFolding = batchNormFolding;
+		return this;
+	}
+
+	/**
+	 * @param fusedConvolutions Whether to create each convolutional layer as a single fused convolution / batch
+	 *            norm / activation component - requires a FusedComponentFactory.
+	 * @return This definition.
+	 */
+	public ReductionBDefinition withFusedConvolutions(boolean fusedConvolutions) {
+		this.fusedConvolutions = fusedConvolutions;
+		return this;
+	}
+
+	/**
+	 * @param buildProfile Whether to configure the components for training or for inference only.
+	 * @return This definition.
+	 */
+	public ReductionBDefinition withBuildProfile(BuildProfile buildProfile) {
+		this.buildProfile = buildProfile;
+		return this;
+	}
+
 	@Override
 	public Neurons3D getInputNeurons() {
-		return new Neurons3D(17, 17, 1024, false);
+		return new Neurons3D(resolution.getInceptionBSize(), resolution.getInceptionBSize(), width.scale(1024), false);
 	}
 
 	@Override
 	public Neurons3D getOutputNeurons() {
-		return new Neurons3D(8, 8, 1536, false);
+		return new Neurons3D(resolution.getInceptionCSize(), resolution.getInceptionCSize(), width.scale(1536), false);
 	}
 
 	public <T extends NeuralComponent<?>> InitialComponents3DGraphBuilder<T> createComponentGraph(
 			InitialComponents3DGraphBuilder<T> start, NeuralComponentFactory<T> neuralComponentFactory) {
+		int inputSize = resolution.getInceptionBSize();
+		int outputSize = resolution.getInceptionCSize();
 		return start
 				.withParallelPaths().withPath()
-				.withConvolutionalAxons("conv2d_114")
-				.withConnectionWeights(weightsLoader.getConvolutionalLayerWeights(
-						"conv2d_" + (114) + "_kernel0", 1, 1, 1024, 192))
-				.withFilterSize(1, 1).withFilterCount(192).withSamePadding()
-				.withAxonsContextConfigurer(
-						c -> c.withFreezeOut(withFreezeOut))
-				.withConnectionToNeurons(new Neurons3D(17, 17, 192, false)).withBatchNormAxons("batch_normalization_114").withBiasUnit()
-				.withBeta(weightsLoader.getBatchNormLayerBiases(
-						"batch_normalization_" + (114) + "_beta0", 192))
-				.withMean(weightsLoader.getBatchNormLayerMean(
-						"batch_normalization_" + (114) + "_moving_mean0", 192))
-				.withVariance(weightsLoader.getBatchNormLayerVariance(
-						"batch_normalization_" + (114) + "_moving_variance0", 192))
-				.withAxonsContextConfigurer(
-						c -> c.withFreezeOut(withFreezeOut))
-				.withConnectionToNeurons(new Neurons3D(17, 17, 192, false))
-				.withActivationFunction("relu_", ActivationFunctionType.getBaseType(ActivationFunctionBaseType.RELU), new ActivationFunctionProperties())
-				.withConvolutionalAxons("conv2d_115")
-				.withConnectionWeights(weightsLoader.getConvolutionalLayerWeights(
-						"conv2d_" + (115) + "_kernel0", 3, 3, 192, 192))
-				.withStride(2, 2).withFilterSize(3, 3).withFilterCount(192).withValidPadding()
-				.withAxonsContextConfigurer(
-						c -> c.withFreezeOut(withFreezeOut))
-				.withConnectionToNeurons(new Neurons3D(8, 8, 192, false)).withBatchNormAxons("batch_normalization_" + (115)).withBiasUnit()
-				.withBeta(weightsLoader.getBatchNormLayerBiases(
-						"batch_normalization_" + (115) + "_beta0", 192))
-				.withMean(weightsLoader.getBatchNormLayerMean(
-						"batch_normalization_" + (115) + "_moving_mean0", 192))
-				.withVariance(weightsLoader.getBatchNormLayerVariance(
-						"batch_normalization_" + (115) + "_moving_variance0", 192))
-				.withAxonsContextConfigurer(
-						c -> c.withFreezeOut(withFreezeOut))
-				.withConnectionToNeurons(new Neurons3D(8, 8, 192, false))
-				.withActivationFunction("relu_" + (115), ActivationFunctionType.getBaseType(ActivationFunctionBaseType.RELU), new ActivationFunctionProperties()).endPath().withPath()
-				.withConvolutionalAxons("conv2d_116")
-				.withConnectionWeights(weightsLoader.getConvolutionalLayerWeights(
-						"conv2d_" + (116) + "_kernel0", 1, 1, 1024, 256))
-				.withFilterSize(1, 1).withFilterCount(256).withSamePadding()
-				.withAxonsContextConfigurer(
-						c -> c.withFreezeOut(withFreezeOut))
-				.withConnectionToNeurons(new Neurons3D(17, 17, 256, false)).withBatchNormAxons("batch_normalization_" + (116)).withBiasUnit()
-				.withBeta(weightsLoader.getBatchNormLayerBiases(
-						"batch_normalization_" + (116) + "_beta0", 256))
-				.withMean(weightsLoader.getBatchNormLayerMean(
-						"batch_normalization_" + (116) + "_moving_mean0", 256))
-				.withVariance(weightsLoader.getBatchNormLayerVariance(
-						"batch_normalization_" + (116) + "_moving_variance0", 256))
-				.withAxonsContextConfigurer(
-						c -> c.withFreezeOut(withFreezeOut))
-				.withConnectionToNeurons(new Neurons3D(17, 17, 256, false))
-				.withActivationFunction("relu_" + (116), ActivationFunctionType.getBaseType(ActivationFunctionBaseType.RELU), new ActivationFunctionProperties())
-				.withConvolutionalAxons("conv2d_117")
-				.withConnectionWeights(weightsLoader.getConvolutionalLayerWeights(
-						"conv2d_" + (117) + "_kernel0", 7, 1, 256, 256))
-				.withFilterSize(7, 1).withFilterCount(256).withSamePadding()
-				.withAxonsContextConfigurer(
-						c -> c.withFreezeOut(withFreezeOut))
-				.withConnectionToNeurons(new Neurons3D(17, 17, 256, false)).withBatchNormAxons("batch_normalization_" + (117)).withBiasUnit()
-				.withBeta(weightsLoader.getBatchNormLayerBiases(
-						"batch_normalization_" + (117) + "_beta0", 256))
-				.withMean(weightsLoader.getBatchNormLayerMean(
-						"batch_normalization_" + (117) + "_moving_mean0", 256))
-				.withVariance(weightsLoader.getBatchNormLayerVariance(
-						"batch_normalization_" + (117) + "_moving_variance0", 256))
-				.withAxonsContextConfigurer(
-						c -> c.withFreezeOut(withFreezeOut))
-				.withConnectionToNeurons(new Neurons3D(17, 17, 256, false))
-				.withActivationFunction("relu_" + (117), ActivationFunctionType.getBaseType(ActivationFunctionBaseType.RELU), new ActivationFunctionProperties())
-				.withConvolutionalAxons("conv2d_118")
-				.withConnectionWeights(weightsLoader.getConvolutionalLayerWeights(
-						"conv2d_" + (118) + "_kernel0", 1, 7, 256, 320))
-				.withFilterSize(1, 7).withFilterCount(320).withSamePadding()
-				.withAxonsContextConfigurer(
-						c -> c.withFreezeOut(withFreezeOut))
-				.withConnectionToNeurons(new Neurons3D(17, 17, 320, false)).withBatchNormAxons("batch_normalization_" + (118)).withBiasUnit()
-				.withBeta(weightsLoader.getBatchNormLayerBiases(
-						"batch_normalization_" + (118) + "_beta0", 320))
-				.withMean(weightsLoader.getBatchNormLayerMean(
-						"batch_normalization_" + (118) + "_moving_mean0", 320))
-				.withVariance(weightsLoader.getBatchNormLayerVariance(
-						"batch_normalization_" + (118) + "_moving_variance0", 320))
-				.withAxonsContextConfigurer(
-						c -> c.withFreezeOut(withFreezeOut))
-				.withConnectionToNeurons(new Neurons3D(17, 17, 320, false))
-				.withActivationFunction("relu_" + (118), ActivationFunctionType.getBaseType(ActivationFunctionBaseType.RELU), new ActivationFunctionProperties())
-				.withConvolutionalAxons("conv2d_119")
-				.withConnectionWeights(weightsLoader.getConvolutionalLayerWeights(
-						"conv2d_" + (119) + "_kernel0", 3, 3, 320, 320))
-				.withStride(2, 2).withFilterSize(3, 3).withFilterCount(320).withValidPadding()
-				.withAxonsContextConfigurer(
-						c -> c.withFreezeOut(withFreezeOut))
-				.withConnectionToNeurons(new Neurons3D(8, 8, 320, false)).withBatchNormAxons("batch_normalization_" + (119)).withBiasUnit()
-				.withBeta(weightsLoader.getBatchNormLayerBiases(
-						"batch_normalization_" + (119) + "_beta0", 320))
-				.withMean(weightsLoader.getBatchNormLayerMean(
-						"batch_normalization_" + (119) + "_moving_mean0", 320))
-				.withVariance(weightsLoader.getBatchNormLayerVariance(
-						"batch_normalization_" + (119) + "_moving_variance0", 320))
-				.withAxonsContextConfigurer(
-						c -> c.withFreezeOut(withFreezeOut))
-				.withConnectionToNeurons(new Neurons3D(8, 8, 320, false))
-				.withActivationFunction("relu_normalization_" + (119), ActivationFunctionType.getBaseType(ActivationFunctionBaseType.RELU), new ActivationFunctionProperties()).endPath().withPath()
+				.withComponentDefinition(convolution(114, getInputNeurons(),
+						new Neurons3D(inputSize, inputSize, width.scale(192), false)).withFilterSize(1, 1).withSamePadding()
+						.withActivationName("relu_"))
+				.withComponentDefinition(convolution(115, new Neurons3D(inputSize, inputSize, width.scale(192), false),
+						new Neurons3D(outputSize, outputSize, width.scale(192), false)).withFilterSize(3, 3).withStride(2, 2).withValidPadding()).endPath().withPath()
+				.withComponentDefinition(convolution(116, getInputNeurons(),
+						new Neurons3D(inputSize, inputSize, width.scale(256), false)).withFilterSize(1, 1).withSamePadding())
+				.withComponentDefinition(convolution(117, new Neurons3D(inputSize, inputSize, width.scale(256), false),
+						new Neurons3D(inputSize, inputSize, width.scale(256), false)).withFilterSize(7, 1).withSamePadding())
+				.withComponentDefinition(convolution(118, new Neurons3D(inputSize, inputSize, width.scale(256), false),
+						new Neurons3D(inputSize, inputSize, width.scale(320), false)).withFilterSize(1, 7).withSamePadding())
+				.withComponentDefinition(convolution(119, new Neurons3D(inputSize, inputSize, width.scale(320), false),
+						new Neurons3D(outputSize, outputSize, width.scale(320), false)).withFilterSize(3, 3).withStride(2, 2).withValidPadding()
+						.withActivationName("relu_normalization_119")).endPath().withPath()
 				.withMaxPoolingAxons("max_pooling_4").withFilterSize(3, 3).withStride(2, 2).withValidPadding()
-				.withConnectionToNeurons(new Neurons3D(8, 8, 1024, false)).endPath()
+				.withConnectionToNeurons(new Neurons3D(outputSize, outputSize, width.scale(1024), false)).endPath()
 				.endParallelPaths("reduction_b_concat_0", PathCombinationStrategy.FILTER_CONCAT);
 	}
 	
+	private InceptionV4ConvolutionDefinition convolution(int index, Neurons3D inputNeurons, Neurons3D outputNeurons) {
+		return new InceptionV4ConvolutionDefinition(weightsLoader, index, inputNeurons, outputNeurons)
+				.withBatchNormFolding(batchNormFolding).withFusedConvolutions(fusedConvolutions)
+				.withBuildProfile(buildProfile).withFreezeOut(withFreezeOut);
+	}
+
 	@Override
 	public String getName() {
 		return "reduction_b";
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.architectures.mobilenet;
+
+import org.ml4j.nn.components.NeuralComponent;
+import org.ml4j.nn.components.NeuralComponentBaseType;
+import org.ml4j.nn.components.NeuralComponentType;
+import org.ml4j.nn.components.factories.NeuralComponentFactory;
+import org.ml4j.nn.neurons.Neurons3D;
+
+/**
+ * A NeuralComponentFactory which can also create depthwise convolution components - convolutions in which each
+ * channel of the input is convolved with its own single filter, so the output has the same depth as the input.
+ *
+ * Definitions with depthwise convolutions must be created with such a factory, as a component created by
+ * NeuralComponentFactory.createComponent would have none of the weights, stride or padding of the convolution -
+ * they fail rather than silently creating such a component.
+ *
+ * @author Michael Lavelle
+ *
+ * @param <T> The type of NeuralComponent created by this factory.
+ */
+public interface DepthwiseConvolutionComponentFactory<T extends NeuralComponent<?>> extends NeuralComponentFactory<T> {
+
+	/**
+	 * The type of the depthwise convolution components.
+	 */
+	NeuralComponentType DEPTHWISE_CONVOLUTION
+		= NeuralComponentType.createSubType(NeuralComponentBaseType.AXONS, "DEPTHWISE_CONVOLUTION");
+
+	/**
+	 * @param name The name of the component - the name of the depthwise convolutional layer.
+	 * @param inputNeurons The input neurons of the convolution.
+	 * @param outputNeurons The output neurons of the convolution, with the same depth as the input neurons.
+	 * @param config The weights, filter size, stride and padding of the convolution.
+	 * @return A component of type DEPTHWISE_CONVOLUTION.
+	 */
+	T createDepthwiseConvolutionComponent(String name, Neurons3D inputNeurons, Neurons3D outputNeurons,
+			DepthwiseConvolutionConfig config);
+
+	/**
+	 * @param neuralComponentFactory The factory a definition with depthwise convolutions is created with.
+	 * @return The factory, as a DepthwiseConvolutionComponentFactory.
+	 * @throws IllegalArgumentException If the factory cannot create depthwise convolution components.
+	 */
+	@SuppressWarnings("unchecked")
+	static <T extends NeuralComponent<?>> DepthwiseConvolutionComponentFactory<T>
+			getDepthwiseConvolutionComponentFactory(NeuralComponentFactory<T> neuralComponentFactory) {
+		if (!(neuralComponentFactory instanceof DepthwiseConvolutionComponentFactory)) {
+			throw new IllegalArgumentException("Depthwise convolutions require a DepthwiseConvolutionComponentFactory, "
+					+ "but the graph is being created with " + neuralComponentFactory.getClass().getName());
+		}
+		return (DepthwiseConvolutionComponentFactory<T>) neuralComponentFactory;
+	}
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.architectures.mobilenet;
+
+import java.io.Serializable;
+
+import org.ml4j.nn.axons.WeightsMatrix;
+
+/**
+ * The parameters of a depthwise convolution component.
+ *
+ * The weights have one row per channel, each row holding the filterHeight x filterWidth filter of that channel
+ * in row-major order.
+ *
+ * @author Michael Lavelle
+ */
+public class DepthwiseConvolutionConfig implements Serializable {
+
+	/**
+	 * Default serialization id.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	private int filterWidth;
+	private int filterHeight;
+	private int strideWidth;
+	private int strideHeight;
+	private int paddingTop;
+	private int paddingBottom;
+	private int paddingLeft;
+	private int paddingRight;
+	private WeightsMatrix weights;
+
+	public DepthwiseConvolutionConfig(WeightsMatrix weights, int filterWidth, int filterHeight) {
+		this.weights = weights;
+		this.filterWidth = filterWidth;
+		this.filterHeight = filterHeight;
+		this.strideWidth = 1;
+		this.strideHeight = 1;
+	}
+
+	public DepthwiseConvolutionConfig withStride(int strideWidth, int strideHeight) {
+		this.strideWidth = strideWidth;
+		this.strideHeight = strideHeight;
+		return this;
+	}
+
+	/**
+	 * @param paddingWidth The zero padding to the left and to the right of the input.
+	 * @param paddingHeight The zero padding above and below the input.
+	 * @return This config.
+	 */
+	public DepthwiseConvolutionConfig withPadding(int paddingWidth, int paddingHeight) {
+		return withPadding(paddingHeight, paddingHeight, paddingWidth, paddingWidth);
+	}
+
+	/**
+	 * Asymmetric padding, eg. the bottom and right only padding of the stride 2 convolutions of Keras.
+	 * 
+	 * @param paddingTop The zero padding above the input.
+	 * @param paddingBottom The zero padding below the input.
+	 * @param paddingLeft The zero padding to the left of the input.
+	 * @param paddingRight The zero padding to the right of the input.
+	 * @return This config.
+	 */
+	public DepthwiseConvolutionConfig withPadding(int paddingTop, int paddingBottom, int paddingLeft,
+			int paddingRight) {
+		this.paddingTop = paddingTop;
+		this.paddingBottom = paddingBottom;
+		this.paddingLeft = paddingLeft;
+		this.paddingRight = paddingRight;
+		return this;
+	}
+
+	public WeightsMatrix getWeights() {
+		return weights;
+	}
+
+	public int getFilterWidth() {
+		return filterWidth;
+	}
+
+	public int getFilterHeight() {
+		return filterHeight;
+	}
+
+	public int getStrideWidth() {
+		return strideWidth;
+	}
+
+	public int getStrideHeight() {
+		return strideHeight;
+	}
+
+	public int getPaddingTop() {
+		return paddingTop;
+	}
+
+	public int getPaddingBottom() {
+		return paddingBottom;
+	}
+
+	public int getPaddingLeft() {
+		return paddingLeft;
+	}
+
+	public int getPaddingRight() {
+		return paddingRight;
+	}
+}
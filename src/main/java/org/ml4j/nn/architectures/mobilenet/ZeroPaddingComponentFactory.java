@@ -0,0 +1,72 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.architectures.mobilenet;
+
+import org.ml4j.nn.components.NeuralComponent;
+import org.ml4j.nn.components.NeuralComponentBaseType;
+import org.ml4j.nn.components.NeuralComponentType;
+import org.ml4j.nn.components.factories.NeuralComponentFactory;
+import org.ml4j.nn.neurons.Neurons3D;
+
+/**
+ * A NeuralComponentFactory which can also create zero padding components - components which surround their input
+ * with rows and columns of zeros, which may differ on each side.
+ * 
+ * The convolutional axons only pad their inputs symmetrically, so a convolution padded as in Keras, where a stride 2
+ * convolution pads the bottom and right of its input only, is created as a zero padding component followed by a
+ * convolution with valid padding - as the Keras MobileNet model does with its "conv1_pad" layer.
+ * 
+ * @author Michael Lavelle
+ *
+ * @param <T> The type of NeuralComponent created by this factory.
+ */
+public interface ZeroPaddingComponentFactory<T extends NeuralComponent<?>> extends NeuralComponentFactory<T> {
+
+	/**
+	 * The type of the zero padding components.
+	 */
+	NeuralComponentType ZERO_PADDING = NeuralComponentType.createSubType(NeuralComponentBaseType.AXONS,
+			"ZERO_PADDING");
+
+	/**
+	 * @param name The name of the component.
+	 * @param inputNeurons The input neurons of the component.
+	 * @param outputNeurons The output neurons of the component - of the width and height of the padded input, and
+	 *            the depth of the input.
+	 * @param paddingTop The rows of zeros above the input.
+	 * @param paddingBottom The rows of zeros below the input.
+	 * @param paddingLeft The columns of zeros to the left of the input.
+	 * @param paddingRight The columns of zeros to the right of the input.
+	 * @return A component of type ZERO_PADDING.
+	 */
+	T createZeroPaddingComponent(String name, Neurons3D inputNeurons, Neurons3D outputNeurons, int paddingTop,
+			int paddingBottom, int paddingLeft, int paddingRight);
+
+	/**
+	 * @param neuralComponentFactory The factory a definition with zero padding components is created with.
+	 * @return The factory, as a ZeroPaddingComponentFactory.
+	 * @throws IllegalArgumentException If the factory cannot create zero padding components.
+	 */
+	@SuppressWarnings("unchecked")
+	static <T extends NeuralComponent<?>> ZeroPaddingComponentFactory<T> getZeroPaddingComponentFactory(
+			NeuralComponentFactory<T> neuralComponentFactory) {
+		if (!(neuralComponentFactory instanceof ZeroPaddingComponentFactory)) {
+			throw new IllegalArgumentException("Zero padding requires a ZeroPaddingComponentFactory, but the graph is "
+					+ "being created with " + neuralComponentFactory.getClass().getName());
+		}
+		return (ZeroPaddingComponentFactory<T>) neuralComponentFactory;
+	}
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.architectures.mobilenet.mobilenetv1;
+
+import org.ml4j.nn.activationfunctions.ActivationFunctionBaseType;
+import org.ml4j.nn.activationfunctions.ActivationFunctionProperties;
+import org.ml4j.nn.activationfunctions.ActivationFunctionType;
+import org.ml4j.nn.architectures.BuildProfile;
+import org.ml4j.nn.architectures.mobilenet.ZeroPaddingComponentFactory;
+import org.ml4j.nn.components.NeuralComponent;
+import org.ml4j.nn.components.builders.componentsgraph.InitialComponents3DGraphBuilder;
+import org.ml4j.nn.components.builders.componentsgraph.InitialComponentsGraphBuilder;
+import org.ml4j.nn.components.factories.NeuralComponentFactory;
+import org.ml4j.nn.definitions.Component3DtoNon3DGraphDefinition;
+import org.ml4j.nn.neurons.Neurons;
+import org.ml4j.nn.neurons.Neurons3D;
+
+/**
+ * MobileNet V1 - an ImageNet classifier built from a standard 3x3 convolution followed by 13 depthwise separable
+ * convolution blocks, a global average pool and a dense softmax layer, at around 5% of the multiply-adds of
+ * Inception V4.
+ *
+ * The weights are requested with the layer names and shapes of the Keras MobileNet model (eg. "conv1_kernel0",
+ * "conv_dw_1_depthwise_kernel0", "conv_pw_1_bn_gamma0"), including the 1x1 convolutional kernel of the final
+ * "conv_preds" layer - which over the 1x1 output of the global average pool is created as fully connected axons.
+ * The activations are RELU6 activations, and every stride 2 convolution pads the bottom and right of its input
+ * only, as in Keras. The stride 2 depthwise convolutions are configured with this asymmetric padding, while the
+ * initial stride 2 convolution - as the convolutional axons only pad symmetrically - is preceded by the
+ * "conv1_pad" zero padding component of the Keras model and has valid padding.
+ *
+ * The depthwise convolutions and the zero padding are created as components of type
+ * DepthwiseConvolutionComponentFactory.DEPTHWISE_CONVOLUTION and ZeroPaddingComponentFactory.ZERO_PADDING, so the
+ * definition must be created with a factory implementing both interfaces.
+ *
+ * @author Michael Lavelle
+ */
+public class MobileNetV1Definition implements Component3DtoNon3DGraphDefinition {
+
+	/**
+	 * Default serialization id.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * A RELU activation whose outputs are clipped at 6.
+	 */
+	public static final ActivationFunctionType RELU6_ACTIVATION_FUNCTION_TYPE
+		= ActivationFunctionType.createSubType(ActivationFunctionBaseType.RELU, "RELU6");
+
+	/**
+	 * The number of ImageNet classes of the Keras MobileNet model.
+	 */
+	public static final int CLASSES = 1000;
+
+	public static final int DEFAULT_INPUT_SIZE = 224;
+
+	/**
+	 * The ratio of the input size to the size of the final feature map.
+	 */
+	public static final int STRIDE = 32;
+
+	/**
+	 * The output depth and the stride of the depthwise convolution of each of the 13 blocks.
+	 */
+	private static final int[][] BLOCKS = { { 64, 1 }, { 128, 2 }, { 128, 1 }, { 256, 2 }, { 256, 1 }, { 512, 2 },
+			{ 512, 1 }, { 512, 1 }, { 512, 1 }, { 512, 1 }, { 512, 1 }, { 1024, 2 }, { 1024, 1 } };
+
+	private MobileNetV1WeightsLoader weightsLoader;
+	private int inputSize;
+	private BuildProfile buildProfile;
+
+	public MobileNetV1Definition(MobileNetV1WeightsLoader weightsLoader) {
+		this(weightsLoader, DEFAULT_INPUT_SIZE);
+	}
+
+	/**
+	 * @param weightsLoader The weights loader - the same weights are used at every input size.
+	 * @param inputSize The width and height of the input images - any multiple of 32, eg. 128, 160, 192 or 224.
+	 */
+	public MobileNetV1Definition(MobileNetV1WeightsLoader weightsLoader, int inputSize) {
+		if (inputSize <= 0 || inputSize % STRIDE != 0) {
+			throw new IllegalArgumentException("Input size must be a positive multiple of " + STRIDE
+					+ " but was " + inputSize);
+		}
+		this.weightsLoader = weightsLoader;
+		this.inputSize = inputSize;
+		this.buildProfile = BuildProfile.TRAINING;
+	}
+
+	@Override
+	public Neurons3D getInputNeurons() {
+		return new Neurons3D(inputSize, inputSize, 3, false);
+	}
+
+	@Override
+	public Neurons getOutputNeurons() {
+		return new Neurons(CLASSES, false);
+	}
+
+	public int getInputSize() {
+		return inputSize;
+	}
+
+	/**
+	 * @param buildProfile Whether to configure the components for training, or for inference only in which case
+	 * all axons are frozen out.
+	 */
+	public void setBuildProfile(BuildProfile buildProfile) {
+		this.buildProfile = buildProfile;
+	}
+
+	@Override
+	public <T extends NeuralComponent<?>> InitialComponentsGraphBuilder<T> createComponentGraph(
+			InitialComponents3DGraphBuilder<T> start, NeuralComponentFactory<T> neuralComponentFactory) {
+
+		int size = inputSize / 2;
+		Neurons3D neurons = new Neurons3D(size, size, 32, false);
+
+		// As in Keras, the stride 2 conv1 pads the bottom and right of its input only
+		Neurons3D paddedInputNeurons = new Neurons3D(inputSize + 1, inputSize + 1, 3, false);
+		T zeroPaddingComponent = ZeroPaddingComponentFactory.getZeroPaddingComponentFactory(neuralComponentFactory)
+				.createZeroPaddingComponent("conv1_pad", getInputNeurons(), paddedInputNeurons, 0, 1, 0, 1);
+
+		InitialComponents3DGraphBuilder<T> builder = start
+				.with3DComponent(zeroPaddingComponent, paddedInputNeurons)
+				// conv1
+				.withConvolutionalAxons("conv1")
+				.withFilterSize(3, 3)
+				.withFilterCount(32)
+				.withStride(2, 2)
+				.withConnectionWeights(weightsLoader.getConvolutionalLayerWeights("conv1_kernel0", 3, 3, 3, 32))
+				.withValidPadding()
+				.withAxonsContextConfigurer(c -> c.withFreezeOut(buildProfile == BuildProfile.INFERENCE))
+				.withConnectionToNeurons(neurons)
+				.withBatchNormAxons("conv1_bn")
+				.withMean(weightsLoader.getBatchNormLayerMovingMean("conv1_bn_moving_mean0", 32))
+				.withVariance(weightsLoader.getBatchNormLayerMovingVariance("conv1_bn_moving_variance0", 32))
+				.withGamma(weightsLoader.getBatchNormLayerGamma("conv1_bn_gamma0", 32))
+				.withBeta(weightsLoader.getBatchNormLayerBeta("conv1_bn_beta0", 32))
+				.withAxonsContextConfigurer(c -> c.withFreezeOut(buildProfile == BuildProfile.INFERENCE))
+				.withConnectionToNeurons(neurons)
+				.withActivationFunction("conv1_relu", RELU6_ACTIVATION_FUNCTION_TYPE, new ActivationFunctionProperties());
+
+		// conv_dw_1 / conv_pw_1 to conv_dw_13 / conv_pw_13
+		for (int i = 0; i < BLOCKS.length; i++) {
+			int stride = BLOCKS[i][1];
+			size = size / stride;
+			Neurons3D outputNeurons = new Neurons3D(size, size, BLOCKS[i][0], false);
+			builder = builder.withComponentDefinition(new MobileNetV1DepthwiseSeparableDefinition(weightsLoader,
+					i + 1, neurons, outputNeurons, stride).withBuildProfile(buildProfile));
+			neurons = outputNeurons;
+		}
+
+		return builder
+				.withAveragePoolingAxons("global_average_pooling2d_1")
+					.withStride(1, 1).withFilterSize(size, size).withValidPadding()
+					.withConnectionToNeurons(new Neurons3D(1, 1, 1024, false))
+				.withFullyConnectedAxons("conv_preds")
+					.withConnectionWeights(weightsLoader.getConvolutionalLayerWeights("conv_preds_kernel0", 1, 1, 1024,
+							CLASSES))
+					.withBiasUnit()
+					.withBiases(weightsLoader.getConvolutionalLayerBiases("conv_preds_bias0", CLASSES))
+					.withAxonsContextConfigurer(c -> c.withFreezeOut(buildProfile == BuildProfile.INFERENCE))
+				.withConnectionToNeurons(getOutputNeurons())
+				.withActivationFunction("act_softmax", ActivationFunctionType.getBaseType(ActivationFunctionBaseType.SOFTMAX),
+						new ActivationFunctionProperties());
+	}
+
+	@Override
+	public String getName() {
+		return "mobilenet_v1_graph";
+	}
+}
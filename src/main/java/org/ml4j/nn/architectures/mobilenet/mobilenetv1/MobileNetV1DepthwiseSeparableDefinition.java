@@ -0,0 +1,152 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.architectures.mobilenet.mobilenetv1;
+
+import java.util.function.Consumer;
+
+import org.ml4j.nn.activationfunctions.ActivationFunctionProperties;
+import org.ml4j.nn.architectures.BuildProfile;
+import org.ml4j.nn.architectures.mobilenet.DepthwiseConvolutionComponentFactory;
+import org.ml4j.nn.architectures.mobilenet.DepthwiseConvolutionConfig;
+import org.ml4j.nn.axons.AxonsContextConfig;
+import org.ml4j.nn.components.NeuralComponent;
+import org.ml4j.nn.components.builders.componentsgraph.InitialComponents3DGraphBuilder;
+import org.ml4j.nn.components.factories.NeuralComponentFactory;
+import org.ml4j.nn.definitions.Component3Dto3DGraphDefinition;
+import org.ml4j.nn.neurons.Neurons3D;
+
+/**
+ * A depthwise separable convolution block of MobileNet V1 - a 3x3 depthwise convolution followed by batch norm
+ * axons and a RELU6 activation, then a 1x1 pointwise convolution followed by batch norm axons and a RELU6
+ * activation, whose weights are named by the index of the block (eg. "conv_dw_3_depthwise_kernel0",
+ * "conv_pw_3_kernel0", "conv_pw_3_bn_gamma0").
+ *
+ * @author Michael Lavelle
+ */
+public class MobileNetV1DepthwiseSeparableDefinition implements Component3Dto3DGraphDefinition {
+
+	/**
+	 * Default serialization id.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	private MobileNetV1WeightsLoader weightsLoader;
+	private int index;
+	private Neurons3D inputNeurons;
+	private Neurons3D outputNeurons;
+	private int stride;
+	private BuildProfile buildProfile;
+
+	/**
+	 * @param weightsLoader The weights loader.
+	 * @param index The index of the block, from 1 to 13.
+	 * @param inputNeurons The input neurons of the depthwise convolution.
+	 * @param outputNeurons The output neurons of the pointwise convolution.
+	 * @param stride The stride of the depthwise convolution - 1, or 2 to halve the spatial size.
+	 */
+	public MobileNetV1DepthwiseSeparableDefinition(MobileNetV1WeightsLoader weightsLoader, int index,
+			Neurons3D inputNeurons, Neurons3D outputNeurons, int stride) {
+		this.weightsLoader = weightsLoader;
+		this.index = index;
+		this.inputNeurons = inputNeurons;
+		this.outputNeurons = outputNeurons;
+		this.stride = stride;
+		this.buildProfile = BuildProfile.TRAINING;
+	}
+
+	public MobileNetV1DepthwiseSeparableDefinition withBuildProfile(BuildProfile buildProfile) {
+		this.buildProfile = buildProfile;
+		return this;
+	}
+
+	@Override
+	public Neurons3D getInputNeurons() {
+		return inputNeurons;
+	}
+
+	@Override
+	public Neurons3D getOutputNeurons() {
+		return outputNeurons;
+	}
+
+	@Override
+	public <T extends NeuralComponent<?>> InitialComponents3DGraphBuilder<T> createComponentGraph(
+			InitialComponents3DGraphBuilder<T> start, NeuralComponentFactory<T> neuralComponentFactory) {
+		String depthwiseName = "conv_dw_" + index;
+		String pointwiseName = "conv_pw_" + index;
+		int inputDepth = inputNeurons.getDepth();
+		int outputDepth = outputNeurons.getDepth();
+		Neurons3D depthwiseOutputNeurons = new Neurons3D(outputNeurons.getWidth(), outputNeurons.getHeight(),
+				inputDepth, false);
+
+		// Fail before any weights are loaded if the factory cannot create the depthwise convolution
+		DepthwiseConvolutionComponentFactory<T> depthwiseComponentFactory = DepthwiseConvolutionComponentFactory
+				.getDepthwiseConvolutionComponentFactory(neuralComponentFactory);
+
+		// As in Keras, a stride 2 depthwise convolution pads the bottom and right of its input only
+		DepthwiseConvolutionConfig depthwiseConvolutionConfig = new DepthwiseConvolutionConfig(
+				weightsLoader.getDepthwiseConvolutionalLayerWeights(depthwiseName + "_depthwise_kernel0", 3, 3,
+						inputDepth), 3, 3).withStride(stride, stride);
+		if (stride == 1) {
+			depthwiseConvolutionConfig.withPadding(1, 1);
+		} else {
+			depthwiseConvolutionConfig.withPadding(0, 1, 0, 1);
+		}
+
+		T depthwiseComponent = depthwiseComponentFactory.createDepthwiseConvolutionComponent(depthwiseName,
+				inputNeurons, depthwiseOutputNeurons, depthwiseConvolutionConfig);
+
+		return start
+				.with3DComponent(depthwiseComponent, depthwiseOutputNeurons)
+				.withBatchNormAxons(depthwiseName + "_bn")
+				.withMean(weightsLoader.getBatchNormLayerMovingMean(depthwiseName + "_bn_moving_mean0", inputDepth))
+				.withVariance(weightsLoader.getBatchNormLayerMovingVariance(depthwiseName + "_bn_moving_variance0",
+						inputDepth))
+				.withGamma(weightsLoader.getBatchNormLayerGamma(depthwiseName + "_bn_gamma0", inputDepth))
+				.withBeta(weightsLoader.getBatchNormLayerBeta(depthwiseName + "_bn_beta0", inputDepth))
+				.withAxonsContextConfigurer(axonsContextConfigurer())
+				.withConnectionToNeurons(depthwiseOutputNeurons)
+				.withActivationFunction(depthwiseName + "_relu", MobileNetV1Definition.RELU6_ACTIVATION_FUNCTION_TYPE,
+						new ActivationFunctionProperties())
+				.withConvolutionalAxons(pointwiseName)
+				.withFilterSize(1, 1)
+				.withFilterCount(outputDepth)
+				.withConnectionWeights(weightsLoader.getConvolutionalLayerWeights(pointwiseName + "_kernel0", 1, 1,
+						inputDepth, outputDepth))
+				.withSamePadding()
+				.withAxonsContextConfigurer(axonsContextConfigurer())
+				.withConnectionToNeurons(outputNeurons)
+				.withBatchNormAxons(pointwiseName + "_bn")
+				.withMean(weightsLoader.getBatchNormLayerMovingMean(pointwiseName + "_bn_moving_mean0", outputDepth))
+				.withVariance(weightsLoader.getBatchNormLayerMovingVariance(pointwiseName + "_bn_moving_variance0",
+						outputDepth))
+				.withGamma(weightsLoader.getBatchNormLayerGamma(pointwiseName + "_bn_gamma0", outputDepth))
+				.withBeta(weightsLoader.getBatchNormLayerBeta(pointwiseName + "_bn_beta0", outputDepth))
+				.withAxonsContextConfigurer(axonsContextConfigurer())
+				.withConnectionToNeurons(outputNeurons)
+				.withActivationFunction(pointwiseName + "_relu", MobileNetV1Definition.RELU6_ACTIVATION_FUNCTION_TYPE,
+						new ActivationFunctionProperties());
+	}
+
+	private Consumer<AxonsContextConfig> axonsContextConfigurer() {
+		return c -> c.withFreezeOut(buildProfile == BuildProfile.INFERENCE);
+	}
+
+	@Override
+	public String getName() {
+		return "conv_dw_pw_" + index;
+	}
+}
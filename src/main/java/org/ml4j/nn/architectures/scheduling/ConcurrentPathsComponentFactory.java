@@ -0,0 +1,91 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.architectures.scheduling;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.ml4j.nn.components.NeuralComponent;
+import org.ml4j.nn.components.factories.NeuralComponentFactory;
+import org.ml4j.nn.components.manytoone.PathCombinationStrategy;
+import org.ml4j.nn.neurons.Neurons;
+
+/**
+ * A NeuralComponentFactory whose bipole graphs run their parallel paths concurrently, each bipole graph with
+ * its own PathScheduler.
+ *
+ * The parallel paths of the Inception modules and of the YOLO v2 passthrough are created through
+ * createDirectedComponentBipoleGraph, so a factory implementing this interface runs the paths of every such
+ * module concurrently without any change to the definitions.  Implementations create bipole graphs whose
+ * forward propagation runs each path through PathScheduler.invokeAll before combining the path outputs - such as
+ * the bipole graphs of SchedulingComponentFactory, which decorates those of any other factory.
+ *
+ * @author Michael Lavelle
+ *
+ * @param <T> The type of NeuralComponent created by this factory.
+ */
+public interface ConcurrentPathsComponentFactory<T extends NeuralComponent<?>> extends NeuralComponentFactory<T> {
+
+	/**
+	 * @param name The name of the bipole graph.
+	 * @param inputNeurons The input neurons of each path.
+	 * @param outputNeurons The output neurons of the combined paths.
+	 * @param parallelComponents The paths.
+	 * @param pathCombinationStrategy How the outputs of the paths are combined.
+	 * @param pathScheduler The scheduler with which the paths are run, with one path for each parallel component.
+	 * @return A bipole graph running its paths with the scheduler.
+	 */
+	T createDirectedComponentBipoleGraph(String name, Neurons inputNeurons, Neurons outputNeurons,
+			List<T> parallelComponents, PathCombinationStrategy pathCombinationStrategy, PathScheduler pathScheduler);
+
+	/**
+	 * @return The pool on which the paths of the bipole graphs are run - by default the common pool.
+	 */
+	default ForkJoinPool getPathPool() {
+		return ForkJoinPool.commonPool();
+	}
+
+	/**
+	 * @param path A path of a bipole graph.
+	 * @return An estimate of the relative cost of the path, used to order the paths until each has been measured -
+	 *         by default the multiply-adds of a fully connected layer between the input and output neurons of the
+	 *         path, which orders the paths by the size of their output.
+	 */
+	default long estimatePathCost(T path) {
+		return (long) path.getInputNeurons().getNeuronCountExcludingBias()
+				* path.getOutputNeurons().getNeuronCountExcludingBias();
+	}
+
+	/**
+	 * @param parallelComponents The paths of a bipole graph.
+	 * @return A scheduler for the paths, on the path pool, ordering the paths by their estimated cost until each has
+	 *         been measured.
+	 */
+	default PathScheduler createPathScheduler(List<T> parallelComponents) {
+		long[] estimatedPathCosts = new long[parallelComponents.size()];
+		for (int i = 0; i < estimatedPathCosts.length; i++) {
+			estimatedPathCosts[i] = estimatePathCost(parallelComponents.get(i));
+		}
+		return new PathScheduler(estimatedPathCosts, getPathPool());
+	}
+
+	@Override
+	default T createDirectedComponentBipoleGraph(String name, Neurons inputNeurons, Neurons outputNeurons,
+			List<T> parallelComponents, PathCombinationStrategy pathCombinationStrategy) {
+		return createDirectedComponentBipoleGraph(name, inputNeurons, outputNeurons, parallelComponents,
+				pathCombinationStrategy, createPathScheduler(parallelComponents));
+	}
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.architectures.scheduling;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+/**
+ * Runs the parallel paths of a bipole graph concurrently on a work-stealing ForkJoinPool, critical path first.
+ *
+ * The paths of a bipole graph are independent until they are combined, so the graph takes as long as its most
+ * costly path - the critical path.  The scheduler runs the critical path on the calling thread, and forks the
+ * other paths in order of decreasing cost, so that idle workers steal the most costly remaining path first.
+ *
+ * The cost of each path is the moving average of its measured duration in nanoseconds, so the schedule adapts to
+ * the actual cost of each path on the hardware.  Until every path has been measured the paths are ordered by an
+ * optional estimate of their relative cost instead, such as the multiply-adds of each path - the estimates and
+ * the measured durations are in different units, so they are never compared with each other.  The results are
+ * always returned in the order of the paths, so the combination of the paths - eg. a filter concatenation - is
+ * unaffected.
+ *
+ * @author Michael Lavelle
+ */
+public class PathScheduler implements Serializable {
+
+	/**
+	 * Default serialization id.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The weight given to the latest measured duration of a path in its moving average cost.
+	 */
+	private static final double SMOOTHING = 0.25d;
+
+	private long[] estimatedPathCosts;
+	private AtomicLongArray pathCosts;
+	private AtomicIntegerArray measured;
+	private AtomicInteger measuredPathCount;
+	private transient ForkJoinPool pool;
+
+	/**
+	 * @param pathCount The number of paths.
+	 */
+	public PathScheduler(int pathCount) {
+		this(new long[pathCount], ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * @param estimatedPathCosts An estimate of the relative cost of each path, by which the paths are ordered until
+	 *            every path has been measured.
+	 * @param pool The pool on which the paths are run.
+	 */
+	public PathScheduler(long[] estimatedPathCosts, ForkJoinPool pool) {
+		this.estimatedPathCosts = estimatedPathCosts.clone();
+		this.pathCosts = new AtomicLongArray(estimatedPathCosts.length);
+		this.measured = new AtomicIntegerArray(estimatedPathCosts.length);
+		this.measuredPathCount = new AtomicInteger();
+		this.pool = pool;
+	}
+
+	public int getPathCount() {
+		return pathCosts.length();
+	}
+
+	/**
+	 * @return Whether every path has been measured, so that the paths are ordered by their measured cost.
+	 */
+	public boolean isMeasured() {
+		return measuredPathCount.get() == pathCosts.length();
+	}
+
+	/**
+	 * @return The current cost of each path - the estimated costs until every path has been measured, and the
+	 *         moving average of the measured duration of each path in nanoseconds from then on.
+	 */
+	public long[] getPathCosts() {
+		if (!isMeasured()) {
+			return estimatedPathCosts.clone();
+		}
+		long[] costs = new long[pathCosts.length()];
+		for (int i = 0; i < costs.length; i++) {
+			costs[i] = pathCosts.get(i);
+		}
+		return costs;
+	}
+
+	/**
+	 * @return The indexes of the paths in the order in which they are started - the critical path first.
+	 */
+	public int[] getExecutionOrder() {
+		long[] costs = getPathCosts();
+		List<Integer> order = new ArrayList<>();
+		for (int i = 0; i < costs.length; i++) {
+			order.add(i);
+		}
+		// Ties are broken by path index, so the order is stable
+		Collections.sort(order, (i, j) -> costs[i] != costs[j] ? Long.compare(costs[j], costs[i]) : Integer.compare(i, j));
+		return order.stream().mapToInt(Integer::intValue).toArray();
+	}
+
+	/**
+	 * @return The index of the path currently estimated to be the most costly.
+	 */
+	public int getCriticalPathIndex() {
+		return getExecutionOrder()[0];
+	}
+
+	/**
+	 * Run each path, concurrently when the pool has more than one worker.
+	 *
+	 * @param paths The paths - one for each path of this scheduler.
+	 * @return The result of each path, in the order of the paths.
+	 */
+	public <R> List<R> invokeAll(List<? extends Supplier<? extends R>> paths) {
+		if (paths.size() != pathCosts.length()) {
+			throw new IllegalArgumentException("Expected " + pathCosts.length() + " paths but was given " + paths.size());
+		}
+		Object[] results = new Object[paths.size()];
+		int[] order = getExecutionOrder();
+		if (paths.size() == 1 || getPool().getParallelism() == 1) {
+			for (int index : order) {
+				results[index] = run(index, paths.get(index));
+			}
+		} else {
+			boolean inPool = ForkJoinTask.inForkJoinPool() && ForkJoinTask.getPool() == getPool();
+			List<ForkJoinTask<Object>> forked = new ArrayList<>();
+			// Once a path has failed, the forked paths which have not yet started are skipped
+			AtomicBoolean failed = new AtomicBoolean();
+			for (int i = 1; i < order.length; i++) {
+				int index = order[i];
+				ForkJoinTask<Object> task = ForkJoinTask.adapt(() -> failed.get() ? null : run(index, paths.get(index)));
+				forked.add(inPool ? task.fork() : getPool().submit(task));
+			}
+			Throwable failure = null;
+			try {
+				results[order[0]] = run(order[0], paths.get(order[0]));
+			} catch (RuntimeException | Error e) {
+				failure = e;
+				failed.set(true);
+			}
+			// Join the least costly paths first, which this thread is most likely to be able to run itself
+			for (int i = forked.size() - 1; i >= 0; i--) {
+				ForkJoinTask<Object> task = forked.get(i);
+				if (failure == null) {
+					try {
+						results[order[i + 1]] = task.join();
+					} catch (RuntimeException | Error e) {
+						failure = e;
+						failed.set(true);
+					}
+				} else {
+					// The paths which have already started are waited for, so that no path is still running once
+					// the failure is rethrown
+					task.quietlyJoin();
+				}
+			}
+			if (failure instanceof Error) {
+				throw (Error) failure;
+			} else if (failure != null) {
+				throw (RuntimeException) failure;
+			}
+		}
+		@SuppressWarnings("unchecked")
+		List<R> orderedResults = (List<R>) Arrays.asList(results);
+		return orderedResults;
+	}
+
+	private Object run(int index, Supplier<?> path) {
+		long start = System.nanoTime();
+		Object result = path.get();
+		long duration = System.nanoTime() - start;
+		if (measured.getAndSet(index, 1) == 0) {
+			pathCosts.set(index, duration);
+			measuredPathCount.incrementAndGet();
+		} else {
+			long cost = pathCosts.get(index);
+			pathCosts.set(index, (long) (cost + SMOOTHING * (duration - cost)));
+		}
+		return result;
+	}
+
+	private ForkJoinPool getPool() {
+		// Pools are not serialized, so a deserialized scheduler runs on the common pool
+		return pool == null ? ForkJoinPool.commonPool() : pool;
+	}
+
+	@Override
+	public String toString() {
+		return "PathScheduler [pathCosts=" + Arrays.toString(getPathCosts()) + ", criticalPathIndex="
+				+ getCriticalPathIndex() + "]";
+	}
+}
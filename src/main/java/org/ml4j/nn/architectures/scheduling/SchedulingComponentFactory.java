@@ -0,0 +1,497 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.architectures.scheduling;
+
+import java.io.Serializable;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
+import org.ml4j.nn.activationfunctions.ActivationFunctionProperties;
+import org.ml4j.nn.activationfunctions.ActivationFunctionType;
+import org.ml4j.nn.activationfunctions.DifferentiableActivationFunction;
+import org.ml4j.nn.architectures.concat.FilterConcatBuffer;
+import org.ml4j.nn.architectures.concat.InPlaceConcatComponentFactory;
+import org.ml4j.nn.architectures.fusion.ChannelSliceComponentFactory;
+import org.ml4j.nn.architectures.fusion.ConvolutionBatchNormActivationConfig;
+import org.ml4j.nn.architectures.fusion.FusedComponentFactory;
+import org.ml4j.nn.architectures.mobilenet.DepthwiseConvolutionComponentFactory;
+import org.ml4j.nn.architectures.mobilenet.DepthwiseConvolutionConfig;
+import org.ml4j.nn.architectures.mobilenet.ZeroPaddingComponentFactory;
+import org.ml4j.nn.architectures.yolo.yolov2.SpaceToDepth.Layout;
+import org.ml4j.nn.architectures.yolo.yolov2.SpaceToDepthComponentFactory;
+import org.ml4j.nn.architectures.yolo.yolov2.YOLOv2Definition;
+import org.ml4j.nn.axons.BatchNormAxonsConfig;
+import org.ml4j.nn.axons.BiasVector;
+import org.ml4j.nn.axons.ConvolutionalAxonsConfig;
+import org.ml4j.nn.axons.FullyConnectedAxonsConfig;
+import org.ml4j.nn.axons.PoolingAxonsConfig;
+import org.ml4j.nn.axons.WeightsMatrix;
+import org.ml4j.nn.components.NeuralComponent;
+import org.ml4j.nn.components.NeuralComponentType;
+import org.ml4j.nn.components.factories.NeuralComponentFactory;
+import org.ml4j.nn.components.manytoone.PathCombinationStrategy;
+import org.ml4j.nn.neurons.Neurons;
+import org.ml4j.nn.neurons.Neurons3D;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * NeuralComponentFactory decorator whose bipole graphs run their parallel paths concurrently with a PathScheduler.
+ *
+ * Every component is created by the delegate factory.  Each bipole graph of the delegate is decorated so that a
+ * forwardPropagate of the graph first runs the forwardPropagate of each of its paths through
+ * PathScheduler.invokeAll, critical path first, and then lets the graph of the delegate combine the path outputs
+ * as usual - the paths of the graph are decorated to return the outputs which have already been computed rather
+ * than computing them again.  The context each path is run with is obtained from the getContext method of the
+ * path, when it has one.
+ *
+ * Components are decorated with dynamic proxies of the interfaces they implement, so the components created by
+ * the delegate must be used through interfaces.  Bipole graphs whose components do not have a forwardPropagate
+ * method - eg. metadata components - are returned undecorated, as are graphs of a delegate which does not pass
+ * the input and the decorated paths through to its paths unchanged - a graph whose paths do not consume the
+ * outputs computed by the scheduler on its first forward propagation runs its paths sequentially from then on.
+ * The scheduled outputs are matched to the input by identity, so a delegate graph which passes its paths a copy of
+ * its input, even an equal one, has each of its paths run twice on that first forward propagation, and a warning
+ * is logged when its graphs fall back to running their paths sequentially.
+ *
+ * Fused, channel slice, depthwise convolution, zero padding and space to depth components are created by the
+ * delegate, so definitions which require them fail, or fall back to createComponent, in the same way as they would
+ * with the delegate itself.  Filter concatenations are created with a FilterConcatBuffer when the delegate is an
+ * InPlaceConcatComponentFactory, whose graphs then concatenate the outputs of the scheduled paths in place.
+ *
+ * @author Michael Lavelle
+ *
+ * @param <T> The type of NeuralComponent created by this factory.
+ */
+public class SchedulingComponentFactory<T extends NeuralComponent<?>> implements ConcurrentPathsComponentFactory<T>,
+		InPlaceConcatComponentFactory<T>, FusedComponentFactory<T>, ChannelSliceComponentFactory<T>,
+		DepthwiseConvolutionComponentFactory<T>, ZeroPaddingComponentFactory<T>, SpaceToDepthComponentFactory<T> {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(SchedulingComponentFactory.class);
+
+	private static final String FORWARD_PROPAGATE = "forwardPropagate";
+
+	private static final String GET_CONTEXT = "getContext";
+
+	private NeuralComponentFactory<T> delegate;
+	private ForkJoinPool pathPool;
+
+	/**
+	 * @param delegate The factory which creates the components.
+	 * @param pathPool The pool on which the paths of the bipole graphs are run.
+	 */
+	public SchedulingComponentFactory(NeuralComponentFactory<T> delegate, ForkJoinPool pathPool) {
+		this.delegate = delegate;
+		this.pathPool = pathPool;
+	}
+
+	/**
+	 * @param delegate The factory which creates the components, whose bipole graphs run their paths on the common
+	 *            pool.
+	 */
+	public SchedulingComponentFactory(NeuralComponentFactory<T> delegate) {
+		this(delegate, ForkJoinPool.commonPool());
+	}
+
+	@Override
+	public ForkJoinPool getPathPool() {
+		return pathPool;
+	}
+
+	@Override
+	public T createDirectedComponentBipoleGraph(String name, Neurons inputNeurons, Neurons outputNeurons,
+			List<T> parallelComponents, PathCombinationStrategy pathCombinationStrategy) {
+		return createDirectedComponentBipoleGraph(name, inputNeurons, outputNeurons, parallelComponents,
+				pathCombinationStrategy, createPathScheduler(parallelComponents),
+				createConcatBuffer(parallelComponents, pathCombinationStrategy));
+	}
+
+	@Override
+	public T createDirectedComponentBipoleGraph(String name, Neurons inputNeurons, Neurons outputNeurons,
+			List<T> parallelComponents, PathCombinationStrategy pathCombinationStrategy, PathScheduler pathScheduler) {
+		return createDirectedComponentBipoleGraph(name, inputNeurons, outputNeurons, parallelComponents,
+				pathCombinationStrategy, pathScheduler, createConcatBuffer(parallelComponents, pathCombinationStrategy));
+	}
+
+	@Override
+	public T createDirectedComponentBipoleGraph(String name, Neurons inputNeurons, Neurons outputNeurons,
+			List<T> parallelComponents, PathCombinationStrategy pathCombinationStrategy,
+			FilterConcatBuffer concatBuffer) {
+		return createDirectedComponentBipoleGraph(name, inputNeurons, outputNeurons, parallelComponents,
+				pathCombinationStrategy, createPathScheduler(parallelComponents), concatBuffer);
+	}
+
+	/**
+	 * @param name The name of the bipole graph.
+	 * @param inputNeurons The input neurons of each path.
+	 * @param outputNeurons The output neurons of the combined paths.
+	 * @param parallelComponents The paths.
+	 * @param pathCombinationStrategy How the outputs of the paths are combined.
+	 * @param pathScheduler The scheduler with which the paths are run, with one path for each parallel component.
+	 * @param concatBuffer The buffer passed to the InPlaceConcatComponentFactory delegate, or null to create the
+	 *            graph of the delegate without one.
+	 * @return A bipole graph running its paths with the scheduler.
+	 */
+	public T createDirectedComponentBipoleGraph(String name, Neurons inputNeurons, Neurons outputNeurons,
+			List<T> parallelComponents, PathCombinationStrategy pathCombinationStrategy, PathScheduler pathScheduler,
+			FilterConcatBuffer concatBuffer) {
+		if (parallelComponents.size() != pathScheduler.getPathCount()) {
+			throw new IllegalArgumentException("Expected a scheduler for " + parallelComponents.size()
+					+ " paths but was given one for " + pathScheduler.getPathCount());
+		}
+		if (!isForwardPropagatable(parallelComponents)) {
+			return createDelegateBipoleGraph(name, inputNeurons, outputNeurons, parallelComponents,
+					pathCombinationStrategy, concatBuffer);
+		}
+		List<ScheduledPathHandler> paths = new ArrayList<>();
+		List<T> scheduledPaths = new ArrayList<>();
+		for (T parallelComponent : parallelComponents) {
+			ScheduledPathHandler path = new ScheduledPathHandler(parallelComponent);
+			paths.add(path);
+			scheduledPaths.add(decorate(parallelComponent, path));
+		}
+		T bipoleGraph = createDelegateBipoleGraph(name, inputNeurons, outputNeurons, scheduledPaths,
+				pathCombinationStrategy, concatBuffer);
+		if (!isForwardPropagatable(Collections.singletonList(bipoleGraph))) {
+			return bipoleGraph;
+		}
+		return decorate(bipoleGraph, new ScheduledBipoleGraphHandler(name, bipoleGraph, paths, pathScheduler));
+	}
+
+	@Override
+	public T createComponent(String name, Neurons inputNeurons, Neurons outputNeurons,
+			NeuralComponentType componentType) {
+		return delegate.createComponent(name, inputNeurons, outputNeurons, componentType);
+	}
+
+	@Override
+	public T createDirectedComponentChain(List<T> components) {
+		return delegate.createDirectedComponentChain(components);
+	}
+
+	@Override
+	public T createAveragePoolingAxonsComponent(String name, PoolingAxonsConfig poolingAxonsConfig) {
+		return delegate.createAveragePoolingAxonsComponent(name, poolingAxonsConfig);
+	}
+
+	@Override
+	public <N extends Neurons> T createBatchNormAxonsComponent(String name,
+			BatchNormAxonsConfig<N> batchNormAxonsConfig) {
+		return delegate.createBatchNormAxonsComponent(name, batchNormAxonsConfig);
+	}
+
+	@Override
+	public T createConvolutionalAxonsComponent(String name, ConvolutionalAxonsConfig convolutionalAxonsConfig,
+			WeightsMatrix connectionWeights, BiasVector biases) {
+		return delegate.createConvolutionalAxonsComponent(name, convolutionalAxonsConfig, connectionWeights, biases);
+	}
+
+	@Override
+	public T createDifferentiableActivationFunctionComponent(String name, Neurons neurons,
+			DifferentiableActivationFunction activationFunction) {
+		return delegate.createDifferentiableActivationFunctionComponent(name, neurons, activationFunction);
+	}
+
+	@Override
+	public T createDifferentiableActivationFunctionComponent(String name, Neurons neurons,
+			ActivationFunctionType activationFunctionType, ActivationFunctionProperties activationFunctionProperties) {
+		return delegate.createDifferentiableActivationFunctionComponent(name, neurons, activationFunctionType,
+				activationFunctionProperties);
+	}
+
+	@Override
+	public T createFullyConnectedAxonsComponent(String name, FullyConnectedAxonsConfig fullyConnectedAxonsConfig,
+			WeightsMatrix connectionWeights, BiasVector biases) {
+		return delegate.createFullyConnectedAxonsComponent(name, fullyConnectedAxonsConfig, connectionWeights, biases);
+	}
+
+	@Override
+	public T createMaxPoolingAxonsComponent(String name, PoolingAxonsConfig poolingAxonsConfig,
+			boolean scaleOutputs) {
+		return delegate.createMaxPoolingAxonsComponent(name, poolingAxonsConfig, scaleOutputs);
+	}
+
+	@Override
+	public <N extends Neurons> T createPassThroughAxonsComponent(String name, N leftNeurons, N rightNeurons) {
+		return delegate.createPassThroughAxonsComponent(name, leftNeurons, rightNeurons);
+	}
+
+	@Override
+	public T createConvolutionBatchNormActivationComponent(String name, Neurons3D inputNeurons,
+			Neurons3D outputNeurons, ConvolutionBatchNormActivationConfig config) {
+		return FusedComponentFactory.getFusedComponentFactory(delegate)
+				.createConvolutionBatchNormActivationComponent(name, inputNeurons, outputNeurons, config);
+	}
+
+	@Override
+	public T createChannelSliceComponent(String name, Neurons3D inputNeurons, Neurons3D outputNeurons,
+			int channelOffset) {
+		return ChannelSliceComponentFactory.getChannelSliceComponentFactory(delegate)
+				.createChannelSliceComponent(name, inputNeurons, outputNeurons, channelOffset);
+	}
+
+	@Override
+	public T createDepthwiseConvolutionComponent(String name, Neurons3D inputNeurons, Neurons3D outputNeurons,
+			DepthwiseConvolutionConfig config) {
+		return DepthwiseConvolutionComponentFactory.getDepthwiseConvolutionComponentFactory(delegate)
+				.createDepthwiseConvolutionComponent(name, inputNeurons, outputNeurons, config);
+	}
+
+	@Override
+	public T createZeroPaddingComponent(String name, Neurons3D inputNeurons, Neurons3D outputNeurons, int paddingTop,
+			int paddingBottom, int paddingLeft, int paddingRight) {
+		return ZeroPaddingComponentFactory.getZeroPaddingComponentFactory(delegate).createZeroPaddingComponent(name,
+				inputNeurons, outputNeurons, paddingTop, paddingBottom, paddingLeft, paddingRight);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public T createSpaceToDepthComponent(String name, Neurons3D inputNeurons, Neurons3D outputNeurons,
+			int blockSize) {
+		if (delegate instanceof SpaceToDepthComponentFactory) {
+			return ((SpaceToDepthComponentFactory<T>) delegate).createSpaceToDepthComponent(name, inputNeurons,
+					outputNeurons, blockSize);
+		}
+		return delegate.createComponent(name, inputNeurons, outputNeurons,
+				YOLOv2Definition.SPACE_TO_DEPTH_COMPONENT_TYPE);
+	}
+
+	/**
+	 * @return The layout of the concat buffers of the delegate, if it is an InPlaceConcatComponentFactory.
+	 */
+	@Override
+	public Layout getConcatBufferLayout() {
+		return delegate instanceof InPlaceConcatComponentFactory
+				? ((InPlaceConcatComponentFactory<T>) delegate).getConcatBufferLayout() : Layout.FEATURE_MAJOR;
+	}
+
+	private FilterConcatBuffer createConcatBuffer(List<T> parallelComponents,
+			PathCombinationStrategy pathCombinationStrategy) {
+		return delegate instanceof InPlaceConcatComponentFactory
+				&& pathCombinationStrategy == PathCombinationStrategy.FILTER_CONCAT
+						? FilterConcatBuffer.forPaths(parallelComponents, getConcatBufferLayout()) : null;
+	}
+
+	private T createDelegateBipoleGraph(String name, Neurons inputNeurons, Neurons outputNeurons,
+			List<T> parallelComponents, PathCombinationStrategy pathCombinationStrategy,
+			FilterConcatBuffer concatBuffer) {
+		if (concatBuffer == null) {
+			return delegate.createDirectedComponentBipoleGraph(name, inputNeurons, outputNeurons, parallelComponents,
+					pathCombinationStrategy);
+		}
+		return InPlaceConcatComponentFactory.getInPlaceConcatComponentFactory(delegate)
+				.createDirectedComponentBipoleGraph(name, inputNeurons, outputNeurons, parallelComponents,
+						pathCombinationStrategy, concatBuffer);
+	}
+
+	private boolean isForwardPropagatable(List<T> components) {
+		for (T component : components) {
+			if (getForwardPropagateMethod(component.getClass()) == null) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@SuppressWarnings("unchecked")
+	private T decorate(T component, InvocationHandler handler) {
+		Set<Class<?>> interfaces = getInterfaces(component.getClass());
+		return (T) Proxy.newProxyInstance(component.getClass().getClassLoader(),
+				interfaces.toArray(new Class<?>[interfaces.size()]), handler);
+	}
+
+	private static Set<Class<?>> getInterfaces(Class<?> componentClass) {
+		Set<Class<?>> interfaces = new LinkedHashSet<>();
+		for (Class<?> type = componentClass; type != null; type = type.getSuperclass()) {
+			Collections.addAll(interfaces, type.getInterfaces());
+		}
+		return interfaces;
+	}
+
+	private static Method getForwardPropagateMethod(Class<?> componentClass) {
+		for (Class<?> componentInterface : getInterfaces(componentClass)) {
+			for (Method method : componentInterface.getMethods()) {
+				if (isForwardPropagate(method)) {
+					return method;
+				}
+			}
+		}
+		return null;
+	}
+
+	private static Method getContextMethod(Class<?> componentClass, Object context) {
+		for (Class<?> componentInterface : getInterfaces(componentClass)) {
+			for (Method method : componentInterface.getMethods()) {
+				if (method.getName().equals(GET_CONTEXT) && method.getParameterCount() == 1
+						&& method.getParameterTypes()[0].isInstance(context)) {
+					return method;
+				}
+			}
+		}
+		return null;
+	}
+
+	private static boolean isForwardPropagate(Method method) {
+		return method.getName().equals(FORWARD_PROPAGATE) && method.getParameterCount() == 2;
+	}
+
+	private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+		try {
+			return method.invoke(target, args);
+		} catch (InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * Decorates a path of a bipole graph, serving the output of a forward propagation of the path from the output
+	 * already computed by the scheduler for the same input, if there is one.
+	 */
+	private static class ScheduledPathHandler implements InvocationHandler, Serializable {
+
+		/**
+		 * Default serialization id.
+		 */
+		private static final long serialVersionUID = 1L;
+
+		private Object path;
+		private transient Map<Object, Object> scheduledOutputs;
+
+		ScheduledPathHandler(Object path) {
+			this.path = path;
+		}
+
+		private synchronized Map<Object, Object> getScheduledOutputs() {
+			if (scheduledOutputs == null) {
+				// Keyed on the identity of the input, as concurrent forward propagations may share this path
+				scheduledOutputs = new IdentityHashMap<>();
+			}
+			return scheduledOutputs;
+		}
+
+		Object forwardPropagate(Object input, Object context) throws Throwable {
+			Method getContextMethod = getContextMethod(path.getClass(), context);
+			Object pathContext = getContextMethod == null ? context
+					: SchedulingComponentFactory.invoke(path, getContextMethod, new Object[] { context });
+			return SchedulingComponentFactory.invoke(path, getForwardPropagateMethod(path.getClass()),
+					new Object[] { input, pathContext });
+		}
+
+		void schedule(Object input, Object output) {
+			synchronized (getScheduledOutputs()) {
+				getScheduledOutputs().put(input, output);
+			}
+		}
+
+		boolean unschedule(Object input) {
+			synchronized (getScheduledOutputs()) {
+				return getScheduledOutputs().remove(input) != null;
+			}
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			if (isForwardPropagate(method)) {
+				Object output;
+				synchronized (getScheduledOutputs()) {
+					output = getScheduledOutputs().remove(args[0]);
+				}
+				if (output != null) {
+					return output;
+				}
+			}
+			return SchedulingComponentFactory.invoke(path, method, args);
+		}
+	}
+
+	/**
+	 * Decorates a bipole graph, running the forward propagation of its paths with the scheduler before the graph
+	 * combines their outputs.
+	 */
+	private static class ScheduledBipoleGraphHandler implements InvocationHandler, Serializable {
+
+		/**
+		 * Default serialization id.
+		 */
+		private static final long serialVersionUID = 1L;
+
+		private String name;
+		private Object bipoleGraph;
+		private List<ScheduledPathHandler> paths;
+		private PathScheduler pathScheduler;
+		private volatile boolean sequential;
+
+		ScheduledBipoleGraphHandler(String name, Object bipoleGraph, List<ScheduledPathHandler> paths,
+				PathScheduler pathScheduler) {
+			this.name = name;
+			this.bipoleGraph = bipoleGraph;
+			this.paths = paths;
+			this.pathScheduler = pathScheduler;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			if (sequential || !isForwardPropagate(method)) {
+				return SchedulingComponentFactory.invoke(bipoleGraph, method, args);
+			}
+			Object input = args[0];
+			Object context = args[1];
+			List<Supplier<Object>> pathForwardPropagations = new ArrayList<>();
+			for (ScheduledPathHandler path : paths) {
+				pathForwardPropagations.add(() -> {
+					try {
+						return path.forwardPropagate(input, context);
+					} catch (RuntimeException | Error e) {
+						throw e;
+					} catch (Throwable e) {
+						throw new IllegalStateException(e);
+					}
+				});
+			}
+			List<Object> outputs = pathScheduler.invokeAll(pathForwardPropagations);
+			for (int i = 0; i < paths.size(); i++) {
+				paths.get(i).schedule(input, outputs.get(i));
+			}
+			Object output;
+			boolean consumed = true;
+			try {
+				output = SchedulingComponentFactory.invoke(bipoleGraph, method, args);
+			} finally {
+				for (ScheduledPathHandler path : paths) {
+					consumed &= !path.unschedule(input);
+				}
+			}
+			if (!consumed && !sequential) {
+				// The graph did not propagate the same input through its decorated paths, so stop scheduling them
+				sequential = true;
+				LOGGER.warn("Bipole graph " + name + " did not pass its own input to its paths, so each path was run "
+						+ "twice - running its paths sequentially from now on");
+			}
+			return output;
+		}
+	}
+}
@@ -0,0 +1,331 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.architectures.snapshots;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.ml4j.nn.architectures.weights.WeightsLoader;
+import org.ml4j.nn.components.NeuralComponent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Persists fully built component graphs, so that later starts can restore a graph instead of rebuilding it
+ * from its definition.
+ * 
+ * <pre>
+ * ComponentGraphSnapshots snapshots = new ComponentGraphSnapshots(snapshotDirectory);
+ * T graph = snapshots.restoreOrBuild(definition, weightsFile, () -&gt; neuralComponentFactory
+ * 		.createDirectedComponentChain(session.buildComponentGraph().startWith(definition).getComponents()));
+ * </pre>
+ * 
+ * Snapshots are keyed by the class of the definition, a hash of its parameters and a hash identifying the
+ * weights, so a changed definition or weights file is rebuilt and re-snapshotted automatically.  The weights
+ * loader of a definition is represented in the key by its configuration fingerprint - its class, and anything
+ * else which changes the weights it serves, such as the batch norm epsilon it folds with - as the weights file
+ * it reads is identified by the weights hash.
+ * 
+ * A snapshot file is a short header - a magic number, the format version and the key - followed by the
+ * deflated serialized graph.  A snapshot holds whatever the built graph references: eagerly loaded weights are
+ * stored in the snapshot, while deferred weights handles are stored as the suppliers which load them.  Only
+ * classes in the allowed packages - the JDK's java.lang, java.util and java.math, ml4j and jblas, plus any
+ * packages passed to the constructor - are written to or read from a snapshot, so a tampered snapshot file
+ * cannot instantiate arbitrary classes.
+ * 
+ * @author Michael Lavelle
+ */
+public class ComponentGraphSnapshots {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ComponentGraphSnapshots.class);
+
+	private static final int MAGIC = 0x4D4C4A53;
+
+	private static final int FORMAT_VERSION = 1;
+
+	private static final List<String> DEFAULT_ALLOWED_PACKAGES = Arrays.asList("java.lang.", "java.util.",
+			"java.math.", "org.ml4j.", "org.jblas.");
+
+	private File snapshotDirectory;
+	private List<String> allowedPackages;
+
+	public ComponentGraphSnapshots(File snapshotDirectory) {
+		this(snapshotDirectory, new String[0]);
+	}
+
+	/**
+	 * @param snapshotDirectory The directory the snapshots are written to.
+	 * @param allowedPackages The prefixes of any packages, in addition to the defaults, whose classes may be
+	 * stored in a snapshot - for example "com.example.components."
+	 */
+	public ComponentGraphSnapshots(File snapshotDirectory, String... allowedPackages) {
+		this.snapshotDirectory = snapshotDirectory;
+		this.allowedPackages = new ArrayList<>(DEFAULT_ALLOWED_PACKAGES);
+		this.allowedPackages.addAll(Arrays.asList(allowedPackages));
+	}
+
+	/**
+	 * Restore the component graph for a definition, or build and snapshot it if no snapshot exists.
+	 * 
+	 * @param definition The definition of the component graph.
+	 * @param weightsFile The file the definition's weights are loaded from.
+	 * @param build Builds the component graph - only invoked if no snapshot exists.
+	 * @return The component graph.
+	 */
+	public <T extends NeuralComponent<?>> T restoreOrBuild(Serializable definition, File weightsFile,
+			Supplier<T> build) {
+		return restoreOrBuild(definition, getWeightsHash(weightsFile), build);
+	}
+
+	/**
+	 * Restore the component graph for a definition, or build and snapshot it if no snapshot exists.
+	 * 
+	 * @param definition The definition of the component graph.
+	 * @param weightsHash Identifies the weights the definition loads.
+	 * @param build Builds the component graph - only invoked if no snapshot exists.
+	 * @return The component graph.
+	 */
+	public <T extends NeuralComponent<?>> T restoreOrBuild(Serializable definition, String weightsHash,
+			Supplier<T> build) {
+		String key = getKey(definition, weightsHash);
+		File snapshot = new File(snapshotDirectory, key + ".snapshot");
+		if (snapshot.exists()) {
+			try {
+				return restore(snapshot, key);
+			} catch (IOException | ClassNotFoundException | ClassCastException e) {
+				LOGGER.warn("Unable to restore component graph snapshot " + snapshot + " - rebuilding", e);
+			}
+		}
+		T graph = build.get();
+		try {
+			write(snapshot, key, graph);
+		} catch (IOException e) {
+			LOGGER.warn("Unable to snapshot component graph to " + snapshot, e);
+		}
+		return graph;
+	}
+
+	/**
+	 * @param definition The definition of the component graph.
+	 * @param weightsHash Identifies the weights the definition loads.
+	 * @return The location in the snapshot directory of the snapshot for the definition.
+	 */
+	public File getSnapshot(Serializable definition, String weightsHash) {
+		return new File(snapshotDirectory, getKey(definition, weightsHash) + ".snapshot");
+	}
+
+	/**
+	 * Identifies a weights file by its path, length and modification time rather than by its contents, so that
+	 * no weights need to be read to find a snapshot.  A file rewritten in place with the same length and
+	 * modification time is not detected - pass a digest of the contents to restoreOrBuild in place of this hash
+	 * where that matters.
+	 * 
+	 * @param weightsFile A weights file.
+	 * @return A hash of the path, length and modification time of the file.
+	 */
+	public static String getWeightsHash(File weightsFile) {
+		MessageDigest digest = createDigest();
+		digest.update((weightsFile.getAbsolutePath() + "|" + weightsFile.length() + "|" + weightsFile.lastModified())
+				.getBytes(StandardCharsets.UTF_8));
+		return toHex(digest.digest());
+	}
+
+	private static String getKey(Serializable definition, String weightsHash) {
+		MessageDigest digest = createDigest();
+		digest.update(serializeParameters(definition));
+		digest.update(weightsHash.getBytes(StandardCharsets.UTF_8));
+		return definition.getClass().getSimpleName() + "-" + toHex(digest.digest());
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T extends NeuralComponent<?>> T restore(File snapshot, String key)
+			throws IOException, ClassNotFoundException {
+		long start = System.currentTimeMillis();
+		try (DataInputStream in = new DataInputStream(
+				new BufferedInputStream(new FileInputStream(snapshot), 1 << 16))) {
+			if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || !key.equals(in.readUTF())) {
+				throw new IOException("Not a version " + FORMAT_VERSION + " snapshot with key " + key);
+			}
+			try (ObjectInputStream graphIn = new AllowListObjectInputStream(new InflaterInputStream(in))) {
+				T graph = (T) graphIn.readObject();
+				LOGGER.debug("Restored component graph from " + snapshot + " in "
+						+ (System.currentTimeMillis() - start) + "ms");
+				return graph;
+			}
+		}
+	}
+
+	private <T extends NeuralComponent<?>> void write(File snapshot, String key, T graph) throws IOException {
+		Files.createDirectories(snapshotDirectory.toPath());
+		// Write to a temporary file first, so concurrent starts never restore a partially written snapshot
+		File temporary = File.createTempFile(snapshot.getName(), ".tmp", snapshotDirectory);
+		try {
+			try (DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(temporary), 1 << 16))) {
+				out.writeInt(MAGIC);
+				out.writeInt(FORMAT_VERSION);
+				out.writeUTF(key);
+				// Favour speed over size - the stream is dominated by repeated class and field descriptors,
+				// which deflate well even at the fastest level
+				Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+				try {
+					DeflaterOutputStream deflated = new DeflaterOutputStream(out, deflater, 1 << 16);
+					ObjectOutputStream graphOut = new AllowListObjectOutputStream(deflated);
+					graphOut.writeObject(graph);
+					graphOut.flush();
+					deflated.finish();
+				} finally {
+					deflater.end();
+				}
+			}
+			try {
+				Files.move(temporary.toPath(), snapshot.toPath(), StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temporary.toPath(), snapshot.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(temporary.toPath());
+		}
+	}
+
+	private void checkAllowed(String className) throws InvalidClassException {
+		String elementClassName = className;
+		while (elementClassName.startsWith("[")) {
+			elementClassName = elementClassName.substring(1);
+		}
+		if (elementClassName.length() == 1) {
+			// An array of primitives
+			return;
+		}
+		if (elementClassName.startsWith("L") && elementClassName.endsWith(";")) {
+			elementClassName = elementClassName.substring(1, elementClassName.length() - 1);
+		}
+		for (String allowedPackage : allowedPackages) {
+			if (elementClassName.startsWith(allowedPackage)) {
+				return;
+			}
+		}
+		throw new InvalidClassException(className, "Class is not in the packages allowed in snapshots");
+	}
+
+	/**
+	 * Serializes the parameters of a definition - replacing any weights loader the definition, or one of its
+	 * modules, holds with the configuration fingerprint of the loader.
+	 */
+	private static byte[] serializeParameters(Serializable definition) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes) {
+
+			{
+				enableReplaceObject(true);
+			}
+
+			@Override
+			protected Object replaceObject(Object obj) {
+				return obj instanceof WeightsLoader ? ((WeightsLoader) obj).getConfigurationFingerprint() : obj;
+			}
+		}) {
+			out.writeObject(definition);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Unable to serialize definition " + definition, e);
+		}
+		return bytes.toByteArray();
+	}
+
+	private static MessageDigest createDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static String toHex(byte[] hash) {
+		StringBuilder hex = new StringBuilder();
+		for (int i = 0; i < 16; i++) {
+			hex.append(String.format("%02x", hash[i]));
+		}
+		return hex.toString();
+	}
+
+	private class AllowListObjectOutputStream extends ObjectOutputStream {
+
+		AllowListObjectOutputStream(OutputStream out) throws IOException {
+			super(out);
+		}
+
+		@Override
+		protected void annotateClass(Class<?> cl) throws IOException {
+			checkAllowed(cl.getName());
+		}
+
+		@Override
+		protected void annotateProxyClass(Class<?> cl) throws IOException {
+			for (Class<?> proxyInterface : cl.getInterfaces()) {
+				checkAllowed(proxyInterface.getName());
+			}
+		}
+	}
+
+	private class AllowListObjectInputStream extends ObjectInputStream {
+
+		AllowListObjectInputStream(InputStream in) throws IOException {
+			super(in);
+		}
+
+		@Override
+		protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+			checkAllowed(desc.getName());
+			return super.resolveClass(desc);
+		}
+
+		@Override
+		protected Class<?> resolveProxyClass(String[] interfaces) throws IOException, ClassNotFoundException {
+			for (String proxyInterface : interfaces) {
+				checkAllowed(proxyInterface);
+			}
+			return super.resolveProxyClass(interfaces);
+		}
+	}
+}
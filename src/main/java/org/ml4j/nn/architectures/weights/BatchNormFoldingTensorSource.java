@@ -0,0 +1,188 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.architectures.weights;
+
+import java.nio.FloatBuffer;
+
+import org.ml4j.nn.architectures.weights.WeightsRequest.Kind;
+
+/**
+ * A TensorSource which, in addition to the tensors of its delegate, serves the weights and biases of
+ * convolutional layers with the batch norm layer which follows them folded in - so that inference graphs, in
+ * which the batch norm statistics are fixed, need not contain batch norm axons at all.
+ * 
+ * For each output channel c, with scale s = gamma[c] / sqrt(variance[c] + epsilon):
+ * 
+ * W'[c] = W[c] * s
+ * b'[c] = beta[c] - mean[c] * s
+ * 
+ * Folded tensors are requested under the names returned by getFoldedWeightsName and getFoldedBiasesName, so a
+ * single source serves both folded and unfolded graphs.  Layers follow the Keras naming used by the architecture
+ * definitions - the batch norm layer following "conv2d_N" is "batch_normalization_N" - and, as in the Keras
+ * exports, the convolutional layers followed by batch norm have no biases of their own.
+ * 
+ * @author Michael Lavelle
+ */
+public class BatchNormFoldingTensorSource implements TensorSource {
+
+	/**
+	 * Default serialization id.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The Keras default batch norm epsilon, used by the Keras exports of both the Inception V4 and the YOLO v2
+	 * weights.
+	 */
+	public static final float DEFAULT_EPSILON = 1e-3f;
+
+	/**
+	 * The batch norm epsilon hard-coded by Darknet, used by the original Darknet YOLO v2 weights.
+	 */
+	public static final float DARKNET_EPSILON = 1e-6f;
+
+	private static final String FOLDED_WEIGHTS_SUFFIX = "_folded_kernel0";
+	private static final String FOLDED_BIASES_SUFFIX = "_folded_bias0";
+	private static final String CONVOLUTION_PREFIX = "conv2d_";
+	private static final String BATCH_NORM_PREFIX = "batch_normalization_";
+
+	private TensorSource tensorSource;
+	private boolean scaled;
+	private float epsilon;
+
+	/**
+	 * @param tensorSource The source of the unfolded tensors.
+	 * @param scaled Whether the batch norm layers have a gamma tensor - Inception V4 batch norm layers do not.
+	 * @param epsilon The batch norm epsilon.
+	 */
+	public BatchNormFoldingTensorSource(TensorSource tensorSource, boolean scaled, float epsilon) {
+		this.tensorSource = tensorSource;
+		this.scaled = scaled;
+		this.epsilon = epsilon;
+	}
+
+	/**
+	 * @param convolutionName The name of the convolutional layer, eg. "conv2d_12".
+	 * @return The name under which the folded weights of the layer are served.
+	 */
+	public static String getFoldedWeightsName(String convolutionName) {
+		return convolutionName + FOLDED_WEIGHTS_SUFFIX;
+	}
+
+	/**
+	 * @param convolutionName The name of the convolutional layer, eg. "conv2d_12".
+	 * @return The name under which the folded biases of the layer are served.
+	 */
+	public static String getFoldedBiasesName(String convolutionName) {
+		return convolutionName + FOLDED_BIASES_SUFFIX;
+	}
+
+	@Override
+	public FloatBuffer getTensor(WeightsRequest request) {
+		String name = request.getName();
+		if (name.endsWith(FOLDED_WEIGHTS_SUFFIX)) {
+			String convolutionName = name.substring(0, name.length() - FOLDED_WEIGHTS_SUFFIX.length());
+			int[] shape = request.getShape();
+			FloatBuffer weights = tensorSource.getTensor(new WeightsRequest(Kind.CONVOLUTIONAL_WEIGHTS,
+					convolutionName + "_kernel0", shape));
+			return FloatBuffer.wrap(foldWeights(weights, getScales(convolutionName, shape[0]))).asReadOnlyBuffer();
+		} else if (name.endsWith(FOLDED_BIASES_SUFFIX)) {
+			String convolutionName = name.substring(0, name.length() - FOLDED_BIASES_SUFFIX.length());
+			int outputDepth = request.getElementCount();
+			String batchNormName = getBatchNormName(convolutionName);
+			FloatBuffer beta = getVector(Kind.BATCH_NORM_BETA, batchNormName + "_beta0", outputDepth);
+			FloatBuffer mean = getVector(Kind.BATCH_NORM_MEAN, batchNormName + "_moving_mean0", outputDepth);
+			return FloatBuffer.wrap(foldBiases(beta, mean, getScales(convolutionName, outputDepth)))
+					.asReadOnlyBuffer();
+		} else {
+			return tensorSource.getTensor(request);
+		}
+	}
+
+	@Override
+	public String getConfigurationFingerprint() {
+		return getClass().getName() + "(" + tensorSource.getConfigurationFingerprint() + ", scaled=" + scaled
+				+ ", epsilon=" + epsilon + ")";
+	}
+
+	private float[] getScales(String convolutionName, int outputDepth) {
+		String batchNormName = getBatchNormName(convolutionName);
+		FloatBuffer variance = getVector(Kind.BATCH_NORM_VARIANCE, batchNormName + "_moving_variance0",
+				outputDepth);
+		FloatBuffer gamma = scaled ? getVector(Kind.BATCH_NORM_GAMMA, batchNormName + "_gamma0", outputDepth) : null;
+		return getScales(gamma, variance, epsilon);
+	}
+
+	private FloatBuffer getVector(Kind kind, String name, int length) {
+		return tensorSource.getTensor(WeightsRequest.vector(kind, name, length));
+	}
+
+	private static String getBatchNormName(String convolutionName) {
+		if (!convolutionName.startsWith(CONVOLUTION_PREFIX)) {
+			throw new IllegalArgumentException("Unable to determine the batch norm layer following " + convolutionName);
+		}
+		return BATCH_NORM_PREFIX + convolutionName.substring(CONVOLUTION_PREFIX.length());
+	}
+
+	/**
+	 * @param gamma The batch norm gamma, or null if the batch norm layer is not scaled.
+	 * @param variance The batch norm moving variance.
+	 * @param epsilon The batch norm epsilon.
+	 * @return The scale applied to each output channel by the batch norm layer.
+	 */
+	static float[] getScales(FloatBuffer gamma, FloatBuffer variance, float epsilon) {
+		float[] scales = new float[variance.remaining()];
+		for (int channel = 0; channel < scales.length; channel++) {
+			float scale = (float) (1d / Math.sqrt(variance.get(variance.position() + channel) + epsilon));
+			scales[channel] = gamma == null ? scale : gamma.get(gamma.position() + channel) * scale;
+		}
+		return scales;
+	}
+
+	/**
+	 * @param weights Convolutional weights in the canonical [outputDepth][inputDepth][height][width] layout.
+	 * @param scales The scale of each output channel.
+	 * @return The folded weights - each output channel is a contiguous run of the canonical layout.
+	 */
+	static float[] foldWeights(FloatBuffer weights, float[] scales) {
+		float[] folded = new float[weights.remaining()];
+		weights.duplicate().get(folded);
+		int channelSize = folded.length / scales.length;
+		for (int channel = 0; channel < scales.length; channel++) {
+			float scale = scales[channel];
+			int end = (channel + 1) * channelSize;
+			for (int i = channel * channelSize; i < end; i++) {
+				folded[i] = folded[i] * scale;
+			}
+		}
+		return folded;
+	}
+
+	/**
+	 * @param beta The batch norm beta.
+	 * @param mean The batch norm moving mean.
+	 * @param scales The scale of each output channel.
+	 * @return The folded biases.
+	 */
+	static float[] foldBiases(FloatBuffer beta, FloatBuffer mean, float[] scales) {
+		float[] folded = new float[scales.length];
+		for (int channel = 0; channel < scales.length; channel++) {
+			folded[channel] = beta.get(beta.position() + channel)
+					- mean.get(mean.position() + channel) * scales[channel];
+		}
+		return folded;
+	}
+}
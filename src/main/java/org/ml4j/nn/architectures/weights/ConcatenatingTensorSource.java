@@ -0,0 +1,112 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.architectures.weights;
+
+import java.nio.FloatBuffer;
+
+/**
+ * A TensorSource which, in addition to the tensors of its delegate, serves tensors concatenated from several
+ * tensors of its delegate along their leading dimension - so that sibling convolutional layers over the same
+ * input can be merged into a single convolutional layer with the filters of each sibling in turn.
+ *
+ * In every canonical layout the leading dimension of a convolutional tensor is the output channel, so the
+ * concatenated weights, biases and batch norm parameters of the merged layer are simply the tensors of each
+ * sibling one after another.
+ *
+ * Concatenated tensors are requested under the names returned by getConcatenatedName, which record the name and
+ * the leading dimension of each part.  Parts are requested from the delegate, so when combined with a
+ * BatchNormFoldingTensorSource the folding source must be the delegate of this one.
+ *
+ * @author Michael Lavelle
+ */
+public class ConcatenatingTensorSource implements TensorSource {
+
+	/**
+	 * Default serialization id.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	private static final String PART_SEPARATOR = "+";
+	private static final String LENGTH_SEPARATOR = "@";
+
+	private TensorSource tensorSource;
+
+	/**
+	 * @param tensorSource The source of the tensors to be concatenated.
+	 */
+	public ConcatenatingTensorSource(TensorSource tensorSource) {
+		this.tensorSource = tensorSource;
+	}
+
+	/**
+	 * @param names The names of the tensors to concatenate, eg. "conv2d_12_kernel0" and "conv2d_13_kernel0".
+	 * @param leadingDimensions The leading dimension of each tensor - the output depth of each convolutional layer.
+	 * @return The name under which the concatenated tensor is served.
+	 */
+	public static String getConcatenatedName(String[] names, int[] leadingDimensions) {
+		if (names.length != leadingDimensions.length) {
+			throw new IllegalArgumentException("Expected a leading dimension for each of the " + names.length
+					+ " tensors but was given " + leadingDimensions.length);
+		}
+		StringBuilder concatenatedName = new StringBuilder();
+		for (int i = 0; i < names.length; i++) {
+			if (i > 0) {
+				concatenatedName.append(PART_SEPARATOR);
+			}
+			concatenatedName.append(names[i]).append(LENGTH_SEPARATOR).append(leadingDimensions[i]);
+		}
+		return concatenatedName.toString();
+	}
+
+	@Override
+	public FloatBuffer getTensor(WeightsRequest request) {
+		String name = request.getName();
+		if (!name.contains(PART_SEPARATOR)) {
+			return tensorSource.getTensor(request);
+		}
+		int[] shape = request.getShape();
+		int leadingDimension = 0;
+		float[] concatenated = new float[request.getElementCount()];
+		int offset = 0;
+		for (String part : name.split("\\" + PART_SEPARATOR)) {
+			int lengthIndex = part.lastIndexOf(LENGTH_SEPARATOR);
+			if (lengthIndex < 0) {
+				throw new IllegalArgumentException("Unable to determine the leading dimension of " + part + " in " + name);
+			}
+			int[] partShape = shape.clone();
+			partShape[0] = Integer.parseInt(part.substring(lengthIndex + 1));
+			leadingDimension = leadingDimension + partShape[0];
+			if (leadingDimension > shape[0]) {
+				break;
+			}
+			FloatBuffer tensor = tensorSource.getTensor(new WeightsRequest(request.getKind(),
+					part.substring(0, lengthIndex), partShape));
+			int length = WeightsRequest.getElementCount(partShape);
+			tensor.duplicate().get(concatenated, offset, length);
+			offset = offset + length;
+		}
+		if (leadingDimension != shape[0]) {
+			throw new IllegalArgumentException("The leading dimensions of the parts of " + name
+					+ " do not add up to the requested " + shape[0]);
+		}
+		return FloatBuffer.wrap(concatenated).asReadOnlyBuffer();
+	}
+
+	@Override
+	public String getConfigurationFingerprint() {
+		return getClass().getName() + "(" + tensorSource.getConfigurationFingerprint() + ")";
+	}
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.architectures.weights;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A TensorSource which reads the tensors of a Darknet .weights file on demand, exposing them under the Keras-style
+ * names requested by the architecture definitions (eg. "conv2d_3_kernel0", "batch_normalization_3_moving_mean0").
+ * 
+ * Darknet files carry no tensor names or shapes, so the convolutional layers they contain must be described,
+ * in file order, by the caller.  For each layer Darknet stores the biases (the batch norm beta when the layer
+ * is batch normalised), then the batch norm gamma, moving mean and moving variance if present, and finally the
+ * kernel as [outputDepth][inputDepth][height][width] - which is already the canonical convolutional layout.
+ * 
+ * The offset of each tensor is computed once from the header and the layer descriptions, and each tensor is read
+ * from its offset when it is requested - so the source holds no tensor once it has been served, and the loader
+ * over it does not keep a copy of every tensor of the file for its lifetime.
+ * 
+ * @author Michael Lavelle
+ */
+public class DarknetWeightsFile implements TensorSource {
+
+	/**
+	 * Default serialization id.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(DarknetWeightsFile.class);
+
+	private File file;
+	private List<ConvolutionalLayer> layers;
+	private transient Map<String, TensorLocation> tensorLocations;
+
+	public DarknetWeightsFile(File file, List<ConvolutionalLayer> layers) {
+		this.file = file;
+		this.layers = Collections.unmodifiableList(new ArrayList<>(layers));
+	}
+
+	@Override
+	public FloatBuffer getTensor(WeightsRequest request) {
+		TensorLocation tensorLocation = getTensorLocations().get(request.getName());
+		if (tensorLocation == null) {
+			throw new IllegalArgumentException("No tensor named " + request.getName() + " in Darknet weights " + file);
+		}
+		if (tensorLocation.elementCount != request.getElementCount()) {
+			throw new IllegalArgumentException("Tensor " + request.getName() + " has " + tensorLocation.elementCount
+					+ " elements but was requested as " + request);
+		}
+		ByteBuffer buffer = ByteBuffer.allocate(tensorLocation.elementCount * Float.BYTES)
+				.order(ByteOrder.LITTLE_ENDIAN);
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer, tensorLocation.position + buffer.position()) < 0) {
+					throw new IOException("Unexpected end of Darknet weights " + file);
+				}
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException("Unable to read tensor " + request.getName() + " from Darknet weights "
+					+ file, e);
+		}
+		buffer.flip();
+		return buffer.asFloatBuffer().asReadOnlyBuffer();
+	}
+
+	private synchronized Map<String, TensorLocation> getTensorLocations() {
+		if (tensorLocations == null) {
+			try {
+				tensorLocations = locateTensors();
+			} catch (IOException e) {
+				throw new UncheckedIOException("Unable to read Darknet weights " + file, e);
+			}
+		}
+		return tensorLocations;
+	}
+
+	private Map<String, TensorLocation> locateTensors() throws IOException {
+		long startTime = System.currentTimeMillis();
+		Map<String, TensorLocation> located = new HashMap<>();
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			long position = readHeaderLength(channel);
+			for (ConvolutionalLayer layer : layers) {
+				String biasName = layer.batchNormLayerName == null ? layer.convolutionalLayerName + "_bias0"
+						: layer.batchNormLayerName + "_beta0";
+				position = locate(located, biasName, position, layer.outputDepth);
+				if (layer.batchNormLayerName != null) {
+					position = locate(located, layer.batchNormLayerName + "_gamma0", position, layer.outputDepth);
+					position = locate(located, layer.batchNormLayerName + "_moving_mean0", position,
+							layer.outputDepth);
+					position = locate(located, layer.batchNormLayerName + "_moving_variance0", position,
+							layer.outputDepth);
+				}
+				position = locate(located, layer.convolutionalLayerName + "_kernel0", position,
+						layer.getKernelElementCount());
+			}
+			if (position != channel.size()) {
+				throw new IOException("Darknet weights " + file + " is " + channel.size() + " bytes but the layer "
+						+ "descriptions account for " + position + " bytes - the layer descriptions do not match the file");
+			}
+		}
+		LOGGER.debug("Located " + located.size() + " tensors in " + file + " in "
+				+ (System.currentTimeMillis() - startTime) + "ms");
+		return located;
+	}
+
+	private static long locate(Map<String, TensorLocation> located, String name, long position, int elementCount) {
+		located.put(name, new TensorLocation(position, elementCount));
+		return position + (long) elementCount * Float.BYTES;
+	}
+
+	private long readHeaderLength(FileChannel channel) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(3 * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer) < 0) {
+				throw new IOException("Unexpected end of Darknet weights " + file);
+			}
+		}
+		buffer.flip();
+		int major = buffer.getInt();
+		int minor = buffer.getInt();
+		// The count of images seen during training was widened to 64 bits in format version 0.2
+		boolean wideSeenCount = major * 10 + minor >= 2 && major < 1000 && minor < 1000;
+		return 3 * Integer.BYTES + (wideSeenCount ? Long.BYTES : Integer.BYTES);
+	}
+
+	/**
+	 * The position in the file, and the number of elements, of a tensor.
+	 */
+	private static class TensorLocation {
+
+		private long position;
+		private int elementCount;
+
+		TensorLocation(long position, int elementCount) {
+			this.position = position;
+			this.elementCount = elementCount;
+		}
+	}
+
+	/**
+	 * Describes a convolutional layer stored in a Darknet weights file.
+	 */
+	public static class ConvolutionalLayer implements Serializable {
+
+		/**
+		 * Default serialization id.
+		 */
+		private static final long serialVersionUID = 1L;
+
+		private String convolutionalLayerName;
+		private String batchNormLayerName;
+		private int width;
+		private int height;
+		private int inputDepth;
+		private int outputDepth;
+
+		/**
+		 * @param convolutionalLayerName The name of the convolutional layer, eg. "conv2d_1".
+		 * @param batchNormLayerName The name of the following batch norm layer, eg. "batch_normalization_1", or
+		 *        null if the convolutional layer has its own biases.
+		 * @param width The filter width.
+		 * @param height The filter height.
+		 * @param inputDepth The input depth.
+		 * @param outputDepth The filter count.
+		 */
+		public ConvolutionalLayer(String convolutionalLayerName, String batchNormLayerName, int width, int height,
+				int inputDepth, int outputDepth) {
+			this.convolutionalLayerName = convolutionalLayerName;
+			this.batchNormLayerName = batchNormLayerName;
+			this.width = width;
+			this.height = height;
+			this.inputDepth = inputDepth;
+			this.outputDepth = outputDepth;
+		}
+
+		public String getConvolutionalLayerName() {
+			return convolutionalLayerName;
+		}
+
+		public String getBatchNormLayerName() {
+			return batchNormLayerName;
+		}
+
+		public int getWidth() {
+			return width;
+		}
+
+		public int getHeight() {
+			return height;
+		}
+
+		public int getInputDepth() {
+			return inputDepth;
+		}
+
+		public int getOutputDepth() {
+			return outputDepth;
+		}
+
+		int getKernelElementCount() {
+			return width * height * inputDepth * outputDepth;
+		}
+	}
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.architectures.weights;
+
+import java.io.Serializable;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+/**
+ * Creates lightweight deferred handles for weights types such as WeightsMatrix, BiasVector and FeaturesVector.
+ * 
+ * A deferred handle implements the requested weights interface, but only invokes its WeightsSupplier the first
+ * time a method is called on it - so a component graph can be built against deferred handles, with weights only
+ * read for the components which actually use them.  toString, equals and hashCode do not trigger loading.
+ * 
+ * @author Michael Lavelle
+ */
+public final class DeferredWeights {
+
+	private DeferredWeights() {
+	}
+
+	/**
+	 * @param weightsType The weights interface, eg. WeightsMatrix.class.
+	 * @param description A description of the deferred weights, used by toString.
+	 * @param supplier Supplies the weights on first use.
+	 * @return A deferred handle for the weights.
+	 */
+	public static <W> W defer(Class<W> weightsType, String description, WeightsSupplier<W> supplier) {
+		return weightsType.cast(Proxy.newProxyInstance(weightsType.getClassLoader(), new Class<?>[] { weightsType },
+				new DeferredWeightsHandler<>(description, supplier)));
+	}
+
+	/**
+	 * @param weights The weights, which may or may not be a deferred handle.
+	 * @return Whether the weights are a deferred handle.
+	 */
+	public static boolean isDeferred(Object weights) {
+		return weights != null && Proxy.isProxyClass(weights.getClass())
+				&& Proxy.getInvocationHandler(weights) instanceof DeferredWeightsHandler;
+	}
+
+	/**
+	 * @param weights The weights, which may or may not be a deferred handle.
+	 * @return False if the weights are a deferred handle which has not yet been loaded, true otherwise.
+	 */
+	public static boolean isLoaded(Object weights) {
+		return !isDeferred(weights) || ((DeferredWeightsHandler<?>) Proxy.getInvocationHandler(weights)).isLoaded();
+	}
+
+	/**
+	 * Loads the weights behind a deferred handle if they have not already been loaded.
+	 * 
+	 * @param weights The weights, which may or may not be a deferred handle.
+	 * @return The loaded weights - the argument itself if it is not a deferred handle.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <W> W load(W weights) {
+		if (isDeferred(weights)) {
+			return ((DeferredWeightsHandler<W>) Proxy.getInvocationHandler(weights)).get();
+		}
+		return weights;
+	}
+
+	private static class DeferredWeightsHandler<W> implements InvocationHandler, Serializable {
+
+		/**
+		 * Default serialization id.
+		 */
+		private static final long serialVersionUID = 1L;
+
+		private String description;
+		private WeightsSupplier<W> supplier;
+		private volatile transient W weights;
+
+		DeferredWeightsHandler(String description, WeightsSupplier<W> supplier) {
+			this.description = description;
+			this.supplier = supplier;
+		}
+
+		boolean isLoaded() {
+			return weights != null;
+		}
+
+		W get() {
+			W loaded = weights;
+			if (loaded == null) {
+				synchronized (this) {
+					loaded = weights;
+					if (loaded == null) {
+						loaded = supplier.get();
+						if (loaded == null) {
+							throw new IllegalStateException("No weights supplied for " + description);
+						}
+						weights = loaded;
+					}
+				}
+			}
+			return loaded;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			if (method.getDeclaringClass() == Object.class) {
+				switch (method.getName()) {
+				case "toString":
+					return "DeferredWeights [" + description + (isLoaded() ? ", loaded" : "") + "]";
+				case "hashCode":
+					return System.identityHashCode(proxy);
+				case "equals":
+					return proxy == args[0];
+				default:
+					break;
+				}
+			}
+			try {
+				return method.invoke(get(), args);
+			} catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+		}
+	}
+}
@@ -0,0 +1,744 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.architectures.weights;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * A minimal, dependency-free reader for the subset of HDF5 used by Keras weight files.
+ * 
+ * Supports version 0 to 3 superblocks, version 1 and 2 object headers, groups stored as symbol tables or
+ * compact links, and floating point datasets with compact, contiguous or chunked layouts. Chunked datasets
+ * may use the deflate, shuffle and fletcher32 filters - whose checksums are verified - and their chunks are
+ * decoded in parallel.  The chunk indexes introduced with version 4 layouts are not supported.
+ * 
+ * The file is memory-mapped, and contiguous float32 datasets are returned as views onto the mapping.
+ * 
+ * @author Michael Lavelle
+ */
+public class Hdf5File {
+
+	private static final byte[] SIGNATURE = new byte[] { (byte) 0x89, 'H', 'D', 'F', '\r', '\n', 0x1a, '\n' };
+
+	private static final long UNDEFINED_ADDRESS = -1L;
+
+	private static final int DATASPACE_MESSAGE = 0x0001;
+	private static final int LINK_INFO_MESSAGE = 0x0002;
+	private static final int DATATYPE_MESSAGE = 0x0003;
+	private static final int LINK_MESSAGE = 0x0006;
+	private static final int LAYOUT_MESSAGE = 0x0008;
+	private static final int FILTER_PIPELINE_MESSAGE = 0x000B;
+	private static final int CONTINUATION_MESSAGE = 0x0010;
+	private static final int SYMBOL_TABLE_MESSAGE = 0x0011;
+
+	private static final int DEFLATE_FILTER = 1;
+	private static final int SHUFFLE_FILTER = 2;
+	private static final int FLETCHER32_FILTER = 3;
+
+	private static final int COMPACT_LAYOUT = 0;
+	private static final int CONTIGUOUS_LAYOUT = 1;
+	private static final int CHUNKED_LAYOUT = 2;
+
+	private File file;
+	private ByteBuffer buffer;
+	private int offsetSize;
+	private int lengthSize;
+	private long baseAddress;
+	private Map<String, Long> datasets;
+
+	private Hdf5File(File file) throws IOException {
+		this.file = file;
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE) {
+				throw new IOException("HDF5 file " + file + " exceeds 2GB");
+			}
+			this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+					.order(ByteOrder.LITTLE_ENDIAN);
+		}
+		this.datasets = new LinkedHashMap<>();
+		readGroup("", readSuperblock());
+	}
+
+	/**
+	 * Open an HDF5 file, memory-mapping it and indexing its datasets.
+	 * 
+	 * @param file The HDF5 file.
+	 * @return The opened file.
+	 */
+	public static Hdf5File open(File file) {
+		try {
+			return new Hdf5File(file);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Unable to read HDF5 file " + file, e);
+		}
+	}
+
+	/**
+	 * @return The paths of the datasets in this file, in the order in which they were found, eg.
+	 *         "model_weights/conv2d_12/conv2d_12/kernel:0".
+	 */
+	public List<String> getDatasetPaths() {
+		return Collections.unmodifiableList(new ArrayList<>(datasets.keySet()));
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Read a floating point dataset.
+	 * 
+	 * @param path The path of the dataset.
+	 * @return The dataset, in row-major order.
+	 */
+	public Dataset readDataset(String path) {
+		Long address = datasets.get(path);
+		if (address == null) {
+			throw new IllegalArgumentException("No dataset " + path + " in HDF5 file " + file);
+		}
+		try {
+			return readDataset(readMessages(address));
+		} catch (IOException e) {
+			throw new UncheckedIOException("Unable to read dataset " + path + " from HDF5 file " + file, e);
+		}
+	}
+
+	private long readSuperblock() throws IOException {
+		for (int position = 0; position + SIGNATURE.length <= buffer.capacity(); position = position == 0 ? 512
+				: position * 2) {
+			if (hasSignature(position, SIGNATURE)) {
+				int version = buffer.get(position + 8);
+				if (version == 0 || version == 1) {
+					this.offsetSize = buffer.get(position + 13);
+					this.lengthSize = buffer.get(position + 14);
+					int baseAddressPosition = position + (version == 0 ? 24 : 28);
+					this.baseAddress = readOffset(baseAddressPosition);
+					// Skip the base, free-space, end of file and driver addresses and the root link name offset
+					return readOffset(baseAddressPosition + 5 * offsetSize);
+				} else if (version == 2 || version == 3) {
+					this.offsetSize = buffer.get(position + 9);
+					this.lengthSize = buffer.get(position + 10);
+					this.baseAddress = readOffset(position + 12);
+					return readOffset(position + 12 + 3 * offsetSize);
+				}
+				throw new IOException("Unsupported HDF5 superblock version " + version);
+			}
+		}
+		throw new IOException(file + " is not an HDF5 file");
+	}
+
+	private void readGroup(String path, long objectHeaderAddress) throws IOException {
+		List<Message> messages = readMessages(objectHeaderAddress);
+		if (find(messages, LAYOUT_MESSAGE) != null) {
+			datasets.put(path, objectHeaderAddress);
+			return;
+		}
+		Map<String, Long> children = new LinkedHashMap<>();
+		for (Message message : messages) {
+			if (message.type == SYMBOL_TABLE_MESSAGE) {
+				int heapPosition = address(readOffset(message.position + offsetSize));
+				if (!hasSignature(heapPosition, "HEAP")) {
+					throw new IOException("Corrupt local heap in " + file);
+				}
+				int heapData = address(readOffset(heapPosition + 8 + 2 * lengthSize));
+				readGroupNode(readOffset(message.position), heapData, children);
+			} else if (message.type == LINK_MESSAGE) {
+				readLink(message.position, children);
+			} else if (message.type == LINK_INFO_MESSAGE) {
+				int flags = buffer.get(message.position + 1);
+				long fractalHeapAddress = readOffset(message.position + 2 + ((flags & 0x01) != 0 ? 8 : 0));
+				if (fractalHeapAddress != UNDEFINED_ADDRESS) {
+					throw new IOException("Group " + path + " uses dense link storage, which is not supported - "
+							+ "save the weights with h5py's default (earliest) file format");
+				}
+			}
+		}
+		for (Map.Entry<String, Long> child : children.entrySet()) {
+			readGroup(path.isEmpty() ? child.getKey() : path + "/" + child.getKey(), child.getValue());
+		}
+	}
+
+	private void readGroupNode(long address, int heapData, Map<String, Long> children) throws IOException {
+		int position = address(address);
+		if (!hasSignature(position, "TREE")) {
+			throw new IOException("Corrupt group B-tree in " + file);
+		}
+		int level = buffer.get(position + 5);
+		int entries = buffer.getShort(position + 6) & 0xFFFF;
+		// Skip the siblings and the first key
+		int entry = position + 8 + 2 * offsetSize + lengthSize;
+		for (int i = 0; i < entries; i++) {
+			long child = readOffset(entry);
+			if (level > 0) {
+				readGroupNode(child, heapData, children);
+			} else {
+				readSymbolTableNode(child, heapData, children);
+			}
+			entry += offsetSize + lengthSize;
+		}
+	}
+
+	private void readSymbolTableNode(long address, int heapData, Map<String, Long> children) throws IOException {
+		int position = address(address);
+		if (!hasSignature(position, "SNOD")) {
+			throw new IOException("Corrupt symbol table node in " + file);
+		}
+		int symbols = buffer.getShort(position + 6) & 0xFFFF;
+		int entry = position + 8;
+		for (int i = 0; i < symbols; i++) {
+			String name = readString(heapData + (int) readOffset(entry), -1);
+			children.put(name, readOffset(entry + offsetSize));
+			entry += 2 * offsetSize + 24;
+		}
+	}
+
+	private void readLink(int position, Map<String, Long> children) {
+		int flags = buffer.get(position + 1);
+		int linkType = 0;
+		int current = position + 2;
+		if ((flags & 0x08) != 0) {
+			linkType = buffer.get(current++);
+		}
+		if ((flags & 0x04) != 0) {
+			current += 8;
+		}
+		if ((flags & 0x10) != 0) {
+			current++;
+		}
+		int nameLengthSize = 1 << (flags & 0x03);
+		int nameLength = (int) readUnsigned(current, nameLengthSize);
+		current += nameLengthSize;
+		String name = readString(current, nameLength);
+		if (linkType == 0) {
+			children.put(name, readOffset(current + nameLength));
+		}
+	}
+
+	private Dataset readDataset(List<Message> messages) throws IOException {
+		int[] shape = readDataspace(required(messages, DATASPACE_MESSAGE));
+
+		int datatype = required(messages, DATATYPE_MESSAGE);
+		if ((buffer.get(datatype) & 0x0F) != 1) {
+			throw new IOException("Only floating point datasets are supported");
+		}
+		ByteOrder order = (buffer.get(datatype + 1) & 0x01) == 0 ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+		int elementSize = buffer.getInt(datatype + 4);
+		if (elementSize != Float.BYTES && elementSize != Double.BYTES) {
+			throw new IOException("Unsupported floating point size " + elementSize);
+		}
+		int elementCount = WeightsRequest.getElementCount(shape);
+
+		int layout = required(messages, LAYOUT_MESSAGE);
+		int version = buffer.get(layout);
+		if (version == 1 || version == 2) {
+			int rank = buffer.get(layout + 1);
+			int layoutClass = buffer.get(layout + 2);
+			int dimensions = layout + 8 + (layoutClass == COMPACT_LAYOUT ? 0 : offsetSize);
+			if (layoutClass == COMPACT_LAYOUT) {
+				return new Dataset(shape, toFloats(slice(dimensions + 4 * rank + 4, elementCount * elementSize),
+						order, elementSize, elementCount));
+			} else if (layoutClass == CONTIGUOUS_LAYOUT) {
+				return new Dataset(shape, readContiguous(readOffset(layout + 8), order, elementSize, elementCount));
+			}
+			return new Dataset(shape, readChunked(shape, readChunkShape(dimensions, rank - 1),
+					readOffset(layout + 8), readFilters(find(messages, FILTER_PIPELINE_MESSAGE)), order, elementSize));
+		} else if (version == 3 || version == 4) {
+			int layoutClass = buffer.get(layout + 1);
+			if (layoutClass == COMPACT_LAYOUT) {
+				return new Dataset(shape,
+						toFloats(slice(layout + 4, elementCount * elementSize), order, elementSize, elementCount));
+			} else if (layoutClass == CONTIGUOUS_LAYOUT) {
+				return new Dataset(shape, readContiguous(readOffset(layout + 2), order, elementSize, elementCount));
+			} else if (layoutClass == CHUNKED_LAYOUT && version == 3) {
+				int rank = buffer.get(layout + 2);
+				return new Dataset(shape,
+						readChunked(shape, readChunkShape(layout + 3 + offsetSize, rank - 1),
+								readOffset(layout + 3), readFilters(find(messages, FILTER_PIPELINE_MESSAGE)), order,
+								elementSize));
+			} else if (layoutClass == CHUNKED_LAYOUT) {
+				throw new IOException("Chunked datasets indexed with a version 4 layout are not supported - "
+						+ "save the weights with h5py's default (earliest) or 'v108' file format");
+			}
+		}
+		throw new IOException("Unsupported HDF5 data layout version " + version);
+	}
+
+	private int[] readDataspace(int position) {
+		int version = buffer.get(position);
+		int rank = buffer.get(position + 1);
+		int dimensions = position + (version == 1 ? 8 : 4);
+		int[] shape = new int[rank];
+		for (int i = 0; i < rank; i++) {
+			shape[i] = (int) readLength(dimensions + i * lengthSize);
+		}
+		return shape;
+	}
+
+	private int[] readChunkShape(int position, int rank) {
+		int[] chunkShape = new int[rank];
+		for (int i = 0; i < rank; i++) {
+			chunkShape[i] = buffer.getInt(position + 4 * i);
+		}
+		return chunkShape;
+	}
+
+	private List<Integer> readFilters(Integer position) throws IOException {
+		List<Integer> filters = new ArrayList<>();
+		if (position == null) {
+			return filters;
+		}
+		int version = buffer.get(position);
+		int count = buffer.get(position + 1);
+		int current = position + (version == 1 ? 8 : 2);
+		for (int i = 0; i < count; i++) {
+			int id = buffer.getShort(current) & 0xFFFF;
+			boolean named = version == 1 || id >= 256;
+			int nameLength = named ? buffer.getShort(current + 2) & 0xFFFF : 0;
+			current += named ? 4 : 2;
+			int values = buffer.getShort(current + 2) & 0xFFFF;
+			current += 4;
+			current += version == 1 ? (nameLength + 7) / 8 * 8 : nameLength;
+			current += 4 * values;
+			if (version == 1 && values % 2 != 0) {
+				current += 4;
+			}
+			if (id != DEFLATE_FILTER && id != SHUFFLE_FILTER && id != FLETCHER32_FILTER) {
+				throw new IOException("Unsupported HDF5 filter " + id);
+			}
+			filters.add(id);
+		}
+		return filters;
+	}
+
+	private FloatBuffer readContiguous(long address, ByteOrder order, int elementSize, int elementCount)
+			throws IOException {
+		if (address == UNDEFINED_ADDRESS) {
+			return FloatBuffer.allocate(elementCount);
+		}
+		return toFloats(slice(address(address), elementCount * elementSize), order, elementSize, elementCount);
+	}
+
+	private FloatBuffer readChunked(int[] shape, int[] chunkShape, long address, List<Integer> filters,
+			ByteOrder order, int elementSize) throws IOException {
+		float[] data = new float[WeightsRequest.getElementCount(shape)];
+		if (address == UNDEFINED_ADDRESS) {
+			return FloatBuffer.wrap(data);
+		}
+		List<Chunk> chunks = new ArrayList<>();
+		readChunkNode(address, shape.length, chunks);
+		int chunkElementCount = WeightsRequest.getElementCount(chunkShape);
+		chunks.parallelStream().forEach(chunk -> {
+			try {
+				byte[] decoded = decode(chunk, filters, elementSize, chunkElementCount * elementSize);
+				copy(toFloats(ByteBuffer.wrap(decoded), order, elementSize, chunkElementCount), chunk.offsets,
+						chunkShape, shape, data);
+			} catch (IOException e) {
+				throw new UncheckedIOException("Unable to decode chunk of HDF5 file " + file, e);
+			}
+		});
+		return FloatBuffer.wrap(data);
+	}
+
+	private void readChunkNode(long address, int rank, List<Chunk> chunks) throws IOException {
+		int position = address(address);
+		if (!hasSignature(position, "TREE")) {
+			throw new IOException("Corrupt chunk B-tree in " + file);
+		}
+		int level = buffer.get(position + 5);
+		int entries = buffer.getShort(position + 6) & 0xFFFF;
+		int keySize = 8 + 8 * (rank + 1);
+		int key = position + 8 + 2 * offsetSize;
+		for (int i = 0; i < entries; i++) {
+			long child = readOffset(key + keySize);
+			if (level > 0) {
+				readChunkNode(child, rank, chunks);
+			} else {
+				int[] offsets = new int[rank];
+				for (int d = 0; d < rank; d++) {
+					offsets[d] = (int) buffer.getLong(key + 8 + 8 * d);
+				}
+				chunks.add(new Chunk(address(child), buffer.getInt(key), buffer.getInt(key + 4), offsets));
+			}
+			key += keySize + offsetSize;
+		}
+	}
+
+	private byte[] decode(Chunk chunk, List<Integer> filters, int elementSize, int decodedSize)
+			throws IOException {
+		byte[] data = new byte[chunk.size];
+		ByteBuffer source = buffer.duplicate();
+		source.position(chunk.position);
+		source.get(data);
+		for (int i = filters.size() - 1; i >= 0; i--) {
+			if ((chunk.filterMask & (1 << i)) != 0) {
+				continue;
+			}
+			int filter = filters.get(i);
+			if (filter == DEFLATE_FILTER) {
+				data = inflate(data, decodedSize);
+			} else if (filter == SHUFFLE_FILTER) {
+				data = unshuffle(data, elementSize);
+			} else {
+				data = verifyFletcher32(data);
+			}
+		}
+		return data;
+	}
+
+	/**
+	 * Verify the Fletcher32 checksum appended to a chunk by the fletcher32 filter.
+	 * 
+	 * @param data The chunk, ending with its little-endian checksum.
+	 * @return The chunk without its checksum.
+	 */
+	private byte[] verifyFletcher32(byte[] data) throws IOException {
+		if (data.length < 4) {
+			throw new IOException("Chunk of HDF5 file " + file + " is too short to hold a Fletcher32 checksum");
+		}
+		int length = data.length - 4;
+		int stored = ByteBuffer.wrap(data, length, 4).order(ByteOrder.LITTLE_ENDIAN).getInt();
+		int checksum = fletcher32(data, length);
+		// Files written before HDF5 1.6.3 store the checksum with the bytes of each half swapped
+		int reversed = ((checksum & 0x00FF00FF) << 8) | ((checksum >>> 8) & 0x00FF00FF);
+		if (stored != checksum && stored != reversed) {
+			throw new IOException("Data error detected by Fletcher32 checksum in HDF5 file " + file);
+		}
+		byte[] withoutChecksum = new byte[length];
+		System.arraycopy(data, 0, withoutChecksum, 0, length);
+		return withoutChecksum;
+	}
+
+	/**
+	 * The Fletcher32 checksum of HDF5, which sums big-endian 16 bit words.
+	 */
+	static int fletcher32(byte[] data, int length) {
+		long sum1 = 0;
+		long sum2 = 0;
+		int position = 0;
+		for (int words = length / 2; words > 0;) {
+			// Reduce the sums every 360 words, before they can overflow
+			int block = Math.min(words, 360);
+			words -= block;
+			for (; block > 0; block--) {
+				sum1 += ((data[position] & 0xFF) << 8) | (data[position + 1] & 0xFF);
+				position += 2;
+				sum2 += sum1;
+			}
+			sum1 = (sum1 & 0xFFFF) + (sum1 >>> 16);
+			sum2 = (sum2 & 0xFFFF) + (sum2 >>> 16);
+		}
+		if (length % 2 != 0) {
+			sum1 += (data[position] & 0xFF) << 8;
+			sum2 += sum1;
+			sum1 = (sum1 & 0xFFFF) + (sum1 >>> 16);
+			sum2 = (sum2 & 0xFFFF) + (sum2 >>> 16);
+		}
+		sum1 = (sum1 & 0xFFFF) + (sum1 >>> 16);
+		sum2 = (sum2 & 0xFFFF) + (sum2 >>> 16);
+		return (int) ((sum2 << 16) | sum1);
+	}
+
+	private static byte[] inflate(byte[] data, int decodedSize) throws IOException {
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(data);
+			byte[] decoded = new byte[decodedSize];
+			int length = 0;
+			while (length < decodedSize && !inflater.finished()) {
+				int inflated = inflater.inflate(decoded, length, decodedSize - length);
+				if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+					throw new IOException("Truncated deflate stream");
+				}
+				length += inflated;
+			}
+			return decoded;
+		} catch (DataFormatException e) {
+			throw new IOException("Corrupt deflate stream", e);
+		} finally {
+			inflater.end();
+		}
+	}
+
+	private static byte[] unshuffle(byte[] data, int elementSize) {
+		int elements = data.length / elementSize;
+		byte[] unshuffled = new byte[data.length];
+		for (int b = 0; b < elementSize; b++) {
+			int source = b * elements;
+			for (int i = 0; i < elements; i++) {
+				unshuffled[i * elementSize + b] = data[source + i];
+			}
+		}
+		int remainder = elements * elementSize;
+		System.arraycopy(data, remainder, unshuffled, remainder, data.length - remainder);
+		return unshuffled;
+	}
+
+	/**
+	 * Copy the part of a row-major chunk which lies within the dataset into the row-major dataset, one run along
+	 * the innermost dimension at a time.
+	 */
+	static void copy(FloatBuffer chunk, int[] offsets, int[] chunkShape, int[] shape, float[] data) {
+		int rank = shape.length;
+		if (rank == 0) {
+			data[0] = chunk.get(0);
+			return;
+		}
+		int[] extent = new int[rank];
+		for (int d = 0; d < rank; d++) {
+			extent[d] = Math.min(chunkShape[d], shape[d] - offsets[d]);
+			if (extent[d] <= 0) {
+				return;
+			}
+		}
+		int[] chunkStrides = KerasTensorLayouts.getStrides(chunkShape, false);
+		int[] strides = KerasTensorLayouts.getStrides(shape, false);
+		int[] index = new int[rank];
+		while (true) {
+			int source = 0;
+			int target = offsets[rank - 1];
+			for (int d = 0; d < rank - 1; d++) {
+				source += index[d] * chunkStrides[d];
+				target += (offsets[d] + index[d]) * strides[d];
+			}
+			chunk.position(source);
+			chunk.get(data, target, extent[rank - 1]);
+			int d = rank - 2;
+			while (d >= 0 && ++index[d] == extent[d]) {
+				index[d] = 0;
+				d--;
+			}
+			if (d < 0) {
+				return;
+			}
+		}
+	}
+
+	private static FloatBuffer toFloats(ByteBuffer bytes, ByteOrder order, int elementSize, int elementCount) {
+		ByteBuffer ordered = bytes.slice().order(order);
+		if (elementSize == Float.BYTES) {
+			ordered.limit(elementCount * Float.BYTES);
+			return ordered.asFloatBuffer();
+		}
+		float[] narrowed = new float[elementCount];
+		for (int i = 0; i < elementCount; i++) {
+			narrowed[i] = (float) ordered.getDouble(i * Double.BYTES);
+		}
+		return FloatBuffer.wrap(narrowed);
+	}
+
+	private List<Message> readMessages(long address) throws IOException {
+		List<Message> messages = new ArrayList<>();
+		int position = address(address);
+		if (hasSignature(position, "OHDR")) {
+			int flags = buffer.get(position + 5);
+			int current = position + 6 + ((flags & 0x20) != 0 ? 16 : 0) + ((flags & 0x10) != 0 ? 4 : 0);
+			int chunkSizeBytes = 1 << (flags & 0x03);
+			int chunkSize = (int) readUnsigned(current, chunkSizeBytes);
+			current += chunkSizeBytes;
+			int messageHeaderSize = (flags & 0x04) != 0 ? 6 : 4;
+			List<int[]> blocks = new ArrayList<>();
+			blocks.add(new int[] { current, current + chunkSize });
+			for (int b = 0; b < blocks.size(); b++) {
+				int end = blocks.get(b)[1];
+				for (int message = blocks.get(b)[0]; message + messageHeaderSize <= end;) {
+					int type = buffer.get(message) & 0xFF;
+					int size = buffer.getShort(message + 1) & 0xFFFF;
+					int data = message + messageHeaderSize;
+					if (type == CONTINUATION_MESSAGE) {
+						int continuation = address(readOffset(data));
+						if (!hasSignature(continuation, "OCHK")) {
+							throw new IOException("Corrupt object header continuation in " + file);
+						}
+						// Exclude the signature and the trailing checksum
+						blocks.add(new int[] { continuation + 4,
+								continuation + (int) readLength(data + offsetSize) - 4 });
+					} else {
+						messages.add(new Message(type, data));
+					}
+					message = data + size;
+				}
+			}
+		} else if (buffer.get(position) == 1) {
+			int headerSize = buffer.getInt(position + 8);
+			List<int[]> blocks = new ArrayList<>();
+			blocks.add(new int[] { position + 16, position + 16 + headerSize });
+			for (int b = 0; b < blocks.size(); b++) {
+				int end = blocks.get(b)[1];
+				for (int message = blocks.get(b)[0]; message + 8 <= end;) {
+					int type = buffer.getShort(message) & 0xFFFF;
+					int size = buffer.getShort(message + 2) & 0xFFFF;
+					int data = message + 8;
+					if (type == CONTINUATION_MESSAGE) {
+						int continuation = address(readOffset(data));
+						blocks.add(new int[] { continuation, continuation + (int) readLength(data + offsetSize) });
+					} else {
+						messages.add(new Message(type, data));
+					}
+					message = data + size;
+				}
+			}
+		} else {
+			throw new IOException("Unsupported HDF5 object header at " + address + " in " + file);
+		}
+		return messages;
+	}
+
+	private static Integer find(List<Message> messages, int type) {
+		for (Message message : messages) {
+			if (message.type == type) {
+				return message.position;
+			}
+		}
+		return null;
+	}
+
+	private int required(List<Message> messages, int type) throws IOException {
+		Integer position = find(messages, type);
+		if (position == null) {
+			throw new IOException("Dataset is missing header message " + type);
+		}
+		return position;
+	}
+
+	private boolean hasSignature(int position, String signature) {
+		return hasSignature(position, signature.getBytes(StandardCharsets.US_ASCII));
+	}
+
+	private boolean hasSignature(int position, byte[] signature) {
+		if (position < 0 || position + signature.length > buffer.capacity()) {
+			return false;
+		}
+		for (int i = 0; i < signature.length; i++) {
+			if (buffer.get(position + i) != signature[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private ByteBuffer slice(int position, int length) {
+		ByteBuffer slice = buffer.duplicate();
+		slice.position(position);
+		slice.limit(position + length);
+		return slice.slice();
+	}
+
+	private String readString(int position, int length) {
+		int end = position;
+		if (length < 0) {
+			while (buffer.get(end) != 0) {
+				end++;
+			}
+		} else {
+			end = position + length;
+		}
+		byte[] bytes = new byte[end - position];
+		ByteBuffer source = buffer.duplicate();
+		source.position(position);
+		source.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private int address(long address) throws IOException {
+		long position = baseAddress + address;
+		if (address == UNDEFINED_ADDRESS || position < 0 || position >= buffer.capacity()) {
+			throw new IOException("Address " + address + " is outside HDF5 file " + file);
+		}
+		return (int) position;
+	}
+
+	private long readOffset(int position) {
+		return readUnsigned(position, offsetSize);
+	}
+
+	private long readLength(int position) {
+		return readUnsigned(position, lengthSize);
+	}
+
+	private long readUnsigned(int position, int size) {
+		long value = 0;
+		boolean undefined = true;
+		for (int i = size - 1; i >= 0; i--) {
+			int b = buffer.get(position + i) & 0xFF;
+			undefined = undefined && b == 0xFF;
+			value = (value << 8) | b;
+		}
+		return undefined && size == offsetSize ? UNDEFINED_ADDRESS : value;
+	}
+
+	/**
+	 * A floating point dataset, in row-major order.
+	 */
+	public static class Dataset {
+
+		private int[] shape;
+		private FloatBuffer data;
+
+		Dataset(int[] shape, FloatBuffer data) {
+			this.shape = shape;
+			this.data = data;
+		}
+
+		public int[] getShape() {
+			return shape.clone();
+		}
+
+		public FloatBuffer getData() {
+			return data.duplicate();
+		}
+	}
+
+	private static class Message {
+
+		private int type;
+		private int position;
+
+		Message(int type, int position) {
+			this.type = type;
+			this.position = position;
+		}
+	}
+
+	private static class Chunk {
+
+		private int position;
+		private int size;
+		private int filterMask;
+		private int[] offsets;
+
+		Chunk(int position, int size, int filterMask, int[] offsets) {
+			this.position = position;
+			this.size = size;
+			this.filterMask = filterMask;
+			this.offsets = offsets;
+		}
+	}
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.architectures.weights;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.nio.FloatBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A TensorSource which reads the weight files published for Keras models (.h5) directly, with no Python
+ * preprocessing step.
+ * 
+ * Keras stores each weight as a dataset such as "conv2d_12/kernel:0" within a group named after its layer;
+ * the dataset is served under the name the definitions request, formed from the enclosing group name and the
+ * dataset name without the colon - eg. "conv2d_12_kernel0". Optimizer state saved alongside a full model is
+ * ignored.
+ * 
+ * @author Michael Lavelle
+ */
+public class KerasHdf5TensorSource implements TensorSource {
+
+	/**
+	 * Default serialization id.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	private static final String OPTIMIZER_WEIGHTS_GROUP = "optimizer_weights";
+
+	private File file;
+	private transient Hdf5File hdf5File;
+	private transient Map<String, String> datasetPaths;
+
+	private KerasHdf5TensorSource(File file) {
+		this.file = file;
+		initialise();
+	}
+
+	/**
+	 * @param file The Keras weights file.
+	 * @return The tensor source.
+	 */
+	public static KerasHdf5TensorSource open(File file) {
+		return new KerasHdf5TensorSource(file);
+	}
+
+	@Override
+	public FloatBuffer getTensor(WeightsRequest request) {
+		String path = datasetPaths.get(request.getName());
+		if (path == null) {
+			throw new IllegalArgumentException("No tensor named " + request.getName() + " in Keras weights " + file);
+		}
+		Hdf5File.Dataset dataset = hdf5File.readDataset(path);
+		return KerasTensorLayouts.toCanonicalLayout(request, dataset.getData(), dataset.getShape(), false);
+	}
+
+	/**
+	 * @param datasetPath The path of a dataset, eg. "model_weights/conv2d_12/conv2d_12/kernel:0".
+	 * @return The name of the tensor, eg. "conv2d_12_kernel0".
+	 */
+	static String getTensorName(String datasetPath) {
+		String[] elements = datasetPath.split("/");
+		String datasetName = elements[elements.length - 1].replace(":", "");
+		return elements.length == 1 ? datasetName : elements[elements.length - 2] + "_" + datasetName;
+	}
+
+	private void initialise() {
+		this.hdf5File = Hdf5File.open(file);
+		this.datasetPaths = new HashMap<>();
+		for (String datasetPath : hdf5File.getDatasetPaths()) {
+			if (!datasetPath.startsWith(OPTIMIZER_WEIGHTS_GROUP + "/")) {
+				datasetPaths.putIfAbsent(getTensorName(datasetPath), datasetPath);
+			}
+		}
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		initialise();
+	}
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.architectures.weights;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+/**
+ * Converts tensors stored with Keras conventions into the canonical layouts described by WeightsRequest.
+ * 
+ * Keras stores convolutional kernels as [height][width][inputDepth][outputDepth] and dense kernels as
+ * [inputs][outputs].  Tensors may be stored in C (row-major) or Fortran (column-major) order - a Fortran-order
+ * tensor is read through strides, rather than being copied into C order first, so each tensor is copied at most
+ * once, and tensors which are already in the canonical layout (such as every vector) are not copied at all.
+ * 
+ * @author Michael Lavelle
+ */
+public final class KerasTensorLayouts {
+
+	private KerasTensorLayouts() {
+	}
+
+	/**
+	 * @param request The requested tensor.
+	 * @param data The stored tensor data.
+	 * @param storedShape The stored shape of the tensor.
+	 * @param fortranOrder Whether the data is stored in Fortran order.
+	 * @return The tensor in the canonical layout for the request.
+	 */
+	public static FloatBuffer toCanonicalLayout(WeightsRequest request, FloatBuffer data, int[] storedShape,
+			boolean fortranOrder) {
+		int[] shape = request.getShape();
+		if (WeightsRequest.getElementCount(storedShape) != request.getElementCount()) {
+			throw new IllegalArgumentException("Tensor " + request.getName() + " has shape "
+					+ Arrays.toString(storedShape) + " but was requested as " + request);
+		}
+		// The canonical dimension each stored axis corresponds to
+		int[] axisDimensions;
+		if (request.getKind() == WeightsRequest.Kind.CONVOLUTIONAL_WEIGHTS && storedShape.length == 4) {
+			// [h][w][in][out] -> [out][in][h][w]
+			axisDimensions = new int[] { 2, 3, 1, 0 };
+		} else if (request.getKind() == WeightsRequest.Kind.DENSE_WEIGHTS && storedShape.length == 2
+				&& storedShape[0] == shape[1] && storedShape[1] == shape[0]) {
+			// [in][out] -> [out][in]
+			axisDimensions = new int[] { 1, 0 };
+		} else {
+			// Stored in the canonical layout already, or a vector
+			if (!fortranOrder || storedShape.length <= 1) {
+				return data;
+			}
+			shape = storedShape;
+			axisDimensions = new int[storedShape.length];
+			for (int axis = 0; axis < axisDimensions.length; axis++) {
+				axisDimensions[axis] = axis;
+			}
+		}
+		int[] strides = getStrides(storedShape, fortranOrder);
+		int[] dimensionStrides = new int[shape.length];
+		int[] dimensionSizes = new int[shape.length];
+		for (int axis = 0; axis < axisDimensions.length; axis++) {
+			dimensionStrides[axisDimensions[axis]] = strides[axis];
+			dimensionSizes[axisDimensions[axis]] = storedShape[axis];
+		}
+		if (!Arrays.equals(dimensionSizes, shape)) {
+			throw new IllegalArgumentException("Tensor " + request.getName() + " has shape "
+					+ Arrays.toString(storedShape) + " but was requested as " + request);
+		}
+		return FloatBuffer.wrap(gather(data, dimensionSizes, dimensionStrides));
+	}
+
+	/**
+	 * @param shape The shape of a tensor.
+	 * @param fortranOrder Whether the tensor is stored in Fortran order.
+	 * @return The stride, in elements, of each axis of the tensor.
+	 */
+	public static int[] getStrides(int[] shape, boolean fortranOrder) {
+		int[] strides = new int[shape.length];
+		int stride = 1;
+		if (fortranOrder) {
+			for (int axis = 0; axis < shape.length; axis++) {
+				strides[axis] = stride;
+				stride = stride * shape[axis];
+			}
+		} else {
+			for (int axis = shape.length - 1; axis >= 0; axis--) {
+				strides[axis] = stride;
+				stride = stride * shape[axis];
+			}
+		}
+		return strides;
+	}
+
+	/**
+	 * Copy a strided view of a tensor into a new row-major array.
+	 * 
+	 * @param source The source data.
+	 * @param shape The shape of the view.
+	 * @param strides The stride in the source data of each dimension of the view.
+	 * @return The view, in row-major order.
+	 */
+	static float[] gather(FloatBuffer source, int[] shape, int[] strides) {
+		float[] target = new float[WeightsRequest.getElementCount(shape)];
+		if (target.length == 0) {
+			return target;
+		}
+		int base = source.position();
+		int last = shape.length - 1;
+		int innerSize = shape[last];
+		int innerStride = strides[last];
+		int[] index = new int[shape.length];
+		int sourceOffset = 0;
+		int targetOffset = 0;
+		while (targetOffset < target.length) {
+			int offset = base + sourceOffset;
+			for (int i = 0; i < innerSize; i++) {
+				target[targetOffset++] = source.get(offset);
+				offset += innerStride;
+			}
+			// Advance the outer dimensions like an odometer
+			for (int dimension = last - 1; dimension >= 0; dimension--) {
+				sourceOffset += strides[dimension];
+				if (++index[dimension] < shape[dimension]) {
+					break;
+				}
+				sourceOffset -= strides[dimension] * shape[dimension];
+				index[dimension] = 0;
+			}
+		}
+		return target;
+	}
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.architectures.weights;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A NumPy array in .npy format, read from a (typically memory-mapped) buffer without copying its payload.
+ * 
+ * Little-endian float32 arrays are exposed as views onto the buffer; little-endian float64 arrays are narrowed
+ * to float32 with a copy.
+ * 
+ * @author Michael Lavelle
+ */
+public class NumPyArray {
+
+	private static final byte[] MAGIC = new byte[] { (byte) 0x93, 'N', 'U', 'M', 'P', 'Y' };
+
+	private static final Pattern DESCR = Pattern.compile("'descr'\\s*:\\s*'([^']*)'");
+	private static final Pattern FORTRAN_ORDER = Pattern.compile("'fortran_order'\\s*:\\s*(True|False)");
+	private static final Pattern SHAPE = Pattern.compile("'shape'\\s*:\\s*\\(([^)]*)\\)");
+
+	private int[] shape;
+	private boolean fortranOrder;
+	private FloatBuffer data;
+
+	private NumPyArray(int[] shape, boolean fortranOrder, FloatBuffer data) {
+		this.shape = shape;
+		this.fortranOrder = fortranOrder;
+		this.data = data;
+	}
+
+	/**
+	 * Parse a .npy array.
+	 * 
+	 * @param buffer A buffer positioned at the start of the .npy data.
+	 * @return The array, whose data is a view onto the buffer where possible.
+	 * @throws IOException If the buffer does not contain a supported .npy array.
+	 */
+	public static NumPyArray read(ByteBuffer buffer) throws IOException {
+		ByteBuffer npy = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+		byte[] magic = new byte[MAGIC.length];
+		npy.get(magic);
+		for (int i = 0; i < MAGIC.length; i++) {
+			if (magic[i] != MAGIC[i]) {
+				throw new IOException("Not a .npy array");
+			}
+		}
+		int majorVersion = npy.get();
+		npy.get();
+		int headerLength = majorVersion == 1 ? npy.getShort() & 0xFFFF : npy.getInt();
+		byte[] headerBytes = new byte[headerLength];
+		npy.get(headerBytes);
+		String header = new String(headerBytes, majorVersion >= 3 ? StandardCharsets.UTF_8 : StandardCharsets.ISO_8859_1);
+
+		String descr = find(DESCR, header);
+		boolean fortranOrder = "True".equals(find(FORTRAN_ORDER, header));
+		int[] shape = parseShape(find(SHAPE, header));
+		int elementCount = WeightsRequest.getElementCount(shape);
+
+		ByteBuffer payload = npy.slice().order(ByteOrder.LITTLE_ENDIAN);
+		FloatBuffer data;
+		if ("<f4".equals(descr)) {
+			payload.limit(elementCount * Float.BYTES);
+			data = payload.slice().order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+		} else if ("<f8".equals(descr)) {
+			float[] narrowed = new float[elementCount];
+			for (int i = 0; i < elementCount; i++) {
+				narrowed[i] = (float) payload.getDouble(i * Double.BYTES);
+			}
+			data = FloatBuffer.wrap(narrowed);
+		} else {
+			throw new IOException("Unsupported .npy dtype " + descr + " - expected <f4 or <f8");
+		}
+		return new NumPyArray(shape, fortranOrder, data);
+	}
+
+	private static String find(Pattern pattern, String header) throws IOException {
+		Matcher matcher = pattern.matcher(header);
+		if (!matcher.find()) {
+			throw new IOException("Unable to parse .npy header " + header);
+		}
+		return matcher.group(1);
+	}
+
+	private static int[] parseShape(String shape) {
+		String[] dimensions = shape.split(",");
+		int rank = 0;
+		int[] parsed = new int[dimensions.length];
+		for (String dimension : dimensions) {
+			if (!dimension.trim().isEmpty()) {
+				parsed[rank++] = Integer.parseInt(dimension.trim().replace("L", ""));
+			}
+		}
+		int[] result = new int[rank];
+		System.arraycopy(parsed, 0, result, 0, rank);
+		return result;
+	}
+
+	public int[] getShape() {
+		return shape.clone();
+	}
+
+	public boolean isFortranOrder() {
+		return fortranOrder;
+	}
+
+	/**
+	 * @return The array data in storage order.
+	 */
+	public FloatBuffer getData() {
+		return data.duplicate();
+	}
+}
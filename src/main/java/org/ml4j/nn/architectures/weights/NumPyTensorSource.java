@@ -0,0 +1,186 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.architectures.weights;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A TensorSource which reads tensors saved by NumPy, either as a directory of .npy files named after the
+ * requested tensors (eg. "conv2d_12_kernel0.npy"), or as an uncompressed .npz archive of such files
+ * (as written by numpy.savez).
+ * 
+ * Files are memory-mapped and tensors are converted from Keras conventions to the canonical layouts with at most
+ * one copy - see KerasTensorLayouts.
+ * 
+ * @author Michael Lavelle
+ */
+public class NumPyTensorSource implements TensorSource {
+
+	/**
+	 * Default serialization id.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	private static final int LOCAL_FILE_HEADER_SIGNATURE = 0x04034b50;
+	private static final int CENTRAL_DIRECTORY_SIGNATURE = 0x02014b50;
+	private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+
+	private File file;
+	private transient ByteBuffer archive;
+	private transient Map<String, ByteBuffer> archiveEntries;
+	private transient Map<String, NumPyArray> arrays;
+
+	private NumPyTensorSource(File file) {
+		this.file = file;
+		initialise();
+	}
+
+	/**
+	 * @param directory A directory containing one .npy file per tensor.
+	 * @return The tensor source.
+	 */
+	public static NumPyTensorSource fromDirectory(File directory) {
+		if (!directory.isDirectory()) {
+			throw new IllegalArgumentException(directory + " is not a directory");
+		}
+		return new NumPyTensorSource(directory);
+	}
+
+	/**
+	 * @param npzFile An uncompressed .npz archive containing one .npy entry per tensor.
+	 * @return The tensor source.
+	 */
+	public static NumPyTensorSource fromArchive(File npzFile) {
+		return new NumPyTensorSource(npzFile);
+	}
+
+	@Override
+	public FloatBuffer getTensor(WeightsRequest request) {
+		NumPyArray array = arrays.computeIfAbsent(request.getName(), this::readArray);
+		return KerasTensorLayouts.toCanonicalLayout(request, array.getData(), array.getShape(),
+				array.isFortranOrder());
+	}
+
+	private NumPyArray readArray(String name) {
+		try {
+			if (archiveEntries != null) {
+				ByteBuffer entry = archiveEntries.get(name + ".npy");
+				if (entry == null) {
+					throw new IllegalArgumentException("No tensor named " + name + " in " + file);
+				}
+				return NumPyArray.read(entry.duplicate());
+			}
+			File npyFile = new File(file, name + ".npy");
+			if (!npyFile.exists()) {
+				throw new IllegalArgumentException("No tensor named " + name + " in " + file);
+			}
+			return NumPyArray.read(map(npyFile));
+		} catch (IOException e) {
+			throw new UncheckedIOException("Unable to read tensor " + name + " from " + file, e);
+		}
+	}
+
+	private static ByteBuffer map(File file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE) {
+				throw new IOException(file + " exceeds 2GB");
+			}
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+		}
+	}
+
+	private void initialise() {
+		this.arrays = new ConcurrentHashMap<>();
+		if (!file.isDirectory()) {
+			try {
+				this.archive = map(file);
+				this.archiveEntries = readArchiveEntries();
+			} catch (IOException e) {
+				throw new UncheckedIOException("Unable to read .npz archive " + file, e);
+			}
+		}
+	}
+
+	private Map<String, ByteBuffer> readArchiveEntries() throws IOException {
+		// Locate the end of central directory record, which is followed by a comment of up to 64KB
+		int end = -1;
+		for (int position = archive.capacity() - 22; position >= Math.max(0, archive.capacity() - 22 - 0xFFFF);
+				position--) {
+			if (archive.getInt(position) == END_OF_CENTRAL_DIRECTORY_SIGNATURE) {
+				end = position;
+				break;
+			}
+		}
+		if (end < 0) {
+			throw new IOException(file + " is not a .npz archive");
+		}
+		int entryCount = archive.getShort(end + 10) & 0xFFFF;
+		int position = archive.getInt(end + 16);
+		Map<String, ByteBuffer> entries = new HashMap<>();
+		for (int i = 0; i < entryCount; i++) {
+			if (archive.getInt(position) != CENTRAL_DIRECTORY_SIGNATURE) {
+				throw new IOException("Corrupt central directory in " + file);
+			}
+			int method = archive.getShort(position + 10) & 0xFFFF;
+			long compressedSize = archive.getInt(position + 20) & 0xFFFFFFFFL;
+			int nameLength = archive.getShort(position + 28) & 0xFFFF;
+			int extraLength = archive.getShort(position + 30) & 0xFFFF;
+			int commentLength = archive.getShort(position + 32) & 0xFFFF;
+			long localHeaderOffset = archive.getInt(position + 42) & 0xFFFFFFFFL;
+			byte[] name = new byte[nameLength];
+			ByteBuffer nameBuffer = archive.duplicate();
+			nameBuffer.position(position + 46);
+			nameBuffer.get(name);
+			String entryName = new String(name, StandardCharsets.UTF_8);
+			if (method != 0) {
+				throw new IOException("Entry " + entryName + " of " + file
+						+ " is compressed - save the weights with numpy.savez rather than numpy.savez_compressed");
+			}
+			if (compressedSize == 0xFFFFFFFFL || localHeaderOffset == 0xFFFFFFFFL) {
+				throw new IOException("ZIP64 archives are not supported: " + file);
+			}
+			int local = (int) localHeaderOffset;
+			if (archive.getInt(local) != LOCAL_FILE_HEADER_SIGNATURE) {
+				throw new IOException("Corrupt local file header in " + file);
+			}
+			int dataOffset = local + 30 + (archive.getShort(local + 26) & 0xFFFF)
+					+ (archive.getShort(local + 28) & 0xFFFF);
+			ByteBuffer data = archive.duplicate();
+			data.position(dataOffset);
+			data.limit(dataOffset + (int) compressedSize);
+			entries.put(entryName, data.slice());
+			position += 46 + nameLength + extraLength + commentLength;
+		}
+		return entries;
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		initialise();
+	}
+}
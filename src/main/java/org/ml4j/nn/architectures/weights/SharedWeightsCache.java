@@ -0,0 +1,218 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.architectures.weights;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Process-wide, reference-counted cache of loaded weights, keyed by the source of the weights and the
+ * requested tensor (kind, name and shape).
+ * 
+ * Every definition built through a caching loader in front of the same source shares a single copy of each
+ * tensor.  Weights stay cached while any loader holds a reference to them; once released they remain cached,
+ * in least-recently-used order, until the total size of unreferenced weights exceeds the byte budget.
+ * 
+ * @author Michael Lavelle
+ */
+public class SharedWeightsCache {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(SharedWeightsCache.class);
+
+	private static final SharedWeightsCache DEFAULT_CACHE = new SharedWeightsCache(0);
+
+	private Map<Key, Entry> entries;
+	private long maximumUnreferencedBytes;
+	private long unreferencedBytes;
+	private long cachedBytes;
+
+	/**
+	 * @param maximumUnreferencedBytes The byte budget for weights which are no longer referenced by any loader.
+	 */
+	public SharedWeightsCache(long maximumUnreferencedBytes) {
+		this.entries = new LinkedHashMap<>(16, 0.75f, true);
+		this.maximumUnreferencedBytes = maximumUnreferencedBytes;
+	}
+
+	/**
+	 * @return The process-wide cache, which by default evicts weights as soon as they are no longer referenced.
+	 */
+	public static SharedWeightsCache getDefault() {
+		return DEFAULT_CACHE;
+	}
+
+	public synchronized void setMaximumUnreferencedBytes(long maximumUnreferencedBytes) {
+		this.maximumUnreferencedBytes = maximumUnreferencedBytes;
+		evict();
+	}
+
+	/**
+	 * Obtain a reference to cached weights, loading them if they are not already cached.
+	 * 
+	 * @param key The key of the weights.
+	 * @param loader Loads the weights on a cache miss.  Concurrent acquirers of the same key wait for a single load.
+	 * @return The weights.
+	 */
+	public Object acquire(Key key, Supplier<Object> loader) {
+		Entry entry;
+		synchronized (this) {
+			entry = entries.computeIfAbsent(key, k -> new Entry());
+			if (entry.referenceCount++ == 0 && entry.weights != null) {
+				unreferencedBytes -= entry.sizeInBytes;
+			}
+		}
+		try {
+			return entry.load(key, loader);
+		} catch (RuntimeException e) {
+			release(key);
+			throw e;
+		}
+	}
+
+	/**
+	 * Release a reference obtained by acquire.
+	 * 
+	 * @param key The key of the weights.
+	 */
+	public synchronized void release(Key key) {
+		Entry entry = entries.get(key);
+		if (entry == null || entry.referenceCount == 0) {
+			throw new IllegalStateException("No references held for " + key);
+		}
+		if (--entry.referenceCount == 0) {
+			if (entry.weights == null) {
+				entries.remove(key);
+			} else {
+				unreferencedBytes += entry.sizeInBytes;
+				evict();
+			}
+		}
+	}
+
+	/**
+	 * @return The total size of all cached weights.
+	 */
+	public synchronized long getCachedBytes() {
+		return cachedBytes;
+	}
+
+	/**
+	 * @return The total size of cached weights which are not referenced by any loader.
+	 */
+	public synchronized long getUnreferencedBytes() {
+		return unreferencedBytes;
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	private synchronized void loaded(Entry entry) {
+		cachedBytes += entry.sizeInBytes;
+	}
+
+	private void evict() {
+		Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator();
+		while (unreferencedBytes > maximumUnreferencedBytes && iterator.hasNext()) {
+			Map.Entry<Key, Entry> eldest = iterator.next();
+			Entry entry = eldest.getValue();
+			if (entry.referenceCount == 0) {
+				iterator.remove();
+				unreferencedBytes -= entry.sizeInBytes;
+				cachedBytes -= entry.sizeInBytes;
+				LOGGER.debug("Evicted " + eldest.getKey() + " from shared weights cache");
+			}
+		}
+	}
+
+	private class Entry {
+
+		private volatile Object weights;
+		private long sizeInBytes;
+		private int referenceCount;
+
+		private Object load(Key key, Supplier<Object> loader) {
+			Object loadedWeights = weights;
+			if (loadedWeights == null) {
+				synchronized (this) {
+					loadedWeights = weights;
+					if (loadedWeights == null) {
+						loadedWeights = Objects.requireNonNull(loader.get(), "No weights loaded for " + key);
+						sizeInBytes = key.getRequest().getSizeInBytes();
+						weights = loadedWeights;
+						loaded(this);
+					}
+				}
+			}
+			return loadedWeights;
+		}
+	}
+
+	/**
+	 * Identifies a tensor from a particular source of weights.
+	 */
+	public static class Key {
+
+		private String sourceId;
+		private WeightsRequest request;
+
+		/**
+		 * @param sourceId Identifies the source of the weights, eg. the path of the weights file.  Tensors are only
+		 *        shared between loaders with the same source id.
+		 * @param request The requested tensor.
+		 */
+		public Key(String sourceId, WeightsRequest request) {
+			this.sourceId = sourceId;
+			this.request = request;
+		}
+
+		public String getSourceId() {
+			return sourceId;
+		}
+
+		public WeightsRequest getRequest() {
+			return request;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * sourceId.hashCode() + request.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (obj == null || getClass() != obj.getClass()) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return sourceId.equals(other.sourceId) && request.equals(other.request);
+		}
+
+		@Override
+		public String toString() {
+			return "Key [sourceId=" + sourceId + ", request=" + request + "]";
+		}
+	}
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.architectures.weights;
+
+import java.io.Serializable;
+import java.nio.FloatBuffer;
+
+/**
+ * A source of float tensors, such as a weights file, which returns the data for each requested
+ * tensor in the canonical layout described by WeightsRequest.
+ * 
+ * @author Michael Lavelle
+ */
+public interface TensorSource extends Serializable {
+
+	/**
+	 * @param request The requested tensor.
+	 * @return A buffer positioned at the first element of the tensor, with exactly
+	 *         request.getElementCount() elements remaining.  Implementations may return a read-only view
+	 *         onto shared storage, so callers must not rely on being able to write to the buffer.
+	 */
+	FloatBuffer getTensor(WeightsRequest request);
+
+	/**
+	 * @return Identifies the configuration of this source, for the configuration fingerprint of the loaders over
+	 *         it - by default the class name of the source, which sources with any configuration which changes the
+	 *         tensors they serve, and sources decorating another source, extend.
+	 */
+	default String getConfigurationFingerprint() {
+		return getClass().getName();
+	}
+}
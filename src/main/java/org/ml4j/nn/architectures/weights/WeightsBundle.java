@@ -0,0 +1,274 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.architectures.weights;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.CRC32;
+
+/**
+ * A TensorSource backed by a single weights bundle file, which is memory-mapped when opened.
+ * 
+ * A bundle consists of a little-endian header followed by the float32 payload of each tensor:
+ * 
+ * <pre>
+ * magic           8 bytes  "ML4JWBND"
+ * version         int
+ * tensorCount     int
+ * tensorCount x {
+ *   nameLength    int
+ *   name          nameLength bytes, UTF-8
+ *   rank          int
+ *   shape         rank x int
+ *   offset        long     - from the start of the file, aligned to 64 bytes
+ *   elementCount  long
+ *   precision     int      - WeightsPrecision code, from version 2
+ *   checksum      int      - CRC32 of the stored tensor, from version 3
+ * }
+ * payload
+ * </pre>
+ * 
+ * Tensors are stored in the canonical layouts described by WeightsRequest, so the buffers returned by
+ * getTensor for float32 tensors are views onto the mapping - opening a bundle costs one mmap and a header
+ * parse, and the pages are shared through the page cache by every JVM on the host that maps the same file.
+ * 
+ * Tensors stored in a reduced precision (see WeightsPrecision) are widened each time getTensor is called, so
+ * only the compact form is resident until a tensor is used - combine with the lazy weights loaders to widen
+ * each tensor when the component using it is first run.
+ * 
+ * Each tensor is verified against its checksum the first time it is read, so verification is spread across
+ * whichever threads load the weights and healthy startups only pay for the tensors they use.  verifyAll checks
+ * every tensor in parallel, for example in the background once a service is already answering requests.  A
+ * corrupt tensor fails with a WeightsIntegrityException.  Version 1 and 2 bundles, which have no checksums,
+ * remain readable.
+ * 
+ * @author Michael Lavelle
+ */
+public class WeightsBundle implements TensorSource {
+
+	/**
+	 * Default serialization id.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	static final byte[] MAGIC = "ML4JWBND".getBytes(StandardCharsets.US_ASCII);
+	static final int VERSION = 3;
+	static final int ALIGNMENT = 64;
+
+	private File file;
+	private transient ByteBuffer mapping;
+	private transient Map<String, Entry> entries;
+
+	private WeightsBundle(File file) {
+		this.file = file;
+		map();
+	}
+
+	/**
+	 * Memory-map the bundle at the specified location.
+	 * 
+	 * @param file The bundle file.
+	 * @return The opened bundle.
+	 */
+	public static WeightsBundle open(File file) {
+		return new WeightsBundle(file);
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * @return The names of the tensors in this bundle, in file order.
+	 */
+	public Iterable<String> getTensorNames() {
+		return Collections.unmodifiableSet(entries.keySet());
+	}
+
+	public boolean containsTensor(String name) {
+		return entries.containsKey(name);
+	}
+
+	public int[] getShape(String name) {
+		return getEntry(name).shape.clone();
+	}
+
+	public WeightsPrecision getPrecision(String name) {
+		return getEntry(name).precision;
+	}
+
+	@Override
+	public FloatBuffer getTensor(WeightsRequest request) {
+		Entry entry = getEntry(request.getName());
+		if (!Arrays.equals(entry.shape, request.getShape())) {
+			throw new IllegalArgumentException("Tensor " + request.getName() + " has shape "
+					+ Arrays.toString(entry.shape) + " but was requested with shape "
+					+ Arrays.toString(request.getShape()));
+		}
+		verify(request.getName(), entry);
+		return entry.precision.decode(getStoredTensor(entry), entry.shape);
+	}
+
+	/**
+	 * @return The class name and the file name of this bundle - the name of a compiled bundle identifies the
+	 *         definition and precision it was compiled for.
+	 */
+	@Override
+	public String getConfigurationFingerprint() {
+		return getClass().getName() + "(" + file.getName() + ")";
+	}
+
+	/**
+	 * Verify every tensor in this bundle against its checksum, in parallel.
+	 * 
+	 * @param executor The executor on which to verify the tensors.
+	 * @return A future which completes once every tensor is verified, or completes exceptionally with a
+	 *         WeightsIntegrityException if any tensor is corrupt.
+	 */
+	public CompletableFuture<Void> verifyAll(Executor executor) {
+		List<CompletableFuture<Void>> verifications = new ArrayList<>();
+		for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+			verifications.add(
+					CompletableFuture.runAsync(() -> verify(entry.getKey(), entry.getValue()), executor));
+		}
+		return CompletableFuture.allOf(verifications.toArray(new CompletableFuture[verifications.size()]));
+	}
+
+	public CompletableFuture<Void> verifyAll() {
+		return verifyAll(ForkJoinPool.commonPool());
+	}
+
+	private void verify(String name, Entry entry) {
+		if (entry.verified) {
+			return;
+		}
+		CRC32 checksum = new CRC32();
+		checksum.update(getStoredTensor(entry));
+		if ((int) checksum.getValue() != entry.checksum) {
+			throw new WeightsIntegrityException("Tensor " + name + " in weights bundle " + file
+					+ " does not match its checksum");
+		}
+		entry.verified = true;
+	}
+
+	private ByteBuffer getStoredTensor(Entry entry) {
+		return slice(entry.offset, entry.precision.getEncodedSize(entry.shape));
+	}
+
+	private Entry getEntry(String name) {
+		Entry entry = entries.get(name);
+		if (entry == null) {
+			throw new IllegalArgumentException("No tensor named " + name + " in weights bundle " + file);
+		}
+		return entry;
+	}
+
+	private ByteBuffer slice(long offset, long length) {
+		ByteBuffer view = mapping.duplicate();
+		view.position((int) offset);
+		view.limit((int) (offset + length));
+		return view.slice().order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	private void map() {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE) {
+				throw new IOException("Weights bundle " + file + " exceeds 2GB - split it into several bundles");
+			}
+			MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			this.mapping = mapped.asReadOnlyBuffer().order(ByteOrder.LITTLE_ENDIAN);
+			this.entries = readHeader(mapping.duplicate().order(ByteOrder.LITTLE_ENDIAN));
+		} catch (IOException e) {
+			throw new UncheckedIOException("Unable to map weights bundle " + file, e);
+		}
+	}
+
+	private Map<String, Entry> readHeader(ByteBuffer header) throws IOException {
+		byte[] magic = new byte[MAGIC.length];
+		header.get(magic);
+		if (!Arrays.equals(MAGIC, magic)) {
+			throw new IOException(file + " is not a weights bundle");
+		}
+		int version = header.getInt();
+		if (version < 1 || version > VERSION) {
+			throw new IOException("Unsupported weights bundle version " + version + " in " + file);
+		}
+		int tensorCount = header.getInt();
+		Map<String, Entry> index = new LinkedHashMap<>();
+		for (int i = 0; i < tensorCount; i++) {
+			byte[] name = new byte[header.getInt()];
+			header.get(name);
+			int[] shape = new int[header.getInt()];
+			for (int d = 0; d < shape.length; d++) {
+				shape[d] = header.getInt();
+			}
+			long offset = header.getLong();
+			long elementCount = header.getLong();
+			WeightsPrecision precision = version >= 2 ? WeightsPrecision.fromCode(header.getInt())
+					: WeightsPrecision.FLOAT32;
+			Integer checksum = version >= 3 ? header.getInt() : null;
+			if (elementCount != WeightsRequest.getElementCount(shape)
+					|| offset + precision.getEncodedSize(shape) > mapping.capacity()) {
+				throw new IOException("Weights bundle " + file + " is truncated");
+			}
+			index.put(new String(name, StandardCharsets.UTF_8),
+					new Entry(shape, offset, (int) elementCount, precision, checksum));
+		}
+		return index;
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		map();
+	}
+
+	private static class Entry {
+
+		private int[] shape;
+		private long offset;
+		private int elementCount;
+		private WeightsPrecision precision;
+		private int checksum;
+		private volatile boolean verified;
+
+		Entry(int[] shape, long offset, int elementCount, WeightsPrecision precision, Integer checksum) {
+			this.shape = shape;
+			this.offset = offset;
+			this.elementCount = elementCount;
+			this.precision = precision;
+			this.checksum = checksum == null ? 0 : checksum;
+			this.verified = checksum == null;
+		}
+	}
+}
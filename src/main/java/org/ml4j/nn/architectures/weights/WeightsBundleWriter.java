@@ -0,0 +1,156 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.architectures.weights;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Writes tensors to a weights bundle file readable by WeightsBundle.
+ * 
+ * Tensors must be supplied in the canonical layouts described by WeightsRequest, and are stored in float32
+ * unless a reduced WeightsPrecision is specified.
+ * 
+ * @author Michael Lavelle
+ */
+public class WeightsBundleWriter {
+
+	private Map<String, Tensor> tensors;
+	private WeightsPrecision precision;
+
+	public WeightsBundleWriter() {
+		this.tensors = new LinkedHashMap<>();
+		this.precision = WeightsPrecision.FLOAT32;
+	}
+
+	/**
+	 * @param precision The precision in which to store tensors added without an explicit precision.
+	 * @return This writer.
+	 */
+	public WeightsBundleWriter withPrecision(WeightsPrecision precision) {
+		this.precision = precision;
+		return this;
+	}
+
+	public WeightsBundleWriter withTensor(String name, int[] shape, float[] data) {
+		return withTensor(name, shape, FloatBuffer.wrap(data));
+	}
+
+	public WeightsBundleWriter withTensor(String name, int[] shape, FloatBuffer data) {
+		return withTensor(name, shape, data, precision);
+	}
+
+	public WeightsBundleWriter withTensor(String name, int[] shape, FloatBuffer data, WeightsPrecision precision) {
+		if (data.remaining() != WeightsRequest.getElementCount(shape)) {
+			throw new IllegalArgumentException("Tensor " + name + " has " + data.remaining()
+					+ " elements, which does not match its shape");
+		}
+		if (tensors.containsKey(name)) {
+			throw new IllegalArgumentException("Duplicate tensor " + name);
+		}
+		tensors.put(name,
+				new Tensor(name.getBytes(StandardCharsets.UTF_8), shape.clone(), data.duplicate(), precision));
+		return this;
+	}
+
+	public WeightsBundleWriter withTensor(WeightsRequest request, FloatBuffer data) {
+		return withTensor(request.getName(), request.getShape(), data);
+	}
+
+	public void write(File file) throws IOException {
+		int headerSize = WeightsBundle.MAGIC.length + 2 * Integer.BYTES;
+		for (Tensor tensor : tensors.values()) {
+			headerSize += Integer.BYTES + tensor.name.length + Integer.BYTES + tensor.shape.length * Integer.BYTES
+					+ 2 * Long.BYTES + 2 * Integer.BYTES;
+		}
+		long offset = align(headerSize);
+		for (Tensor tensor : tensors.values()) {
+			tensor.offset = offset;
+			offset = align(offset + tensor.precision.getEncodedSize(tensor.shape));
+		}
+
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			// Write the payloads first, as the header holds the checksum of each
+			CRC32 checksum = new CRC32();
+			for (Tensor tensor : tensors.values()) {
+				ByteBuffer payload = ByteBuffer.allocate((int) tensor.precision.getEncodedSize(tensor.shape))
+						.order(ByteOrder.LITTLE_ENDIAN);
+				tensor.precision.encode(tensor.data.duplicate(), tensor.shape, payload);
+				payload.flip();
+				checksum.reset();
+				checksum.update(payload.duplicate());
+				tensor.checksum = (int) checksum.getValue();
+				writeFully(channel, payload, tensor.offset);
+			}
+
+			ByteBuffer header = ByteBuffer.allocate(headerSize).order(ByteOrder.LITTLE_ENDIAN);
+			header.put(WeightsBundle.MAGIC);
+			header.putInt(WeightsBundle.VERSION);
+			header.putInt(tensors.size());
+			for (Tensor tensor : tensors.values()) {
+				header.putInt(tensor.name.length);
+				header.put(tensor.name);
+				header.putInt(tensor.shape.length);
+				for (int dimension : tensor.shape) {
+					header.putInt(dimension);
+				}
+				header.putLong(tensor.offset);
+				header.putLong(tensor.data.remaining());
+				header.putInt(tensor.precision.getCode());
+				header.putInt(tensor.checksum);
+			}
+			header.flip();
+			writeFully(channel, header, 0);
+		}
+	}
+
+	private static long align(long offset) {
+		return (offset + WeightsBundle.ALIGNMENT - 1) / WeightsBundle.ALIGNMENT * WeightsBundle.ALIGNMENT;
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			position += channel.write(buffer, position);
+		}
+	}
+
+	private static class Tensor {
+
+		private byte[] name;
+		private int[] shape;
+		private FloatBuffer data;
+		private WeightsPrecision precision;
+		private long offset;
+		private int checksum;
+
+		Tensor(byte[] name, int[] shape, FloatBuffer data, WeightsPrecision precision) {
+			this.name = name;
+			this.shape = shape;
+			this.data = data;
+			this.precision = precision;
+		}
+	}
+}
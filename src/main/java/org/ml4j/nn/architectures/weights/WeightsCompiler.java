@@ -0,0 +1,180 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.architectures.weights;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compiles the tensors a definition requests from a source weights file into a WeightsBundle, once.
+ * 
+ * The compiled bundle holds each tensor already converted to the canonical layout consumed by the
+ * WeightsTensorFactory - Keras kernels transposed, Darknet layers split out - so later startups serve every
+ * tensor as a view onto the mapped bundle without any reshaping or transposing.
+ * 
+ * Compiled bundles are stored in a cache directory, keyed by a digest of the contents of the source file and a
+ * hash of the definition and precision, so a changed source file or definition is recompiled automatically - even
+ * a source file rewritten with the same length and modification time.  Each compiler digests a source file once,
+ * the first time a bundle is requested for it, and reuses the digest for as long as the path, length and
+ * modification time of the file are unchanged - so a startup reads each source file once to find its bundle.
+ * 
+ * @author Michael Lavelle
+ */
+public class WeightsCompiler {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(WeightsCompiler.class);
+
+	private static final int DIGEST_BUFFER_SIZE = 1 << 20;
+
+	private File cacheDirectory;
+	private WeightsPrecision precision;
+	private Map<String, String> contentDigests;
+
+	public WeightsCompiler(File cacheDirectory) {
+		this.cacheDirectory = cacheDirectory;
+		this.precision = WeightsPrecision.FLOAT32;
+		this.contentDigests = new ConcurrentHashMap<>();
+	}
+
+	/**
+	 * @param precision The precision in which compiled tensors are stored.
+	 * @return This compiler.
+	 */
+	public WeightsCompiler withPrecision(WeightsPrecision precision) {
+		this.precision = precision;
+		return this;
+	}
+
+	/**
+	 * Obtain the compiled bundle for a definition, compiling it first if it is not already in the cache.
+	 * 
+	 * @param sourceFile The source weights file that the source tensors are read from.
+	 * @param source The source tensors.
+	 * @param definitionId Identifies the definition and any parameters which affect the tensors it requests.
+	 * @param manifest Supplies the tensors requested by the definition - only invoked on a cache miss.
+	 * @return The compiled bundle.
+	 */
+	public WeightsBundle compile(File sourceFile, TensorSource source, String definitionId,
+			Supplier<? extends Collection<WeightsRequest>> manifest) {
+		File compiledBundle = getCompiledBundle(sourceFile, definitionId);
+		if (!compiledBundle.exists()) {
+			try {
+				write(compiledBundle, source, manifest.get());
+			} catch (IOException e) {
+				throw new UncheckedIOException("Unable to compile weights " + sourceFile + " for " + definitionId, e);
+			}
+		}
+		return WeightsBundle.open(compiledBundle);
+	}
+
+	/**
+	 * @param sourceFile The source weights file.
+	 * @param definitionId Identifies the definition and any parameters which affect the tensors it requests.
+	 * @return The location in the cache directory of the compiled bundle.
+	 */
+	public File getCompiledBundle(File sourceFile, String definitionId) {
+		return new File(cacheDirectory, sourceFile.getName() + "-" + getKey(sourceFile, definitionId) + ".bundle");
+	}
+
+	String getKey(File sourceFile, String definitionId) {
+		MessageDigest digest = createDigest();
+		digest.update((getContentDigest(sourceFile) + "|" + definitionId + "|" + precision)
+				.getBytes(StandardCharsets.UTF_8));
+		return toHex(digest.digest());
+	}
+
+	/**
+	 * @param sourceFile The source weights file.
+	 * @return A digest of the contents of the file - computed the first time it is requested for the current
+	 *         path, length and modification time of the file.
+	 */
+	String getContentDigest(File sourceFile) {
+		String fileId = sourceFile.getAbsolutePath() + "|" + sourceFile.length() + "|" + sourceFile.lastModified();
+		return contentDigests.computeIfAbsent(fileId, id -> digestContents(sourceFile));
+	}
+
+	private static String digestContents(File sourceFile) {
+		long start = System.currentTimeMillis();
+		MessageDigest digest = createDigest();
+		byte[] buffer = new byte[DIGEST_BUFFER_SIZE];
+		try (InputStream in = Files.newInputStream(sourceFile.toPath())) {
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				digest.update(buffer, 0, read);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException("Unable to digest weights " + sourceFile, e);
+		}
+		String contentDigest = toHex(digest.digest());
+		LOGGER.debug("Digested " + sourceFile + " in " + (System.currentTimeMillis() - start) + "ms");
+		return contentDigest;
+	}
+
+	private static MessageDigest createDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static String toHex(byte[] hash) {
+		StringBuilder hex = new StringBuilder();
+		for (int i = 0; i < 16; i++) {
+			hex.append(String.format("%02x", hash[i]));
+		}
+		return hex.toString();
+	}
+
+	private void write(File compiledBundle, TensorSource source, Collection<WeightsRequest> manifest)
+			throws IOException {
+		long start = System.currentTimeMillis();
+		Files.createDirectories(cacheDirectory.toPath());
+		WeightsBundleWriter writer = new WeightsBundleWriter().withPrecision(precision);
+		for (WeightsRequest request : manifest) {
+			writer.withTensor(request, source.getTensor(request));
+		}
+		// Write to a temporary file first, so concurrent startups never map a partially written bundle
+		File temporary = File.createTempFile(compiledBundle.getName(), ".tmp", cacheDirectory);
+		try {
+			writer.write(temporary);
+			try {
+				Files.move(temporary.toPath(), compiledBundle.toPath(), StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temporary.toPath(), compiledBundle.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(temporary.toPath());
+		}
+		LOGGER.info("Compiled " + manifest.size() + " tensors to " + compiledBundle + " in "
+				+ (System.currentTimeMillis() - start) + "ms");
+	}
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.architectures.weights;
+
+import java.io.Serializable;
+
+/**
+ * Marker interface for the loaders of an architecture's pre-trained weights.
+ * 
+ * @author Michael Lavelle
+ */
+public interface WeightsLoader extends Serializable {
+
+	/**
+	 * Identifies the configuration of this loader - anything, other than the weights file it reads, which
+	 * changes the weights it serves, eg. the batch norm epsilon with which it folds batch norm layers, whether it
+	 * serves merged convolutions, or the precision of a compiled bundle.  Snapshots of a component graph are keyed
+	 * by this fingerprint in place of the loader, whose weights are identified by the weights hash.
+	 * 
+	 * @return The configuration fingerprint - by default the class name of the loader, which loaders with any
+	 *         such configuration, and loaders decorating another loader, extend.
+	 */
+	default String getConfigurationFingerprint() {
+		return getClass().getName();
+	}
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.architectures.weights;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+
+/**
+ * The precisions in which a WeightsBundle can store a tensor.
+ * 
+ * Reduced-precision tensors are widened to float32 when read. INT8 tensors are quantized symmetrically with one
+ * float32 scale per output channel - the first dimension of the canonical layout, so per output depth for
+ * convolutional weights and per row for dense weights - and a single scale for vectors.
+ * 
+ * @author Michael Lavelle
+ */
+public enum WeightsPrecision {
+
+	FLOAT32(1, Float.BYTES), FLOAT16(2, 2), BFLOAT16(3, 2), INT8(4, 1);
+
+	private int code;
+	private int bytesPerElement;
+
+	private WeightsPrecision(int code, int bytesPerElement) {
+		this.code = code;
+		this.bytesPerElement = bytesPerElement;
+	}
+
+	/**
+	 * @return The identifier of this precision within a weights bundle header.
+	 */
+	public int getCode() {
+		return code;
+	}
+
+	public static WeightsPrecision fromCode(int code) {
+		for (WeightsPrecision precision : values()) {
+			if (precision.code == code) {
+				return precision;
+			}
+		}
+		throw new IllegalArgumentException("Unknown weights precision " + code);
+	}
+
+	/**
+	 * @param shape The shape of a tensor in canonical layout.
+	 * @return The number of bytes needed to store the tensor in this precision.
+	 */
+	public long getEncodedSize(int[] shape) {
+		long size = (long) WeightsRequest.getElementCount(shape) * bytesPerElement;
+		return this == INT8 ? size + (long) getChannelCount(shape) * Float.BYTES : size;
+	}
+
+	/**
+	 * Encode a tensor in this precision.
+	 * 
+	 * @param data The tensor in canonical layout.
+	 * @param shape The shape of the tensor.
+	 * @param target A little-endian buffer with getEncodedSize(shape) bytes remaining.
+	 */
+	void encode(FloatBuffer data, int[] shape, ByteBuffer target) {
+		int elementCount = data.remaining();
+		int start = data.position();
+		switch (this) {
+		case FLOAT32:
+			target.asFloatBuffer().put(data.duplicate());
+			target.position(target.position() + elementCount * Float.BYTES);
+			break;
+		case FLOAT16:
+			for (int i = 0; i < elementCount; i++) {
+				target.putShort((short) toFloat16(data.get(start + i)));
+			}
+			break;
+		case BFLOAT16:
+			for (int i = 0; i < elementCount; i++) {
+				target.putShort((short) toBFloat16(data.get(start + i)));
+			}
+			break;
+		default:
+			int channels = getChannelCount(shape);
+			int channelSize = elementCount / channels;
+			float[] scales = new float[channels];
+			for (int c = 0; c < channels; c++) {
+				float maximum = 0f;
+				for (int i = c * channelSize; i < (c + 1) * channelSize; i++) {
+					maximum = Math.max(maximum, Math.abs(data.get(start + i)));
+				}
+				scales[c] = maximum / Byte.MAX_VALUE;
+				target.putFloat(scales[c]);
+			}
+			for (int c = 0; c < channels; c++) {
+				for (int i = c * channelSize; i < (c + 1) * channelSize; i++) {
+					int quantized = scales[c] == 0f ? 0 : Math.round(data.get(start + i) / scales[c]);
+					target.put((byte) Math.max(-Byte.MAX_VALUE, Math.min(Byte.MAX_VALUE, quantized)));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Widen a tensor stored in this precision to float32.
+	 * 
+	 * @param source A little-endian buffer positioned at the stored tensor.
+	 * @param shape The shape of the tensor.
+	 * @return The widened tensor - a view onto the source for FLOAT32.
+	 */
+	FloatBuffer decode(ByteBuffer source, int[] shape) {
+		int elementCount = WeightsRequest.getElementCount(shape);
+		int start = source.position();
+		if (this == FLOAT32) {
+			ByteBuffer view = source.slice().order(source.order());
+			view.limit(elementCount * Float.BYTES);
+			return view.asFloatBuffer();
+		}
+		float[] widened = new float[elementCount];
+		if (this == FLOAT16) {
+			for (int i = 0; i < elementCount; i++) {
+				widened[i] = fromFloat16(source.getShort(start + 2 * i));
+			}
+		} else if (this == BFLOAT16) {
+			for (int i = 0; i < elementCount; i++) {
+				widened[i] = Float.intBitsToFloat((source.getShort(start + 2 * i) & 0xFFFF) << 16);
+			}
+		} else {
+			int channels = getChannelCount(shape);
+			int channelSize = elementCount / channels;
+			int values = start + channels * Float.BYTES;
+			for (int c = 0; c < channels; c++) {
+				float scale = source.getFloat(start + c * Float.BYTES);
+				for (int i = c * channelSize; i < (c + 1) * channelSize; i++) {
+					widened[i] = source.get(values + i) * scale;
+				}
+			}
+		}
+		return FloatBuffer.wrap(widened);
+	}
+
+	private static int getChannelCount(int[] shape) {
+		return shape.length > 1 ? shape[0] : 1;
+	}
+
+	/**
+	 * Convert to IEEE 754 half precision, rounding to nearest even.
+	 */
+	static int toFloat16(float value) {
+		int bits = Float.floatToRawIntBits(value);
+		int sign = (bits >>> 16) & 0x8000;
+		int magnitude = bits & 0x7FFFFFFF;
+		if (magnitude >= 0x7F800000) {
+			// Infinity or NaN
+			return sign | 0x7C00 | (magnitude > 0x7F800000 ? 0x0200 : 0);
+		}
+		if (magnitude >= 0x477FF000) {
+			// Rounds beyond the largest half, 65504
+			return sign | 0x7C00;
+		}
+		if (magnitude < 0x38800000) {
+			// Below the smallest normal half, 2^-14, so subnormal in units of 2^-24
+			return sign | (int) Math.rint(Float.intBitsToFloat(magnitude) * 16777216f);
+		}
+		int half = (((magnitude >>> 23) - 112) << 10) | ((magnitude >>> 13) & 0x3FF);
+		int remainder = magnitude & 0x1FFF;
+		if (remainder > 0x1000 || (remainder == 0x1000 && (half & 1) != 0)) {
+			half++;
+		}
+		return sign | half;
+	}
+
+	static float fromFloat16(short value) {
+		int bits = value & 0xFFFF;
+		int sign = (bits & 0x8000) << 16;
+		int exponent = (bits >>> 10) & 0x1F;
+		int mantissa = bits & 0x3FF;
+		if (exponent == 0x1F) {
+			return Float.intBitsToFloat(sign | 0x7F800000 | (mantissa << 13));
+		}
+		if (exponent == 0) {
+			float subnormal = mantissa / 16777216f;
+			return sign == 0 ? subnormal : -subnormal;
+		}
+		return Float.intBitsToFloat(sign | ((exponent + 112) << 23) | (mantissa << 13));
+	}
+
+	/**
+	 * Truncate to bfloat16 - the upper half of a float32 - rounding to nearest even.
+	 */
+	static int toBFloat16(float value) {
+		int bits = Float.floatToRawIntBits(value);
+		if ((bits & 0x7FFFFFFF) > 0x7F800000) {
+			return (bits >>> 16) | 0x0040;
+		}
+		return (bits + 0x7FFF + ((bits >>> 16) & 1)) >>> 16;
+	}
+}
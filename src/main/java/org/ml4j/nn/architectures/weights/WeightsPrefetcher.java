@@ -0,0 +1,176 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.architectures.weights;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Records a manifest of the tensors requested while building a component graph, and loads every tensor in
+ * the manifest in parallel on a ForkJoinPool so that subsequent builds can be served from memory.
+ * 
+ * Holds the logic shared by the prefetching weights loaders of each architecture, which only adapt their
+ * loader interface to WeightsRequests - the recording of deferred handles during a dry run, the parallel
+ * prefetch, and the fallback to the delegate loader for tensors which were not prefetched.
+ * 
+ * @author Michael Lavelle
+ */
+public class WeightsPrefetcher implements Serializable {
+
+	/**
+	 * Default serialization id.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(WeightsPrefetcher.class);
+
+	private Loader loader;
+	private Set<WeightsRequest> manifest;
+	private transient Map<WeightsRequest, Object> prefetched;
+
+	/**
+	 * @param loader Loads the weights for a request from the delegate loader.
+	 */
+	public WeightsPrefetcher(Loader loader) {
+		this.loader = loader;
+		this.manifest = new LinkedHashSet<>();
+		this.prefetched = new ConcurrentHashMap<>();
+	}
+
+	public synchronized void record(WeightsRequest request) {
+		manifest.add(request);
+	}
+
+	public synchronized void recordAll(Collection<WeightsRequest> requests) {
+		manifest.addAll(requests);
+	}
+
+	/**
+	 * @return The requests recorded so far, in the order they were first made.
+	 */
+	public synchronized List<WeightsRequest> getManifest() {
+		return new ArrayList<>(manifest);
+	}
+
+	/**
+	 * Record a request made during a dry run.
+	 * 
+	 * @param request The requested tensor.
+	 * @param weightsType The weights interface returned for the request, eg. WeightsMatrix.class.
+	 * @return A deferred handle which is served by load(request) on first use, so the dry run itself does not
+	 *         read any weights.
+	 */
+	public <W> W recordDeferred(WeightsRequest request, Class<W> weightsType) {
+		record(request);
+		return DeferredWeights.defer(weightsType, request.getName(), () -> weightsType.cast(load(request)));
+	}
+
+	/**
+	 * Load every tensor in the manifest which has not already been prefetched, in parallel.
+	 * 
+	 * @param pool The pool on which to load the tensors.
+	 */
+	public void prefetch(ForkJoinPool pool) {
+		long startTime = System.currentTimeMillis();
+		List<Callable<Object>> tasks = new ArrayList<>();
+		for (WeightsRequest request : getManifest()) {
+			if (!prefetched.containsKey(request)) {
+				tasks.add(() -> prefetched.put(request, loadFromDelegate(request)));
+			}
+		}
+		try {
+			for (Future<Object> future : pool.invokeAll(tasks)) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while prefetching weights", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IllegalStateException("Unable to prefetch weights", e.getCause());
+		}
+		LOGGER.debug("Prefetched " + tasks.size() + " tensors on " + pool.getParallelism() + " threads in "
+				+ (System.currentTimeMillis() - startTime) + "ms");
+	}
+
+	/**
+	 * @param request The requested tensor.
+	 * @return The prefetched weights for the request, or null if they have not been prefetched.
+	 */
+	public Object getPrefetched(WeightsRequest request) {
+		return prefetched.get(request);
+	}
+
+	/**
+	 * @param request The requested tensor.
+	 * @return The prefetched weights for the request, or the weights loaded from the delegate loader if they
+	 *         have not been prefetched.
+	 */
+	public Object load(WeightsRequest request) {
+		Object weights = prefetched.get(request);
+		return weights == null ? loadFromDelegate(request) : weights;
+	}
+
+	private Object loadFromDelegate(WeightsRequest request) {
+		Object weights = loader.load(request);
+		if (weights == null) {
+			throw new IllegalStateException("The delegate loader returned no weights for " + request);
+		}
+		return weights;
+	}
+
+	/**
+	 * Release all prefetched weights, retaining the manifest.
+	 */
+	public void clear() {
+		prefetched.clear();
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		this.prefetched = new ConcurrentHashMap<>();
+	}
+
+	/**
+	 * Loads the weights for a request from the delegate loader of a prefetching weights loader.
+	 */
+	@FunctionalInterface
+	public interface Loader extends Serializable {
+
+		/**
+		 * @param request The requested tensor.
+		 * @return The weights for the request.
+		 */
+		Object load(WeightsRequest request);
+	}
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.architectures.weights;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Describes a single tensor requested by an architecture definition from its weights loader - the kind of
+ * tensor, the name the definition asks for (eg. "conv2d_12_kernel0") and the shape of the tensor in the
+ * canonical layout for that kind.
+ *
+ * The canonical layouts are those in which a TensorSource returns its data:
+ *
+ * CONVOLUTIONAL_WEIGHTS : [outputDepth][inputDepth][height][width], row-major
+ * DENSE_WEIGHTS : [rows][columns], row-major, with rows spanning the output neurons
+ * All other kinds : a single vector of features
+ *
+ * @author Michael Lavelle
+ */
+public class WeightsRequest implements Serializable {
+
+	/**
+	 * Default serialization id.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	public enum Kind {
+		CONVOLUTIONAL_WEIGHTS, CONVOLUTIONAL_BIASES, DENSE_WEIGHTS, DENSE_BIASES,
+		BATCH_NORM_GAMMA, BATCH_NORM_BETA, BATCH_NORM_MEAN, BATCH_NORM_VARIANCE
+	}
+
+	private Kind kind;
+	private String name;
+	private int[] shape;
+
+	public WeightsRequest(Kind kind, String name, int... shape) {
+		this.kind = kind;
+		this.name = name;
+		this.shape = shape.clone();
+	}
+
+	public static WeightsRequest convolutionalWeights(String name, int width, int height, int inputDepth,
+			int outputDepth) {
+		return new WeightsRequest(Kind.CONVOLUTIONAL_WEIGHTS, name, outputDepth, inputDepth, height, width);
+	}
+
+	public static WeightsRequest denseWeights(String name, int rows, int columns) {
+		return new WeightsRequest(Kind.DENSE_WEIGHTS, name, rows, columns);
+	}
+
+	public static WeightsRequest denseBiases(String name, int rows, int columns) {
+		return new WeightsRequest(Kind.DENSE_BIASES, name, rows, columns);
+	}
+
+	public static WeightsRequest vector(Kind kind, String name, int length) {
+		return new WeightsRequest(kind, name, length);
+	}
+
+	public Kind getKind() {
+		return kind;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int[] getShape() {
+		return shape.clone();
+	}
+
+	public int getElementCount() {
+		return getElementCount(shape);
+	}
+
+	/**
+	 * @return The size in bytes of this tensor once widened to floats.
+	 */
+	public long getSizeInBytes() {
+		return (long) getElementCount() * Float.BYTES;
+	}
+
+	public static int getElementCount(int[] shape) {
+		long count = 1;
+		for (int dimension : shape) {
+			count = count * dimension;
+		}
+		if (count > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Tensor of shape " + Arrays.toString(shape) + " is too large");
+		}
+		return (int) count;
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * (31 * kind.hashCode() + name.hashCode()) + Arrays.hashCode(shape);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (obj == null || getClass() != obj.getClass()) {
+			return false;
+		}
+		WeightsRequest other = (WeightsRequest) obj;
+		return kind == other.kind && name.equals(other.name) && Arrays.equals(shape, other.shape);
+	}
+
+	@Override
+	public String toString() {
+		return "WeightsRequest [kind=" + kind + ", name=" + name + ", shape=" + Arrays.toString(shape) + "]";
+	}
+}
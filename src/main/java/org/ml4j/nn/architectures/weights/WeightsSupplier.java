@@ -0,0 +1,31 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.architectures.weights;
+
+import java.io.Serializable;
+import java.util.function.Supplier;
+
+/**
+ * Serializable Supplier of a weights object, used to defer loading of weights until they are needed.
+ * 
+ * @author Michael Lavelle
+ *
+ * @param <W> The type of weights supplied.
+ */
+@FunctionalInterface
+public interface WeightsSupplier<W> extends Supplier<W>, Serializable {
+
+}
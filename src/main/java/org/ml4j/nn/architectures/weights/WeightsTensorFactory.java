@@ -0,0 +1,49 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.architectures.weights;
+
+import java.io.Serializable;
+import java.nio.FloatBuffer;
+
+import org.ml4j.nn.axons.BiasVector;
+import org.ml4j.nn.axons.FeaturesVector;
+import org.ml4j.nn.axons.WeightsMatrix;
+import org.ml4j.nn.axons.WeightsVector;
+
+/**
+ * Creates the ml4j weights types from float tensors in the canonical layouts described by WeightsRequest.
+ * 
+ * Implementations are supplied by the application, as they decide which Matrix implementation backs the
+ * weights - an implementation whose matrices can wrap a FloatBuffer directly will allow memory-mapped
+ * tensors to be used without copying.
+ * 
+ * @author Michael Lavelle
+ */
+public interface WeightsTensorFactory extends Serializable {
+
+	WeightsMatrix createConvolutionalLayerWeights(FloatBuffer data, int width, int height, int inputDepth, int outputDepth);
+
+	WeightsMatrix createDenseLayerWeights(FloatBuffer data, int rows, int columns);
+
+	WeightsMatrix createBatchNormLayerWeights(FloatBuffer data, int outputDepth);
+
+	WeightsVector createWeightsVector(FloatBuffer data, int length);
+
+	BiasVector createBiasVector(FloatBuffer data, int length);
+
+	FeaturesVector createFeaturesVector(FloatBuffer data, int length);
+
+}
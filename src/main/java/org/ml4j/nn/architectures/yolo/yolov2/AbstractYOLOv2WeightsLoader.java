@@ -0,0 +1,123 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.architectures.yolo.yolov2;
+
+import org.ml4j.nn.architectures.weights.WeightsRequest;
+import org.ml4j.nn.architectures.weights.WeightsRequest.Kind;
+import org.ml4j.nn.axons.BiasVector;
+import org.ml4j.nn.axons.FeaturesVector;
+import org.ml4j.nn.axons.WeightsMatrix;
+import org.ml4j.nn.axons.WeightsVector;
+
+/**
+ * Base class for YOLOv2WeightsLoader decorators, which routes every call through a single load(WeightsRequest)
+ * method.
+ * 
+ * @author Michael Lavelle
+ */
+public abstract class AbstractYOLOv2WeightsLoader implements YOLOv2WeightsLoader {
+
+	/**
+	 * Default serialization id.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * @param request The requested tensor.
+	 * @return The weights for the request, of the type returned by the YOLOv2WeightsLoader method for the
+	 *         request's kind.
+	 */
+	protected abstract Object load(WeightsRequest request);
+
+	/**
+	 * Load the tensor described by a request by invoking the corresponding method of a YOLOv2WeightsLoader.
+	 * 
+	 * @param loader The loader.
+	 * @param request The requested tensor.
+	 * @return The weights returned by the loader.
+	 */
+	public static Object load(YOLOv2WeightsLoader loader, WeightsRequest request) {
+		int[] shape = request.getShape();
+		switch (request.getKind()) {
+		case CONVOLUTIONAL_WEIGHTS:
+			return loader.getConvolutionalLayerWeights(request.getName(), shape[3], shape[2], shape[1], shape[0]);
+		case CONVOLUTIONAL_BIASES:
+			return loader.getConvolutionalLayerBiases(request.getName(), shape[0]);
+		case BATCH_NORM_GAMMA:
+			return loader.getBatchNormLayerGamma(request.getName(), shape[0]);
+		case BATCH_NORM_BETA:
+			return loader.getBatchNormLayerBeta(request.getName(), shape[0]);
+		case BATCH_NORM_MEAN:
+			return loader.getBatchNormLayerMovingMean(request.getName(), shape[0]);
+		case BATCH_NORM_VARIANCE:
+			return loader.getBatchNormLayerMovingVariance(request.getName(), shape[0]);
+		default:
+			throw new IllegalArgumentException("YOLO v2 weights loaders do not support " + request);
+		}
+	}
+
+	@Override
+	public WeightsMatrix getConvolutionalLayerWeights(String name, int width, int height, int inputDepth,
+			int outputDepth) {
+		return (WeightsMatrix) load(WeightsRequest.convolutionalWeights(name, width, height, inputDepth, outputDepth));
+	}
+
+	@Override
+	public BiasVector getConvolutionalLayerBiases(String name, int outputDepth) {
+		return (BiasVector) load(WeightsRequest.vector(Kind.CONVOLUTIONAL_BIASES, name, outputDepth));
+	}
+
+	@Override
+	public WeightsVector getBatchNormLayerGamma(String name, int outputDepth) {
+		return (WeightsVector) load(WeightsRequest.vector(Kind.BATCH_NORM_GAMMA, name, outputDepth));
+	}
+
+	@Override
+	public BiasVector getBatchNormLayerBeta(String name, int outputDepth) {
+		return (BiasVector) load(WeightsRequest.vector(Kind.BATCH_NORM_BETA, name, outputDepth));
+	}
+
+	@Override
+	public FeaturesVector getBatchNormLayerMovingVariance(String name, int outputDepth) {
+		return (FeaturesVector) load(WeightsRequest.vector(Kind.BATCH_NORM_VARIANCE, name, outputDepth));
+	}
+
+	@Override
+	public FeaturesVector getBatchNormLayerMovingMean(String name, int outputDepth) {
+		return (FeaturesVector) load(WeightsRequest.vector(Kind.BATCH_NORM_MEAN, name, outputDepth));
+	}
+
+	/**
+	 * @param kind The kind of tensor.
+	 * @return The weights type returned by YOLOv2WeightsLoader for tensors of the specified kind.
+	 */
+	public static Class<?> getWeightsType(Kind kind) {
+		switch (kind) {
+		case CONVOLUTIONAL_WEIGHTS:
+			return WeightsMatrix.class;
+		case BATCH_NORM_GAMMA:
+			return WeightsVector.class;
+		case CONVOLUTIONAL_BIASES:
+		case BATCH_NORM_BETA:
+			return BiasVector.class;
+		case BATCH_NORM_MEAN:
+		case BATCH_NORM_VARIANCE:
+			return FeaturesVector.class;
+		default:
+			throw new IllegalArgumentException("YOLO v2 weights loaders do not support " + kind);
+		}
+	}
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.architectures.yolo.yolov2;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.ml4j.nn.architectures.weights.BatchNormFoldingTensorSource;
+import org.ml4j.nn.architectures.weights.DarknetWeightsFile;
+import org.ml4j.nn.architectures.weights.DarknetWeightsFile.ConvolutionalLayer;
+import org.ml4j.nn.architectures.weights.WeightsTensorFactory;
+
+/**
+ * YOLOv2WeightsLoader which reads the original Darknet yolo.weights file (as published for the 608x608 COCO
+ * YOLOv2 model) directly, without converting it to Keras first.
+ * 
+ * @author Michael Lavelle
+ */
+public class DarknetYOLOv2WeightsLoader extends TensorSourceYOLOv2WeightsLoader {
+
+	/**
+	 * Default serialization id.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	public DarknetYOLOv2WeightsLoader(File yoloWeightsFile, WeightsTensorFactory weightsTensorFactory) {
+		this(yoloWeightsFile, getConvolutionalLayers(), weightsTensorFactory);
+	}
+
+	/**
+	 * @param yoloWeightsFile The Darknet weights file.
+	 * @param layers The convolutional layers stored in the file, in order - eg. getTinyConvolutionalLayers() for
+	 *            the yolov2-tiny.weights file of TinyYOLOv2Definition.
+	 * @param weightsTensorFactory The factory for the weights tensors.
+	 */
+	public DarknetYOLOv2WeightsLoader(File yoloWeightsFile, List<ConvolutionalLayer> layers,
+			WeightsTensorFactory weightsTensorFactory) {
+		super(new DarknetWeightsFile(yoloWeightsFile, layers), weightsTensorFactory);
+	}
+
+	/**
+	 * @return A loader which additionally serves the folded convolutional weights and biases requested by
+	 *         definitions built with batch norm folding enabled, using the batch norm epsilon of Darknet.
+	 */
+	@Override
+	public TensorSourceYOLOv2WeightsLoader withBatchNormFolding() {
+		return withBatchNormFolding(BatchNormFoldingTensorSource.DARKNET_EPSILON);
+	}
+
+	/**
+	 * @return The convolutional layers of YOLOv2Definition, in the order Darknet stores them.
+	 */
+	public static List<ConvolutionalLayer> getConvolutionalLayers() {
+		List<ConvolutionalLayer> layers = new ArrayList<>();
+		layers.add(batchNormalisedLayer(1, 3, 3, 32));
+		layers.add(batchNormalisedLayer(2, 3, 32, 64));
+		layers.add(batchNormalisedLayer(3, 3, 64, 128));
+		layers.add(batchNormalisedLayer(4, 1, 128, 64));
+		layers.add(batchNormalisedLayer(5, 3, 64, 128));
+		layers.add(batchNormalisedLayer(6, 3, 128, 256));
+		layers.add(batchNormalisedLayer(7, 1, 256, 128));
+		layers.add(batchNormalisedLayer(8, 3, 128, 256));
+		layers.add(batchNormalisedLayer(9, 3, 256, 512));
+		layers.add(batchNormalisedLayer(10, 1, 512, 256));
+		layers.add(batchNormalisedLayer(11, 3, 256, 512));
+		layers.add(batchNormalisedLayer(12, 1, 512, 256));
+		layers.add(batchNormalisedLayer(13, 3, 256, 512));
+		layers.add(batchNormalisedLayer(14, 3, 512, 1024));
+		layers.add(batchNormalisedLayer(15, 1, 1024, 512));
+		layers.add(batchNormalisedLayer(16, 3, 512, 1024));
+		layers.add(batchNormalisedLayer(17, 1, 1024, 512));
+		layers.add(batchNormalisedLayer(18, 3, 512, 1024));
+		layers.add(batchNormalisedLayer(19, 3, 1024, 1024));
+		layers.add(batchNormalisedLayer(20, 3, 1024, 1024));
+		// The passthrough layer
+		layers.add(batchNormalisedLayer(21, 1, 512, 64));
+		layers.add(batchNormalisedLayer(22, 3, 1280, 1024));
+		// The detection layer
+		layers.add(new ConvolutionalLayer("conv2d_23", null, 1, 1, 1024, 425));
+		return layers;
+	}
+
+	/**
+	 * @return The convolutional layers of TinyYOLOv2Definition, in the order Darknet stores them.
+	 */
+	public static List<ConvolutionalLayer> getTinyConvolutionalLayers() {
+		List<ConvolutionalLayer> layers = new ArrayList<>();
+		layers.add(batchNormalisedLayer(1, 3, 3, 16));
+		layers.add(batchNormalisedLayer(2, 3, 16, 32));
+		layers.add(batchNormalisedLayer(3, 3, 32, 64));
+		layers.add(batchNormalisedLayer(4, 3, 64, 128));
+		layers.add(batchNormalisedLayer(5, 3, 128, 256));
+		layers.add(batchNormalisedLayer(6, 3, 256, 512));
+		layers.add(batchNormalisedLayer(7, 3, 512, 1024));
+		layers.add(batchNormalisedLayer(8, 3, 1024, 512));
+		// The detection layer
+		layers.add(new ConvolutionalLayer("conv2d_9", null, 1, 1, 512, 425));
+		return layers;
+	}
+
+	private static ConvolutionalLayer batchNormalisedLayer(int index, int filterSize, int inputDepth,
+			int outputDepth) {
+		return new ConvolutionalLayer("conv2d_" + index, "batch_normalization_" + index, filterSize, filterSize,
+				inputDepth, outputDepth);
+	}
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.architectures.yolo.yolov2;
+
+import java.io.File;
+
+import org.ml4j.nn.architectures.weights.DeferredWeights;
+import org.ml4j.nn.architectures.weights.WeightsTensorFactory;
+import org.ml4j.nn.axons.BiasVector;
+import org.ml4j.nn.axons.FeaturesVector;
+import org.ml4j.nn.axons.WeightsMatrix;
+import org.ml4j.nn.axons.WeightsVector;
+
+/**
+ * YOLOv2WeightsLoader decorator which returns deferred handles instead of loading weights eagerly, so that
+ * weights are only read from the delegate loader the first time a component uses them.
+ * 
+ * @author Michael Lavelle
+ */
+public class LazyYOLOv2WeightsLoader implements YOLOv2WeightsLoader {
+
+	/**
+	 * Default serialization id.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	private YOLOv2WeightsLoader delegate;
+
+	public LazyYOLOv2WeightsLoader(YOLOv2WeightsLoader delegate) {
+		this.delegate = delegate;
+	}
+
+	@Override
+	public String getConfigurationFingerprint() {
+		return getClass().getName() + "(" + delegate.getConfigurationFingerprint() + ")";
+	}
+
+	@Override
+	public WeightsMatrix getConvolutionalLayerWeights(String name, int width, int height, int inputDepth,
+			int outputDepth) {
+		return DeferredWeights.defer(WeightsMatrix.class, name,
+				() -> delegate.getConvolutionalLayerWeights(name, width, height, inputDepth, outputDepth));
+	}
+
+	@Override
+	public BiasVector getConvolutionalLayerBiases(String name, int outputDepth) {
+		return DeferredWeights.defer(BiasVector.class, name,
+				() -> delegate.getConvolutionalLayerBiases(name, outputDepth));
+	}
+
+	@Override
+	public WeightsVector getBatchNormLayerGamma(String name, int outputDepth) {
+		return DeferredWeights.defer(WeightsVector.class, name, () -> delegate.getBatchNormLayerGamma(name, outputDepth));
+	}
+
+	@Override
+	public BiasVector getBatchNormLayerBeta(String name, int outputDepth) {
+		return DeferredWeights.defer(BiasVector.class, name, () -> delegate.getBatchNormLayerBeta(name, outputDepth));
+	}
+
+	@Override
+	public FeaturesVector getBatchNormLayerMovingVariance(String name, int outputDepth) {
+		return DeferredWeights.defer(FeaturesVector.class, name,
+				() -> delegate.getBatchNormLayerMovingVariance(name, outputDepth));
+	}
+
+	@Override
+	public FeaturesVector getBatchNormLayerMovingMean(String name, int outputDepth) {
+		return DeferredWeights.defer(FeaturesVector.class, name,
+				() -> delegate.getBatchNormLayerMovingMean(name, outputDepth));
+	}
+
+	/**
+	 * Convenience method for a loader over a memory-mapped WeightsBundle which reads - and for reduced-precision
+	 * bundles, widens - each tensor only when the component using it first needs it.
+	 * 
+	 * @param bundle The bundle file.
+	 * @param weightsTensorFactory The factory used to create the ml4j weights types.
+	 * @return The loader.
+	 */
+	public static LazyYOLOv2WeightsLoader fromWeightsBundle(File bundle, WeightsTensorFactory weightsTensorFactory) {
+		return new LazyYOLOv2WeightsLoader(
+				TensorSourceYOLOv2WeightsLoader.fromWeightsBundle(bundle, weightsTensorFactory));
+	}
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.architectures.yolo.yolov2;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+
+import org.ml4j.nn.architectures.weights.WeightsPrefetcher;
+import org.ml4j.nn.architectures.weights.WeightsRequest;
+
+/**
+ * YOLOv2WeightsLoader decorator which discovers the full manifest of tensors a definition needs up front,
+ * and then loads them all in parallel.
+ * 
+ * Usage is in two phases - a dry run of the graph construction to record the manifest, followed by a parallel
+ * prefetch of every tensor in it:
+ * 
+ * <pre>
+ * PrefetchingYOLOv2WeightsLoader loader = new PrefetchingYOLOv2WeightsLoader(delegate);
+ * loader.recordManifest(dryRunLoader -&gt; metadataSession.buildComponentGraph()
+ * 		.startWith(new YOLOv2Definition(dryRunLoader)));
+ * loader.prefetch(ForkJoinPool.commonPool());
+ * session.buildComponentGraph().startWith(new YOLOv2Definition(loader));
+ * </pre>
+ * 
+ * The loader passed to the dry run records each request and returns a deferred handle, so the dry run itself
+ * does not read any weights.  Requests which were not prefetched fall back to the delegate loader.  The
+ * recording and prefetching are performed by a WeightsPrefetcher.
+ * 
+ * @author Michael Lavelle
+ */
+public class PrefetchingYOLOv2WeightsLoader extends AbstractYOLOv2WeightsLoader {
+
+	/**
+	 * Default serialization id.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	private WeightsPrefetcher prefetcher;
+	private String delegateConfigurationFingerprint;
+
+	public PrefetchingYOLOv2WeightsLoader(YOLOv2WeightsLoader delegate) {
+		this.prefetcher = new WeightsPrefetcher(request -> load(delegate, request));
+		this.delegateConfigurationFingerprint = delegate.getConfigurationFingerprint();
+	}
+
+	/**
+	 * @param delegate The loader to prefetch from.
+	 * @param manifest A previously recorded manifest, allowing the dry run to be skipped.
+	 */
+	public PrefetchingYOLOv2WeightsLoader(YOLOv2WeightsLoader delegate, Collection<WeightsRequest> manifest) {
+		this(delegate);
+		this.prefetcher.recordAll(manifest);
+	}
+
+	@Override
+	public String getConfigurationFingerprint() {
+		return getClass().getName() + "(" + delegateConfigurationFingerprint + ")";
+	}
+
+	/**
+	 * Phase one - record the manifest of tensors requested during a dry run.
+	 * 
+	 * @param dryRun Builds a component graph using the supplied recording loader.
+	 * @return This loader.
+	 */
+	public PrefetchingYOLOv2WeightsLoader recordManifest(Consumer<YOLOv2WeightsLoader> dryRun) {
+		dryRun.accept(new RecordingYOLOv2WeightsLoader());
+		return this;
+	}
+
+	/**
+	 * Phase two - load every tensor in the manifest in parallel.
+	 * 
+	 * @param pool The pool on which to load the tensors.
+	 * @return This loader.
+	 */
+	public PrefetchingYOLOv2WeightsLoader prefetch(ForkJoinPool pool) {
+		prefetcher.prefetch(pool);
+		return this;
+	}
+
+	public PrefetchingYOLOv2WeightsLoader prefetch() {
+		return prefetch(ForkJoinPool.commonPool());
+	}
+
+	public List<WeightsRequest> getManifest() {
+		return prefetcher.getManifest();
+	}
+
+	/**
+	 * Release the prefetched weights once the component graph has been built.
+	 */
+	public void clear() {
+		prefetcher.clear();
+	}
+
+	@Override
+	protected Object load(WeightsRequest request) {
+		return prefetcher.load(request);
+	}
+
+	private class RecordingYOLOv2WeightsLoader extends AbstractYOLOv2WeightsLoader {
+
+		/**
+		 * Default serialization id.
+		 */
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected Object load(WeightsRequest request) {
+			return prefetcher.recordDeferred(request, getWeightsType(request.getKind()));
+		}
+	}
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.architectures.yolo.yolov2;
+
+import java.io.Serializable;
+
+import org.ml4j.nn.neurons.Neurons3D;
+
+/**
+ * The forward and backward passes of the SPACE_TO_DEPTH component of the YOLO v2 passthrough, which moves each
+ * blockSize x blockSize block of input pixels into the channels of a single output pixel - eg. 38x38x64 to
+ * 19x19x256 for a 608 input.
+ *
+ * As in TensorFlow's space_to_depth, with which the Keras YOLO v2 weights were trained, output channel
+ * (dy * blockSize + dx) * inputDepth + c at (x, y) is input channel c at (x * blockSize + dx, y * blockSize + dy).
+ *
+ * The features of a 3D activation are ordered by channel, then row, then column, and the activations of a batch
+ * are a features x examples matrix - stored in either Layout, as the matrices backing the activations may be
+ * row-major or column-major.  Either way the reorg is an index remap of the features, computed once, which copies
+ * the activations straight into (and the gradients straight out of) the buffer of the concatenation following the
+ * component at a given channel offset, rather than into an intermediate tensor which is then copied again.  In the
+ * FEATURE_MAJOR layout each output feature is a whole row of some input feature, so whole rows are copied.
+ *
+ * @author Michael Lavelle
+ */
+public class SpaceToDepth implements Serializable {
+
+	/**
+	 * Default serialization id.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The layout of a features x examples matrix of activations, stored in a float array.
+	 */
+	public enum Layout {
+
+		/**
+		 * Row-major - a row of example values for each feature, so the value of a feature for an example is at
+		 * feature * examples + example.
+		 */
+		FEATURE_MAJOR,
+
+		/**
+		 * Column-major, as jblas stores its matrices - a column of feature values for each example, so the value of
+		 * a feature for an example is at example * features + feature.
+		 */
+		EXAMPLE_MAJOR
+	}
+
+	/**
+	 * The number of examples from which rows are copied with System.arraycopy rather than element by element.
+	 */
+	private static final int ROW_COPY_EXAMPLES = 8;
+
+	private int inputWidth;
+	private int inputHeight;
+	private int inputDepth;
+	private int blockSize;
+	private Layout layout;
+	private int[] inputFeatureIndexes;
+
+	/**
+	 * @param inputWidth The width of the input - a multiple of the block size.
+	 * @param inputHeight The height of the input - a multiple of the block size.
+	 * @param inputDepth The depth of the input.
+	 * @param blockSize The width and height of each block - 2 for YOLO v2.
+	 * @param layout The layout of the input and output activations, and of their gradients.
+	 */
+	public SpaceToDepth(int inputWidth, int inputHeight, int inputDepth, int blockSize, Layout layout) {
+		if (blockSize <= 0 || inputWidth % blockSize != 0 || inputHeight % blockSize != 0) {
+			throw new IllegalArgumentException("Input of " + inputWidth + "x" + inputHeight
+					+ " cannot be divided into blocks of size " + blockSize);
+		}
+		this.inputWidth = inputWidth;
+		this.inputHeight = inputHeight;
+		this.inputDepth = inputDepth;
+		this.blockSize = blockSize;
+		this.layout = layout;
+		this.inputFeatureIndexes = createInputFeatureIndexes();
+	}
+
+	/**
+	 * @param inputNeurons The input neurons - of a width and height which are multiples of the block size.
+	 * @param blockSize The width and height of each block - 2 for YOLO v2.
+	 * @param layout The layout of the input and output activations, and of their gradients.
+	 * @return The SpaceToDepth of the input neurons.
+	 */
+	public static SpaceToDepth forInputNeurons(Neurons3D inputNeurons, int blockSize, Layout layout) {
+		return new SpaceToDepth(inputNeurons.getWidth(), inputNeurons.getHeight(), inputNeurons.getDepth(), blockSize,
+				layout);
+	}
+
+	public int getOutputWidth() {
+		return inputWidth / blockSize;
+	}
+
+	public int getOutputHeight() {
+		return inputHeight / blockSize;
+	}
+
+	public int getOutputDepth() {
+		return inputDepth * blockSize * blockSize;
+	}
+
+	public int getBlockSize() {
+		return blockSize;
+	}
+
+	public Layout getLayout() {
+		return layout;
+	}
+
+	public int getFeatureCount() {
+		return inputFeatureIndexes.length;
+	}
+
+	/**
+	 * @param outputFeatureIndex The index of an output feature.
+	 * @return The index of the input feature it is taken from.
+	 */
+	public int getInputFeatureIndex(int outputFeatureIndex) {
+		return inputFeatureIndexes[outputFeatureIndex];
+	}
+
+	private int[] createInputFeatureIndexes() {
+		int outputWidth = getOutputWidth();
+		int outputHeight = getOutputHeight();
+		int[] indexes = new int[inputWidth * inputHeight * inputDepth];
+		int outputFeatureIndex = 0;
+		for (int outputChannel = 0; outputChannel < getOutputDepth(); outputChannel++) {
+			int block = outputChannel / inputDepth;
+			int inputChannel = outputChannel % inputDepth;
+			int dy = block / blockSize;
+			int dx = block % blockSize;
+			for (int y = 0; y < outputHeight; y++) {
+				for (int x = 0; x < outputWidth; x++) {
+					indexes[outputFeatureIndex++] = (inputChannel * inputHeight + y * blockSize + dy) * inputWidth
+							+ x * blockSize + dx;
+				}
+			}
+		}
+		return indexes;
+	}
+
+	/**
+	 * The forward pass.
+	 *
+	 * @param input The input activations, of getFeatureCount() features of the given number of examples.
+	 * @param output The destination buffer - eg. that of the concatenation following this component.
+	 * @param outputChannelOffset The channel of the destination buffer at which the output begins.
+	 * @param outputBufferDepth The depth of the destination buffer - eg. the depth of the concatenation.
+	 * @param examples The number of examples.
+	 */
+	public void forward(float[] input, float[] output, int outputChannelOffset, int outputBufferDepth, int examples) {
+		if (layout == Layout.EXAMPLE_MAJOR) {
+			int outputFeatureCount = outputBufferDepth * getOutputWidth() * getOutputHeight();
+			int outputFeatureOffset = outputChannelOffset * getOutputWidth() * getOutputHeight();
+			for (int example = 0; example < examples; example++) {
+				int inputIndex = example * inputFeatureIndexes.length;
+				int outputIndex = example * outputFeatureCount + outputFeatureOffset;
+				for (int outputFeatureIndex = 0; outputFeatureIndex < inputFeatureIndexes.length; outputFeatureIndex++) {
+					output[outputIndex + outputFeatureIndex] = input[inputIndex + inputFeatureIndexes[outputFeatureIndex]];
+				}
+			}
+			return;
+		}
+		int outputOffset = outputChannelOffset * getOutputWidth() * getOutputHeight() * examples;
+		if (examples < ROW_COPY_EXAMPLES) {
+			for (int outputFeatureIndex = 0; outputFeatureIndex < inputFeatureIndexes.length; outputFeatureIndex++) {
+				int inputIndex = inputFeatureIndexes[outputFeatureIndex] * examples;
+				int outputIndex = outputOffset + outputFeatureIndex * examples;
+				for (int example = 0; example < examples; example++) {
+					output[outputIndex + example] = input[inputIndex + example];
+				}
+			}
+		} else {
+			for (int outputFeatureIndex = 0; outputFeatureIndex < inputFeatureIndexes.length; outputFeatureIndex++) {
+				System.arraycopy(input, inputFeatureIndexes[outputFeatureIndex] * examples, output,
+						outputOffset + outputFeatureIndex * examples, examples);
+			}
+		}
+	}
+
+	/**
+	 * The backward pass - as the reorg is a permutation, each input gradient is exactly one output gradient.
+	 *
+	 * @param outputGradients The gradients of the destination buffer - eg. those of the concatenation following
+	 *            this component.
+	 * @param outputChannelOffset The channel of the destination buffer at which the output begins.
+	 * @param outputBufferDepth The depth of the destination buffer - eg. the depth of the concatenation.
+	 * @param inputGradients The buffer for the gradients of the input activations.
+	 * @param examples The number of examples.
+	 */
+	public void backward(float[] outputGradients, int outputChannelOffset, int outputBufferDepth,
+			float[] inputGradients, int examples) {
+		if (layout == Layout.EXAMPLE_MAJOR) {
+			int outputFeatureCount = outputBufferDepth * getOutputWidth() * getOutputHeight();
+			int outputFeatureOffset = outputChannelOffset * getOutputWidth() * getOutputHeight();
+			for (int example = 0; example < examples; example++) {
+				int inputIndex = example * inputFeatureIndexes.length;
+				int outputIndex = example * outputFeatureCount + outputFeatureOffset;
+				for (int outputFeatureIndex = 0; outputFeatureIndex < inputFeatureIndexes.length; outputFeatureIndex++) {
+					inputGradients[inputIndex + inputFeatureIndexes[outputFeatureIndex]]
+						= outputGradients[outputIndex + outputFeatureIndex];
+				}
+			}
+			return;
+		}
+		int outputOffset = outputChannelOffset * getOutputWidth() * getOutputHeight() * examples;
+		if (examples < ROW_COPY_EXAMPLES) {
+			for (int outputFeatureIndex = 0; outputFeatureIndex < inputFeatureIndexes.length; outputFeatureIndex++) {
+				int inputIndex = inputFeatureIndexes[outputFeatureIndex] * examples;
+				int outputIndex = outputOffset + outputFeatureIndex * examples;
+				for (int example = 0; example < examples; example++) {
+					inputGradients[inputIndex + example] = outputGradients[outputIndex + example];
+				}
+			}
+		} else {
+			for (int outputFeatureIndex = 0; outputFeatureIndex < inputFeatureIndexes.length; outputFeatureIndex++) {
+				System.arraycopy(outputGradients, outputOffset + outputFeatureIndex * examples, inputGradients,
+						inputFeatureIndexes[outputFeatureIndex] * examples, examples);
+			}
+		}
+	}
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.architectures.yolo.yolov2;
+
+import org.ml4j.nn.components.NeuralComponent;
+import org.ml4j.nn.components.factories.NeuralComponentFactory;
+import org.ml4j.nn.neurons.Neurons3D;
+
+/**
+ * A NeuralComponentFactory which can also create the space to depth component of the YOLO v2 passthrough, whose
+ * forward and backward passes are those of a SpaceToDepth.
+ *
+ * YOLOv2Definition creates its space_to_depth_x2 component with such a factory when one is available.  Otherwise
+ * it requests a component of type YOLOv2Definition.SPACE_TO_DEPTH_COMPONENT_TYPE through
+ * NeuralComponentFactory.createComponent, and the factory is responsible for resolving the block size.
+ *
+ * @author Michael Lavelle
+ *
+ * @param <T> The type of NeuralComponent created by this factory.
+ */
+public interface SpaceToDepthComponentFactory<T extends NeuralComponent<?>> extends NeuralComponentFactory<T> {
+
+	/**
+	 * @param name The name of the component.
+	 * @param inputNeurons The input neurons of the component.
+	 * @param outputNeurons The output neurons of the component - of 1/blockSize of the width and height, and
+	 *            blockSize * blockSize times the depth, of the input neurons.
+	 * @param blockSize The width and height of each block of input pixels moved into the channels of an output pixel.
+	 * @return A component of type YOLOv2Definition.SPACE_TO_DEPTH_COMPONENT_TYPE, whose forward and backward passes
+	 *         are those of SpaceToDepth.forInputNeurons(inputNeurons, blockSize, layout), for the layout of the
+	 *         activations of the components created by this factory.
+	 */
+	T createSpaceToDepthComponent(String name, Neurons3D inputNeurons, Neurons3D outputNeurons, int blockSize);
+}
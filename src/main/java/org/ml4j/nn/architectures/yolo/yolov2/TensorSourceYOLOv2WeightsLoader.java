@@ -0,0 +1,188 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.architectures.yolo.yolov2;
+
+import java.io.File;
+import java.util.function.Consumer;
+
+import org.ml4j.nn.architectures.weights.BatchNormFoldingTensorSource;
+import org.ml4j.nn.architectures.weights.KerasHdf5TensorSource;
+import org.ml4j.nn.architectures.weights.NumPyTensorSource;
+import org.ml4j.nn.architectures.weights.TensorSource;
+import org.ml4j.nn.architectures.weights.WeightsBundle;
+import org.ml4j.nn.architectures.weights.WeightsCompiler;
+import org.ml4j.nn.architectures.weights.WeightsRequest;
+import org.ml4j.nn.architectures.weights.WeightsRequest.Kind;
+import org.ml4j.nn.architectures.weights.WeightsTensorFactory;
+import org.ml4j.nn.axons.BiasVector;
+import org.ml4j.nn.axons.FeaturesVector;
+import org.ml4j.nn.axons.WeightsMatrix;
+import org.ml4j.nn.axons.WeightsVector;
+
+/**
+ * YOLOv2WeightsLoader which reads tensors from a TensorSource and creates the ml4j weights types using an
+ * application-supplied WeightsTensorFactory.
+ * 
+ * @author Michael Lavelle
+ */
+public class TensorSourceYOLOv2WeightsLoader implements YOLOv2WeightsLoader {
+
+	/**
+	 * Default serialization id.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	private TensorSource tensorSource;
+	private WeightsTensorFactory weightsTensorFactory;
+
+	public TensorSourceYOLOv2WeightsLoader(TensorSource tensorSource, WeightsTensorFactory weightsTensorFactory) {
+		this.tensorSource = tensorSource;
+		this.weightsTensorFactory = weightsTensorFactory;
+	}
+
+	@Override
+	public String getConfigurationFingerprint() {
+		return getClass().getName() + "(" + tensorSource.getConfigurationFingerprint() + ")";
+	}
+
+	@Override
+	public WeightsMatrix getConvolutionalLayerWeights(String name, int width, int height, int inputDepth,
+			int outputDepth) {
+		return weightsTensorFactory.createConvolutionalLayerWeights(
+				tensorSource.getTensor(
+						WeightsRequest.convolutionalWeights(name, width, height, inputDepth, outputDepth)),
+				width, height, inputDepth, outputDepth);
+	}
+
+	@Override
+	public BiasVector getConvolutionalLayerBiases(String name, int outputDepth) {
+		return weightsTensorFactory.createBiasVector(
+				tensorSource.getTensor(WeightsRequest.vector(Kind.CONVOLUTIONAL_BIASES, name, outputDepth)),
+				outputDepth);
+	}
+
+	@Override
+	public WeightsVector getBatchNormLayerGamma(String name, int outputDepth) {
+		return weightsTensorFactory.createWeightsVector(
+				tensorSource.getTensor(WeightsRequest.vector(Kind.BATCH_NORM_GAMMA, name, outputDepth)), outputDepth);
+	}
+
+	@Override
+	public BiasVector getBatchNormLayerBeta(String name, int outputDepth) {
+		return weightsTensorFactory.createBiasVector(
+				tensorSource.getTensor(WeightsRequest.vector(Kind.BATCH_NORM_BETA, name, outputDepth)), outputDepth);
+	}
+
+	@Override
+	public FeaturesVector getBatchNormLayerMovingVariance(String name, int outputDepth) {
+		return weightsTensorFactory.createFeaturesVector(
+				tensorSource.getTensor(WeightsRequest.vector(Kind.BATCH_NORM_VARIANCE, name, outputDepth)),
+				outputDepth);
+	}
+
+	@Override
+	public FeaturesVector getBatchNormLayerMovingMean(String name, int outputDepth) {
+		return weightsTensorFactory.createFeaturesVector(
+				tensorSource.getTensor(WeightsRequest.vector(Kind.BATCH_NORM_MEAN, name, outputDepth)), outputDepth);
+	}
+
+	/**
+	 * @return A loader which additionally serves the folded convolutional weights and biases requested by
+	 *         definitions built with batch norm folding enabled, using the Keras default batch norm epsilon.
+	 */
+	public TensorSourceYOLOv2WeightsLoader withBatchNormFolding() {
+		return withBatchNormFolding(BatchNormFoldingTensorSource.DEFAULT_EPSILON);
+	}
+
+	/**
+	 * @param epsilon The batch norm epsilon the weights were trained with.
+	 * @return A loader which additionally serves the folded convolutional weights and biases requested by
+	 *         definitions built with batch norm folding enabled.
+	 */
+	public TensorSourceYOLOv2WeightsLoader withBatchNormFolding(float epsilon) {
+		return new TensorSourceYOLOv2WeightsLoader(new BatchNormFoldingTensorSource(tensorSource, true, epsilon),
+				weightsTensorFactory);
+	}
+
+	/**
+	 * Compile the tensors a YOLOv2Definition requests from this loader into a WeightsBundle in canonical layout,
+	 * or reuse the bundle compiled by an earlier startup.
+	 * 
+	 * @param sourceFile The file this loader reads its tensors from.
+	 * @param compiler The compiler, holding the cache directory.
+	 * @param dryRun Builds a component graph using the supplied recording loader - only invoked on a cache miss.
+	 * @return A loader serving the compiled tensors.
+	 */
+	public TensorSourceYOLOv2WeightsLoader compile(File sourceFile, WeightsCompiler compiler,
+			Consumer<YOLOv2WeightsLoader> dryRun) {
+		return compile(sourceFile, compiler, YOLOv2Definition.class.getName(), dryRun);
+	}
+
+	/**
+	 * Compile the tensors a definition requests from this loader into a WeightsBundle in canonical layout,
+	 * or reuse the bundle compiled by an earlier startup.
+	 * 
+	 * @param sourceFile The file this loader reads its tensors from.
+	 * @param compiler The compiler, holding the cache directory.
+	 * @param definitionId Identifies the definition and any parameters which affect the tensors it requests.
+	 * @param dryRun Builds a component graph using the supplied recording loader - only invoked on a cache miss.
+	 * @return A loader serving the compiled tensors.
+	 */
+	public TensorSourceYOLOv2WeightsLoader compile(File sourceFile, WeightsCompiler compiler, String definitionId,
+			Consumer<YOLOv2WeightsLoader> dryRun) {
+		return new TensorSourceYOLOv2WeightsLoader(compiler.compile(sourceFile, tensorSource, definitionId,
+				() -> new PrefetchingYOLOv2WeightsLoader(this).recordManifest(dryRun).getManifest()), weightsTensorFactory);
+	}
+
+	/**
+	 * Convenience method for a loader which serves every tensor from a memory-mapped WeightsBundle.
+	 * 
+	 * @param bundle The bundle file.
+	 * @param weightsTensorFactory The factory used to create the ml4j weights types.
+	 * @return The loader.
+	 */
+	public static TensorSourceYOLOv2WeightsLoader fromWeightsBundle(File bundle,
+			WeightsTensorFactory weightsTensorFactory) {
+		return new TensorSourceYOLOv2WeightsLoader(WeightsBundle.open(bundle), weightsTensorFactory);
+	}
+
+	/**
+	 * Convenience method for a loader which reads tensors saved by NumPy from Keras, either as a directory of
+	 * .npy files or as an uncompressed .npz archive.
+	 * 
+	 * @param numPyFile The directory of .npy files, or the .npz archive.
+	 * @param weightsTensorFactory The factory used to create the ml4j weights types.
+	 * @return The loader.
+	 */
+	public static TensorSourceYOLOv2WeightsLoader fromNumPy(File numPyFile,
+			WeightsTensorFactory weightsTensorFactory) {
+		return new TensorSourceYOLOv2WeightsLoader(numPyFile.isDirectory()
+				? NumPyTensorSource.fromDirectory(numPyFile) : NumPyTensorSource.fromArchive(numPyFile),
+				weightsTensorFactory);
+	}
+
+	/**
+	 * Convenience method for a loader which reads a published Keras weights file (.h5) as-is.
+	 * 
+	 * @param kerasWeightsFile The Keras HDF5 weights file.
+	 * @param weightsTensorFactory The factory used to create the ml4j weights types.
+	 * @return The loader.
+	 */
+	public static TensorSourceYOLOv2WeightsLoader fromKerasHdf5(File kerasWeightsFile,
+			WeightsTensorFactory weightsTensorFactory) {
+		return new TensorSourceYOLOv2WeightsLoader(KerasHdf5TensorSource.open(kerasWeightsFile), weightsTensorFactory);
+	}
+}
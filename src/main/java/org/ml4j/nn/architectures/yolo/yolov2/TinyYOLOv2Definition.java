@@ -0,0 +1,197 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.architectures.yolo.yolov2;
+
+import org.ml4j.nn.activationfunctions.ActivationFunctionBaseType;
+import org.ml4j.nn.activationfunctions.ActivationFunctionProperties;
+import org.ml4j.nn.activationfunctions.ActivationFunctionType;
+import org.ml4j.nn.architectures.BuildProfile;
+import org.ml4j.nn.components.NeuralComponent;
+import org.ml4j.nn.components.builders.componentsgraph.InitialComponents3DGraphBuilder;
+import org.ml4j.nn.components.factories.NeuralComponentFactory;
+import org.ml4j.nn.definitions.Component3Dto3DGraphDefinition;
+import org.ml4j.nn.neurons.Neurons3D;
+
+/**
+ * Tiny YOLOv2 - the low latency variant of YOLOv2, with 9 convolutional layers, 6 max pooling layers and no
+ * passthrough branch.
+ * 
+ * The weights are requested with the same naming conventions as YOLOv2Definition (eg. "conv2d_3_kernel0",
+ * "batch_normalization_3_gamma0") and the output has the same 425 channel layout - 5 anchor boxes of 4 coordinates,
+ * an objectness score and 80 class scores for each cell of the output grid.
+ * 
+ * @author Michael Lavelle
+ */
+public class TinyYOLOv2Definition implements Component3Dto3DGraphDefinition {
+
+	/**
+	 * Default serialization id.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	public static final int DEFAULT_INPUT_SIZE = 416;
+
+	private YOLOv2WeightsLoader weightsLoader;
+	private int inputSize;
+	private boolean batchNormFolding;
+	private boolean fusedConvolutions;
+	private BuildProfile buildProfile;
+
+	public TinyYOLOv2Definition(YOLOv2WeightsLoader weightsLoader) {
+		this(weightsLoader, DEFAULT_INPUT_SIZE);
+	}
+
+	/**
+	 * @param weightsLoader The weights loader - the same weights are used at every input size.
+	 * @param inputSize The width and height of the input images - any multiple of 32, eg. 320, 416 or 608.
+	 */
+	public TinyYOLOv2Definition(YOLOv2WeightsLoader weightsLoader, int inputSize) {
+		if (inputSize <= 0 || inputSize % YOLOv2Definition.STRIDE != 0) {
+			throw new IllegalArgumentException("Input size must be a positive multiple of " + YOLOv2Definition.STRIDE
+					+ " but was " + inputSize);
+		}
+		this.weightsLoader = weightsLoader;
+		this.inputSize = inputSize;
+		this.buildProfile = BuildProfile.TRAINING;
+	}
+
+	@Override
+	public Neurons3D getInputNeurons() {
+		return new Neurons3D(inputSize, inputSize, 3, false);
+	}
+
+	@Override
+	public Neurons3D getOutputNeurons() {
+		return new Neurons3D(inputSize / YOLOv2Definition.STRIDE, inputSize / YOLOv2Definition.STRIDE, 425, false);
+	}
+
+	public int getInputSize() {
+		return inputSize;
+	}
+
+	/**
+	 * @param batchNormFolding Whether to fold the batch norm layers into the preceding convolutional layers -
+	 * requires a weights loader which serves folded weights, eg. TensorSourceYOLOv2WeightsLoader.withBatchNormFolding().
+	 */
+	public void setBatchNormFolding(boolean batchNormFolding) {
+		this.batchNormFolding = batchNormFolding;
+	}
+
+	/**
+	 * @param fusedConvolutions Whether to create each convolutional layer as a single fused convolution / batch
+	 * norm / leaky RELU component - requires the graph to be created with a FusedComponentFactory.
+	 */
+	public void setFusedConvolutions(boolean fusedConvolutions) {
+		this.fusedConvolutions = fusedConvolutions;
+	}
+
+	/**
+	 * @param buildProfile Whether to configure the components for training, or for inference only in which case
+	 * all axons are frozen out.
+	 */
+	public void setBuildProfile(BuildProfile buildProfile) {
+		this.buildProfile = buildProfile;
+	}
+
+	@Override
+	public <T extends NeuralComponent<?>> InitialComponents3DGraphBuilder<T> createComponentGraph(
+			InitialComponents3DGraphBuilder<T> start, NeuralComponentFactory<T> neuralComponentFactory) {
+
+		// Spatial sizes after each stride 2 max pooling layer - 208, 104, 52, 26 and 13 for a 416 input
+		int size2 = inputSize / 2;
+		int size4 = inputSize / 4;
+		int size8 = inputSize / 8;
+		int size16 = inputSize / 16;
+		int size32 = inputSize / 32;
+
+		return start
+				// conv2d_1
+				.withComponentDefinition(convolution(1, getInputNeurons(),
+						new Neurons3D(inputSize, inputSize, 16, false)))
+				.withMaxPoolingAxons("max_pooling2d_1")
+				.withFilterSize(2, 2)
+				.withStride(2, 2)
+				.withConnectionToNeurons(new Neurons3D(size2, size2, 16, false))
+				// conv2d_2
+				.withComponentDefinition(convolution(2, new Neurons3D(size2, size2, 16, false),
+						new Neurons3D(size2, size2, 32, false)))
+				.withMaxPoolingAxons("max_pooling2d_2")
+				.withFilterSize(2, 2)
+				.withStride(2, 2)
+				.withConnectionToNeurons(new Neurons3D(size4, size4, 32, false))
+				// conv2d_3
+				.withComponentDefinition(convolution(3, new Neurons3D(size4, size4, 32, false),
+						new Neurons3D(size4, size4, 64, false)))
+				.withMaxPoolingAxons("max_pooling2d_3")
+				.withFilterSize(2, 2)
+				.withStride(2, 2)
+				.withConnectionToNeurons(new Neurons3D(size8, size8, 64, false))
+				// conv2d_4
+				.withComponentDefinition(convolution(4, new Neurons3D(size8, size8, 64, false),
+						new Neurons3D(size8, size8, 128, false)))
+				.withMaxPoolingAxons("max_pooling2d_4")
+				.withFilterSize(2, 2)
+				.withStride(2, 2)
+				.withConnectionToNeurons(new Neurons3D(size16, size16, 128, false))
+				// conv2d_5
+				.withComponentDefinition(convolution(5, new Neurons3D(size16, size16, 128, false),
+						new Neurons3D(size16, size16, 256, false)))
+				.withMaxPoolingAxons("max_pooling2d_5")
+				.withFilterSize(2, 2)
+				.withStride(2, 2)
+				.withConnectionToNeurons(new Neurons3D(size32, size32, 256, false))
+				// conv2d_6
+				.withComponentDefinition(convolution(6, new Neurons3D(size32, size32, 256, false),
+						new Neurons3D(size32, size32, 512, false)))
+				// The final max pooling layer has stride 1, so preserves the spatial size
+				.withMaxPoolingAxons("max_pooling2d_6")
+				.withFilterSize(2, 2)
+				.withStride(1, 1)
+				.withSamePadding()
+				.withConnectionToNeurons(new Neurons3D(size32, size32, 512, false))
+				// conv2d_7
+				.withComponentDefinition(convolution(7, new Neurons3D(size32, size32, 512, false),
+						new Neurons3D(size32, size32, 1024, false)))
+				// conv2d_8
+				.withComponentDefinition(convolution(8, new Neurons3D(size32, size32, 1024, false),
+						new Neurons3D(size32, size32, 512, false)))
+				// conv2d_9
+				.withConvolutionalAxons("conv2d_9")
+				.withFilterSize(1, 1)
+				.withFilterCount(425)
+				.withStride(1, 1)
+				.withConnectionWeights(weightsLoader.getConvolutionalLayerWeights("conv2d_9_kernel0", 1, 1, 512, 425))
+				.withBiasUnit()
+				.withBiases(weightsLoader.getConvolutionalLayerBiases("conv2d_9_bias0", 425))
+				.withSamePadding()
+				.withAxonsContextConfigurer(c -> c.withFreezeOut(buildProfile == BuildProfile.INFERENCE))
+				.withConnectionToNeurons(getOutputNeurons())
+				// End with a linear activation function so that this definition can be used as a neural network.
+				.withActivationFunction("noOpActivationFunction", ActivationFunctionType.getBaseType(ActivationFunctionBaseType.LINEAR),
+						new ActivationFunctionProperties());
+	}
+
+	private YOLOv2ConvolutionDefinition convolution(int index, Neurons3D inputNeurons, Neurons3D outputNeurons) {
+		return new YOLOv2ConvolutionDefinition(weightsLoader, index, inputNeurons, outputNeurons).withFilterSize(3, 3)
+				.withBatchNormFolding(batchNormFolding).withFusedConvolutions(fusedConvolutions)
+				.withBuildProfile(buildProfile);
+	}
+
+	@Override
+	public String getName() {
+		return "tiny_yolo_v2_graph";
+	}
+}
@@ -0,0 +1,205 @@
+package org.ml4j.nn.architectures.yolo.yolov2;
+
+import java.util.function.Consumer;
+
+import org.ml4j.nn.activationfunctions.ActivationFunctionProperties;
+import org.ml4j.nn.architectures.BuildProfile;
+import org.ml4j.nn.architectures.fusion.ConvolutionBatchNormActivationConfig;
+import org.ml4j.nn.architectures.fusion.FusedComponentFactory;
+import org.ml4j.nn.architectures.weights.BatchNormFoldingTensorSource;
+import org.ml4j.nn.axons.AxonsContextConfig;
+import org.ml4j.nn.components.NeuralComponent;
+import org.ml4j.nn.components.builders.componentsgraph.InitialComponents3DGraphBuilder;
+import org.ml4j.nn.components.factories.NeuralComponentFactory;
+import org.ml4j.nn.definitions.Component3Dto3DGraphDefinition;
+import org.ml4j.nn.neurons.Neurons3D;
+
+/**
+ * A convolutional layer of YOLO v2 - same-padded convolutional axons followed by batch norm axons and a leaky RELU
+ * activation, whose weights are named by the index of the layer (eg. "conv2d_3_kernel0",
+ * "batch_normalization_3_gamma0").
+ *
+ * With batch norm folding enabled the batch norm axons are omitted, and the convolutional axons are created with
+ * the folded weights and biases served by a loader over a BatchNormFoldingTensorSource instead.
+ *
+ * With fused convolutions enabled the layer is created as a single fused convolution / batch norm / activation
+ * component instead, which requires a FusedComponentFactory - frozen out through its config for the INFERENCE
+ * build profile, as the separate axons would be through their axons context configurers.
+ *
+ * @author Michael Lavelle
+ */
+public class YOLOv2ConvolutionDefinition implements Component3Dto3DGraphDefinition {
+
+	/**
+	 * Default serialization id.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	private YOLOv2WeightsLoader weightsLoader;
+	private int index;
+	private Neurons3D inputNeurons;
+	private Neurons3D outputNeurons;
+	private int filterWidth;
+	private int filterHeight;
+	private int filterCount;
+	private String activationName;
+	private boolean outputBiasUnit;
+	private boolean batchNormFolding;
+	private boolean fusedConvolutions;
+	private BuildProfile buildProfile;
+
+	public YOLOv2ConvolutionDefinition(YOLOv2WeightsLoader weightsLoader, int index, Neurons3D inputNeurons,
+			Neurons3D outputNeurons) {
+		this.weightsLoader = weightsLoader;
+		this.index = index;
+		this.inputNeurons = inputNeurons;
+		this.outputNeurons = outputNeurons;
+		this.filterWidth = 1;
+		this.filterHeight = 1;
+		this.filterCount = outputNeurons.getDepth();
+		this.activationName = "leaky_re_lu_" + index;
+		this.buildProfile = BuildProfile.TRAINING;
+	}
+
+	public YOLOv2ConvolutionDefinition withFilterSize(int filterWidth, int filterHeight) {
+		this.filterWidth = filterWidth;
+		this.filterHeight = filterHeight;
+		return this;
+	}
+
+	public YOLOv2ConvolutionDefinition withFilterCount(int filterCount) {
+		this.filterCount = filterCount;
+		return this;
+	}
+
+	public YOLOv2ConvolutionDefinition withActivationName(String activationName) {
+		this.activationName = activationName;
+		return this;
+	}
+
+	/**
+	 * @param outputBiasUnit Whether the neurons the layer connects to its activation have a bias unit, as those of
+	 *            batch_normalization_22 do in the original definition.
+	 * @return This definition.
+	 */
+	public YOLOv2ConvolutionDefinition withOutputBiasUnit(boolean outputBiasUnit) {
+		this.outputBiasUnit = outputBiasUnit;
+		return this;
+	}
+
+	public YOLOv2ConvolutionDefinition withBatchNormFolding(boolean batchNormFolding) {
+		this.batchNormFolding = batchNormFolding;
+		return this;
+	}
+
+	public YOLOv2ConvolutionDefinition withFusedConvolutions(boolean fusedConvolutions) {
+		this.fusedConvolutions = fusedConvolutions;
+		return this;
+	}
+
+	public YOLOv2ConvolutionDefinition withBuildProfile(BuildProfile buildProfile) {
+		this.buildProfile = buildProfile;
+		return this;
+	}
+
+	@Override
+	public Neurons3D getInputNeurons() {
+		return inputNeurons;
+	}
+
+	@Override
+	public Neurons3D getOutputNeurons() {
+		return outputNeurons;
+	}
+
+	@Override
+	public <T extends NeuralComponent<?>> InitialComponents3DGraphBuilder<T> createComponentGraph(
+			InitialComponents3DGraphBuilder<T> start, NeuralComponentFactory<T> neuralComponentFactory) {
+		String convolutionName = getName();
+		String batchNormName = "batch_normalization_" + index;
+		int inputDepth = inputNeurons.getDepth();
+		int outputDepth = outputNeurons.getDepth();
+		Neurons3D activationNeurons = outputBiasUnit ? new Neurons3D(outputNeurons.getWidth(),
+				outputNeurons.getHeight(), outputDepth, true) : outputNeurons;
+		if (fusedConvolutions) {
+			FusedComponentFactory<T> fusedComponentFactory = FusedComponentFactory
+					.getFusedComponentFactory(neuralComponentFactory);
+			return start.with3DComponent(fusedComponentFactory.createConvolutionBatchNormActivationComponent(
+					convolutionName, inputNeurons, activationNeurons, createFusedConfig()), activationNeurons);
+		}
+		if (batchNormFolding) {
+			return start
+					.withConvolutionalAxons(convolutionName)
+					.withFilterSize(filterWidth, filterHeight)
+					.withFilterCount(filterCount)
+					.withConnectionWeights(weightsLoader.getConvolutionalLayerWeights(
+							BatchNormFoldingTensorSource.getFoldedWeightsName(convolutionName),
+							filterWidth, filterHeight, inputDepth, outputDepth))
+					.withBiasUnit()
+					.withBiases(weightsLoader.getConvolutionalLayerBiases(
+							BatchNormFoldingTensorSource.getFoldedBiasesName(convolutionName), outputDepth))
+					.withSamePadding()
+					.withAxonsContextConfigurer(axonsContextConfigurer())
+					.withConnectionToNeurons(activationNeurons)
+					.withActivationFunction(activationName, YOLOv2Definition.LEAKY_RELU_ACTIVATION_FUNCTION_TYPE,
+							new ActivationFunctionProperties().withAlpha(0.1f));
+		}
+		return start
+				.withConvolutionalAxons(convolutionName)
+				.withFilterSize(filterWidth, filterHeight)
+				.withFilterCount(filterCount)
+				.withConnectionWeights(weightsLoader.getConvolutionalLayerWeights(convolutionName + "_kernel0",
+						filterWidth, filterHeight, inputDepth, outputDepth))
+				.withSamePadding()
+				.withAxonsContextConfigurer(axonsContextConfigurer())
+				.withConnectionToNeurons(outputNeurons)
+				.withBatchNormAxons(batchNormName)
+				.withMean(weightsLoader.getBatchNormLayerMovingMean(batchNormName + "_moving_mean0", outputDepth))
+				.withVariance(weightsLoader.getBatchNormLayerMovingVariance(batchNormName + "_moving_variance0", outputDepth))
+				.withGamma(weightsLoader.getBatchNormLayerGamma(batchNormName + "_gamma0", outputDepth))
+				.withBeta(weightsLoader.getBatchNormLayerBeta(batchNormName + "_beta0", outputDepth))
+				.withAxonsContextConfigurer(axonsContextConfigurer())
+				.withConnectionToNeurons(activationNeurons)
+				.withActivationFunction(activationName, YOLOv2Definition.LEAKY_RELU_ACTIVATION_FUNCTION_TYPE,
+						new ActivationFunctionProperties().withAlpha(0.1f));
+	}
+
+	private Consumer<AxonsContextConfig> axonsContextConfigurer() {
+		return c -> c.withFreezeOut(buildProfile == BuildProfile.INFERENCE);
+	}
+
+	private ConvolutionBatchNormActivationConfig createFusedConfig() {
+		String convolutionName = getName();
+		String batchNormName = "batch_normalization_" + index;
+		int inputDepth = inputNeurons.getDepth();
+		int outputDepth = outputNeurons.getDepth();
+		ConvolutionBatchNormActivationConfig config;
+		if (batchNormFolding) {
+			config = new ConvolutionBatchNormActivationConfig(weightsLoader.getConvolutionalLayerWeights(
+					BatchNormFoldingTensorSource.getFoldedWeightsName(convolutionName), filterWidth, filterHeight,
+					inputDepth, outputDepth), filterWidth, filterHeight)
+					.withBiases(weightsLoader.getConvolutionalLayerBiases(
+							BatchNormFoldingTensorSource.getFoldedBiasesName(convolutionName), outputDepth));
+		} else {
+			config = new ConvolutionBatchNormActivationConfig(weightsLoader.getConvolutionalLayerWeights(
+					convolutionName + "_kernel0", filterWidth, filterHeight, inputDepth, outputDepth),
+					filterWidth, filterHeight)
+					// The epsilon of Darknet, with which the YOLO v2 weights were trained
+					.withBatchNorm(weightsLoader.getBatchNormLayerGamma(batchNormName + "_gamma0", outputDepth),
+							weightsLoader.getBatchNormLayerBeta(batchNormName + "_beta0", outputDepth),
+							weightsLoader.getBatchNormLayerMovingMean(batchNormName + "_moving_mean0", outputDepth),
+							weightsLoader.getBatchNormLayerMovingVariance(batchNormName + "_moving_variance0",
+									outputDepth), BatchNormFoldingTensorSource.DARKNET_EPSILON);
+		}
+		// Same padding preserves the spatial size, as every convolution of YOLO v2 has stride 1
+		return config.withPadding((filterWidth - 1) / 2, (filterHeight - 1) / 2)
+				.withFreezeOut(buildProfile == BuildProfile.INFERENCE)
+				.withActivationFunction(YOLOv2Definition.LEAKY_RELU_ACTIVATION_FUNCTION_TYPE,
+						new ActivationFunctionProperties().withAlpha(0.1f));
+	}
+
+	@Override
+	public String getName() {
+		return "conv2d_" + index;
+	}
+}
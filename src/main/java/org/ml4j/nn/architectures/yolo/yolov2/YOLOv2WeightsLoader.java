@@ -15,8 +15,7 @@
  */
 package org.ml4j.nn.architectures.yolo.yolov2;
 
-import java.io.Serializable;
-
+import org.ml4j.nn.architectures.weights.WeightsLoader;
 import org.ml4j.nn.axons.BiasVector;
 import org.ml4j.nn.axons.FeaturesVector;
 import org.ml4j.nn.axons.WeightsMatrix;
@@ -28,7 +27,7 @@ import org.ml4j.nn.axons.WeightsVector;
  * @author Michael Lavelle
  *
  */
-public interface YOLOv2WeightsLoader extends Serializable {
+public interface YOLOv2WeightsLoader extends WeightsLoader {
 	
 	WeightsMatrix getConvolutionalLayerWeights(String name, int width, int height, int inputDepth, int outputDepth);
 	BiasVector getConvolutionalLayerBiases(String name, int outputDepth);
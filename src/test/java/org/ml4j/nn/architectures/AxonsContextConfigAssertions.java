@@ -0,0 +1,39 @@
+package org.ml4j.nn.architectures;
+
+import org.ml4j.nn.axons.AxonsContextConfig;
+import org.ml4j.nn.components.DirectedComponentsContext;
+import org.mockito.Mockito;
+
+/**
+ * Records the axons context configuration a definition applies to its components, and checks the configuration
+ * applied for a BuildProfile - shared by the tests of the definitions.
+ *
+ * @author Michael Lavelle
+ */
+public final class AxonsContextConfigAssertions {
+
+	private AxonsContextConfigAssertions() {
+	}
+
+	/**
+	 * @param axonsContextConfig The axons context config to serve for every component.
+	 * @return A context which serves the given config to the axons context configurers of the definition, so that
+	 *         the configuration they apply can be verified.
+	 */
+	public static DirectedComponentsContext createAxonsContextConfigRecordingContext(
+			AxonsContextConfig axonsContextConfig) {
+		return Mockito.mock(DirectedComponentsContext.class, invocation -> invocation.getMethod().getReturnType()
+				.isInstance(axonsContextConfig) ? axonsContextConfig : Mockito.RETURNS_DEFAULTS.answer(invocation));
+	}
+
+	/**
+	 * @param axonsContextConfig The axons context config served to the components of a definition built with the
+	 *            INFERENCE profile.
+	 */
+	public static void assertFrozenOutWithoutRegularisationOrDropout(AxonsContextConfig axonsContextConfig) {
+		Mockito.verify(axonsContextConfig, Mockito.atLeastOnce()).withFreezeOut(true);
+		Mockito.verify(axonsContextConfig, Mockito.never()).withFreezeOut(false);
+		Mockito.verify(axonsContextConfig, Mockito.never()).withRegularisationLambda(Mockito.anyFloat());
+		Mockito.verify(axonsContextConfig, Mockito.never()).withLeftHandInputDropoutKeepProbability(Mockito.anyFloat());
+	}
+}
@@ -0,0 +1,85 @@
+package org.ml4j.nn.architectures;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.ml4j.nn.architectures.weights.DeferredWeights;
+import org.ml4j.nn.components.factories.NeuralComponentFactory;
+
+/**
+ * A component graph builder which creates the component graph of each component definition it is given, as the
+ * builders of a session do, recording the deferred weights handles it is given rather than creating any
+ * components - so that the weights a definition loads while its graph is built can be checked without a session.
+ *
+ * @author Michael Lavelle
+ */
+public class ExpandingComponentGraphBuilder implements InvocationHandler {
+
+	private List<Object> weightsHandles = new CopyOnWriteArrayList<>();
+
+	private NeuralComponentFactory<?> neuralComponentFactory = (NeuralComponentFactory<?>) Proxy.newProxyInstance(
+			getClass().getClassLoader(), new Class<?>[] { NeuralComponentFactory.class }, (proxy, method, args) -> null);
+
+	/**
+	 * Create the component graph of a definition, and of each of the component definitions it is built from.
+	 *
+	 * @param componentDefinition The definition.
+	 */
+	public void build(Object componentDefinition) {
+		try {
+			createComponentGraph(componentDefinition);
+		} catch (RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * @return The deferred weights handles given to the builders, in the order they were given.
+	 */
+	public List<Object> getWeightsHandles() {
+		return weightsHandles;
+	}
+
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+		for (Object arg : args == null ? new Object[0] : args) {
+			if (DeferredWeights.isDeferred(arg)) {
+				weightsHandles.add(arg);
+			}
+		}
+		if (method.getName().equals("withComponentDefinition")) {
+			createComponentGraph(args[0]);
+		}
+		Class<?> returnType = method.getReturnType();
+		if (returnType.isInstance(proxy)) {
+			return proxy;
+		}
+		if (returnType.isInterface()) {
+			return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { returnType }, this);
+		}
+		return null;
+	}
+
+	private void createComponentGraph(Object componentDefinition) throws Throwable {
+		for (Method method : componentDefinition.getClass().getMethods()) {
+			if (method.getName().equals("createComponentGraph") && method.getParameterCount() == 2) {
+				method.setAccessible(true);
+				Object start = Proxy.newProxyInstance(getClass().getClassLoader(),
+						new Class<?>[] { method.getParameterTypes()[0] }, this);
+				try {
+					method.invoke(componentDefinition, start, neuralComponentFactory);
+				} catch (InvocationTargetException e) {
+					throw e.getCause();
+				}
+				return;
+			}
+		}
+		throw new IllegalArgumentException(componentDefinition.getClass().getName() + " is not a component definition");
+	}
+}
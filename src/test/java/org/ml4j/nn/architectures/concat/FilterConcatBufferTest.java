@@ -0,0 +1,167 @@
+package org.ml4j.nn.architectures.concat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.ml4j.nn.architectures.scheduling.PathScheduler;
+import org.ml4j.nn.architectures.yolo.yolov2.SpaceToDepth;
+import org.ml4j.nn.architectures.yolo.yolov2.SpaceToDepth.Layout;
+
+/**
+ * Checks the layout and allocation of the FilterConcatBuffer.
+ *
+ * @author Michael Lavelle
+ */
+public class FilterConcatBufferTest {
+
+	@Test
+	public void testChannelSlices() {
+		// The paths of an Inception B module
+		FilterConcatBuffer concatBuffer = new FilterConcatBuffer(17, 17, new int[] { 384, 256, 256, 128 });
+
+		Assert.assertEquals(1024, concatBuffer.getDepth());
+		Assert.assertEquals(4, concatBuffer.getPathCount());
+		Assert.assertEquals(0, concatBuffer.getChannelOffset(0));
+		Assert.assertEquals(384, concatBuffer.getChannelOffset(1));
+		Assert.assertEquals(640, concatBuffer.getChannelOffset(2));
+		Assert.assertEquals(896, concatBuffer.getChannelOffset(3));
+		Assert.assertEquals(640 * 17 * 17 * 3, concatBuffer.getOffset(2, 3));
+		Assert.assertEquals(256 * 17 * 17 * 3, concatBuffer.getLength(2, 3));
+	}
+
+	@Test
+	public void testWriteAndRead() {
+		FilterConcatBuffer concatBuffer = new FilterConcatBuffer(2, 1, new int[] { 1, 1 });
+		int examples = 2;
+		float[] buffer = concatBuffer.allocate(examples);
+
+		concatBuffer.write(1, new float[] { 5, 6, 7, 8 }, buffer, examples);
+		concatBuffer.write(0, new float[] { 1, 2, 3, 4 }, buffer, examples);
+
+		Assert.assertArrayEquals(new float[] { 1, 2, 3, 4, 5, 6, 7, 8 }, buffer, 0f);
+
+		float[] pathGradients = new float[4];
+		concatBuffer.read(1, buffer, pathGradients, examples);
+		Assert.assertArrayEquals(new float[] { 5, 6, 7, 8 }, pathGradients, 0f);
+	}
+
+	@Test
+	public void testWriteAndReadColumnMajorActivations() {
+		FilterConcatBuffer concatBuffer = new FilterConcatBuffer(2, 1, new int[] { 1, 2 }, Layout.EXAMPLE_MAJOR);
+		int examples = 2;
+		float[] buffer = concatBuffer.allocate(examples);
+
+		// A column of the 2 features of the first path, and of the 4 features of the second, for each example
+		concatBuffer.write(1, new float[] { 5, 6, 7, 8, 15, 16, 17, 18 }, buffer, examples);
+		concatBuffer.write(0, new float[] { 1, 2, 11, 12 }, buffer, examples);
+
+		Assert.assertEquals(2, concatBuffer.getOffset(1, examples));
+		Assert.assertEquals(8, concatBuffer.getLength(1, examples));
+		Assert.assertArrayEquals(new float[] { 1, 2, 5, 6, 7, 8, 11, 12, 15, 16, 17, 18 }, buffer, 0f);
+
+		float[] pathGradients = new float[concatBuffer.getLength(1, examples)];
+		concatBuffer.read(1, buffer, pathGradients, examples);
+		Assert.assertArrayEquals(new float[] { 5, 6, 7, 8, 15, 16, 17, 18 }, pathGradients, 0f);
+		pathGradients = new float[concatBuffer.getLength(0, examples)];
+		concatBuffer.read(0, buffer, pathGradients, examples);
+		Assert.assertArrayEquals(new float[] { 1, 2, 11, 12 }, pathGradients, 0f);
+	}
+
+	@Test
+	public void testEachForwardPropagationAllocatesItsOwnBuffer() {
+		FilterConcatBuffer concatBuffer = new FilterConcatBuffer(17, 17, new int[] { 384, 256, 256, 128 });
+		float[] buffer = concatBuffer.allocate(4);
+		buffer[0] = 1;
+
+		Assert.assertEquals(1024 * 17 * 17 * 4, buffer.length);
+
+		// The output of a forward propagation is still there for its back propagation after the next one
+		float[] nextBuffer = concatBuffer.allocate(4);
+		Assert.assertNotSame(buffer, nextBuffer);
+		Assert.assertEquals(0f, nextBuffer[0], 0f);
+		Assert.assertEquals(1f, buffer[0], 0f);
+		Assert.assertEquals(1024 * 17 * 17, concatBuffer.allocate(1).length);
+	}
+
+	@Test
+	public void testScheduledPathsWriteIntoTheBufferOfTheForwardPropagation() {
+		FilterConcatBuffer concatBuffer = new FilterConcatBuffer(2, 1, new int[] { 1, 2, 1 });
+		int examples = 2;
+		ForkJoinPool pool = new ForkJoinPool(2);
+		try {
+			// Allocated on the thread running the graph, and handed to the paths running on the pool
+			float[] buffer = concatBuffer.allocate(examples);
+			List<Supplier<Object>> paths = new ArrayList<>();
+			for (int i = 0; i < concatBuffer.getPathCount(); i++) {
+				int pathIndex = i;
+				paths.add(() -> {
+					float[] pathOutput = new float[concatBuffer.getLength(pathIndex, examples)];
+					for (int j = 0; j < pathOutput.length; j++) {
+						pathOutput[j] = pathIndex + 1;
+					}
+					concatBuffer.write(pathIndex, pathOutput, buffer, examples);
+					return buffer;
+				});
+			}
+			new PathScheduler(new long[] { 1, 2, 1 }, pool).invokeAll(paths);
+
+			Assert.assertArrayEquals(new float[] { 1, 1, 1, 1, 2, 2, 2, 2, 2, 2, 2, 2, 3, 3, 3, 3 }, buffer, 0f);
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void testSpaceToDepthWritesIntoItsChannelSlice() {
+		// The YOLO v2 passthrough, at 1/16 of the depth of each path - the space to depth path is concatenated first
+		SpaceToDepth spaceToDepth = new SpaceToDepth(4, 4, 4, 2, Layout.FEATURE_MAJOR);
+		FilterConcatBuffer concatBuffer = new FilterConcatBuffer(2, 2, new int[] { spaceToDepth.getOutputDepth(), 64 });
+		int examples = 2;
+		float[] input = new float[spaceToDepth.getFeatureCount() * examples];
+		for (int i = 0; i < input.length; i++) {
+			input[i] = i + 1;
+		}
+		float[] buffer = concatBuffer.allocate(examples);
+
+		spaceToDepth.forward(input, buffer, concatBuffer.getChannelOffset(0), concatBuffer.getDepth(), examples);
+
+		float[] pathOutput = new float[concatBuffer.getLength(0, examples)];
+		concatBuffer.read(0, buffer, pathOutput, examples);
+		float[] expected = new float[pathOutput.length];
+		spaceToDepth.forward(input, expected, 0, spaceToDepth.getOutputDepth(), examples);
+		Assert.assertArrayEquals(expected, pathOutput, 0f);
+		for (int i = concatBuffer.getOffset(1, examples); i < buffer.length; i++) {
+			Assert.assertEquals(0f, buffer[i], 0f);
+		}
+	}
+
+	@Test
+	public void testColumnMajorSpaceToDepthWritesIntoItsChannelSlice() {
+		SpaceToDepth spaceToDepth = new SpaceToDepth(4, 4, 4, 2, Layout.EXAMPLE_MAJOR);
+		FilterConcatBuffer concatBuffer = new FilterConcatBuffer(2, 2, new int[] { 8, spaceToDepth.getOutputDepth() },
+				Layout.EXAMPLE_MAJOR);
+		int examples = 3;
+		float[] input = new float[spaceToDepth.getFeatureCount() * examples];
+		for (int i = 0; i < input.length; i++) {
+			input[i] = i + 1;
+		}
+		float[] buffer = concatBuffer.allocate(examples);
+
+		// The space to depth path is concatenated second, so its output for each example follows that of the first
+		spaceToDepth.forward(input, buffer, concatBuffer.getChannelOffset(1), concatBuffer.getDepth(), examples);
+
+		float[] pathOutput = new float[concatBuffer.getLength(1, examples)];
+		concatBuffer.read(1, buffer, pathOutput, examples);
+		float[] expected = new float[pathOutput.length];
+		spaceToDepth.forward(input, expected, 0, spaceToDepth.getOutputDepth(), examples);
+		Assert.assertArrayEquals(expected, pathOutput, 0f);
+
+		float[] firstPathOutput = new float[concatBuffer.getLength(0, examples)];
+		concatBuffer.read(0, buffer, firstPathOutput, examples);
+		Assert.assertArrayEquals(new float[firstPathOutput.length], firstPathOutput, 0f);
+	}
+}
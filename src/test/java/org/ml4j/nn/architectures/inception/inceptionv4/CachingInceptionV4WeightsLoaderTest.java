@@ -0,0 +1,135 @@
+package org.ml4j.nn.architectures.inception.inceptionv4;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.ml4j.nn.architectures.weights.SharedWeightsCache;
+import org.ml4j.nn.architectures.weights.WeightsRequest;
+import org.ml4j.nn.axons.FeaturesVector;
+import org.ml4j.nn.axons.WeightsMatrix;
+import org.mockito.Mockito;
+
+/**
+ * Checks the cache hits, cache misses and reference counting of the CachingInceptionV4WeightsLoader.
+ *
+ * @author Michael Lavelle
+ */
+public class CachingInceptionV4WeightsLoaderTest {
+
+	@Test
+	public void testWeightsAreSharedBetweenLoadersOfTheSameSource() {
+		SharedWeightsCache cache = new SharedWeightsCache(0);
+		CountingInceptionV4WeightsLoader delegate = new CountingInceptionV4WeightsLoader();
+		CachingInceptionV4WeightsLoader first = new CachingInceptionV4WeightsLoader(delegate, "inceptionv4.h5", cache);
+		CachingInceptionV4WeightsLoader second = new CachingInceptionV4WeightsLoader(delegate, "inceptionv4.h5", cache);
+
+		WeightsMatrix kernel = first.getConvolutionalLayerWeights("conv2d_1_kernel0", 3, 3, 3, 32);
+		Assert.assertEquals(1, delegate.loadCount.get());
+
+		// A hit, for both the same loader and another loader of the same source
+		Assert.assertSame(kernel, first.getConvolutionalLayerWeights("conv2d_1_kernel0", 3, 3, 3, 32));
+		Assert.assertSame(kernel, second.getConvolutionalLayerWeights("conv2d_1_kernel0", 3, 3, 3, 32));
+		Assert.assertEquals(1, delegate.loadCount.get());
+
+		// A miss, for another tensor and for the same tensor of another source
+		first.getBatchNormLayerMean("batch_normalization_1_moving_mean0", 32);
+		CachingInceptionV4WeightsLoader other = new CachingInceptionV4WeightsLoader(delegate, "other.h5", cache);
+		Assert.assertNotSame(kernel, other.getConvolutionalLayerWeights("conv2d_1_kernel0", 3, 3, 3, 32));
+		Assert.assertEquals(3, delegate.loadCount.get());
+		Assert.assertEquals(3, cache.size());
+	}
+
+	@Test
+	public void testWeightsAreEvictedOnceEveryLoaderIsClosed() {
+		SharedWeightsCache cache = new SharedWeightsCache(0);
+		CountingInceptionV4WeightsLoader delegate = new CountingInceptionV4WeightsLoader();
+		CachingInceptionV4WeightsLoader first = new CachingInceptionV4WeightsLoader(delegate, "inceptionv4.h5", cache);
+		CachingInceptionV4WeightsLoader second = new CachingInceptionV4WeightsLoader(delegate, "inceptionv4.h5", cache);
+
+		// Each loader holds a single reference, however many times it serves the weights
+		first.getConvolutionalLayerWeights("conv2d_1_kernel0", 3, 3, 3, 32);
+		first.getConvolutionalLayerWeights("conv2d_1_kernel0", 3, 3, 3, 32);
+		second.getConvolutionalLayerWeights("conv2d_1_kernel0", 3, 3, 3, 32);
+
+		first.close();
+		Assert.assertEquals(1, cache.size());
+		Assert.assertEquals(0, cache.getUnreferencedBytes());
+
+		second.close();
+		Assert.assertEquals(0, cache.size());
+
+		second.getConvolutionalLayerWeights("conv2d_1_kernel0", 3, 3, 3, 32);
+		Assert.assertEquals(2, delegate.loadCount.get());
+	}
+
+	@Test
+	public void testFailedLoadsDoNotHoldReferences() {
+		SharedWeightsCache cache = new SharedWeightsCache(0);
+		CountingInceptionV4WeightsLoader delegate = new CountingInceptionV4WeightsLoader();
+		delegate.failing = true;
+		CachingInceptionV4WeightsLoader loader = new CachingInceptionV4WeightsLoader(delegate, "inceptionv4.h5", cache);
+
+		try {
+			loader.getConvolutionalLayerWeights("conv2d_1_kernel0", 3, 3, 3, 32);
+			Assert.fail("Expected the load failure to be rethrown");
+		} catch (IllegalStateException e) {
+			Assert.assertEquals(0, cache.size());
+		}
+
+		delegate.failing = false;
+		loader.getConvolutionalLayerWeights("conv2d_1_kernel0", 3, 3, 3, 32);
+		loader.close();
+		Assert.assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testDeserializedLoaderUsesTheDefaultCache() throws IOException, ClassNotFoundException {
+		SharedWeightsCache cache = new SharedWeightsCache(0);
+		CachingInceptionV4WeightsLoader loader = new CachingInceptionV4WeightsLoader(
+				new CountingInceptionV4WeightsLoader(), "deserialized.h5", cache);
+		loader.getConvolutionalLayerWeights("conv2d_1_kernel0", 3, 3, 3, 32);
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeObject(loader);
+		}
+		CachingInceptionV4WeightsLoader deserialized;
+		try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+			deserialized = (CachingInceptionV4WeightsLoader) in.readObject();
+		}
+
+		// The references held by the original loader are not carried over
+		int defaultCacheSize = SharedWeightsCache.getDefault().size();
+		FeaturesVector mean = deserialized.getBatchNormLayerMean("batch_normalization_1_moving_mean0", 32);
+		Assert.assertNotNull(mean);
+		Assert.assertEquals(defaultCacheSize + 1, SharedWeightsCache.getDefault().size());
+		Assert.assertEquals(1, cache.size());
+
+		deserialized.close();
+		Assert.assertEquals(defaultCacheSize, SharedWeightsCache.getDefault().size());
+		Assert.assertEquals(1, cache.size());
+	}
+
+	private static class CountingInceptionV4WeightsLoader extends AbstractInceptionV4WeightsLoader {
+
+		private static final long serialVersionUID = 1L;
+
+		private AtomicInteger loadCount = new AtomicInteger();
+		private volatile boolean failing;
+
+		@Override
+		protected Object load(WeightsRequest request) {
+			if (failing) {
+				throw new IllegalStateException("Unable to load " + request.getName());
+			}
+			loadCount.incrementAndGet();
+			return Mockito.mock(getWeightsType(request.getKind()));
+		}
+	}
+}
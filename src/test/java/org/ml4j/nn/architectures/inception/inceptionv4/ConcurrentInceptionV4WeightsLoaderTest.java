@@ -0,0 +1,115 @@
+package org.ml4j.nn.architectures.inception.inceptionv4;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.ml4j.nn.architectures.weights.DeferredWeights;
+import org.ml4j.nn.architectures.weights.WeightsRequest;
+import org.ml4j.nn.axons.WeightsMatrix;
+import org.mockito.Mockito;
+
+/**
+ * Checks that the ConcurrentInceptionV4WeightsLoader loads weights on its pool as soon as they are requested,
+ * and resolves its deferred handles to the weights of the delegate loader.
+ *
+ * @author Michael Lavelle
+ */
+public class ConcurrentInceptionV4WeightsLoaderTest {
+
+	private ForkJoinPool pool;
+
+	@Before
+	public void setUp() {
+		pool = new ForkJoinPool(2);
+	}
+
+	@After
+	public void tearDown() {
+		pool.shutdownNow();
+	}
+
+	@Test
+	public void testHandlesResolveToWeightsLoadedOnThePool() throws InterruptedException {
+		RecordingInceptionV4WeightsLoader delegate = new RecordingInceptionV4WeightsLoader();
+		ConcurrentInceptionV4WeightsLoader loader = new ConcurrentInceptionV4WeightsLoader(delegate, pool);
+
+		WeightsMatrix kernel = loader.getConvolutionalLayerWeights("conv2d_1_kernel0", 3, 3, 3, 32);
+		Assert.assertTrue(DeferredWeights.isDeferred(kernel));
+		Assert.assertFalse(DeferredWeights.isLoaded(kernel));
+
+		// The load starts on the pool before the handle is first used
+		Assert.assertTrue(delegate.loadStarted.await(10, TimeUnit.SECONDS));
+
+		Assert.assertSame(delegate.loaded.get(0), DeferredWeights.load(kernel));
+		Assert.assertTrue(DeferredWeights.isLoaded(kernel));
+		Assert.assertEquals(1, delegate.loaded.size());
+	}
+
+	@Test
+	public void testLoadFailuresOnThePoolAreRethrownWhenTheHandleIsUsed() {
+		RecordingInceptionV4WeightsLoader delegate = new RecordingInceptionV4WeightsLoader();
+		delegate.failing = true;
+		ConcurrentInceptionV4WeightsLoader loader = new ConcurrentInceptionV4WeightsLoader(delegate, pool);
+
+		// Requesting the weights does not fail, as the load has only been started
+		WeightsMatrix kernel = loader.getConvolutionalLayerWeights("conv2d_1_kernel0", 3, 3, 3, 32);
+
+		try {
+			DeferredWeights.load(kernel);
+			Assert.fail("Expected the load failure to be rethrown");
+		} catch (IllegalStateException e) {
+			// The pool may rethrow a copy of the failure, with the original failure as its cause
+			Assert.assertTrue(e.getMessage().contains("Unable to load conv2d_1_kernel0"));
+		}
+		Assert.assertFalse(DeferredWeights.isLoaded(kernel));
+	}
+
+	@Test
+	public void testEachBuildOfADefinitionLoadsItsOwnWeights() {
+		RecordingInceptionV4WeightsLoader delegate = new RecordingInceptionV4WeightsLoader();
+
+		// A definition built twice with concurrent construction wraps its loader once per build
+		WeightsMatrix firstKernel = new ConcurrentInceptionV4WeightsLoader(delegate, pool)
+				.getConvolutionalLayerWeights("conv2d_1_kernel0", 3, 3, 3, 32);
+		WeightsMatrix secondKernel = new ConcurrentInceptionV4WeightsLoader(delegate, pool)
+				.getConvolutionalLayerWeights("conv2d_1_kernel0", 3, 3, 3, 32);
+
+		Assert.assertNotSame(DeferredWeights.load(firstKernel), DeferredWeights.load(secondKernel));
+		Assert.assertEquals(2, delegate.loaded.size());
+
+		// as does a loader which is asked for the same weights twice, once its first load has been used
+		ConcurrentInceptionV4WeightsLoader loader = new ConcurrentInceptionV4WeightsLoader(delegate, pool);
+		WeightsMatrix kernel = loader.getConvolutionalLayerWeights("conv2d_1_kernel0", 3, 3, 3, 32);
+		DeferredWeights.load(kernel);
+		WeightsMatrix reloadedKernel = loader.getConvolutionalLayerWeights("conv2d_1_kernel0", 3, 3, 3, 32);
+		Assert.assertNotSame(DeferredWeights.load(kernel), DeferredWeights.load(reloadedKernel));
+		Assert.assertEquals(4, delegate.loaded.size());
+	}
+
+	private static class RecordingInceptionV4WeightsLoader extends AbstractInceptionV4WeightsLoader {
+
+		private static final long serialVersionUID = 1L;
+
+		private List<Object> loaded = new CopyOnWriteArrayList<>();
+		private CountDownLatch loadStarted = new CountDownLatch(1);
+		private volatile boolean failing;
+
+		@Override
+		protected Object load(WeightsRequest request) {
+			loadStarted.countDown();
+			if (failing) {
+				throw new IllegalStateException("Unable to load " + request.getName());
+			}
+			Object weights = Mockito.mock(getWeightsType(request.getKind()));
+			loaded.add(weights);
+			return weights;
+		}
+	}
+}
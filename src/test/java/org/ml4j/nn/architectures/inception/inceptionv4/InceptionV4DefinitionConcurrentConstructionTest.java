@@ -0,0 +1,87 @@
+package org.ml4j.nn.architectures.inception.inceptionv4;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.ml4j.nn.architectures.ExpandingComponentGraphBuilder;
+import org.ml4j.nn.architectures.weights.DeferredWeights;
+import org.ml4j.nn.architectures.weights.WeightsRequest;
+import org.mockito.Mockito;
+
+/**
+ * Checks that an InceptionV4Definition built with concurrent construction starts loading the weights of its
+ * modules while the component graph is still being walked, rather than loading each tensor when it is requested.
+ *
+ * @author Michael Lavelle
+ */
+public class InceptionV4DefinitionConcurrentConstructionTest {
+
+	@Test(timeout = 30000)
+	public void testWeightsAreLoadedConcurrentlyWhileTheGraphIsBuilt() throws InterruptedException {
+		RecordingInceptionV4WeightsLoader weightsLoader = new RecordingInceptionV4WeightsLoader();
+		InceptionV4Definition definition = new InceptionV4Definition(weightsLoader);
+		definition.setConcurrentConstruction(true);
+		ExpandingComponentGraphBuilder builder = new ExpandingComponentGraphBuilder();
+
+		try {
+			// No load completes until released, so the graph is built without resolving any weights handle
+			builder.build(definition);
+			Assert.assertFalse(builder.getWeightsHandles().isEmpty());
+			for (Object handle : builder.getWeightsHandles()) {
+				Assert.assertFalse(DeferredWeights.isLoaded(handle));
+			}
+
+			// while several of the loads requested by its modules are in flight at once
+			Assert.assertTrue(weightsLoader.severalLoadsStarted.await(10, TimeUnit.SECONDS));
+			Assert.assertEquals(0, weightsLoader.completed.get());
+		} finally {
+			weightsLoader.released.countDown();
+		}
+
+		Object firstHandle = builder.getWeightsHandles().get(0);
+		Assert.assertNotNull(DeferredWeights.load(firstHandle));
+		Assert.assertTrue(DeferredWeights.isLoaded(firstHandle));
+	}
+
+	/**
+	 * A loader whose loads block until released, recording how many have started.
+	 */
+	private static class RecordingInceptionV4WeightsLoader extends AbstractInceptionV4WeightsLoader {
+
+		private static final long serialVersionUID = 1L;
+
+		private CountDownLatch severalLoadsStarted = new CountDownLatch(4);
+		private CountDownLatch released = new CountDownLatch(1);
+		private AtomicInteger completed = new AtomicInteger();
+
+		@Override
+		protected Object load(WeightsRequest request) {
+			severalLoadsStarted.countDown();
+			try {
+				// A managed block, so that the pool starts another worker for the next load while this one waits
+				ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+
+					@Override
+					public boolean block() throws InterruptedException {
+						released.await();
+						return true;
+					}
+
+					@Override
+					public boolean isReleasable() {
+						return released.getCount() == 0;
+					}
+				});
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while loading " + request.getName(), e);
+			}
+			completed.incrementAndGet();
+			return Mockito.mock(getWeightsType(request.getKind()));
+		}
+	}
+}
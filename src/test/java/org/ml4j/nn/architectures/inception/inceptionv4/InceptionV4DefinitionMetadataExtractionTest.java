@@ -1,12 +1,21 @@
 package org.ml4j.nn.architectures.inception.inceptionv4;
 
 import java.util.List;
+import java.util.stream.Collectors;
 
 import org.junit.Assert;
+import org.junit.Test;
+import org.ml4j.nn.architectures.concat.FilterConcatBuffer;
+import org.ml4j.nn.architectures.fusion.ChannelSliceComponentFactory;
+import org.ml4j.nn.architectures.fusion.FusedComponentFactory;
+import org.ml4j.nn.architectures.weights.BatchNormFoldingTensorSource;
+import org.ml4j.nn.architectures.weights.ConcatenatingTensorSource;
 import org.ml4j.nn.components.ComponentMetadata;
 import org.ml4j.nn.components.ComponentMetadataFactory;
 import org.ml4j.nn.components.builders.componentsgraph.InitialComponentsGraphBuilder;
 import org.ml4j.nn.components.factories.NeuralComponentFactory;
+import org.ml4j.nn.sessions.Session;
+import org.mockito.Mockito;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -42,4 +51,176 @@ public class InceptionV4DefinitionMetadataExtractionTest extends InceptionV4Defi
 			LOGGER.debug(component.toString());
 		}
 	}
+
+	@Test
+	public void testFilterConcatenationsAreCreatedWithConcatBuffers() {
+		
+		Session<ComponentMetadata> session = createSession(neuralComponentFactory, mockDirectedComponentsContext);
+		
+		InceptionV4Definition inceptionV4Definition = new InceptionV4Definition(mockInceptionV4WeightsLoader);
+		session.buildComponentGraph().startWith(inceptionV4Definition);
+		
+		ComponentMetadataFactory componentMetadataFactory = (ComponentMetadataFactory) neuralComponentFactory;
+		
+		// Each path of an Inception A module writes 96 channels of the 35x35x384 output
+		FilterConcatBuffer inceptionA = componentMetadataFactory.getConcatBuffer("inception_a_concat_0");
+		Assert.assertEquals(35, inceptionA.getWidth());
+		Assert.assertEquals(4, inceptionA.getPathCount());
+		Assert.assertEquals(288, inceptionA.getChannelOffset(3));
+		Assert.assertEquals(384, inceptionA.getDepth());
+		
+		// and the paths of an Inception B module write 384, 256, 256 and 128 channels of the 17x17x1024 output
+		FilterConcatBuffer inceptionB = componentMetadataFactory.getConcatBuffer("inception_b_concat_6");
+		Assert.assertEquals(17, inceptionB.getWidth());
+		Assert.assertEquals(4, inceptionB.getPathCount());
+		Assert.assertEquals(384, inceptionB.getChannelOffset(1));
+		Assert.assertEquals(896, inceptionB.getChannelOffset(3));
+		Assert.assertEquals(1024, inceptionB.getDepth());
+	}
+
+	@Test
+	public void testComponentGraphCreationWithBatchNormFolding() {
+		
+		Session<ComponentMetadata> session = createSession(neuralComponentFactory, mockDirectedComponentsContext);
+		
+		InceptionV4Definition inceptionV4Definition = new InceptionV4Definition(mockInceptionV4WeightsLoader);
+		inceptionV4Definition.setBatchNormFolding(true);
+		
+		assertBatchNormFolded(session.buildComponentGraph().startWith(inceptionV4Definition).getComponents());
+	}
+
+	@Test
+	public void testComponentGraphCreationWithFusedConvolutions() {
+		
+		Session<ComponentMetadata> session = createSession(neuralComponentFactory, mockDirectedComponentsContext);
+		
+		InceptionV4Definition inceptionV4Definition = new InceptionV4Definition(mockInceptionV4WeightsLoader);
+		inceptionV4Definition.setFusedConvolutions(true);
+		
+		List<ComponentMetadata> sequentialComponents = session.buildComponentGraph().startWith(inceptionV4Definition).getComponents();
+		
+		// Each of the 3 convolution, batch norm and RELU triplets at the start of the stem becomes a single component
+		Assert.assertEquals(25, sequentialComponents.size());
+		Assert.assertEquals("conv2d_1", sequentialComponents.get(0).getName());
+		Assert.assertEquals("conv2d_2", sequentialComponents.get(1).getName());
+		Assert.assertEquals("conv2d_3", sequentialComponents.get(2).getName());
+		
+		// as does every one of the 149 triplets within the parallel paths of the modules
+		ComponentMetadataFactory componentMetadataFactory = (ComponentMetadataFactory) neuralComponentFactory;
+		List<String> fusedComponentNames = componentMetadataFactory.getCreatedComponentNames(
+				FusedComponentFactory.CONVOLUTION_BATCH_NORM_ACTIVATION);
+		Assert.assertEquals(149, fusedComponentNames.size());
+		for (int index = 1; index <= 149; index++) {
+			Assert.assertTrue(fusedComponentNames.contains("conv2d_" + index));
+			// with the batch norm epsilon of Keras
+			Assert.assertEquals(BatchNormFoldingTensorSource.DEFAULT_EPSILON,
+					componentMetadataFactory.getFusedConfig("conv2d_" + index).getBatchNormEpsilon(), 0f);
+		}
+		for (ComponentMetadata component : componentMetadataFactory.getCreatedComponents()) {
+			Assert.assertFalse(component.getDescription(), component.getDescription().startsWith("Convolutional Axons")
+					|| component.getDescription().startsWith("Batch Norm Axons")
+					|| component.getDescription().startsWith("Activation Function") && component.getName().startsWith("relu_"));
+		}
+	}
+
+	@Test
+	public void testBaselineLayerNamesAreKeptWithBatchNormFolding() {
+		
+		Session<ComponentMetadata> session = createSession(neuralComponentFactory, mockDirectedComponentsContext);
+		
+		InceptionV4Definition inceptionV4Definition = new InceptionV4Definition(mockInceptionV4WeightsLoader);
+		inceptionV4Definition.setBatchNormFolding(true);
+		session.buildComponentGraph().startWith(inceptionV4Definition);
+		
+		// Folding changes only the weights, not the names existing graphs are addressed by
+		List<String> names = ((ComponentMetadataFactory) neuralComponentFactory).getCreatedComponents().stream()
+				.map(ComponentMetadata::getName).collect(Collectors.toList());
+		Assert.assertTrue(names.contains("relu_"));
+		Assert.assertTrue(names.contains("relu_normalization_119"));
+		Assert.assertFalse(names.contains("relu_114"));
+		Assert.assertFalse(names.contains("relu_119"));
+		Assert.assertTrue(names.contains("relu_115"));
+	}
+
+	@Test
+	public void testComponentGraphCreationWithMergedConvolutions() {
+		
+		Session<ComponentMetadata> session = createSession(neuralComponentFactory, mockDirectedComponentsContext);
+		
+		// Merging the sibling convolutions restructures the paths within each Inception module, not the modules
+		Mockito.when(mockInceptionV4WeightsLoader.isMergedConvolutions()).thenReturn(true);
+		InceptionV4Definition inceptionV4Definition = new InceptionV4Definition(mockInceptionV4WeightsLoader);
+		inceptionV4Definition.setMergedConvolutions(true);
+		
+		runAssertionsOnCreatedComponentGraph(inceptionV4Definition, session.buildComponentGraph().startWith(inceptionV4Definition));
+		
+		// Each of the 14 Inception A, B and C modules merges three convolutions, whose output is sliced into 3 paths
+		ComponentMetadataFactory componentMetadataFactory = (ComponentMetadataFactory) neuralComponentFactory;
+		List<String> sliceNames = componentMetadataFactory.getCreatedComponentNames(ChannelSliceComponentFactory.CHANNEL_SLICE);
+		Assert.assertEquals(42, sliceNames.size());
+		Assert.assertTrue(sliceNames.contains("inception_a_slice_0_0"));
+		Assert.assertTrue(sliceNames.contains("inception_b_slice_6_2"));
+		Assert.assertTrue(sliceNames.contains("inception_c_slice_2_1"));
+		
+		List<String> componentNames = componentMetadataFactory.getCreatedComponents().stream()
+				.map(ComponentMetadata::getName).collect(Collectors.toList());
+		Assert.assertTrue(componentNames.contains("conv2d_12_13_15"));
+		Assert.assertTrue(componentNames.contains("conv2d_33_34_36"));
+		Assert.assertTrue(componentNames.contains("conv2d_44_45_48"));
+		Assert.assertTrue(componentNames.contains("conv2d_120_121_124"));
+		Assert.assertFalse(componentNames.contains("conv2d_12"));
+		Assert.assertFalse(componentNames.contains("conv2d_44"));
+		
+		// The convolutions outside the Inception A, B and C modules are not merged
+		Assert.assertTrue(componentNames.contains("conv2d_40"));
+		
+		// and the merged convolutions are created with the concatenated weights
+		Mockito.verify(mockInceptionV4WeightsLoader).getConvolutionalLayerWeights(ConcatenatingTensorSource.getConcatenatedName(
+				new String[] { "conv2d_12_kernel0", "conv2d_13_kernel0", "conv2d_15_kernel0" }, new int[] { 96, 64, 64 }),
+				1, 1, 384, 224);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testMergedConvolutionsRequireMergedWeightsLoader() {
+		
+		// The loader does not serve the concatenated weights, so the graph is not created with weights it cannot load
+		InceptionV4Definition inceptionV4Definition = new InceptionV4Definition(mockInceptionV4WeightsLoader);
+		inceptionV4Definition.setMergedConvolutions(true);
+		
+		createSession(neuralComponentFactory, mockDirectedComponentsContext).buildComponentGraph()
+				.startWith(inceptionV4Definition);
+	}
+
+	@Test
+	public void testUntrainedTailComponentGraphCreationWithBatchNormFolding() {
+		
+		Session<ComponentMetadata> session = createSession(neuralComponentFactory, mockDirectedComponentsContext);
+		
+		UntrainedTailInceptionV4Definition inceptionV4Definition = new UntrainedTailInceptionV4Definition(
+				mockInceptionV4WeightsLoader, null, null, 10, 0f, 1f);
+		inceptionV4Definition.setBatchNormFolding(true);
+		
+		assertBatchNormFolded(session.buildComponentGraph().startWith(inceptionV4Definition).getComponents());
+	}
+
+	private void assertBatchNormFolded(List<ComponentMetadata> sequentialComponents) {
+		
+		// Each of the 3 convolution, batch norm and RELU triplets at the start of the stem loses its batch norm axons
+		Assert.assertEquals(28, sequentialComponents.size());
+		
+		// and no batch norm axons are created within the parallel paths of the modules either
+		for (ComponentMetadata component : ((ComponentMetadataFactory) neuralComponentFactory).getCreatedComponents()) {
+			Assert.assertFalse(component.getDescription(), component.getDescription().startsWith("Batch Norm Axons"));
+		}
+		
+		// The convolutional axons are created with the folded weights and biases instead
+		Mockito.verify(mockInceptionV4WeightsLoader).getConvolutionalLayerWeights(
+				BatchNormFoldingTensorSource.getFoldedWeightsName("conv2d_1"), 3, 3, 3, 32);
+		Mockito.verify(mockInceptionV4WeightsLoader).getConvolutionalLayerBiases(
+				BatchNormFoldingTensorSource.getFoldedBiasesName("conv2d_1"), 32);
+		Mockito.verify(mockInceptionV4WeightsLoader).getConvolutionalLayerWeights(
+				BatchNormFoldingTensorSource.getFoldedWeightsName("conv2d_119"), 3, 3, 320, 320);
+		Mockito.verify(mockInceptionV4WeightsLoader, Mockito.never()).getBatchNormLayerVariance(
+				Mockito.anyString(), Mockito.anyInt());
+	}
 }
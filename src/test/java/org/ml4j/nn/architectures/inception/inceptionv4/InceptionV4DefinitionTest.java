@@ -3,6 +3,7 @@ package org.ml4j.nn.architectures.inception.inceptionv4;
 import java.util.List;
 
 import org.junit.Assert;
+import org.junit.Test;
 import org.ml4j.Matrix;
 import org.ml4j.MatrixFactory;
 import org.ml4j.jblas.JBlasRowMajorMatrixFactory;
@@ -16,6 +17,7 @@ import org.ml4j.nn.factories.DummyDirectedComponentFactoryImpl;
 import org.ml4j.nn.neurons.NeuronsActivation;
 import org.ml4j.nn.neurons.NeuronsActivationImpl;
 import org.ml4j.nn.neurons.format.NeuronsActivationFormat;
+import org.mockito.Mockito;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -83,4 +85,27 @@ public class InceptionV4DefinitionTest extends InceptionV4DefinitionTestBase<Def
 
 		
 	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testFusedConvolutionsRequireFusedComponentFactory() {
+		
+		// The dummy factory cannot create fused components, so the graph is not silently created unfused
+		InceptionV4Definition inceptionV4Definition = new InceptionV4Definition(mockInceptionV4WeightsLoader);
+		inceptionV4Definition.setFusedConvolutions(true);
+		
+		createSession(neuralComponentFactory, mockDirectedComponentsContext).buildComponentGraph()
+				.startWith(inceptionV4Definition);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testMergedConvolutionsRequireChannelSliceComponentFactory() {
+		
+		// The dummy factory cannot create channel slice components, so the graph is not silently created unmerged
+		Mockito.when(mockInceptionV4WeightsLoader.isMergedConvolutions()).thenReturn(true);
+		InceptionV4Definition inceptionV4Definition = new InceptionV4Definition(mockInceptionV4WeightsLoader);
+		inceptionV4Definition.setMergedConvolutions(true);
+		
+		createSession(neuralComponentFactory, mockDirectedComponentsContext).buildComponentGraph()
+				.startWith(inceptionV4Definition);
+	}
 }
@@ -2,6 +2,11 @@ package org.ml4j.nn.architectures.inception.inceptionv4;
 
 import org.junit.Assert;
 import org.junit.Test;
+import org.ml4j.nn.architectures.AxonsContextConfigAssertions;
+import org.ml4j.nn.architectures.BuildProfile;
+import org.ml4j.nn.axons.AxonsContextConfig;
+import org.ml4j.nn.axons.BiasVector;
+import org.ml4j.nn.axons.WeightsMatrix;
 import org.ml4j.nn.components.DirectedComponentsContext;
 import org.ml4j.nn.components.NeuralComponent;
 import org.ml4j.nn.components.builders.componentsgraph.InitialComponentsGraphBuilder;
@@ -10,6 +15,7 @@ import org.ml4j.nn.definitions.Component3DtoNon3DGraphDefinitionTestBase;
 import org.ml4j.nn.sessions.Session;
 import org.ml4j.nn.sessions.SessionImpl;
 import org.mockito.Mock;
+import org.mockito.Mockito;
 
 public abstract class InceptionV4DefinitionTestBase<T extends NeuralComponent<?>> extends Component3DtoNon3DGraphDefinitionTestBase<T, InceptionV4Definition> {
 	
@@ -41,6 +47,71 @@ public abstract class InceptionV4DefinitionTestBase<T extends NeuralComponent<?>
 		runAssertionsOnCreatedComponentGraph(inceptionV4Definition, componentGraph);
 	}
 
+	@Test
+	public void testComponentGraphCreationAtReducedResolution() {
+		
+		Session<T> session = createSession(neuralComponentFactory, mockDirectedComponentsContext);
+		
+		// Create an InceptionV4Definition for 224x224 inputs, which uses the same weights as the default 299x299 definition
+		InceptionV4Definition inceptionV4Definition = new InceptionV4Definition(mockInceptionV4WeightsLoader,
+				new InceptionV4Resolution(224));
+		
+		Assert.assertEquals(224, inceptionV4Definition.getInputNeurons().getWidth());
+		Assert.assertEquals(1001, inceptionV4Definition.getOutputNeurons().getNeuronCountExcludingBias());
+		
+		runAssertionsOnCreatedComponentGraph(inceptionV4Definition, session.buildComponentGraph().startWith(inceptionV4Definition));
+	}
+
+	@Test
+	public void testComponentGraphCreationAtReducedWidth() {
+		
+		Session<T> session = createSession(neuralComponentFactory, mockDirectedComponentsContext);
+		
+		// Create a half width InceptionV4Definition, which requires weights trained at that width
+		InceptionV4Definition inceptionV4Definition = new InceptionV4Definition(mockInceptionV4WeightsLoader,
+				InceptionV4Resolution.DEFAULT, new InceptionV4Width(0.5f));
+		
+		Assert.assertEquals(1001, inceptionV4Definition.getOutputNeurons().getNeuronCountExcludingBias());
+		
+		runAssertionsOnCreatedComponentGraph(inceptionV4Definition, session.buildComponentGraph().startWith(inceptionV4Definition));
+	}
+
+	@Test
+	public void testComponentGraphCreationWithInferenceProfile() {
+		
+		AxonsContextConfig axonsContextConfig = Mockito.mock(AxonsContextConfig.class, Mockito.RETURNS_SELF);
+		Session<T> session = createSession(neuralComponentFactory,
+				AxonsContextConfigAssertions.createAxonsContextConfigRecordingContext(axonsContextConfig));
+		
+		// The inference profile changes only how the components are configured, not the structure of the graph
+		InceptionV4Definition inceptionV4Definition = new InceptionV4Definition(mockInceptionV4WeightsLoader);
+		inceptionV4Definition.setBuildProfile(BuildProfile.INFERENCE);
+		inceptionV4Definition.setFinalDenseLayerRegularisationLambda(0.1f);
+		inceptionV4Definition.setFinalDenseLayerInputDropoutKeepProbability(0.5f);
+		
+		runAssertionsOnCreatedComponentGraph(inceptionV4Definition, session.buildComponentGraph().startWith(inceptionV4Definition));
+		
+		// Every axons component is frozen out, and the regularisation and dropout of the final dense layer are ignored
+		AxonsContextConfigAssertions.assertFrozenOutWithoutRegularisationOrDropout(axonsContextConfig);
+	}
+
+	@Test
+	public void testUntrainedTailComponentGraphCreationWithInferenceProfile() {
+		
+		AxonsContextConfig axonsContextConfig = Mockito.mock(AxonsContextConfig.class, Mockito.RETURNS_SELF);
+		Session<T> session = createSession(neuralComponentFactory,
+				AxonsContextConfigAssertions.createAxonsContextConfigRecordingContext(axonsContextConfig));
+		
+		UntrainedTailInceptionV4Definition untrainedTailDefinition = new UntrainedTailInceptionV4Definition(
+				mockInceptionV4WeightsLoader, Mockito.mock(WeightsMatrix.class), Mockito.mock(BiasVector.class), 10, 0.1f, 0.5f);
+		untrainedTailDefinition.setBuildProfile(BuildProfile.INFERENCE);
+		
+		Assert.assertNotNull(session.buildComponentGraph().startWith(untrainedTailDefinition));
+		
+		// The custom tail is frozen out along with the modules, despite its regularisation lambda and dropout keep probability
+		AxonsContextConfigAssertions.assertFrozenOutWithoutRegularisationOrDropout(axonsContextConfig);
+	}
+
 	@Override
 	protected InceptionV4Definition createDefinitionToTest() {
 		return new InceptionV4Definition(mockInceptionV4WeightsLoader);
@@ -50,5 +121,4 @@ public abstract class InceptionV4DefinitionTestBase<T extends NeuralComponent<?>
 	protected Session<T> createSession(NeuralComponentFactory<T> componentFactory, DirectedComponentsContext context) {
 		return new SessionImpl<>(componentFactory, context);
 	}
-
 }
@@ -0,0 +1,73 @@
+package org.ml4j.nn.architectures.inception.inceptionv4;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.ml4j.nn.components.ComponentMetadata;
+import org.ml4j.nn.components.ComponentMetadataFactory;
+import org.ml4j.nn.components.DirectedComponentsContext;
+import org.ml4j.nn.neurons.Neurons3D;
+import org.ml4j.nn.sessions.Session;
+import org.ml4j.nn.sessions.SessionImpl;
+import org.mockito.Mockito;
+
+public class InceptionV4FeatureExtractorDefinitionTest {
+
+	private InceptionV4WeightsLoader mockInceptionV4WeightsLoader = Mockito.mock(InceptionV4WeightsLoader.class);
+
+	@Test
+	public void testOutputNeurons() {
+		InceptionV4FeatureExtractorDefinition definition = new InceptionV4FeatureExtractorDefinition(
+				mockInceptionV4WeightsLoader, InceptionV4Module.REDUCTION_A);
+
+		Neurons3D outputNeurons = definition.getOutputNeurons();
+		Assert.assertEquals(17, outputNeurons.getWidth());
+		Assert.assertEquals(17, outputNeurons.getHeight());
+		Assert.assertEquals(1024, outputNeurons.getDepth());
+
+		definition.setGlobalAveragePooling(true);
+
+		outputNeurons = definition.getOutputNeurons();
+		Assert.assertEquals(1, outputNeurons.getWidth());
+		Assert.assertEquals(1, outputNeurons.getHeight());
+		Assert.assertEquals(1024, outputNeurons.getDepth());
+	}
+
+	@Test
+	public void testGraphStopsAtLastModule() {
+		// Each module after the Stem is a single parallel paths component
+		int reductionAComponentCount = createComponents(InceptionV4Module.REDUCTION_A, false).size();
+		Assert.assertEquals(reductionAComponentCount - 1, createComponents(InceptionV4Module.INCEPTION_A_3, false).size());
+		Assert.assertEquals(reductionAComponentCount + 4, createComponents(InceptionV4Module.INCEPTION_B_3, false).size());
+		Assert.assertEquals(reductionAComponentCount + 1, createComponents(InceptionV4Module.REDUCTION_A, true).size());
+	}
+
+	@Test
+	public void testWeightsAfterLastModuleAreNotRequested() {
+		createComponents(InceptionV4Module.REDUCTION_A, true);
+
+		// The last convolutional layer of ReductionA is loaded, but nothing from the first InceptionB module onwards
+		Mockito.verify(mockInceptionV4WeightsLoader).getConvolutionalLayerWeights(Mockito.eq("conv2d_43_kernel0"),
+				Mockito.anyInt(), Mockito.anyInt(), Mockito.anyInt(), Mockito.anyInt());
+		Mockito.verify(mockInceptionV4WeightsLoader, Mockito.never()).getConvolutionalLayerWeights(
+				Mockito.eq("conv2d_44_kernel0"), Mockito.anyInt(), Mockito.anyInt(), Mockito.anyInt(), Mockito.anyInt());
+		Mockito.verify(mockInceptionV4WeightsLoader, Mockito.never()).getConvolutionalLayerWeights(
+				Mockito.eq("conv2d_149_kernel0"), Mockito.anyInt(), Mockito.anyInt(), Mockito.anyInt(), Mockito.anyInt());
+		Mockito.verify(mockInceptionV4WeightsLoader, Mockito.never()).getBatchNormLayerMean(
+				Mockito.eq("batch_normalization_44_moving_mean0"), Mockito.anyInt());
+		Mockito.verify(mockInceptionV4WeightsLoader, Mockito.never()).getDenseLayerWeights(Mockito.anyString(),
+				Mockito.anyInt(), Mockito.anyInt());
+		Mockito.verify(mockInceptionV4WeightsLoader, Mockito.never()).getDenseLayerBiases(Mockito.anyString(),
+				Mockito.anyInt(), Mockito.anyInt());
+	}
+
+	private List<ComponentMetadata> createComponents(InceptionV4Module lastModule, boolean globalAveragePooling) {
+		Session<ComponentMetadata> session = new SessionImpl<>(new ComponentMetadataFactory(), 
+				Mockito.mock(DirectedComponentsContext.class));
+		InceptionV4FeatureExtractorDefinition definition = new InceptionV4FeatureExtractorDefinition(
+				mockInceptionV4WeightsLoader, lastModule);
+		definition.setGlobalAveragePooling(globalAveragePooling);
+		return session.buildComponentGraph().startWith(definition).getComponents();
+	}
+}
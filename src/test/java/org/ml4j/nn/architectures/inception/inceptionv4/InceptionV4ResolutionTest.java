@@ -0,0 +1,34 @@
+package org.ml4j.nn.architectures.inception.inceptionv4;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class InceptionV4ResolutionTest {
+
+	@Test
+	public void testDefaultResolutionMatchesPublishedArchitecture() {
+		InceptionV4Resolution resolution = InceptionV4Resolution.DEFAULT;
+		Assert.assertEquals(299, resolution.getInputSize());
+		Assert.assertEquals(149, resolution.getStemConvolution1Size());
+		Assert.assertEquals(147, resolution.getStemConvolution2Size());
+		Assert.assertEquals(73, resolution.getStemConcatenation1Size());
+		Assert.assertEquals(71, resolution.getStemConcatenation2Size());
+		Assert.assertEquals(35, resolution.getInceptionASize());
+		Assert.assertEquals(17, resolution.getInceptionBSize());
+		Assert.assertEquals(8, resolution.getInceptionCSize());
+	}
+
+	@Test
+	public void testReducedResolutions() {
+		Assert.assertEquals(25, new InceptionV4Resolution(224).getInceptionASize());
+		Assert.assertEquals(12, new InceptionV4Resolution(224).getInceptionBSize());
+		Assert.assertEquals(5, new InceptionV4Resolution(224).getInceptionCSize());
+		Assert.assertEquals(4, new InceptionV4Resolution(195).getInceptionCSize());
+		Assert.assertEquals(1, new InceptionV4Resolution(75).getInceptionCSize());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testResolutionTooSmall() {
+		new InceptionV4Resolution(74);
+	}
+}
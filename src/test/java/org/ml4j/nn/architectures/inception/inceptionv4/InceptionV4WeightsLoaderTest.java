@@ -0,0 +1,77 @@
+package org.ml4j.nn.architectures.inception.inceptionv4;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.ml4j.nn.axons.BiasVector;
+import org.ml4j.nn.axons.FeaturesVector;
+import org.ml4j.nn.axons.WeightsMatrix;
+
+/**
+ * Checks that loaders implementing only the methods of the original InceptionV4WeightsLoader interface are still
+ * InceptionV4WeightsLoaders, which fail with a descriptive error if asked for weights only folding loaders serve.
+ *
+ * @author Michael Lavelle
+ */
+public class InceptionV4WeightsLoaderTest {
+
+	@Test
+	public void testLoadersWithoutFoldingDoNotServeConvolutionalLayerBiases() {
+		InceptionV4WeightsLoader weightsLoader = new UnfoldedInceptionV4WeightsLoader();
+
+		Assert.assertFalse(weightsLoader.isMergedConvolutions());
+		try {
+			weightsLoader.getConvolutionalLayerBiases("conv2d_1_folded_bias0", 32);
+			Assert.fail("Expected an IllegalStateException");
+		} catch (IllegalStateException e) {
+			Assert.assertTrue(e.getMessage(), e.getMessage().contains("conv2d_1_folded_bias0"));
+			Assert.assertTrue(e.getMessage(), e.getMessage().contains(UnfoldedInceptionV4WeightsLoader.class.getName()));
+		}
+	}
+
+	/**
+	 * A loader implementing only the methods of the original interface.
+	 */
+	private static class UnfoldedInceptionV4WeightsLoader implements InceptionV4WeightsLoader {
+
+		/**
+		 * Default serialization id.
+		 */
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public WeightsMatrix getDenseLayerWeights(String name, int rows, int columns) {
+			return null;
+		}
+
+		@Override
+		public BiasVector getDenseLayerBiases(String name, int rows, int columns) {
+			return null;
+		}
+
+		@Override
+		public WeightsMatrix getConvolutionalLayerWeights(String name, int width, int height, int inputDepth,
+				int outputDepth) {
+			return null;
+		}
+
+		@Override
+		public WeightsMatrix getBatchNormLayerWeights(String name, int outputDepth) {
+			return null;
+		}
+
+		@Override
+		public BiasVector getBatchNormLayerBiases(String name, int outputDepth) {
+			return null;
+		}
+
+		@Override
+		public FeaturesVector getBatchNormLayerMean(String name, int outputDepth) {
+			return null;
+		}
+
+		@Override
+		public FeaturesVector getBatchNormLayerVariance(String name, int outputDepth) {
+			return null;
+		}
+	}
+}
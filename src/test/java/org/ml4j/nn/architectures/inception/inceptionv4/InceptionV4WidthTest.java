@@ -0,0 +1,30 @@
+package org.ml4j.nn.architectures.inception.inceptionv4;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class InceptionV4WidthTest {
+
+	@Test
+	public void testDefaultWidthMatchesPublishedArchitecture() {
+		Assert.assertEquals(1f, InceptionV4Width.DEFAULT.getMultiplier(), 0f);
+		Assert.assertEquals(96, InceptionV4Width.DEFAULT.scale(96));
+		Assert.assertEquals(1536, InceptionV4Width.DEFAULT.scale(1536));
+	}
+
+	@Test
+	public void testReducedWidthPreservesConcatenationDepths() {
+		InceptionV4Width width = new InceptionV4Width(0.75f);
+		Assert.assertEquals(72, width.scale(96));
+		// The four paths of an InceptionA module still concatenate to the scaled module depth
+		Assert.assertEquals(width.scale(384), 4 * width.scale(96));
+		// As do the three paths of a ReductionA module
+		Assert.assertEquals(width.scale(1024), width.scale(384) + width.scale(384) + width.scale(256));
+		Assert.assertEquals(new InceptionV4Width(0.5f), new InceptionV4Width(16f / 32));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testMultiplierMustBeMultipleOfGranularity() {
+		new InceptionV4Width(0.3f);
+	}
+}
@@ -0,0 +1,53 @@
+package org.ml4j.nn.architectures.inception.inceptionv4;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.ml4j.nn.architectures.ExpandingComponentGraphBuilder;
+import org.ml4j.nn.architectures.weights.DeferredWeights;
+import org.ml4j.nn.architectures.weights.WeightsRequest;
+import org.mockito.Mockito;
+
+/**
+ * Checks that an InceptionV4Definition built with a LazyInceptionV4WeightsLoader reads no weights from the
+ * delegate loader until a weights handle is used.
+ *
+ * @author Michael Lavelle
+ */
+public class LazyInceptionV4WeightsLoaderTest {
+
+	@Test
+	public void testWeightsAreNotReadUntilAHandleIsUsed() {
+		RecordingInceptionV4WeightsLoader delegate = new RecordingInceptionV4WeightsLoader();
+		ExpandingComponentGraphBuilder builder = new ExpandingComponentGraphBuilder();
+
+		builder.build(new InceptionV4Definition(new LazyInceptionV4WeightsLoader(delegate)));
+
+		// Every tensor requested while the graph is built is a handle, none of which has been read
+		List<Object> weightsHandles = builder.getWeightsHandles();
+		Assert.assertFalse(weightsHandles.isEmpty());
+		Assert.assertTrue(delegate.loaded.isEmpty());
+
+		// until it is first used, which reads only its own tensor
+		Object weights = DeferredWeights.load(weightsHandles.get(0));
+		Assert.assertEquals(1, delegate.loaded.size());
+		Assert.assertSame(delegate.loaded.get(0), weights);
+		Assert.assertFalse(DeferredWeights.isLoaded(weightsHandles.get(1)));
+	}
+
+	private static class RecordingInceptionV4WeightsLoader extends AbstractInceptionV4WeightsLoader {
+
+		private static final long serialVersionUID = 1L;
+
+		private List<Object> loaded = new CopyOnWriteArrayList<>();
+
+		@Override
+		protected Object load(WeightsRequest request) {
+			Object weights = Mockito.mock(getWeightsType(request.getKind()));
+			loaded.add(weights);
+			return weights;
+		}
+	}
+}
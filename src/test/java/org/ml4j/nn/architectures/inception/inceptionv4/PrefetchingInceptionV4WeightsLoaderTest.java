@@ -0,0 +1,96 @@
+package org.ml4j.nn.architectures.inception.inceptionv4;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.ml4j.nn.architectures.weights.DeferredWeights;
+import org.ml4j.nn.architectures.weights.TensorSource;
+import org.ml4j.nn.architectures.weights.WeightsTensorFactory;
+import org.ml4j.nn.architectures.weights.WeightsRequest;
+import org.ml4j.nn.architectures.weights.WeightsRequest.Kind;
+import org.ml4j.nn.axons.FeaturesVector;
+import org.ml4j.nn.axons.WeightsMatrix;
+import org.mockito.Mockito;
+
+/**
+ * Checks the two phases of the PrefetchingInceptionV4WeightsLoader against a delegate loader which records the
+ * weights it has loaded.
+ *
+ * @author Michael Lavelle
+ */
+public class PrefetchingInceptionV4WeightsLoaderTest {
+
+	private static final WeightsRequest KERNEL = WeightsRequest.convolutionalWeights("conv2d_1_kernel0", 3, 3, 3, 32);
+
+	private static final WeightsRequest MEAN = WeightsRequest.vector(Kind.BATCH_NORM_MEAN,
+			"batch_normalization_1_moving_mean0", 32);
+
+	@Test
+	public void testDryRunRecordsManifestWithoutLoading() {
+		RecordingInceptionV4WeightsLoader delegate = new RecordingInceptionV4WeightsLoader();
+		PrefetchingInceptionV4WeightsLoader loader = new PrefetchingInceptionV4WeightsLoader(delegate);
+
+		loader.recordManifest(dryRunLoader -> {
+			Assert.assertTrue(DeferredWeights.isDeferred(dryRunLoader.getConvolutionalLayerWeights("conv2d_1_kernel0", 3, 3, 3, 32)));
+			Assert.assertTrue(DeferredWeights.isDeferred(dryRunLoader.getBatchNormLayerMean("batch_normalization_1_moving_mean0", 32)));
+		});
+
+		Assert.assertEquals(Arrays.asList(KERNEL, MEAN), loader.getManifest());
+		Assert.assertTrue(delegate.loaded.isEmpty());
+	}
+
+	@Test
+	public void testPrefetchedWeightsAreServedWithoutTheDelegate() {
+		RecordingInceptionV4WeightsLoader delegate = new RecordingInceptionV4WeightsLoader();
+		PrefetchingInceptionV4WeightsLoader loader = new PrefetchingInceptionV4WeightsLoader(delegate,
+				Arrays.asList(KERNEL, MEAN)).prefetch();
+
+		Assert.assertEquals(2, delegate.loaded.size());
+
+		WeightsMatrix kernel = loader.getConvolutionalLayerWeights("conv2d_1_kernel0", 3, 3, 3, 32);
+		FeaturesVector mean = loader.getBatchNormLayerMean("batch_normalization_1_moving_mean0", 32);
+
+		Assert.assertSame(delegate.loaded.get(KERNEL), kernel);
+		Assert.assertSame(delegate.loaded.get(MEAN), mean);
+		Assert.assertEquals(2, delegate.loaded.size());
+
+		// Once cleared, the weights are loaded from the delegate again
+		loader.clear();
+		Assert.assertNotSame(kernel, loader.getConvolutionalLayerWeights("conv2d_1_kernel0", 3, 3, 3, 32));
+	}
+
+	@Test
+	public void testMergedConvolutionsAreReportedByEveryLoader() {
+		TensorSourceInceptionV4WeightsLoader unmerged = new TensorSourceInceptionV4WeightsLoader(
+				Mockito.mock(TensorSource.class), Mockito.mock(WeightsTensorFactory.class));
+		TensorSourceInceptionV4WeightsLoader merged = unmerged.withMergedConvolutions();
+		
+		Assert.assertFalse(unmerged.isMergedConvolutions());
+		Assert.assertTrue(merged.isMergedConvolutions());
+		Assert.assertTrue(merged.withBatchNormFolding().isMergedConvolutions());
+		Assert.assertFalse(new RecordingInceptionV4WeightsLoader().isMergedConvolutions());
+		
+		// The prefetching loader reports the flag of its delegate, including to the definition during the dry run
+		PrefetchingInceptionV4WeightsLoader loader = new PrefetchingInceptionV4WeightsLoader(merged);
+		Assert.assertTrue(loader.isMergedConvolutions());
+		loader.recordManifest(dryRunLoader -> Assert.assertTrue(dryRunLoader.isMergedConvolutions()));
+		Assert.assertTrue(new LazyInceptionV4WeightsLoader(merged).isMergedConvolutions());
+	}
+
+	private static class RecordingInceptionV4WeightsLoader extends AbstractInceptionV4WeightsLoader {
+
+		private static final long serialVersionUID = 1L;
+
+		private Map<WeightsRequest, Object> loaded = new ConcurrentHashMap<>();
+
+		@Override
+		protected Object load(WeightsRequest request) {
+			Object weights = Mockito.mock(getWeightsType(request.getKind()));
+			loaded.put(request, weights);
+			return weights;
+		}
+	}
+}
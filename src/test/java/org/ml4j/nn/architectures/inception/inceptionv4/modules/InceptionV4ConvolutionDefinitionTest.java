@@ -0,0 +1,173 @@
+package org.ml4j.nn.architectures.inception.inceptionv4.modules;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.ml4j.nn.architectures.BuildProfile;
+import org.ml4j.nn.architectures.fusion.ConvolutionBatchNormActivationConfig;
+import org.ml4j.nn.architectures.fusion.FusedComponentFactory;
+import org.ml4j.nn.architectures.inception.inceptionv4.InceptionV4WeightsLoader;
+import org.ml4j.nn.architectures.weights.BatchNormFoldingTensorSource;
+import org.ml4j.nn.axons.AxonsContextConfig;
+import org.ml4j.nn.components.NeuralComponent;
+import org.ml4j.nn.components.builders.componentsgraph.InitialComponents3DGraphBuilder;
+import org.ml4j.nn.neurons.Neurons3D;
+import org.mockito.Mockito;
+
+/**
+ * Checks that an InceptionV4ConvolutionDefinition configures its axons as the original Inception V4 modules did -
+ * with the padding of the builder, and with regularisation only where it is requested, whether or not the
+ * convolutions are fused.
+ *
+ * @author Michael Lavelle
+ */
+public class InceptionV4ConvolutionDefinitionTest {
+
+	@Test
+	public void testModuleConvolutionsAreOnlyFrozenOut() {
+		RecordingBuilder builder = new RecordingBuilder();
+
+		builder.build(convolution().withFilterSize(7, 1).withSamePadding().withFreezeOut(true));
+
+		// Both the convolutional and the batch norm axons are configured
+		Assert.assertEquals(2, builder.axonsContextConfigurers.size());
+		AxonsContextConfig axonsContextConfig = applyConfigurers(builder);
+		Mockito.verify(axonsContextConfig, Mockito.times(2)).withFreezeOut(true);
+		Mockito.verify(axonsContextConfig, Mockito.never()).withRegularisationLambda(Mockito.anyFloat());
+	}
+
+	@Test
+	public void testRegularisationIsOnlyAppliedWhereRequested() {
+		RecordingBuilder builder = new RecordingBuilder();
+
+		// As for conv2d_1 of the stem, whose batch norm axons are not regularised
+		builder.build(convolution().withFilterSize(3, 3).withValidPadding().withRegularisationLambda(0.1f));
+
+		AxonsContextConfig axonsContextConfig = applyConfigurers(builder);
+		Mockito.verify(axonsContextConfig, Mockito.times(1)).withRegularisationLambda(Mockito.anyFloat());
+		Mockito.verify(axonsContextConfig).withRegularisationLambda(0.1f);
+	}
+
+	@Test
+	public void testPaddingIsLeftToTheBuilder() {
+		RecordingBuilder samePaddingBuilder = new RecordingBuilder();
+		samePaddingBuilder.build(convolution().withFilterSize(1, 7).withSamePadding());
+
+		Assert.assertTrue(samePaddingBuilder.calls.contains("withSamePadding"));
+		Assert.assertFalse(samePaddingBuilder.calls.contains("withValidPadding"));
+		Assert.assertFalse(samePaddingBuilder.calls.contains("withPadding"));
+
+		RecordingBuilder validPaddingBuilder = new RecordingBuilder();
+		validPaddingBuilder.build(convolution().withFilterSize(3, 3).withStride(2, 2).withValidPadding()
+				.withBatchNormFolding(true));
+
+		Assert.assertTrue(validPaddingBuilder.calls.contains("withValidPadding"));
+		Assert.assertFalse(validPaddingBuilder.calls.contains("withSamePadding"));
+		Assert.assertFalse(validPaddingBuilder.calls.contains("withPadding"));
+	}
+
+	@Test
+	public void testFusedComponentsCarryTheFreezeOutAndRegularisation() {
+		RecordingBuilder builder = new RecordingBuilder();
+
+		ConvolutionBatchNormActivationConfig config = builder.buildFused(convolution().withFilterSize(3, 3)
+				.withValidPadding().withFreezeOut(true).withRegularisationLambda(0.1f)
+				.withBatchNormRegularisationLambda(0.2f));
+
+		Assert.assertTrue(config.isFreezeOut());
+		Assert.assertEquals(0.1f, config.getRegularisationLambda(), 0f);
+		Assert.assertEquals(0.2f, config.getBatchNormRegularisationLambda(), 0f);
+		Assert.assertEquals(BatchNormFoldingTensorSource.DEFAULT_EPSILON, config.getBatchNormEpsilon(), 0f);
+
+		// Module convolutions are only frozen out
+		config = builder.buildFused(convolution().withFilterSize(1, 7).withSamePadding());
+		Assert.assertFalse(config.isFreezeOut());
+		Assert.assertEquals(0f, config.getRegularisationLambda(), 0f);
+		Assert.assertEquals(0f, config.getBatchNormRegularisationLambda(), 0f);
+	}
+
+	@Test
+	public void testFusedComponentsAreFrozenOutForInference() {
+		RecordingBuilder builder = new RecordingBuilder();
+
+		ConvolutionBatchNormActivationConfig config = builder.buildFused(convolution().withFilterSize(3, 3)
+				.withValidPadding().withRegularisationLambda(0.1f).withBuildProfile(BuildProfile.INFERENCE));
+
+		Assert.assertTrue(config.isFreezeOut());
+		Assert.assertEquals(0f, config.getRegularisationLambda(), 0f);
+	}
+
+	private static InceptionV4ConvolutionDefinition convolution() {
+		return new InceptionV4ConvolutionDefinition(Mockito.mock(InceptionV4WeightsLoader.class), 8,
+				new Neurons3D(73, 73, 64, false), new Neurons3D(73, 73, 64, false));
+	}
+
+	private static AxonsContextConfig applyConfigurers(RecordingBuilder builder) {
+		AxonsContextConfig axonsContextConfig = Mockito.mock(AxonsContextConfig.class, Mockito.RETURNS_SELF);
+		for (Consumer<AxonsContextConfig> axonsContextConfigurer : builder.axonsContextConfigurers) {
+			axonsContextConfigurer.accept(axonsContextConfig);
+		}
+		return axonsContextConfig;
+	}
+
+	/**
+	 * Records the calls made on a component graph builder, and on the axons builders it returns.
+	 */
+	private static class RecordingBuilder implements InvocationHandler {
+
+		private List<String> calls = new ArrayList<>();
+		private List<Consumer<AxonsContextConfig>> axonsContextConfigurers = new ArrayList<>();
+
+		void build(InceptionV4ConvolutionDefinition definition) {
+			definition.createComponentGraph(create(InitialComponents3DGraphBuilder.class), null);
+		}
+
+		@SuppressWarnings("unchecked")
+		ConvolutionBatchNormActivationConfig buildFused(InceptionV4ConvolutionDefinition definition) {
+			AtomicReference<ConvolutionBatchNormActivationConfig> config = new AtomicReference<>();
+			FusedComponentFactory<NeuralComponent<?>> fusedComponentFactory
+				= (FusedComponentFactory<NeuralComponent<?>>) Proxy.newProxyInstance(getClass().getClassLoader(),
+						new Class<?>[] { FusedComponentFactory.class }, (proxy, method, args) -> {
+							config.set((ConvolutionBatchNormActivationConfig) args[3]);
+							return null;
+						});
+			definition.withFusedConvolutions(true).createComponentGraph(create(InitialComponents3DGraphBuilder.class),
+					fusedComponentFactory);
+			return config.get();
+		}
+
+		@SuppressWarnings("unchecked")
+		private <T extends NeuralComponent<?>> InitialComponents3DGraphBuilder<T> create(Class<?> builderClass) {
+			return (InitialComponents3DGraphBuilder<T>) Proxy.newProxyInstance(getClass().getClassLoader(),
+					new Class<?>[] { builderClass }, this);
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			calls.add(method.getName());
+			if (method.getName().equals("withAxonsContextConfigurer")) {
+				axonsContextConfigurers.add((Consumer<AxonsContextConfig>) args[0]);
+			}
+			Class<?> returnType = method.getReturnType();
+			if (returnType.isInstance(proxy)) {
+				return proxy;
+			}
+			if (returnType.isAssignableFrom(InitialComponents3DGraphBuilder.class)) {
+				return Proxy.newProxyInstance(getClass().getClassLoader(),
+						new Class<?>[] { InitialComponents3DGraphBuilder.class }, this);
+			}
+			if (returnType.isInterface()) {
+				return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { returnType }, this);
+			}
+			return null;
+		}
+	}
+}
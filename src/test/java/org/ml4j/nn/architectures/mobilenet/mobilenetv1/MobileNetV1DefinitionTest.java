@@ -0,0 +1,111 @@
+package org.ml4j.nn.architectures.mobilenet.mobilenetv1;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.ml4j.nn.architectures.BuildProfile;
+import org.ml4j.nn.architectures.mobilenet.DepthwiseConvolutionConfig;
+import org.ml4j.nn.components.ComponentMetadata;
+import org.ml4j.nn.components.ComponentMetadataFactory;
+import org.ml4j.nn.components.DirectedComponentsContext;
+import org.ml4j.nn.components.factories.NeuralComponentFactory;
+import org.ml4j.nn.neurons.Neurons3D;
+import org.ml4j.nn.sessions.Session;
+import org.ml4j.nn.sessions.SessionImpl;
+import org.mockito.Mockito;
+
+public class MobileNetV1DefinitionTest {
+
+	private MobileNetV1WeightsLoader mockMobileNetV1WeightsLoader = Mockito.mock(MobileNetV1WeightsLoader.class);
+
+	@Test
+	public void testComponentGraphCreation() {
+		Session<ComponentMetadata> session = new SessionImpl<>(new ComponentMetadataFactory(),
+				Mockito.mock(DirectedComponentsContext.class));
+
+		List<ComponentMetadata> sequentialComponents = session.buildComponentGraph()
+				.startWith(new MobileNetV1Definition(mockMobileNetV1WeightsLoader)).getComponents();
+
+		// The zero padding, the initial convolution, batch norm and RELU triplet, 13 depthwise separable blocks of 6
+		// components, and the global average pool, dense layer and softmax
+		Assert.assertEquals(85, sequentialComponents.size());
+		Assert.assertEquals("Component type:" + ComponentMetadataFactory.ZERO_PADDING + ":conv1_pad",
+				sequentialComponents.get(0).getDescription());
+		Assert.assertEquals("Component type:" + ComponentMetadataFactory.DEPTHWISE_CONVOLUTION + ":conv_dw_1",
+				sequentialComponents.get(4).getDescription());
+	}
+
+	@Test
+	public void testComponentGraphCreationWithInferenceProfile() {
+		Session<ComponentMetadata> session = new SessionImpl<>(new ComponentMetadataFactory(),
+				Mockito.mock(DirectedComponentsContext.class));
+
+		MobileNetV1Definition definition = new MobileNetV1Definition(mockMobileNetV1WeightsLoader, 128);
+		definition.setBuildProfile(BuildProfile.INFERENCE);
+
+		List<ComponentMetadata> sequentialComponents = session.buildComponentGraph()
+				.startWith(definition).getComponents();
+
+		Assert.assertEquals(85, sequentialComponents.size());
+	}
+
+	@Test
+	public void testComponentGraphMatchesKerasModel() {
+		ComponentMetadataFactory componentFactory = new ComponentMetadataFactory();
+		Session<ComponentMetadata> session = new SessionImpl<>(componentFactory,
+				Mockito.mock(DirectedComponentsContext.class));
+
+		MobileNetV1Definition definition = new MobileNetV1Definition(mockMobileNetV1WeightsLoader);
+		session.buildComponentGraph().startWith(definition);
+
+		// As in Keras, the stride 2 conv1 is a valid convolution of its input padded at the bottom and right only
+		Assert.assertArrayEquals(new int[] { 0, 1, 0, 1 }, componentFactory.getZeroPadding("conv1_pad"));
+		ComponentMetadata conv1 = componentFactory.getCreatedComponents().stream()
+				.filter(c -> c.getName().equals("conv1")).findFirst().get();
+		Assert.assertEquals(225 * 225 * 3, conv1.getInputNeurons().getNeuronCountExcludingBias());
+		Assert.assertEquals(112 * 112 * 32, conv1.getOutputNeurons().getNeuronCountExcludingBias());
+
+		// A stride 1 depthwise convolution pads all sides, while a stride 2 one pads the bottom and right only
+		DepthwiseConvolutionConfig stride1Config = componentFactory.getDepthwiseConvolutionConfig("conv_dw_1");
+		Assert.assertEquals(1, stride1Config.getStrideWidth());
+		Assert.assertEquals(1, stride1Config.getPaddingTop());
+		Assert.assertEquals(1, stride1Config.getPaddingBottom());
+		Assert.assertEquals(1, stride1Config.getPaddingLeft());
+		Assert.assertEquals(1, stride1Config.getPaddingRight());
+
+		DepthwiseConvolutionConfig stride2Config = componentFactory.getDepthwiseConvolutionConfig("conv_dw_2");
+		Assert.assertEquals(2, stride2Config.getStrideWidth());
+		Assert.assertEquals(0, stride2Config.getPaddingTop());
+		Assert.assertEquals(1, stride2Config.getPaddingBottom());
+		Assert.assertEquals(0, stride2Config.getPaddingLeft());
+		Assert.assertEquals(1, stride2Config.getPaddingRight());
+
+		// The weights of conv_preds are those of the 1x1 convolution of Keras, over its 1000 classes
+		Assert.assertEquals(1000, definition.getOutputNeurons().getNeuronCountExcludingBias());
+		Mockito.verify(mockMobileNetV1WeightsLoader).getConvolutionalLayerWeights("conv_preds_kernel0", 1, 1, 1024, 1000);
+		Mockito.verify(mockMobileNetV1WeightsLoader).getConvolutionalLayerBiases("conv_preds_bias0", 1000);
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testDepthwiseConvolutionsRequireADepthwiseConvolutionComponentFactory() {
+		MobileNetV1DepthwiseSeparableDefinition definition = new MobileNetV1DepthwiseSeparableDefinition(
+				mockMobileNetV1WeightsLoader, 1, new Neurons3D(112, 112, 32, false), new Neurons3D(112, 112, 64, false),
+				1);
+		try {
+			definition.createComponentGraph(null, Mockito.mock(NeuralComponentFactory.class));
+			Assert.fail("Expected an IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			// No weights are loaded for a depthwise convolution which cannot be created
+			Mockito.verify(mockMobileNetV1WeightsLoader, Mockito.never())
+					.getDepthwiseConvolutionalLayerWeights(Mockito.anyString(), Mockito.anyInt(), Mockito.anyInt(),
+							Mockito.anyInt());
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInputSizeMustBeMultipleOfStride() {
+		new MobileNetV1Definition(mockMobileNetV1WeightsLoader, 200);
+	}
+}
@@ -0,0 +1,156 @@
+package org.ml4j.nn.architectures.scheduling;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks that a PathScheduler runs paths concurrently, critical path first, and returns results in path order.
+ * 
+ * @author Michael Lavelle
+ */
+public class PathSchedulerTest {
+
+	private ForkJoinPool pool;
+
+	@Before
+	public void setUp() {
+		pool = new ForkJoinPool(2);
+	}
+
+	@After
+	public void tearDown() {
+		pool.shutdown();
+	}
+
+	@Test
+	public void testResultsAreInPathOrder() {
+		PathScheduler pathScheduler = new PathScheduler(new long[] { 1, 3, 2 }, pool);
+
+		List<Supplier<String>> paths = Arrays.asList(() -> "a", () -> "b", () -> "c");
+
+		Assert.assertEquals(Arrays.asList("a", "b", "c"), pathScheduler.invokeAll(paths));
+	}
+
+	@Test
+	public void testExecutionOrderStartsWithCriticalPath() {
+		PathScheduler pathScheduler = new PathScheduler(new long[] { 1, 3, 2, 3 }, ForkJoinPool.commonPool());
+
+		Assert.assertArrayEquals(new int[] { 1, 3, 2, 0 }, pathScheduler.getExecutionOrder());
+		Assert.assertEquals(1, pathScheduler.getCriticalPathIndex());
+	}
+
+	@Test
+	public void testCriticalPathIsMeasured() {
+		// Estimated as the cheapest path, the second path is measured to be the critical path
+		PathScheduler pathScheduler = new PathScheduler(new long[] { 2, 1 }, pool);
+
+		List<Supplier<Integer>> paths = Arrays.asList(() -> 0, () -> {
+			sleep(50);
+			return 1;
+		});
+		pathScheduler.invokeAll(paths);
+
+		Assert.assertTrue(pathScheduler.isMeasured());
+		Assert.assertEquals(1, pathScheduler.getCriticalPathIndex());
+	}
+
+	@Test
+	public void testEstimatesAreUsedUntilEveryPathIsMeasured() {
+		// Estimates in multiply-adds, far larger than the duration of either path in nanoseconds
+		PathScheduler pathScheduler = new PathScheduler(new long[] { 1000000000000L, 2000000000000L }, pool);
+
+		// The second path fails, so only the first path is measured
+		List<Supplier<Integer>> paths = Arrays.asList(() -> 0, () -> {
+			throw new IllegalStateException("Path failed");
+		});
+		try {
+			pathScheduler.invokeAll(paths);
+			Assert.fail("Expected the path failure to be rethrown");
+		} catch (IllegalStateException e) {
+			Assert.assertEquals("Path failed", e.getMessage());
+		}
+
+		// The measured duration of the first path is not compared with the estimate of the second
+		Assert.assertFalse(pathScheduler.isMeasured());
+		Assert.assertArrayEquals(new long[] { 1000000000000L, 2000000000000L }, pathScheduler.getPathCosts());
+		Assert.assertEquals(1, pathScheduler.getCriticalPathIndex());
+	}
+
+	@Test(timeout = 10000)
+	public void testForkedPathsAreFinishedWhenTheCriticalPathFails() {
+		PathScheduler pathScheduler = new PathScheduler(new long[] { 2, 1 }, pool);
+
+		// The forked path is running when the critical path fails
+		CountDownLatch forkedPathStarted = new CountDownLatch(1);
+		AtomicBoolean forkedPathFinished = new AtomicBoolean();
+		List<Supplier<Integer>> paths = Arrays.asList(() -> {
+			await(forkedPathStarted);
+			throw new IllegalStateException("Critical path failed");
+		}, () -> {
+			forkedPathStarted.countDown();
+			sleep(100);
+			forkedPathFinished.set(true);
+			return 1;
+		});
+		try {
+			pathScheduler.invokeAll(paths);
+			Assert.fail("Expected the critical path failure to be rethrown");
+		} catch (IllegalStateException e) {
+			Assert.assertEquals("Critical path failed", e.getMessage());
+			Assert.assertTrue(forkedPathFinished.get());
+		}
+	}
+
+	@Test(timeout = 10000)
+	public void testPathsRunConcurrently() {
+		PathScheduler pathScheduler = new PathScheduler(2);
+		if (ForkJoinPool.commonPool().getParallelism() == 1) {
+			pathScheduler = new PathScheduler(new long[2], pool);
+		}
+
+		// Each path waits for the other to start, so completes only if the paths run concurrently
+		CountDownLatch started = new CountDownLatch(2);
+		Supplier<Boolean> path = () -> {
+			started.countDown();
+			try {
+				return started.await(5, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		};
+
+		Assert.assertEquals(Arrays.asList(true, true), pathScheduler.invokeAll(Arrays.asList(path, path)));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testPathCountMustMatch() {
+		new PathScheduler(2).invokeAll(Arrays.asList(() -> 0));
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,248 @@
+package org.ml4j.nn.architectures.scheduling;
+
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
+import java.util.function.UnaryOperator;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.ml4j.nn.architectures.concat.FilterConcatBuffer;
+import org.ml4j.nn.architectures.concat.InPlaceConcatComponentFactory;
+import org.ml4j.nn.architectures.yolo.yolov2.SpaceToDepth.Layout;
+import org.ml4j.nn.components.NeuralComponent;
+import org.ml4j.nn.components.factories.NeuralComponentFactory;
+import org.ml4j.nn.components.manytoone.PathCombinationStrategy;
+import org.ml4j.nn.neurons.Neurons;
+import org.ml4j.nn.neurons.Neurons3D;
+
+/**
+ * Checks that the bipole graphs of a SchedulingComponentFactory run their paths with a PathScheduler, without
+ * changing the output of the graphs of the delegate factory.
+ *
+ * @author Michael Lavelle
+ */
+public class SchedulingComponentFactoryTest {
+
+	private ForkJoinPool pool;
+
+	@Before
+	public void setUp() {
+		pool = new ForkJoinPool(2);
+	}
+
+	@After
+	public void tearDown() {
+		pool.shutdown();
+	}
+
+	@Test
+	public void testPathsAreRunOnceWithTheScheduler() {
+		AtomicInteger forwardPropagations = new AtomicInteger();
+		List<PathComponent> paths = Arrays.asList(
+				createPath((input, context) -> count(forwardPropagations, input + "a:" + context)),
+				createPath((input, context) -> count(forwardPropagations, input + "b:" + context)));
+
+		PathComponent bipoleGraph = createBipoleGraph(UnaryOperator.identity(), paths);
+
+		// Each path is run with the context it obtains from the context of the graph, as by the delegate graph
+		Assert.assertEquals("xa:path(ctx),xb:path(ctx)", bipoleGraph.forwardPropagate("x", "ctx"));
+		Assert.assertEquals(2, forwardPropagations.get());
+	}
+
+	@Test(timeout = 10000)
+	public void testPathsRunConcurrently() {
+		// Each path waits for the other to start, so completes only if the paths run concurrently
+		CountDownLatch started = new CountDownLatch(2);
+		BiFunction<String, String, String> forwardPropagation = (input, context) -> {
+			started.countDown();
+			try {
+				return String.valueOf(started.await(5, TimeUnit.SECONDS));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return String.valueOf(false);
+			}
+		};
+		PathComponent bipoleGraph = createBipoleGraph(UnaryOperator.identity(),
+				Arrays.asList(createPath(forwardPropagation), createPath(forwardPropagation)));
+
+		Assert.assertEquals("true,true", bipoleGraph.forwardPropagate("x", "ctx"));
+	}
+
+	@Test
+	public void testGraphsWhichTransformTheirInputRunTheirPathsSequentially() {
+		AtomicInteger forwardPropagations = new AtomicInteger();
+		List<PathComponent> paths = Arrays.asList(
+				createPath((input, context) -> count(forwardPropagations, input + "a")),
+				createPath((input, context) -> count(forwardPropagations, input + "b")));
+
+		// A delegate graph which does not pass its own input to its paths cannot use the scheduled outputs
+		PathComponent bipoleGraph = createBipoleGraph(input -> input + "!", paths);
+
+		Assert.assertEquals("x!a,x!b", bipoleGraph.forwardPropagate("x", "ctx"));
+		Assert.assertEquals(4, forwardPropagations.get());
+
+		// so its paths are no longer scheduled once that has been detected
+		Assert.assertEquals("y!a,y!b", bipoleGraph.forwardPropagate("y", "ctx"));
+		Assert.assertEquals(6, forwardPropagations.get());
+	}
+
+	@Test
+	public void testGraphsWhichCopyTheirInputRunTheirPathsSequentially() {
+		AtomicInteger forwardPropagations = new AtomicInteger();
+		List<PathComponent> paths = Arrays.asList(
+				createPath((input, context) -> count(forwardPropagations, input + "a")),
+				createPath((input, context) -> count(forwardPropagations, input + "b")));
+
+		// A delegate graph which passes its paths an equal copy of its input, rather than the input itself
+		PathComponent bipoleGraph = createBipoleGraph(input -> new String(input), paths);
+
+		// has its paths run by both the scheduler and the graph on its first forward propagation
+		Assert.assertEquals("xa,xb", bipoleGraph.forwardPropagate("x", "ctx"));
+		Assert.assertEquals(4, forwardPropagations.get());
+
+		// and only by the graph from then on, without changing its output
+		Assert.assertEquals("ya,yb", bipoleGraph.forwardPropagate("y", "ctx"));
+		Assert.assertEquals(6, forwardPropagations.get());
+		Assert.assertEquals("za,zb", bipoleGraph.forwardPropagate("z", "ctx"));
+		Assert.assertEquals(8, forwardPropagations.get());
+	}
+
+	@Test
+	public void testComponentsWithoutForwardPropagationAreNotDecorated() {
+		// A metadata component, without a forwardPropagate method
+		NeuralComponent<?> graph = (NeuralComponent<?>) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[] { NeuralComponent.class },
+				(proxy, method, args) -> method.getName().endsWith("Neurons") ? new Neurons(2, false) : null);
+		NeuralComponentFactory<NeuralComponent<?>> delegate = createFactory((name, paths) -> graph);
+		SchedulingComponentFactory<NeuralComponent<?>> factory = new SchedulingComponentFactory<>(delegate, pool);
+
+		Assert.assertSame(graph, factory.createDirectedComponentBipoleGraph("graph", new Neurons(2, false),
+				new Neurons(4, false), Arrays.asList(graph, graph), PathCombinationStrategy.FILTER_CONCAT));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testFusedComponentsRequireAFusedDelegate() {
+		SchedulingComponentFactory<PathComponent> factory = new SchedulingComponentFactory<>(
+				createFactory((name, paths) -> null), pool);
+
+		factory.createConvolutionBatchNormActivationComponent("conv2d_1", new Neurons3D(3, 3, 1, false),
+				new Neurons3D(3, 3, 1, false), null);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testDepthwiseConvolutionsRequireADepthwiseDelegate() {
+		SchedulingComponentFactory<PathComponent> factory = new SchedulingComponentFactory<>(
+				createFactory((name, paths) -> null), pool);
+
+		factory.createDepthwiseConvolutionComponent("conv_dw_1", new Neurons3D(3, 3, 1, false),
+				new Neurons3D(3, 3, 1, false), null);
+	}
+
+	@Test
+	public void testFilterConcatenationsOfAnInPlaceConcatDelegateAreCreatedWithABuffer() {
+		AtomicReference<FilterConcatBuffer> concatBuffer = new AtomicReference<>();
+		NeuralComponentFactory<PathComponent> delegate = createFactory(InPlaceConcatComponentFactory.class,
+				(name, graphPaths) -> createPath((input, context) -> input), concatBuffer);
+		SchedulingComponentFactory<PathComponent> factory = new SchedulingComponentFactory<>(delegate, pool);
+
+		PathComponent bipoleGraph = factory.createDirectedComponentBipoleGraph("graph", new Neurons(2, false),
+				new Neurons(4, false), Arrays.asList(createPath((input, context) -> input + "a"),
+						createPath((input, context) -> input + "b")), PathCombinationStrategy.FILTER_CONCAT);
+
+		Assert.assertEquals("x", bipoleGraph.forwardPropagate("x", "ctx"));
+		Assert.assertEquals(2, concatBuffer.get().getPathCount());
+		Assert.assertEquals(2, concatBuffer.get().getChannelOffset(1));
+		Assert.assertEquals(4, concatBuffer.get().getDepth());
+		Assert.assertEquals(Layout.EXAMPLE_MAJOR, concatBuffer.get().getLayout());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testConcatBuffersRequireAnInPlaceConcatDelegate() {
+		SchedulingComponentFactory<PathComponent> factory = new SchedulingComponentFactory<>(
+				createFactory((name, paths) -> null), pool);
+
+		factory.createDirectedComponentBipoleGraph("graph", new Neurons(2, false), new Neurons(4, false),
+				Arrays.asList(createPath((input, context) -> input)), PathCombinationStrategy.FILTER_CONCAT,
+				new FilterConcatBuffer(1, 1, new int[] { 2 }));
+	}
+
+	private PathComponent createBipoleGraph(UnaryOperator<String> pathInput, List<PathComponent> paths) {
+		// The delegate graph runs its paths in turn, with the contexts they obtain, and joins their outputs
+		NeuralComponentFactory<PathComponent> delegate = createFactory((name, graphPaths) -> createPath(
+				(input, context) -> {
+					StringBuilder output = new StringBuilder();
+					for (PathComponent path : graphPaths) {
+						output.append(output.length() == 0 ? "" : ",")
+								.append(path.forwardPropagate(pathInput.apply(input), path.getContext(context)));
+					}
+					return output.toString();
+				}));
+		SchedulingComponentFactory<PathComponent> factory = new SchedulingComponentFactory<>(delegate, pool);
+		return factory.createDirectedComponentBipoleGraph("graph", new Neurons(2, false), new Neurons(4, false),
+				paths, PathCombinationStrategy.FILTER_CONCAT);
+	}
+
+	private static String count(AtomicInteger forwardPropagations, String output) {
+		forwardPropagations.incrementAndGet();
+		return output;
+	}
+
+	private static <T extends NeuralComponent<?>> NeuralComponentFactory<T> createFactory(
+			BiFunction<String, List<T>, T> bipoleGraphFactory) {
+		return createFactory(NeuralComponentFactory.class, bipoleGraphFactory, new AtomicReference<>());
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T extends NeuralComponent<?>> NeuralComponentFactory<T> createFactory(Class<?> factoryInterface,
+			BiFunction<String, List<T>, T> bipoleGraphFactory, AtomicReference<FilterConcatBuffer> concatBuffer) {
+		return (NeuralComponentFactory<T>) Proxy.newProxyInstance(SchedulingComponentFactoryTest.class.getClassLoader(),
+				new Class<?>[] { factoryInterface }, (proxy, method, args) -> {
+					if (method.getName().equals("createDirectedComponentBipoleGraph")) {
+						concatBuffer.set(args.length > 5 ? (FilterConcatBuffer) args[5] : null);
+						return bipoleGraphFactory.apply((String) args[0], (List<T>) args[3]);
+					}
+					if (method.getName().equals("getConcatBufferLayout")) {
+						// The layout of a column-major delegate
+						return Layout.EXAMPLE_MAJOR;
+					}
+					throw new UnsupportedOperationException(method.getName());
+				});
+	}
+
+	private static PathComponent createPath(BiFunction<String, String, String> forwardPropagation) {
+		return (PathComponent) Proxy.newProxyInstance(SchedulingComponentFactoryTest.class.getClassLoader(),
+				new Class<?>[] { PathComponent.class }, (proxy, method, args) -> {
+					switch (method.getName()) {
+					case "forwardPropagate":
+						return forwardPropagation.apply((String) args[0], (String) args[1]);
+					case "getContext":
+						return "path(" + args[0] + ")";
+					case "getInputNeurons":
+						return new Neurons(2, false);
+					case "getOutputNeurons":
+						return new Neurons3D(1, 1, 2, false);
+					default:
+						return null;
+					}
+				});
+	}
+
+	/**
+	 * A component with the forwardPropagate and getContext methods of the directed components.
+	 */
+	public interface PathComponent extends NeuralComponent<PathComponent> {
+
+		String forwardPropagate(String input, String context);
+
+		String getContext(String context);
+	}
+}
@@ -0,0 +1,174 @@
+package org.ml4j.nn.architectures.snapshots;
+
+import java.io.File;
+import java.io.Serializable;
+import java.net.URI;
+import java.nio.FloatBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.ml4j.nn.architectures.BuildProfile;
+import org.ml4j.nn.architectures.inception.inceptionv4.AbstractInceptionV4WeightsLoader;
+import org.ml4j.nn.architectures.inception.inceptionv4.InceptionV4Definition;
+import org.ml4j.nn.architectures.inception.inceptionv4.LazyInceptionV4WeightsLoader;
+import org.ml4j.nn.architectures.inception.inceptionv4.TensorSourceInceptionV4WeightsLoader;
+import org.ml4j.nn.architectures.weights.BatchNormFoldingTensorSource;
+import org.ml4j.nn.architectures.weights.TensorSource;
+import org.ml4j.nn.architectures.weights.WeightsRequest;
+import org.ml4j.nn.components.ComponentMetadata;
+import org.ml4j.nn.neurons.Neurons;
+
+/**
+ * Checks the restoring, keying and class allow-list of ComponentGraphSnapshots.
+ *
+ * @author Michael Lavelle
+ */
+public class ComponentGraphSnapshotsTest {
+
+	private static final String WEIGHTS_HASH = "inceptionv4.h5";
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void testSnapshotIsRestoredInsteadOfRebuilt() {
+		InceptionV4Definition definition = new InceptionV4Definition(new TestInceptionV4WeightsLoader());
+		AtomicInteger buildCount = new AtomicInteger();
+		Supplier<ComponentMetadata> build = () -> {
+			buildCount.incrementAndGet();
+			return new ComponentMetadata("inceptionv4", new Neurons(299 * 299 * 3, false), new Neurons(1000, false),
+					"The Inception V4 graph");
+		};
+
+		ComponentMetadata built = new ComponentGraphSnapshots(temporaryFolder.getRoot())
+				.restoreOrBuild(definition, WEIGHTS_HASH, build);
+		Assert.assertEquals(1, buildCount.get());
+		Assert.assertTrue(new ComponentGraphSnapshots(temporaryFolder.getRoot())
+				.getSnapshot(definition, WEIGHTS_HASH).exists());
+
+		ComponentMetadata restored = new ComponentGraphSnapshots(temporaryFolder.getRoot())
+				.restoreOrBuild(definition, WEIGHTS_HASH, build);
+		Assert.assertEquals(1, buildCount.get());
+		Assert.assertNotSame(built, restored);
+		Assert.assertEquals(built.getName(), restored.getName());
+		Assert.assertEquals(built.getDescription(), restored.getDescription());
+	}
+
+	@Test
+	public void testChangedDefinitionInvalidatesSnapshot() {
+		ComponentGraphSnapshots snapshots = new ComponentGraphSnapshots(temporaryFolder.getRoot());
+		InceptionV4Definition definition = new InceptionV4Definition(new TestInceptionV4WeightsLoader());
+		File snapshot = snapshots.getSnapshot(definition, WEIGHTS_HASH);
+
+		// The weights are identified by the weights hash, so another loader of the same class shares the snapshot
+		Assert.assertEquals(snapshot, snapshots.getSnapshot(
+				new InceptionV4Definition(new TestInceptionV4WeightsLoader()), WEIGHTS_HASH));
+
+		InceptionV4Definition inferenceDefinition = new InceptionV4Definition(new TestInceptionV4WeightsLoader());
+		inferenceDefinition.setBuildProfile(BuildProfile.INFERENCE);
+		Assert.assertNotEquals(snapshot, snapshots.getSnapshot(inferenceDefinition, WEIGHTS_HASH));
+
+		InceptionV4Definition regularisedDefinition = new InceptionV4Definition(new TestInceptionV4WeightsLoader());
+		regularisedDefinition.setFinalDenseLayerRegularisationLambda(0.01f);
+		Assert.assertNotEquals(snapshot, snapshots.getSnapshot(regularisedDefinition, WEIGHTS_HASH));
+
+		Assert.assertNotEquals(snapshot, snapshots.getSnapshot(definition, "retrained.h5"));
+	}
+
+	@Test
+	public void testChangedLoaderConfigurationInvalidatesSnapshot() {
+		ComponentGraphSnapshots snapshots = new ComponentGraphSnapshots(temporaryFolder.getRoot());
+		TensorSourceInceptionV4WeightsLoader weightsLoader = new TensorSourceInceptionV4WeightsLoader(
+				new TestTensorSource(), null);
+		File snapshot = snapshots.getSnapshot(new InceptionV4Definition(weightsLoader.withBatchNormFolding()),
+				WEIGHTS_HASH);
+
+		// The same configuration over the same weights shares the snapshot
+		Assert.assertEquals(snapshot, snapshots.getSnapshot(
+				new InceptionV4Definition(weightsLoader.withBatchNormFolding()), WEIGHTS_HASH));
+
+		// while the weights served from the same file differ with the folding epsilon or the merged convolutions
+		TensorSourceInceptionV4WeightsLoader darknetEpsilonLoader = weightsLoader
+				.withBatchNormFolding(BatchNormFoldingTensorSource.DARKNET_EPSILON);
+		Assert.assertNotEquals(snapshot, snapshots.getSnapshot(new InceptionV4Definition(darknetEpsilonLoader),
+				WEIGHTS_HASH));
+		Assert.assertNotEquals(snapshot, snapshots.getSnapshot(
+				new InceptionV4Definition(weightsLoader.withBatchNormFolding().withMergedConvolutions()),
+				WEIGHTS_HASH));
+		Assert.assertNotEquals(snapshot, snapshots.getSnapshot(new InceptionV4Definition(weightsLoader),
+				WEIGHTS_HASH));
+
+		// as do those served through a decorating loader
+		File lazySnapshot = snapshots.getSnapshot(
+				new InceptionV4Definition(new LazyInceptionV4WeightsLoader(weightsLoader.withBatchNormFolding())),
+				WEIGHTS_HASH);
+		Assert.assertEquals(lazySnapshot, snapshots.getSnapshot(
+				new InceptionV4Definition(new LazyInceptionV4WeightsLoader(weightsLoader.withBatchNormFolding())),
+				WEIGHTS_HASH));
+		Assert.assertNotEquals(lazySnapshot, snapshots.getSnapshot(
+				new InceptionV4Definition(new LazyInceptionV4WeightsLoader(darknetEpsilonLoader)), WEIGHTS_HASH));
+	}
+
+	@Test
+	public void testClassesOutsideTheAllowedPackagesAreNotRestored() {
+		InceptionV4Definition definition = new InceptionV4Definition(new TestInceptionV4WeightsLoader());
+		AtomicInteger buildCount = new AtomicInteger();
+		Supplier<PayloadComponent> build = () -> {
+			buildCount.incrementAndGet();
+			return new PayloadComponent(URI.create("file:/weights/inceptionv4.h5"));
+		};
+
+		// A snapshot written by snapshots which allow the class of the payload
+		new ComponentGraphSnapshots(temporaryFolder.getRoot(), "java.net.").restoreOrBuild(definition,
+				WEIGHTS_HASH, build);
+		ComponentGraphSnapshots snapshots = new ComponentGraphSnapshots(temporaryFolder.getRoot());
+		Assert.assertTrue(snapshots.getSnapshot(definition, WEIGHTS_HASH).exists());
+
+		// is rejected by snapshots which do not, and the graph is rebuilt
+		PayloadComponent rebuilt = snapshots.restoreOrBuild(definition, WEIGHTS_HASH, build);
+		Assert.assertEquals(2, buildCount.get());
+		Assert.assertEquals(URI.create("file:/weights/inceptionv4.h5"), rebuilt.payload);
+
+		// which are also never written to a snapshot
+		File otherDirectory = temporaryFolder.newFolder("other");
+		new ComponentGraphSnapshots(otherDirectory).restoreOrBuild(definition, WEIGHTS_HASH, build);
+		Assert.assertFalse(new ComponentGraphSnapshots(otherDirectory).getSnapshot(definition, WEIGHTS_HASH)
+				.exists());
+	}
+
+	private static class PayloadComponent extends ComponentMetadata {
+
+		private static final long serialVersionUID = 1L;
+
+		private Serializable payload;
+
+		PayloadComponent(Serializable payload) {
+			super("payload", new Neurons(1, false), new Neurons(1, false), "A component with a payload");
+			this.payload = payload;
+		}
+	}
+
+	private static class TestTensorSource implements TensorSource {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public FloatBuffer getTensor(WeightsRequest request) {
+			throw new UnsupportedOperationException("Tensors are not read when keying snapshots");
+		}
+	}
+
+	private static class TestInceptionV4WeightsLoader extends AbstractInceptionV4WeightsLoader {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected Object load(WeightsRequest request) {
+			throw new UnsupportedOperationException("Weights are not loaded when keying snapshots");
+		}
+	}
+}
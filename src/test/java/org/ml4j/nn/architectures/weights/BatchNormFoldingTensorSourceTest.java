@@ -0,0 +1,71 @@
+package org.ml4j.nn.architectures.weights;
+
+import java.nio.FloatBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.ml4j.nn.architectures.weights.WeightsRequest.Kind;
+
+/**
+ * Checks that a BatchNormFoldingTensorSource folds batch norm parameters into the preceding convolutional layer.
+ * 
+ * @author Michael Lavelle
+ */
+public class BatchNormFoldingTensorSourceTest {
+
+	private static TensorSource createTensorSource() {
+		Map<String, float[]> tensors = new HashMap<>();
+		// Two output channels, one input channel, 1x2 filters
+		tensors.put("conv2d_1_kernel0", new float[] { 1f, 2f, 3f, 4f });
+		tensors.put("batch_normalization_1_gamma0", new float[] { 2f, 0.5f });
+		tensors.put("batch_normalization_1_beta0", new float[] { 1f, -1f });
+		tensors.put("batch_normalization_1_moving_mean0", new float[] { 3f, 4f });
+		tensors.put("batch_normalization_1_moving_variance0", new float[] { 4f, 16f });
+		return (TensorSource) request -> FloatBuffer.wrap(tensors.get(request.getName()));
+	}
+
+	@Test
+	public void testFoldedTensorsWithScaledBatchNorm() {
+		TensorSource tensorSource = new BatchNormFoldingTensorSource(createTensorSource(), true, 0f);
+
+		// Scales are gamma / sqrt(variance) = { 1, 0.125 }
+		float[] weights = toArray(tensorSource.getTensor(WeightsRequest.convolutionalWeights(
+				BatchNormFoldingTensorSource.getFoldedWeightsName("conv2d_1"), 2, 1, 1, 2)));
+		Assert.assertArrayEquals(new float[] { 1f, 2f, 0.375f, 0.5f }, weights, 1e-6f);
+
+		float[] biases = toArray(tensorSource.getTensor(WeightsRequest.vector(Kind.CONVOLUTIONAL_BIASES,
+				BatchNormFoldingTensorSource.getFoldedBiasesName("conv2d_1"), 2)));
+		Assert.assertArrayEquals(new float[] { -2f, -1.5f }, biases, 1e-6f);
+	}
+
+	@Test
+	public void testFoldedTensorsWithUnscaledBatchNorm() {
+		TensorSource tensorSource = new BatchNormFoldingTensorSource(createTensorSource(), false, 0f);
+
+		// Scales are 1 / sqrt(variance) = { 0.5, 0.25 }
+		float[] weights = toArray(tensorSource.getTensor(WeightsRequest.convolutionalWeights(
+				BatchNormFoldingTensorSource.getFoldedWeightsName("conv2d_1"), 2, 1, 1, 2)));
+		Assert.assertArrayEquals(new float[] { 0.5f, 1f, 0.75f, 1f }, weights, 1e-6f);
+
+		float[] biases = toArray(tensorSource.getTensor(WeightsRequest.vector(Kind.CONVOLUTIONAL_BIASES,
+				BatchNormFoldingTensorSource.getFoldedBiasesName("conv2d_1"), 2)));
+		Assert.assertArrayEquals(new float[] { -0.5f, -2f }, biases, 1e-6f);
+	}
+
+	@Test
+	public void testOtherRequestsArePassedThrough() {
+		TensorSource tensorSource = new BatchNormFoldingTensorSource(createTensorSource(), true, 0f);
+
+		float[] weights = toArray(tensorSource.getTensor(WeightsRequest.convolutionalWeights(
+				"conv2d_1_kernel0", 2, 1, 1, 2)));
+		Assert.assertArrayEquals(new float[] { 1f, 2f, 3f, 4f }, weights, 0f);
+	}
+
+	private static float[] toArray(FloatBuffer buffer) {
+		float[] array = new float[buffer.remaining()];
+		buffer.duplicate().get(array);
+		return array;
+	}
+}
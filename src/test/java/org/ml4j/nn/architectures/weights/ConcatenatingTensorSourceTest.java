@@ -0,0 +1,71 @@
+package org.ml4j.nn.architectures.weights;
+
+import java.nio.FloatBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.ml4j.nn.architectures.weights.WeightsRequest.Kind;
+
+/**
+ * Checks that a ConcatenatingTensorSource concatenates the tensors of sibling layers along their leading dimension.
+ * 
+ * @author Michael Lavelle
+ */
+public class ConcatenatingTensorSourceTest {
+
+	private static TensorSource createTensorSource() {
+		Map<String, float[]> tensors = new HashMap<>();
+		// One and two output channels, two input channels, 1x1 filters
+		tensors.put("conv2d_1_kernel0", new float[] { 1f, 2f });
+		tensors.put("conv2d_2_kernel0", new float[] { 3f, 4f, 5f, 6f });
+		tensors.put("batch_normalization_1_beta0", new float[] { 7f });
+		tensors.put("batch_normalization_2_beta0", new float[] { 8f, 9f });
+		return (TensorSource) request -> {
+			float[] tensor = tensors.get(request.getName());
+			Assert.assertEquals(request.getElementCount(), tensor.length);
+			return FloatBuffer.wrap(tensor);
+		};
+	}
+
+	@Test
+	public void testConcatenatedTensors() {
+		TensorSource tensorSource = new ConcatenatingTensorSource(createTensorSource());
+
+		float[] weights = toArray(tensorSource.getTensor(WeightsRequest.convolutionalWeights(
+				ConcatenatingTensorSource.getConcatenatedName(new String[] { "conv2d_1_kernel0", "conv2d_2_kernel0" },
+						new int[] { 1, 2 }), 1, 1, 2, 3)));
+		Assert.assertArrayEquals(new float[] { 1f, 2f, 3f, 4f, 5f, 6f }, weights, 0f);
+
+		float[] beta = toArray(tensorSource.getTensor(WeightsRequest.vector(Kind.BATCH_NORM_BETA,
+				ConcatenatingTensorSource.getConcatenatedName(
+						new String[] { "batch_normalization_1_beta0", "batch_normalization_2_beta0" },
+						new int[] { 1, 2 }), 3)));
+		Assert.assertArrayEquals(new float[] { 7f, 8f, 9f }, beta, 0f);
+	}
+
+	@Test
+	public void testOtherRequestsArePassedThrough() {
+		TensorSource tensorSource = new ConcatenatingTensorSource(createTensorSource());
+
+		float[] weights = toArray(tensorSource.getTensor(WeightsRequest.convolutionalWeights("conv2d_2_kernel0",
+				1, 1, 2, 2)));
+		Assert.assertArrayEquals(new float[] { 3f, 4f, 5f, 6f }, weights, 0f);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testMismatchedLeadingDimensionsAreRejected() {
+		TensorSource tensorSource = new ConcatenatingTensorSource(createTensorSource());
+
+		tensorSource.getTensor(WeightsRequest.vector(Kind.BATCH_NORM_BETA, ConcatenatingTensorSource
+				.getConcatenatedName(new String[] { "batch_normalization_1_beta0", "batch_normalization_2_beta0" },
+						new int[] { 1, 2 }), 4));
+	}
+
+	private static float[] toArray(FloatBuffer buffer) {
+		float[] array = new float[buffer.remaining()];
+		buffer.duplicate().get(array);
+		return array;
+	}
+}
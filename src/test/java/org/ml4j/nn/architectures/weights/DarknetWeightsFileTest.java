@@ -0,0 +1,109 @@
+package org.ml4j.nn.architectures.weights;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.ml4j.nn.architectures.weights.DarknetWeightsFile.ConvolutionalLayer;
+import org.ml4j.nn.architectures.weights.WeightsRequest.Kind;
+
+/**
+ * Reads a small hand-written Darknet weights file, checking that the Darknet tensor ordering is mapped onto the
+ * Keras-style tensor names.
+ * 
+ * @author Michael Lavelle
+ */
+public class DarknetWeightsFileTest {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void testTensorsAreMappedToKerasNames() throws IOException {
+
+		// A batch normalised 1x1 conv from 2 to 2 channels, followed by a 1x1 conv with biases from 2 to 1 channel.
+		float[] contents = new float[] {
+				// batch_normalization_1 beta, gamma, mean, variance
+				1, 2, 3, 4, 5, 6, 7, 8,
+				// conv2d_1 kernel [out][in]
+				9, 10, 11, 12,
+				// conv2d_2 bias
+				13,
+				// conv2d_2 kernel
+				14, 15 };
+
+		File file = temporaryFolder.newFile("test.weights");
+		write(file, contents);
+
+		DarknetWeightsFile weightsFile = new DarknetWeightsFile(file,
+				Arrays.asList(new ConvolutionalLayer("conv2d_1", "batch_normalization_1", 1, 1, 2, 2),
+						new ConvolutionalLayer("conv2d_2", null, 1, 1, 2, 1)));
+
+		assertTensorEquals(new float[] { 1, 2 }, weightsFile
+				.getTensor(WeightsRequest.vector(Kind.BATCH_NORM_BETA, "batch_normalization_1_beta0", 2)));
+		assertTensorEquals(new float[] { 3, 4 }, weightsFile
+				.getTensor(WeightsRequest.vector(Kind.BATCH_NORM_GAMMA, "batch_normalization_1_gamma0", 2)));
+		assertTensorEquals(new float[] { 7, 8 }, weightsFile.getTensor(
+				WeightsRequest.vector(Kind.BATCH_NORM_VARIANCE, "batch_normalization_1_moving_variance0", 2)));
+		assertTensorEquals(new float[] { 9, 10, 11, 12 },
+				weightsFile.getTensor(WeightsRequest.convolutionalWeights("conv2d_1_kernel0", 1, 1, 2, 2)));
+		assertTensorEquals(new float[] { 13 },
+				weightsFile.getTensor(WeightsRequest.vector(Kind.CONVOLUTIONAL_BIASES, "conv2d_2_bias0", 1)));
+		assertTensorEquals(new float[] { 14, 15 },
+				weightsFile.getTensor(WeightsRequest.convolutionalWeights("conv2d_2_kernel0", 1, 1, 2, 1)));
+	}
+
+	@Test
+	public void testTensorsAreReadWhenRequested() throws IOException {
+		File file = temporaryFolder.newFile("test.weights");
+		write(file, new float[] { 1, 2 });
+		DarknetWeightsFile weightsFile = new DarknetWeightsFile(file,
+				Arrays.asList(new ConvolutionalLayer("conv2d_1", null, 1, 1, 1, 1)));
+		WeightsRequest kernelRequest = WeightsRequest.convolutionalWeights("conv2d_1_kernel0", 1, 1, 1, 1);
+
+		assertTensorEquals(new float[] { 2 }, weightsFile.getTensor(kernelRequest));
+
+		// No tensor is held once served, so each request reads the file
+		write(file, new float[] { 3, 4 });
+		assertTensorEquals(new float[] { 4 }, weightsFile.getTensor(kernelRequest));
+		assertTensorEquals(new float[] { 3 },
+				weightsFile.getTensor(WeightsRequest.vector(Kind.CONVOLUTIONAL_BIASES, "conv2d_1_bias0", 1)));
+	}
+
+	@Test(expected = UncheckedIOException.class)
+	public void testLayerDescriptionsMustMatchTheFile() throws IOException {
+		File file = temporaryFolder.newFile("test.weights");
+		write(file, new float[] { 1, 2, 3 });
+		DarknetWeightsFile weightsFile = new DarknetWeightsFile(file,
+				Arrays.asList(new ConvolutionalLayer("conv2d_1", null, 1, 1, 1, 1)));
+
+		weightsFile.getTensor(WeightsRequest.convolutionalWeights("conv2d_1_kernel0", 1, 1, 1, 1));
+	}
+
+	private static void write(File file, float[] contents) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(4 * Integer.BYTES + contents.length * Float.BYTES)
+				.order(ByteOrder.LITTLE_ENDIAN);
+		buffer.putInt(0).putInt(1).putInt(0).putInt(1000);
+		buffer.asFloatBuffer().put(contents);
+		try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+			out.write(buffer.array());
+		}
+	}
+
+	private static void assertTensorEquals(float[] expected, FloatBuffer actual) {
+		Assert.assertEquals(expected.length, actual.remaining());
+		for (int i = 0; i < expected.length; i++) {
+			Assert.assertEquals(expected[i], actual.get(i), 0f);
+		}
+	}
+}
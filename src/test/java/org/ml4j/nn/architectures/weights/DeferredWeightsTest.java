@@ -0,0 +1,78 @@
+package org.ml4j.nn.architectures.weights;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks that deferred weights handles only load their weights on first use.
+ * 
+ * @author Michael Lavelle
+ */
+public class DeferredWeightsTest {
+
+	private static final AtomicInteger LOAD_COUNT = new AtomicInteger();
+
+	public interface TestWeights extends Serializable {
+		float getValue();
+	}
+
+	public static class TestWeightsImpl implements TestWeights {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public float getValue() {
+			return 3f;
+		}
+	}
+
+	@Test
+	public void testWeightsAreLoadedOnceOnFirstUse() {
+		AtomicInteger loadCount = new AtomicInteger();
+		TestWeights weights = DeferredWeights.defer(TestWeights.class, "conv2d_1_kernel0", () -> {
+			loadCount.incrementAndGet();
+			return new TestWeightsImpl();
+		});
+
+		Assert.assertTrue(DeferredWeights.isDeferred(weights));
+		Assert.assertFalse(DeferredWeights.isLoaded(weights));
+		Assert.assertTrue(weights.toString().contains("conv2d_1_kernel0"));
+		Assert.assertEquals(0, loadCount.get());
+
+		Assert.assertEquals(3f, weights.getValue(), 0f);
+		Assert.assertEquals(3f, weights.getValue(), 0f);
+
+		Assert.assertEquals(1, loadCount.get());
+		Assert.assertTrue(DeferredWeights.isLoaded(weights));
+	}
+
+	@Test
+	public void testDeferredWeightsCanBeSerializedBeforeLoading() throws IOException, ClassNotFoundException {
+		LOAD_COUNT.set(0);
+		TestWeights weights = DeferredWeights.defer(TestWeights.class, "conv2d_1_kernel0", () -> {
+			LOAD_COUNT.incrementAndGet();
+			return new TestWeightsImpl();
+		});
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeObject(weights);
+		}
+		TestWeights deserialized;
+		try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+			deserialized = (TestWeights) in.readObject();
+		}
+
+		Assert.assertEquals(0, LOAD_COUNT.get());
+		Assert.assertEquals(3f, deserialized.getValue(), 0f);
+		Assert.assertEquals(1, LOAD_COUNT.get());
+	}
+}
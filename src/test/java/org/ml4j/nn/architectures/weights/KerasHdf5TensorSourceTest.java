@@ -0,0 +1,120 @@
+package org.ml4j.nn.architectures.weights;
+
+import java.io.File;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.nio.FloatBuffer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Reads small Keras-style HDF5 files written by generate_keras_weights.py, alongside them in the test resources.
+ * 
+ * keras_weights.h5 uses h5py's default file format, and contains a contiguous kernel, a deflated chunked bias
+ * and a shuffled and deflated chunked dense kernel whose edge chunks are partial.  keras_weights_v108.h5 uses
+ * the version 2 superblock, version 2 object headers and link messages of h5py's 'v108' file format, and adds
+ * compact, big-endian, double precision and fletcher32 checksummed datasets.
+ * 
+ * @author Michael Lavelle
+ */
+public class KerasHdf5TensorSourceTest {
+
+	@Test
+	public void testDatasetsAreServedInCanonicalLayout() throws URISyntaxException {
+		KerasHdf5TensorSource source = KerasHdf5TensorSource.open(
+				new File(KerasHdf5TensorSourceTest.class.getResource("keras_weights.h5").toURI()));
+
+		// The Keras kernel has shape (height=2, width=3, in=2, out=4), element value = h * 1000 + w * 100 + i * 10 + o
+		FloatBuffer kernel = source.getTensor(WeightsRequest.convolutionalWeights("conv2d_1_kernel0", 3, 2, 2, 4));
+		int index = 0;
+		for (int o = 0; o < 4; o++) {
+			for (int i = 0; i < 2; i++) {
+				for (int h = 0; h < 2; h++) {
+					for (int w = 0; w < 3; w++) {
+						Assert.assertEquals(h * 1000 + w * 100 + i * 10 + o, kernel.get(index++), 0f);
+					}
+				}
+			}
+		}
+
+		FloatBuffer bias = source.getTensor(
+				WeightsRequest.vector(WeightsRequest.Kind.CONVOLUTIONAL_BIASES, "conv2d_1_bias0", 5));
+		for (int i = 0; i < 5; i++) {
+			Assert.assertEquals(i + 1, bias.get(i), 0f);
+		}
+
+		// The Keras dense kernel has shape (in=3, out=2), element value = i * 10 + o
+		FloatBuffer dense = source.getTensor(WeightsRequest.denseWeights("dense_1_kernel0", 2, 3));
+		float[] expected = new float[] { 0, 10, 20, 1, 11, 21 };
+		for (int i = 0; i < expected.length; i++) {
+			Assert.assertEquals(expected[i], dense.get(i), 0f);
+		}
+	}
+
+	@Test
+	public void testDatasetsAreServedFromVersion2Superblock() throws URISyntaxException {
+		KerasHdf5TensorSource source = KerasHdf5TensorSource.open(
+				new File(KerasHdf5TensorSourceTest.class.getResource("keras_weights_v108.h5").toURI()));
+
+		// A contiguous kernel in an object header which stores its times
+		FloatBuffer kernel = source.getTensor(WeightsRequest.convolutionalWeights("conv2d_1_kernel0", 3, 2, 2, 4));
+		Assert.assertEquals(1 * 1000 + 2 * 100 + 1 * 10 + 3, kernel.get(((3 * 2 + 1) * 2 + 1) * 3 + 2), 0f);
+
+		// A compact bias
+		assertVector(new float[] { 1, 2, 3, 4 }, source.getTensor(
+				WeightsRequest.vector(WeightsRequest.Kind.CONVOLUTIONAL_BIASES, "conv2d_1_bias0", 4)));
+
+		// Compact, big-endian, double precision and fletcher32 checksummed batch norm vectors
+		assertVector(new float[] { 0.5f, 1.5f, 2.5f }, source.getTensor(
+				WeightsRequest.vector(WeightsRequest.Kind.BATCH_NORM_GAMMA, "batch_normalization_1_gamma0", 3)));
+		assertVector(new float[] { -1, -2, -3 }, source.getTensor(
+				WeightsRequest.vector(WeightsRequest.Kind.BATCH_NORM_BETA, "batch_normalization_1_beta0", 3)));
+		assertVector(new float[] { 0.25f, 0.5f, 0.75f }, source.getTensor(
+				WeightsRequest.vector(WeightsRequest.Kind.BATCH_NORM_MEAN, "batch_normalization_1_moving_mean0", 3)));
+		assertVector(new float[] { 4, 5, 6 }, source.getTensor(WeightsRequest.vector(
+				WeightsRequest.Kind.BATCH_NORM_VARIANCE, "batch_normalization_1_moving_variance0", 3)));
+
+		// A shuffled, deflated and checksummed dense kernel, whose filter pipeline and layout are in a continuation
+		assertVector(new float[] { 0, 10, 20, 1, 11, 21 },
+				source.getTensor(WeightsRequest.denseWeights("dense_1_kernel0", 2, 3)));
+	}
+
+	@Test
+	public void testCorruptedChunksAreDetected() throws URISyntaxException {
+		KerasHdf5TensorSource source = KerasHdf5TensorSource.open(
+				new File(KerasHdf5TensorSourceTest.class.getResource("keras_weights_v108.h5").toURI()));
+		try {
+			source.getTensor(WeightsRequest.denseWeights("corrupted_1_kernel0", 2, 3));
+			Assert.fail("Expected the corrupted chunk to fail its checksum");
+		} catch (UncheckedIOException e) {
+			Throwable cause = e;
+			while (cause.getCause() != null && !cause.getMessage().contains("Fletcher32")) {
+				cause = cause.getCause();
+			}
+			Assert.assertTrue(cause.getMessage().contains("Fletcher32"));
+		}
+	}
+
+	@Test
+	public void testFletcher32() {
+		// The checksums of HDF5's Fletcher32 implementation, for an even and an odd number of bytes
+		Assert.assertEquals(0x05080406, Hdf5File.fletcher32(new byte[] { 1, 2, 3, 4 }, 4));
+		Assert.assertEquals(0x0E0E0906, Hdf5File.fletcher32(new byte[] { 1, 2, 3, 4, 5 }, 5));
+	}
+
+	@Test
+	public void testTensorNamesFollowKerasConventions() {
+		Assert.assertEquals("conv2d_12_kernel0",
+				KerasHdf5TensorSource.getTensorName("model_weights/conv2d_12/conv2d_12/kernel:0"));
+		Assert.assertEquals("batch_normalization_12_moving_mean0",
+				KerasHdf5TensorSource.getTensorName("batch_normalization_12/batch_normalization_12/moving_mean:0"));
+	}
+
+	private static void assertVector(float[] expected, FloatBuffer actual) {
+		Assert.assertEquals(expected.length, actual.remaining());
+		for (int i = 0; i < expected.length; i++) {
+			Assert.assertEquals(expected[i], actual.get(i), 0f);
+		}
+	}
+}
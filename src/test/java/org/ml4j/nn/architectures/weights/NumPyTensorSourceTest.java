@@ -0,0 +1,121 @@
+package org.ml4j.nn.architectures.weights;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Reads Keras-layout tensors saved as .npy files and .npz archives, checking they are served in the canonical
+ * layouts.
+ * 
+ * @author Michael Lavelle
+ */
+public class NumPyTensorSourceTest {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void testKerasKernelIsTransposedToCanonicalLayout() throws IOException {
+		File directory = temporaryFolder.newFolder("weights");
+		// Keras kernel of shape (height=2, width=3, in=2, out=4), element value = h * 1000 + w * 100 + i * 10 + o
+		float[] hwio = new float[2 * 3 * 2 * 4];
+		int index = 0;
+		for (int h = 0; h < 2; h++) {
+			for (int w = 0; w < 3; w++) {
+				for (int i = 0; i < 2; i++) {
+					for (int o = 0; o < 4; o++) {
+						hwio[index++] = h * 1000 + w * 100 + i * 10 + o;
+					}
+				}
+			}
+		}
+		writeNpy(new File(directory, "conv2d_1_kernel0.npy"), "(2, 3, 2, 4)", false, hwio);
+		writeNpy(new File(directory, "conv2d_1_bias0.npy"), "(4,)", false, new float[] { 1f, 2f, 3f, 4f });
+
+		NumPyTensorSource source = NumPyTensorSource.fromDirectory(directory);
+
+		FloatBuffer kernel = source.getTensor(WeightsRequest.convolutionalWeights("conv2d_1_kernel0", 3, 2, 2, 4));
+		index = 0;
+		for (int o = 0; o < 4; o++) {
+			for (int i = 0; i < 2; i++) {
+				for (int h = 0; h < 2; h++) {
+					for (int w = 0; w < 3; w++) {
+						Assert.assertEquals(h * 1000 + w * 100 + i * 10 + o, kernel.get(index++), 0f);
+					}
+				}
+			}
+		}
+		FloatBuffer bias = source.getTensor(
+				WeightsRequest.vector(WeightsRequest.Kind.CONVOLUTIONAL_BIASES, "conv2d_1_bias0", 4));
+		Assert.assertEquals(3f, bias.get(2), 0f);
+	}
+
+	@Test
+	public void testFortranOrderDenseWeightsFromArchive() throws IOException {
+		// Keras dense kernel of shape (in=3, out=2) with value = i * 10 + o, stored column-major
+		float[] fortran = new float[] { 0, 10, 20, 1, 11, 21 };
+		File archive = temporaryFolder.newFile("weights.npz");
+		try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(archive))) {
+			storeEntry(zip, "dense_1_kernel0.npy", npy("(3, 2)", true, fortran));
+		}
+
+		NumPyTensorSource source = NumPyTensorSource.fromArchive(archive);
+
+		FloatBuffer weights = source.getTensor(WeightsRequest.denseWeights("dense_1_kernel0", 2, 3));
+		float[] expected = new float[] { 0, 10, 20, 1, 11, 21 };
+		for (int i = 0; i < expected.length; i++) {
+			Assert.assertEquals(expected[i], weights.get(i), 0f);
+		}
+	}
+
+	private static void storeEntry(ZipOutputStream zip, String name, byte[] data) throws IOException {
+		ZipEntry entry = new ZipEntry(name);
+		entry.setMethod(ZipEntry.STORED);
+		entry.setSize(data.length);
+		CRC32 crc = new CRC32();
+		crc.update(data);
+		entry.setCrc(crc.getValue());
+		zip.putNextEntry(entry);
+		zip.write(data);
+		zip.closeEntry();
+	}
+
+	private static void writeNpy(File file, String shape, boolean fortranOrder, float[] data) throws IOException {
+		try (OutputStream out = new FileOutputStream(file)) {
+			out.write(npy(shape, fortranOrder, data));
+		}
+	}
+
+	private static byte[] npy(String shape, boolean fortranOrder, float[] data) throws IOException {
+		StringBuilder header = new StringBuilder("{'descr': '<f4', 'fortran_order': "
+				+ (fortranOrder ? "True" : "False") + ", 'shape': " + shape + ", }");
+		while ((10 + header.length() + 1) % 64 != 0) {
+			header.append(' ');
+		}
+		header.append('\n');
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write(new byte[] { (byte) 0x93, 'N', 'U', 'M', 'P', 'Y', 1, 0 });
+		out.write(header.length() & 0xFF);
+		out.write(header.length() >> 8);
+		out.write(header.toString().getBytes(StandardCharsets.ISO_8859_1));
+		ByteBuffer payload = ByteBuffer.allocate(data.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+		payload.asFloatBuffer().put(data);
+		out.write(payload.array());
+		return out.toByteArray();
+	}
+}
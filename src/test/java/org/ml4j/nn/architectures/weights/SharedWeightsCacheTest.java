@@ -0,0 +1,58 @@
+package org.ml4j.nn.architectures.weights;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.ml4j.nn.architectures.weights.WeightsRequest.Kind;
+
+/**
+ * Checks the reference counting and LRU eviction of the SharedWeightsCache.
+ * 
+ * @author Michael Lavelle
+ */
+public class SharedWeightsCacheTest {
+
+	private static final SharedWeightsCache.Key MEAN = new SharedWeightsCache.Key("weights.bundle",
+			WeightsRequest.vector(Kind.BATCH_NORM_MEAN, "batch_normalization_1_moving_mean0", 32));
+
+	private static final SharedWeightsCache.Key VARIANCE = new SharedWeightsCache.Key("weights.bundle",
+			WeightsRequest.vector(Kind.BATCH_NORM_VARIANCE, "batch_normalization_1_moving_variance0", 32));
+
+	@Test
+	public void testReferencedWeightsAreShared() {
+		SharedWeightsCache cache = new SharedWeightsCache(0);
+		AtomicInteger loadCount = new AtomicInteger();
+
+		Object first = cache.acquire(MEAN, () -> new float[loadCount.incrementAndGet()]);
+		Object second = cache.acquire(MEAN, () -> new float[loadCount.incrementAndGet()]);
+
+		Assert.assertSame(first, second);
+		Assert.assertEquals(1, loadCount.get());
+		Assert.assertEquals(32 * Float.BYTES, cache.getCachedBytes());
+
+		cache.release(MEAN);
+		Assert.assertEquals(1, cache.size());
+		cache.release(MEAN);
+		Assert.assertEquals(0, cache.size());
+		Assert.assertEquals(0, cache.getCachedBytes());
+	}
+
+	@Test
+	public void testLeastRecentlyUsedUnreferencedWeightsAreEvictedFirst() {
+		SharedWeightsCache cache = new SharedWeightsCache(32 * Float.BYTES);
+
+		cache.acquire(MEAN, Object::new);
+		cache.acquire(VARIANCE, Object::new);
+		cache.release(MEAN);
+		cache.release(VARIANCE);
+
+		Assert.assertEquals(1, cache.size());
+		Assert.assertEquals(32 * Float.BYTES, cache.getUnreferencedBytes());
+
+		AtomicInteger loadCount = new AtomicInteger();
+		cache.acquire(VARIANCE, () -> new float[loadCount.incrementAndGet()]);
+		Assert.assertEquals(0, loadCount.get());
+		Assert.assertEquals(0, cache.getUnreferencedBytes());
+	}
+}
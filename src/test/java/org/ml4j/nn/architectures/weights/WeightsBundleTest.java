@@ -0,0 +1,138 @@
+package org.ml4j.nn.architectures.weights;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.nio.file.Files;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Round-trips tensors through a WeightsBundleWriter and a memory-mapped WeightsBundle.
+ * 
+ * @author Michael Lavelle
+ */
+public class WeightsBundleTest {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void testWrittenTensorsAreServedFromMapping() throws IOException {
+
+		float[] kernel = new float[3 * 3 * 2 * 4];
+		for (int i = 0; i < kernel.length; i++) {
+			kernel[i] = i * 0.5f;
+		}
+		float[] mean = new float[] { 1f, 2f, 3f, 4f };
+
+		File file = temporaryFolder.newFile("weights.bundle");
+		new WeightsBundleWriter()
+				.withTensor("conv2d_1_kernel0", new int[] { 4, 2, 3, 3 }, kernel)
+				.withTensor("batch_normalization_1_moving_mean0", new int[] { 4 }, mean)
+				.write(file);
+
+		WeightsBundle bundle = WeightsBundle.open(file);
+
+		Assert.assertTrue(bundle.containsTensor("conv2d_1_kernel0"));
+		Assert.assertArrayEquals(new int[] { 4, 2, 3, 3 }, bundle.getShape("conv2d_1_kernel0"));
+
+		assertTensorEquals(kernel,
+				bundle.getTensor(WeightsRequest.convolutionalWeights("conv2d_1_kernel0", 3, 3, 2, 4)));
+		assertTensorEquals(mean, bundle.getTensor(WeightsRequest.vector(WeightsRequest.Kind.BATCH_NORM_MEAN,
+				"batch_normalization_1_moving_mean0", 4)));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testRequestWithMismatchedShapeIsRejected() throws IOException {
+		File file = temporaryFolder.newFile("weights.bundle");
+		new WeightsBundleWriter().withTensor("dense_1_bias0", new int[] { 3 }, new float[3]).write(file);
+
+		WeightsBundle.open(file).getTensor(WeightsRequest.denseBiases("dense_1_bias0", 4, 1));
+	}
+
+	@Test
+	public void testRequestWithTransposedShapeIsRejected() throws IOException {
+		File file = temporaryFolder.newFile("weights.bundle");
+		new WeightsBundleWriter().withTensor("conv2d_1_kernel0", new int[] { 4, 2, 3, 3 }, new float[3 * 3 * 2 * 4])
+				.write(file);
+
+		// The same number of elements, with the input and output depths swapped
+		try {
+			WeightsBundle.open(file).getTensor(WeightsRequest.convolutionalWeights("conv2d_1_kernel0", 3, 3, 4, 2));
+			Assert.fail("Expected an IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			Assert.assertTrue(e.getMessage(), e.getMessage().contains("[4, 2, 3, 3]"));
+			Assert.assertTrue(e.getMessage(), e.getMessage().contains("[2, 4, 3, 3]"));
+		}
+	}
+
+	@Test
+	public void testReducedPrecisionTensorsAreWidenedOnRead() throws IOException {
+		float[] kernel = new float[] { 0.5f, -1f, 0.25f, 2f, -0.125f, 8f };
+		float[] beta = new float[] { 1.5f, -3f };
+
+		File file = temporaryFolder.newFile("weights.bundle");
+		new WeightsBundleWriter()
+				.withTensor("dense_1_kernel0", new int[] { 2, 3 }, FloatBuffer.wrap(kernel), WeightsPrecision.INT8)
+				.withPrecision(WeightsPrecision.FLOAT16)
+				.withTensor("batch_normalization_1_beta0", new int[] { 2 }, beta)
+				.write(file);
+
+		WeightsBundle bundle = WeightsBundle.open(file);
+
+		Assert.assertEquals(WeightsPrecision.INT8, bundle.getPrecision("dense_1_kernel0"));
+		Assert.assertEquals(WeightsPrecision.FLOAT16, bundle.getPrecision("batch_normalization_1_beta0"));
+
+		// Each row is quantized with its own scale, so its largest magnitude is exact
+		FloatBuffer dense = bundle.getTensor(WeightsRequest.denseWeights("dense_1_kernel0", 2, 3));
+		Assert.assertEquals(-1f, dense.get(1), 0f);
+		Assert.assertEquals(8f, dense.get(5), 0f);
+		for (int i = 0; i < kernel.length; i++) {
+			Assert.assertEquals(kernel[i], dense.get(i), 8f / 127);
+		}
+		assertTensorEquals(beta, bundle.getTensor(WeightsRequest.vector(WeightsRequest.Kind.BATCH_NORM_BETA,
+				"batch_normalization_1_beta0", 2)));
+	}
+
+	@Test
+	public void testCorruptTensorFailsVerification() throws IOException, InterruptedException {
+		File file = temporaryFolder.newFile("weights.bundle");
+		new WeightsBundleWriter()
+				.withTensor("conv2d_1_bias0", new int[] { 4 }, new float[] { 1f, 2f, 3f, 4f })
+				.withTensor("conv2d_2_bias0", new int[] { 4 }, new float[] { 5f, 6f, 7f, 8f })
+				.write(file);
+
+		// Flip a byte in the payload of the second tensor
+		byte[] contents = Files.readAllBytes(file.toPath());
+		contents[contents.length - 1] ^= 0x01;
+		Files.write(file.toPath(), contents);
+
+		WeightsBundle bundle = WeightsBundle.open(file);
+		Assert.assertEquals(1f, bundle.getTensor(WeightsRequest.vector(WeightsRequest.Kind.CONVOLUTIONAL_BIASES,
+				"conv2d_1_bias0", 4)).get(0), 0f);
+		try {
+			bundle.getTensor(WeightsRequest.vector(WeightsRequest.Kind.CONVOLUTIONAL_BIASES, "conv2d_2_bias0", 4));
+			Assert.fail("Expected the corrupt tensor to be rejected");
+		} catch (WeightsIntegrityException e) {
+			// Expected
+		}
+		try {
+			bundle.verifyAll().get();
+			Assert.fail("Expected background verification to fail");
+		} catch (ExecutionException e) {
+			Assert.assertTrue(e.getCause() instanceof WeightsIntegrityException);
+		}
+	}
+
+	private static void assertTensorEquals(float[] expected, FloatBuffer actual) {
+		Assert.assertEquals(expected.length, actual.remaining());
+		for (int i = 0; i < expected.length; i++) {
+			Assert.assertEquals(expected[i], actual.get(i), 0f);
+		}
+	}
+}
@@ -0,0 +1,80 @@
+package org.ml4j.nn.architectures.weights;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Compiles tensors into a cached WeightsBundle and checks that later compilations reuse it.
+ * 
+ * @author Michael Lavelle
+ */
+public class WeightsCompilerTest {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void testCompiledBundleIsReusedUntilSourceChanges() throws IOException {
+		File sourceFile = temporaryFolder.newFile("weights.h5");
+		AtomicInteger reads = new AtomicInteger();
+		TensorSource source = request -> {
+			reads.incrementAndGet();
+			float[] data = new float[request.getElementCount()];
+			Arrays.fill(data, 2f);
+			return FloatBuffer.wrap(data);
+		};
+		List<WeightsRequest> manifest = Arrays.asList(
+				WeightsRequest.convolutionalWeights("conv2d_1_kernel0", 3, 3, 2, 4),
+				WeightsRequest.vector(WeightsRequest.Kind.BATCH_NORM_MEAN, "batch_normalization_1_moving_mean0", 4));
+
+		WeightsCompiler compiler = new WeightsCompiler(temporaryFolder.newFolder("cache"));
+		WeightsBundle compiled = compiler.compile(sourceFile, source, "definition", () -> manifest);
+		Assert.assertEquals(2, reads.get());
+		Assert.assertEquals(2f, compiled.getTensor(manifest.get(0)).get(71), 0f);
+
+		compiler.compile(sourceFile, source, "definition", () -> {
+			throw new AssertionError("The manifest should not be needed once compiled");
+		});
+		Assert.assertEquals(2, reads.get());
+
+		Assert.assertNotEquals(compiler.getCompiledBundle(sourceFile, "definition"),
+				compiler.getCompiledBundle(sourceFile, "otherDefinition"));
+
+		// A source file which is only touched keeps its compiled bundle
+		Assert.assertTrue(sourceFile.setLastModified(sourceFile.lastModified() - 10000));
+		Assert.assertTrue(compiler.getCompiledBundle(sourceFile, "definition").exists());
+	}
+
+	@Test
+	public void testSourceRewrittenWithTheSameLengthAndModificationTimeIsRecompiled() throws IOException {
+		File sourceFile = temporaryFolder.newFile("weights.h5");
+		Files.write(sourceFile.toPath(), new byte[] { 1, 2, 3, 4 });
+		long lastModified = sourceFile.lastModified();
+		File cacheDirectory = temporaryFolder.newFolder("cache");
+		List<WeightsRequest> manifest = Arrays.asList(
+				WeightsRequest.vector(WeightsRequest.Kind.BATCH_NORM_MEAN, "batch_normalization_1_moving_mean0", 4));
+		TensorSource source = request -> FloatBuffer.wrap(new float[request.getElementCount()]);
+
+		File compiledBundle = new WeightsCompiler(cacheDirectory).getCompiledBundle(sourceFile, "definition");
+		new WeightsCompiler(cacheDirectory).compile(sourceFile, source, "definition", () -> manifest);
+		Assert.assertTrue(compiledBundle.exists());
+
+		Files.write(sourceFile.toPath(), new byte[] { 4, 3, 2, 1 });
+		Assert.assertTrue(sourceFile.setLastModified(lastModified));
+
+		// The next startup digests the rewritten file, so does not reuse the bundle compiled from the original
+		WeightsCompiler compiler = new WeightsCompiler(cacheDirectory);
+		Assert.assertNotEquals(compiledBundle, compiler.getCompiledBundle(sourceFile, "definition"));
+		Assert.assertFalse(compiler.getCompiledBundle(sourceFile, "definition").exists());
+	}
+}
@@ -0,0 +1,144 @@
+package org.ml4j.nn.architectures.weights;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.ml4j.nn.architectures.weights.DeferredWeightsTest.TestWeights;
+import org.ml4j.nn.architectures.weights.DeferredWeightsTest.TestWeightsImpl;
+import org.ml4j.nn.architectures.weights.WeightsRequest.Kind;
+
+/**
+ * Checks the recording, parallel prefetching and fallback loading of the WeightsPrefetcher.
+ *
+ * @author Michael Lavelle
+ */
+public class WeightsPrefetcherTest {
+
+	private static final WeightsRequest KERNEL = WeightsRequest.convolutionalWeights("conv2d_1_kernel0", 3, 3, 3, 32);
+
+	private static final WeightsRequest MEAN = WeightsRequest.vector(Kind.BATCH_NORM_MEAN,
+			"batch_normalization_1_moving_mean0", 32);
+
+	@Test
+	public void testDryRunRecordsManifestWithoutLoading() {
+		AtomicInteger loadCount = new AtomicInteger();
+		WeightsPrefetcher prefetcher = new WeightsPrefetcher(request -> {
+			loadCount.incrementAndGet();
+			return new TestWeightsImpl();
+		});
+
+		TestWeights kernel = prefetcher.recordDeferred(KERNEL, TestWeights.class);
+		prefetcher.recordDeferred(MEAN, TestWeights.class);
+		prefetcher.recordDeferred(KERNEL, TestWeights.class);
+
+		Assert.assertEquals(Arrays.asList(KERNEL, MEAN), prefetcher.getManifest());
+		Assert.assertEquals(0, loadCount.get());
+		Assert.assertTrue(DeferredWeights.isDeferred(kernel));
+
+		// A handle used before the prefetch falls back to the loader
+		Assert.assertEquals(3f, kernel.getValue(), 0f);
+		Assert.assertEquals(1, loadCount.get());
+	}
+
+	@Test
+	public void testPrefetchLoadsEachTensorOnce() {
+		AtomicInteger loadCount = new AtomicInteger();
+		WeightsPrefetcher prefetcher = new WeightsPrefetcher(request -> {
+			loadCount.incrementAndGet();
+			return new TestWeightsImpl();
+		});
+		List<WeightsRequest> requests = createRequests(16);
+		prefetcher.recordAll(requests);
+
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			prefetcher.prefetch(pool);
+			Assert.assertEquals(16, loadCount.get());
+
+			for (WeightsRequest request : requests) {
+				Assert.assertSame(prefetcher.getPrefetched(request), prefetcher.load(request));
+			}
+			// Tensors which have already been prefetched are not loaded again
+			prefetcher.prefetch(pool);
+			Assert.assertEquals(16, loadCount.get());
+		} finally {
+			pool.shutdown();
+		}
+
+		prefetcher.clear();
+		Assert.assertNull(prefetcher.getPrefetched(requests.get(0)));
+		Assert.assertNotNull(prefetcher.load(requests.get(0)));
+		Assert.assertEquals(17, loadCount.get());
+		Assert.assertEquals(requests, prefetcher.getManifest());
+	}
+
+	@Test
+	public void testDeferredHandlesAreServedFromThePrefetch() {
+		AtomicInteger loadCount = new AtomicInteger();
+		WeightsPrefetcher prefetcher = new WeightsPrefetcher(request -> {
+			loadCount.incrementAndGet();
+			return new TestWeightsImpl();
+		});
+		TestWeights kernel = prefetcher.recordDeferred(KERNEL, TestWeights.class);
+
+		prefetcher.prefetch(ForkJoinPool.commonPool());
+
+		Assert.assertSame(prefetcher.getPrefetched(KERNEL), DeferredWeights.load(kernel));
+		Assert.assertEquals(1, loadCount.get());
+	}
+
+	@Test
+	public void testPrefetchPropagatesLoadFailures() {
+		WeightsPrefetcher prefetcher = new WeightsPrefetcher(request -> {
+			if (request.equals(MEAN)) {
+				throw new IllegalArgumentException("No tensor " + request.getName());
+			}
+			return new TestWeightsImpl();
+		});
+		prefetcher.recordAll(Arrays.asList(KERNEL, MEAN));
+
+		try {
+			prefetcher.prefetch(ForkJoinPool.commonPool());
+			Assert.fail("Expected the load failure to be rethrown");
+		} catch (IllegalArgumentException e) {
+			// The pool may rethrow a copy of the failure, with the original failure as its cause
+			Assert.assertTrue(e.getMessage().contains("No tensor batch_normalization_1_moving_mean0"));
+		}
+		Assert.assertNull(prefetcher.getPrefetched(MEAN));
+	}
+
+	@Test
+	public void testMissingWeightsAreReportedWithTheirRequest() {
+		WeightsPrefetcher prefetcher = new WeightsPrefetcher(request -> request.equals(MEAN) ? null
+				: new TestWeightsImpl());
+		prefetcher.recordAll(Arrays.asList(KERNEL, MEAN));
+
+		try {
+			prefetcher.prefetch(ForkJoinPool.commonPool());
+			Assert.fail("Expected the missing weights to be reported");
+		} catch (IllegalStateException e) {
+			Assert.assertTrue(e.getMessage(), e.getMessage().contains(MEAN.toString()));
+		}
+		Assert.assertNull(prefetcher.getPrefetched(MEAN));
+
+		// as are weights missing from a load which falls back to the delegate loader
+		try {
+			prefetcher.load(MEAN);
+			Assert.fail("Expected the missing weights to be reported");
+		} catch (IllegalStateException e) {
+			Assert.assertTrue(e.getMessage(), e.getMessage().contains(MEAN.toString()));
+		}
+	}
+
+	private static List<WeightsRequest> createRequests(int count) {
+		WeightsRequest[] requests = new WeightsRequest[count];
+		for (int i = 0; i < count; i++) {
+			requests[i] = WeightsRequest.convolutionalWeights("conv2d_" + (i + 1) + "_kernel0", 1, 1, 32, 32);
+		}
+		return Arrays.asList(requests);
+	}
+}
@@ -0,0 +1,45 @@
+package org.ml4j.nn.architectures.yolo.yolov2;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.ml4j.nn.architectures.weights.SharedWeightsCache;
+import org.ml4j.nn.architectures.weights.WeightsRequest;
+import org.ml4j.nn.axons.WeightsVector;
+import org.mockito.Mockito;
+
+/**
+ * Checks that CachingYOLOv2WeightsLoaders of the same weights share a single copy of each tensor.
+ *
+ * @author Michael Lavelle
+ */
+public class CachingYOLOv2WeightsLoaderTest {
+
+	@Test
+	public void testWeightsAreSharedUntilEveryLoaderIsClosed() {
+		SharedWeightsCache cache = new SharedWeightsCache(0);
+		AtomicInteger loadCount = new AtomicInteger();
+		AbstractYOLOv2WeightsLoader delegate = new AbstractYOLOv2WeightsLoader() {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected Object load(WeightsRequest request) {
+				loadCount.incrementAndGet();
+				return Mockito.mock(getWeightsType(request.getKind()));
+			}
+		};
+		CachingYOLOv2WeightsLoader first = new CachingYOLOv2WeightsLoader(delegate, "yolo.weights", cache);
+		CachingYOLOv2WeightsLoader second = new CachingYOLOv2WeightsLoader(delegate, "yolo.weights", cache);
+
+		WeightsVector gamma = first.getBatchNormLayerGamma("batch_normalization_1_gamma0", 32);
+		Assert.assertSame(gamma, second.getBatchNormLayerGamma("batch_normalization_1_gamma0", 32));
+		Assert.assertEquals(1, loadCount.get());
+
+		first.close();
+		Assert.assertEquals(1, cache.size());
+		second.close();
+		Assert.assertEquals(0, cache.size());
+	}
+}
@@ -0,0 +1,96 @@
+package org.ml4j.nn.architectures.yolo.yolov2;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.ml4j.nn.architectures.weights.BatchNormFoldingTensorSource;
+import org.ml4j.nn.architectures.weights.DarknetWeightsFile.ConvolutionalLayer;
+import org.ml4j.nn.architectures.weights.WeightsTensorFactory;
+import org.ml4j.nn.axons.BiasVector;
+import org.ml4j.nn.axons.FeaturesVector;
+import org.ml4j.nn.axons.WeightsMatrix;
+import org.ml4j.nn.axons.WeightsVector;
+import org.mockito.Mockito;
+
+/**
+ * Checks that batch norm folding of Darknet weights uses the batch norm epsilon of Darknet.
+ *
+ * @author Michael Lavelle
+ */
+public class DarknetYOLOv2WeightsLoaderTest {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void testBatchNormFoldingUsesTheDarknetEpsilon() throws IOException {
+
+		// A batch normalised 1x1 conv from 3 to 1 channel, whose variance is small enough for the epsilon to matter
+		float variance = 1e-4f;
+		File file = temporaryFolder.newFile("test.weights");
+		ByteBuffer buffer = ByteBuffer.allocate(4 * Integer.BYTES + 7 * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.putInt(0).putInt(1).putInt(0).putInt(1000);
+		// beta, gamma, mean, variance and kernel
+		buffer.putFloat(0).putFloat(1).putFloat(0).putFloat(variance).putFloat(1).putFloat(0).putFloat(0);
+		Files.write(file.toPath(), buffer.array());
+
+		CapturingWeightsTensorFactory weightsTensorFactory = new CapturingWeightsTensorFactory();
+		TensorSourceYOLOv2WeightsLoader loader = new DarknetYOLOv2WeightsLoader(file,
+				Arrays.asList(new ConvolutionalLayer("conv2d_1", "batch_normalization_1", 1, 1, 3, 1)),
+				weightsTensorFactory).withBatchNormFolding();
+
+		loader.getConvolutionalLayerWeights(BatchNormFoldingTensorSource.getFoldedWeightsName("conv2d_1"), 1, 1, 3, 1);
+
+		// Around 99.5, where the Keras default epsilon would give around 30.2
+		float expectedScale = (float) (1d / Math.sqrt(variance + BatchNormFoldingTensorSource.DARKNET_EPSILON));
+		Assert.assertEquals(expectedScale, weightsTensorFactory.data.get(0), 1e-3f);
+	}
+
+	private static class CapturingWeightsTensorFactory implements WeightsTensorFactory {
+
+		private static final long serialVersionUID = 1L;
+
+		private FloatBuffer data;
+
+		@Override
+		public WeightsMatrix createConvolutionalLayerWeights(FloatBuffer data, int width, int height,
+				int inputDepth, int outputDepth) {
+			this.data = data;
+			return Mockito.mock(WeightsMatrix.class);
+		}
+
+		@Override
+		public WeightsMatrix createDenseLayerWeights(FloatBuffer data, int rows, int columns) {
+			return Mockito.mock(WeightsMatrix.class);
+		}
+
+		@Override
+		public WeightsMatrix createBatchNormLayerWeights(FloatBuffer data, int outputDepth) {
+			return Mockito.mock(WeightsMatrix.class);
+		}
+
+		@Override
+		public WeightsVector createWeightsVector(FloatBuffer data, int length) {
+			return Mockito.mock(WeightsVector.class);
+		}
+
+		@Override
+		public BiasVector createBiasVector(FloatBuffer data, int length) {
+			return Mockito.mock(BiasVector.class);
+		}
+
+		@Override
+		public FeaturesVector createFeaturesVector(FloatBuffer data, int length) {
+			return Mockito.mock(FeaturesVector.class);
+		}
+	}
+}
@@ -0,0 +1,98 @@
+package org.ml4j.nn.architectures.yolo.yolov2;
+
+import org.ml4j.nn.architectures.yolo.yolov2.SpaceToDepth.Layout;
+
+/**
+ * Compares the SpaceToDepth remap, which writes straight into the concatenation buffer, with a naive reorg which
+ * computes the index of each element into an intermediate tensor which is then copied into the concatenation
+ * buffer - in both the FEATURE_MAJOR and the EXAMPLE_MAJOR layout.
+ * 
+ * Run as a main class - eg. with the YOLO v2 passthrough shape at a batch size of 1 and of 16.  The timings depend
+ * on the hardware and the JVM, so are printed rather than recorded.
+ * 
+ * @author Michael Lavelle
+ */
+public class SpaceToDepthBenchmark {
+
+	private static final int WARMUP_ITERATIONS = 200;
+	private static final int ITERATIONS = 1000;
+
+	public static void main(String[] args) {
+		for (Layout layout : Layout.values()) {
+			for (int examples : new int[] { 1, 16 }) {
+				benchmark(38, 38, 64, 2, examples, layout);
+			}
+		}
+	}
+
+	private static void benchmark(int width, int height, int depth, int blockSize, int examples, Layout layout) {
+		SpaceToDepth spaceToDepth = new SpaceToDepth(width, height, depth, blockSize, layout);
+		float[] input = new float[width * height * depth * examples];
+		for (int i = 0; i < input.length; i++) {
+			input[i] = i;
+		}
+		// The passthrough is concatenated before the 1024 channels of conv2d_20
+		int concatenationDepth = spaceToDepth.getOutputDepth() + 1024;
+		float[] concatenation = new float[spaceToDepth.getOutputWidth() * spaceToDepth.getOutputHeight()
+				* concatenationDepth * examples];
+		// The intermediate tensor of the naive reorg is allocated once, so only the copies are compared
+		float[] intermediate = new float[input.length];
+
+		for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+			spaceToDepth.forward(input, concatenation, 0, concatenationDepth, examples);
+			naiveForward(input, width, height, depth, blockSize, examples, layout, intermediate, concatenation,
+					concatenationDepth);
+		}
+		long start = System.nanoTime();
+		for (int i = 0; i < ITERATIONS; i++) {
+			spaceToDepth.forward(input, concatenation, 0, concatenationDepth, examples);
+		}
+		long remap = System.nanoTime() - start;
+		start = System.nanoTime();
+		for (int i = 0; i < ITERATIONS; i++) {
+			naiveForward(input, width, height, depth, blockSize, examples, layout, intermediate, concatenation,
+					concatenationDepth);
+		}
+		long naive = System.nanoTime() - start;
+
+		System.out.println(String.format("%dx%dx%d, %d examples, %s: remap %.1f us, naive copy %.1f us", width,
+				height, depth, examples, layout, remap / 1000d / ITERATIONS, naive / 1000d / ITERATIONS));
+	}
+
+	private static void naiveForward(float[] input, int width, int height, int depth, int blockSize, int examples,
+			Layout layout, float[] output, float[] concatenation, int concatenationDepth) {
+		int outputWidth = width / blockSize;
+		int outputHeight = height / blockSize;
+		int outputDepth = depth * blockSize * blockSize;
+		int featureCount = width * height * depth;
+		for (int outputChannel = 0; outputChannel < outputDepth; outputChannel++) {
+			int block = outputChannel / depth;
+			int inputChannel = outputChannel % depth;
+			for (int y = 0; y < outputHeight; y++) {
+				for (int x = 0; x < outputWidth; x++) {
+					int inputFeature = (inputChannel * height + y * blockSize + block / blockSize) * width
+							+ x * blockSize + block % blockSize;
+					int outputFeature = (outputChannel * outputHeight + y) * outputWidth + x;
+					for (int example = 0; example < examples; example++) {
+						if (layout == Layout.EXAMPLE_MAJOR) {
+							output[example * featureCount + outputFeature] = input[example * featureCount
+									+ inputFeature];
+						} else {
+							output[outputFeature * examples + example] = input[inputFeature * examples + example];
+						}
+					}
+				}
+			}
+		}
+		if (layout == Layout.EXAMPLE_MAJOR) {
+			// The output of each example is followed by the other channels of the concatenation for that example
+			int concatenationFeatureCount = outputWidth * outputHeight * concatenationDepth;
+			for (int example = 0; example < examples; example++) {
+				System.arraycopy(output, example * featureCount, concatenation, example * concatenationFeatureCount,
+						featureCount);
+			}
+		} else {
+			System.arraycopy(output, 0, concatenation, 0, output.length);
+		}
+	}
+}
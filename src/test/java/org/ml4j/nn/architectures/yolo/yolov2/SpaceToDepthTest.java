@@ -0,0 +1,131 @@
+package org.ml4j.nn.architectures.yolo.yolov2;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.ml4j.nn.architectures.yolo.yolov2.SpaceToDepth.Layout;
+import org.ml4j.nn.neurons.Neurons3D;
+
+/**
+ * Checks the SpaceToDepth remap against the TensorFlow space_to_depth ordering.
+ * 
+ * @author Michael Lavelle
+ */
+public class SpaceToDepthTest {
+
+	// The input features of a 4x4x1 input, in the order of the output features of a block size 2 reorg
+	private static final int[] EXPECTED_INPUT_FEATURES = { 0, 2, 8, 10, 1, 3, 9, 11, 4, 6, 12, 14, 5, 7, 13, 15 };
+
+	@Test
+	public void testOutputShape() {
+		SpaceToDepth spaceToDepth = new SpaceToDepth(38, 38, 64, 2, Layout.FEATURE_MAJOR);
+
+		Assert.assertEquals(19, spaceToDepth.getOutputWidth());
+		Assert.assertEquals(19, spaceToDepth.getOutputHeight());
+		Assert.assertEquals(256, spaceToDepth.getOutputDepth());
+	}
+
+	@Test
+	public void testForwardIntoConcatenationBuffer() {
+		SpaceToDepth spaceToDepth = new SpaceToDepth(4, 4, 1, 2, Layout.FEATURE_MAJOR);
+		int examples = 2;
+		float[] input = createInput(examples);
+
+		// The output of the reorg begins at channel 1 of a 5 channel concatenation
+		float[] output = new float[5 * 2 * 2 * examples];
+		spaceToDepth.forward(input, output, 1, 5, examples);
+
+		for (int feature = 0; feature < EXPECTED_INPUT_FEATURES.length; feature++) {
+			for (int example = 0; example < examples; example++) {
+				Assert.assertEquals(input[EXPECTED_INPUT_FEATURES[feature] * examples + example],
+						output[(4 + feature) * examples + example], 0f);
+			}
+		}
+		for (int i = 0; i < 4 * examples; i++) {
+			Assert.assertEquals(0f, output[i], 0f);
+		}
+	}
+
+	@Test
+	public void testBackwardInvertsForward() {
+		SpaceToDepth spaceToDepth = new SpaceToDepth(4, 4, 1, 2, Layout.FEATURE_MAJOR);
+		int examples = 3;
+		float[] input = createInput(examples);
+
+		float[] output = new float[16 * examples];
+		spaceToDepth.forward(input, output, 0, 4, examples);
+		float[] inputGradients = new float[16 * examples];
+		spaceToDepth.backward(output, 0, 4, inputGradients, examples);
+
+		Assert.assertArrayEquals(input, inputGradients, 0f);
+	}
+
+	@Test
+	public void testExampleMajorForwardIntoConcatenationBuffer() {
+		SpaceToDepth spaceToDepth = new SpaceToDepth(4, 4, 1, 2, Layout.EXAMPLE_MAJOR);
+		int examples = 2;
+		float[] input = createExampleMajorInput(examples);
+
+		// The output of the reorg begins at channel 1 of a 5 channel concatenation, in a column for each example
+		float[] output = new float[5 * 2 * 2 * examples];
+		spaceToDepth.forward(input, output, 1, 5, examples);
+
+		for (int example = 0; example < examples; example++) {
+			for (int feature = 0; feature < EXPECTED_INPUT_FEATURES.length; feature++) {
+				Assert.assertEquals(input[example * 16 + EXPECTED_INPUT_FEATURES[feature]],
+						output[example * 20 + 4 + feature], 0f);
+			}
+			for (int feature = 0; feature < 4; feature++) {
+				Assert.assertEquals(0f, output[example * 20 + feature], 0f);
+			}
+		}
+	}
+
+	@Test
+	public void testExampleMajorBackwardInvertsForward() {
+		SpaceToDepth spaceToDepth = new SpaceToDepth(4, 4, 1, 2, Layout.EXAMPLE_MAJOR);
+		int examples = 3;
+		float[] input = createExampleMajorInput(examples);
+
+		float[] output = new float[5 * 2 * 2 * examples];
+		spaceToDepth.forward(input, output, 1, 5, examples);
+		float[] inputGradients = new float[16 * examples];
+		spaceToDepth.backward(output, 1, 5, inputGradients, examples);
+
+		Assert.assertArrayEquals(input, inputGradients, 0f);
+	}
+
+	@Test
+	public void testForInputNeurons() {
+		SpaceToDepth spaceToDepth = SpaceToDepth.forInputNeurons(new Neurons3D(38, 38, 64, false), 2,
+				Layout.EXAMPLE_MAJOR);
+
+		Assert.assertEquals(38 * 38 * 64, spaceToDepth.getFeatureCount());
+		Assert.assertEquals(256, spaceToDepth.getOutputDepth());
+		Assert.assertEquals(Layout.EXAMPLE_MAJOR, spaceToDepth.getLayout());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInputMustDivideIntoBlocks() {
+		new SpaceToDepth(5, 4, 1, 2, Layout.FEATURE_MAJOR);
+	}
+
+	private static float[] createExampleMajorInput(int examples) {
+		float[] input = new float[16 * examples];
+		for (int example = 0; example < examples; example++) {
+			for (int feature = 0; feature < 16; feature++) {
+				input[example * 16 + feature] = feature + 100 * example;
+			}
+		}
+		return input;
+	}
+
+	private static float[] createInput(int examples) {
+		float[] input = new float[16 * examples];
+		for (int feature = 0; feature < 16; feature++) {
+			for (int example = 0; example < examples; example++) {
+				input[feature * examples + example] = feature + 100 * example;
+			}
+		}
+		return input;
+	}
+}
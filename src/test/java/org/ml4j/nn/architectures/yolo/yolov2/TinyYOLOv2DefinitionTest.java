@@ -0,0 +1,78 @@
+package org.ml4j.nn.architectures.yolo.yolov2;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.ml4j.nn.architectures.weights.DarknetWeightsFile.ConvolutionalLayer;
+import org.ml4j.nn.components.ComponentMetadata;
+import org.ml4j.nn.components.ComponentMetadataFactory;
+import org.ml4j.nn.components.DirectedComponentsContext;
+import org.ml4j.nn.neurons.Neurons3D;
+import org.ml4j.nn.sessions.Session;
+import org.ml4j.nn.sessions.SessionImpl;
+import org.mockito.Mockito;
+
+public class TinyYOLOv2DefinitionTest {
+
+	private YOLOv2WeightsLoader mockYOLOv2WeightsLoader = Mockito.mock(YOLOv2WeightsLoader.class);
+
+	@Test
+	public void testOutputLayoutMatchesYOLOv2() {
+		TinyYOLOv2Definition tinyYOLOv2Definition = new TinyYOLOv2Definition(mockYOLOv2WeightsLoader);
+		YOLOv2Definition yoloV2Definition = new YOLOv2Definition(mockYOLOv2WeightsLoader, 416);
+
+		Neurons3D outputNeurons = tinyYOLOv2Definition.getOutputNeurons();
+		Assert.assertEquals(yoloV2Definition.getOutputNeurons().getWidth(), outputNeurons.getWidth());
+		Assert.assertEquals(yoloV2Definition.getOutputNeurons().getHeight(), outputNeurons.getHeight());
+		Assert.assertEquals(yoloV2Definition.getOutputNeurons().getDepth(), outputNeurons.getDepth());
+	}
+
+	@Test
+	public void testComponentGraphCreation() {
+		Session<ComponentMetadata> session = new SessionImpl<>(new ComponentMetadataFactory(),
+				Mockito.mock(DirectedComponentsContext.class));
+
+		List<ComponentMetadata> sequentialComponents = session.buildComponentGraph()
+				.startWith(new TinyYOLOv2Definition(mockYOLOv2WeightsLoader)).getComponents();
+
+		// 8 convolution, batch norm and leaky RELU triplets, 6 max pooling layers and the linear detection layer
+		Assert.assertEquals(32, sequentialComponents.size());
+	}
+
+	@Test
+	public void testDarknetLayersMatchDefinition() {
+		// The size and filters of each [convolutional] section of yolov2-tiny.cfg
+		int[][] cfgLayers = { { 3, 16 }, { 3, 32 }, { 3, 64 }, { 3, 128 }, { 3, 256 }, { 3, 512 }, { 3, 1024 },
+				{ 3, 512 }, { 1, 425 } };
+		List<ConvolutionalLayer> layers = DarknetYOLOv2WeightsLoader.getTinyConvolutionalLayers();
+		Assert.assertEquals(cfgLayers.length, layers.size());
+
+		Session<ComponentMetadata> session = new SessionImpl<>(new ComponentMetadataFactory(),
+				Mockito.mock(DirectedComponentsContext.class));
+		session.buildComponentGraph().startWith(new TinyYOLOv2Definition(mockYOLOv2WeightsLoader));
+
+		int inputDepth = 3;
+		for (int i = 0; i < layers.size(); i++) {
+			ConvolutionalLayer layer = layers.get(i);
+			Assert.assertEquals("conv2d_" + (i + 1), layer.getConvolutionalLayerName());
+			Assert.assertEquals(cfgLayers[i][0], layer.getWidth());
+			Assert.assertEquals(cfgLayers[i][0], layer.getHeight());
+			Assert.assertEquals(inputDepth, layer.getInputDepth());
+			Assert.assertEquals(cfgLayers[i][1], layer.getOutputDepth());
+			// Only the detection layer has its own biases rather than a batch norm layer
+			Assert.assertEquals(i == layers.size() - 1, layer.getBatchNormLayerName() == null);
+
+			// The definition requests the same kernel shape as is stored in the weights file
+			Mockito.verify(mockYOLOv2WeightsLoader).getConvolutionalLayerWeights(
+					layer.getConvolutionalLayerName() + "_kernel0", layer.getWidth(), layer.getHeight(),
+					layer.getInputDepth(), layer.getOutputDepth());
+			inputDepth = layer.getOutputDepth();
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInputSizeMustBeMultipleOfStride() {
+		new TinyYOLOv2Definition(mockYOLOv2WeightsLoader, 400);
+	}
+}
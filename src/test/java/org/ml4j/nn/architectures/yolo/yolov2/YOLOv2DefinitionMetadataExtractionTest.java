@@ -1,12 +1,20 @@
 package org.ml4j.nn.architectures.yolo.yolov2;
 
 import java.util.List;
+import java.util.stream.Collectors;
 
 import org.junit.Assert;
+import org.junit.Test;
+import org.ml4j.nn.architectures.BuildProfile;
+import org.ml4j.nn.architectures.concat.FilterConcatBuffer;
+import org.ml4j.nn.architectures.fusion.FusedComponentFactory;
+import org.ml4j.nn.architectures.weights.BatchNormFoldingTensorSource;
 import org.ml4j.nn.components.ComponentMetadata;
 import org.ml4j.nn.components.ComponentMetadataFactory;
 import org.ml4j.nn.components.builders.componentsgraph.InitialComponents3DGraphBuilder;
 import org.ml4j.nn.components.factories.NeuralComponentFactory;
+import org.ml4j.nn.sessions.Session;
+import org.mockito.Mockito;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -42,4 +50,154 @@ public class YOLOv2DefinitionMetadataExtractionTest extends YOLOv2DefinitionTest
 			LOGGER.debug(component.toString());
 		}
 	}
+	
+	@Test
+	public void testSpaceToDepthComponentCreation() {
+		
+		Session<ComponentMetadata> session = createSession(neuralComponentFactory, mockDirectedComponentsContext);
+		
+		YOLOv2Definition yoloV2Definition = new YOLOv2Definition(mockYOLOv2WeightsLoader);
+		session.buildComponentGraph().startWith(yoloV2Definition);
+		
+		// The passthrough is created as a space to depth component, with the reorg of its 38x38x64 input
+		ComponentMetadataFactory componentMetadataFactory = (ComponentMetadataFactory) neuralComponentFactory;
+		Assert.assertEquals(1, componentMetadataFactory.getCreatedComponentNames(
+				YOLOv2Definition.SPACE_TO_DEPTH_COMPONENT_TYPE).size());
+		SpaceToDepth spaceToDepth = componentMetadataFactory.getSpaceToDepth("space_to_depth_x2");
+		Assert.assertNotNull(spaceToDepth);
+		Assert.assertEquals(2, spaceToDepth.getBlockSize());
+		Assert.assertEquals(38 * 38 * 64, spaceToDepth.getFeatureCount());
+		Assert.assertEquals(19, spaceToDepth.getOutputWidth());
+		Assert.assertEquals(256, spaceToDepth.getOutputDepth());
+	}
+
+	@Test
+	public void testPassthroughIsConcatenatedInPlace() {
+		
+		Session<ComponentMetadata> session = createSession(neuralComponentFactory, mockDirectedComponentsContext);
+		
+		YOLOv2Definition yoloV2Definition = new YOLOv2Definition(mockYOLOv2WeightsLoader);
+		session.buildComponentGraph().startWith(yoloV2Definition);
+		
+		// The space to depth path is concatenated first, followed by the output of conv2d_20
+		FilterConcatBuffer concatBuffer = ((ComponentMetadataFactory) neuralComponentFactory).getConcatBuffer("concatenate_1");
+		Assert.assertNotNull(concatBuffer);
+		Assert.assertEquals(19, concatBuffer.getWidth());
+		Assert.assertEquals(19, concatBuffer.getHeight());
+		Assert.assertEquals(2, concatBuffer.getPathCount());
+		Assert.assertEquals(256, concatBuffer.getPathDepth(0));
+		Assert.assertEquals(1024, concatBuffer.getPathDepth(1));
+		Assert.assertEquals(256, concatBuffer.getChannelOffset(1));
+		Assert.assertEquals(1280, concatBuffer.getDepth());
+	}
+
+	@Test
+	public void testBaselineLayerNamesAreKeptWithBatchNormFolding() {
+		
+		Session<ComponentMetadata> session = createSession(neuralComponentFactory, mockDirectedComponentsContext);
+		
+		YOLOv2Definition yoloV2Definition = new YOLOv2Definition(mockYOLOv2WeightsLoader);
+		yoloV2Definition.setBatchNormFolding(true);
+		session.buildComponentGraph().startWith(yoloV2Definition);
+		
+		// Folding changes only the weights, not the names existing graphs are addressed by
+		List<String> names = ((ComponentMetadataFactory) neuralComponentFactory).getCreatedComponents().stream()
+				.map(ComponentMetadata::getName).collect(Collectors.toList());
+		Assert.assertTrue(names.contains("leaky_relu_3"));
+		Assert.assertFalse(names.contains("leaky_re_lu_3"));
+		Assert.assertTrue(names.contains("leaky_re_lu_4"));
+	}
+
+	@Test
+	public void testBatchNormalization22OutputHasABiasUnit() {
+		
+		Session<ComponentMetadata> session = createSession(neuralComponentFactory, mockDirectedComponentsContext);
+		
+		YOLOv2Definition yoloV2Definition = new YOLOv2Definition(mockYOLOv2WeightsLoader);
+		session.buildComponentGraph().startWith(yoloV2Definition);
+		
+		// As in the original definition, only the output of batch_normalization_22 has a bias unit
+		for (ComponentMetadata component : ((ComponentMetadataFactory) neuralComponentFactory).getCreatedComponents()) {
+			if (component.getName().startsWith("leaky_re_lu_")) {
+				Assert.assertEquals(component.getName(), component.getName().equals("leaky_re_lu_22"),
+						component.getInputNeurons().hasBiasUnit());
+			}
+		}
+	}
+
+	@Test
+	public void testComponentGraphCreationWithFusedConvolutions() {
+		
+		Session<ComponentMetadata> session = createSession(neuralComponentFactory, mockDirectedComponentsContext);
+		
+		YOLOv2Definition yoloV2Definition = new YOLOv2Definition(mockYOLOv2WeightsLoader);
+		yoloV2Definition.setFusedConvolutions(true);
+		
+		List<ComponentMetadata> sequentialComponents = session.buildComponentGraph().startWith(yoloV2Definition).getComponents();
+		
+		// Each of the 14 convolution, batch norm and leaky RELU triplets outside the parallel paths becomes a single component
+		Assert.assertEquals(21, sequentialComponents.size());
+		
+		// as do the triplets within the parallel paths, leaving only the detection layer unfused
+		ComponentMetadataFactory componentMetadataFactory = (ComponentMetadataFactory) neuralComponentFactory;
+		List<String> fusedComponentNames = componentMetadataFactory.getCreatedComponentNames(
+				FusedComponentFactory.CONVOLUTION_BATCH_NORM_ACTIVATION);
+		Assert.assertEquals(22, fusedComponentNames.size());
+
+		// with the batch norm epsilon of Darknet, and trainable for the default build profile
+		for (String fusedComponentName : fusedComponentNames) {
+			Assert.assertEquals(BatchNormFoldingTensorSource.DARKNET_EPSILON,
+					componentMetadataFactory.getFusedConfig(fusedComponentName).getBatchNormEpsilon(), 0f);
+			Assert.assertFalse(componentMetadataFactory.getFusedConfig(fusedComponentName).isFreezeOut());
+		}
+	}
+
+	@Test
+	public void testFusedConvolutionsAreFrozenOutForInference() {
+		
+		Session<ComponentMetadata> session = createSession(neuralComponentFactory, mockDirectedComponentsContext);
+		
+		YOLOv2Definition yoloV2Definition = new YOLOv2Definition(mockYOLOv2WeightsLoader);
+		yoloV2Definition.setFusedConvolutions(true);
+		yoloV2Definition.setBuildProfile(BuildProfile.INFERENCE);
+		
+		session.buildComponentGraph().startWith(yoloV2Definition);
+		
+		ComponentMetadataFactory componentMetadataFactory = (ComponentMetadataFactory) neuralComponentFactory;
+		List<String> fusedComponentNames = componentMetadataFactory.getCreatedComponentNames(
+				FusedComponentFactory.CONVOLUTION_BATCH_NORM_ACTIVATION);
+		Assert.assertEquals(22, fusedComponentNames.size());
+		for (String fusedComponentName : fusedComponentNames) {
+			Assert.assertTrue(componentMetadataFactory.getFusedConfig(fusedComponentName).isFreezeOut());
+		}
+	}
+
+	@Test
+	public void testComponentGraphCreationWithBatchNormFolding() {
+		
+		Session<ComponentMetadata> session = createSession(neuralComponentFactory, mockDirectedComponentsContext);
+		
+		YOLOv2Definition yoloV2Definition = new YOLOv2Definition(mockYOLOv2WeightsLoader);
+		yoloV2Definition.setBatchNormFolding(true);
+		
+		List<ComponentMetadata> sequentialComponents = session.buildComponentGraph().startWith(yoloV2Definition).getComponents();
+		
+		// Each of the 14 convolution, batch norm and leaky RELU triplets outside the parallel paths loses its batch norm axons
+		Assert.assertEquals(35, sequentialComponents.size());
+		
+		// and no batch norm axons are created within the parallel paths either
+		for (ComponentMetadata component : ((ComponentMetadataFactory) neuralComponentFactory).getCreatedComponents()) {
+			Assert.assertFalse(component.getDescription(), component.getDescription().startsWith("Batch Norm Axons"));
+		}
+		
+		// The convolutional axons are created with the folded weights and biases instead
+		Mockito.verify(mockYOLOv2WeightsLoader).getConvolutionalLayerWeights(
+				BatchNormFoldingTensorSource.getFoldedWeightsName("conv2d_1"), 3, 3, 3, 32);
+		Mockito.verify(mockYOLOv2WeightsLoader).getConvolutionalLayerBiases(
+				BatchNormFoldingTensorSource.getFoldedBiasesName("conv2d_1"), 32);
+		Mockito.verify(mockYOLOv2WeightsLoader).getConvolutionalLayerWeights(
+				BatchNormFoldingTensorSource.getFoldedWeightsName("conv2d_21"), 1, 1, 512, 64);
+		Mockito.verify(mockYOLOv2WeightsLoader, Mockito.never()).getBatchNormLayerMovingVariance(
+				Mockito.anyString(), Mockito.anyInt());
+	}
 }
@@ -3,6 +3,7 @@ package org.ml4j.nn.architectures.yolo.yolov2;
 import java.util.List;
 
 import org.junit.Assert;
+import org.junit.Test;
 import org.ml4j.Matrix;
 import org.ml4j.MatrixFactory;
 import org.ml4j.jblas.JBlasRowMajorMatrixFactory;
@@ -84,4 +85,15 @@ public class YOLOv2DefinitionTest extends YOLOv2DefinitionTestBase<DefaultChaina
 
 		
 	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testFusedConvolutionsRequireFusedComponentFactory() {
+		
+		// The dummy factory cannot create fused components, so the graph is not silently created unfused
+		YOLOv2Definition yoloV2Definition = new YOLOv2Definition(mockYOLOv2WeightsLoader);
+		yoloV2Definition.setFusedConvolutions(true);
+		
+		createSession(neuralComponentFactory, mockDirectedComponentsContext).buildComponentGraph()
+				.startWith(yoloV2Definition);
+	}
 }
@@ -1,5 +1,10 @@
 package org.ml4j.nn.architectures.yolo.yolov2;
 
+import org.junit.Assert;
+import org.junit.Test;
+import org.ml4j.nn.architectures.AxonsContextConfigAssertions;
+import org.ml4j.nn.architectures.BuildProfile;
+import org.ml4j.nn.axons.AxonsContextConfig;
 import org.ml4j.nn.components.DirectedComponentsContext;
 import org.ml4j.nn.components.NeuralComponent;
 import org.ml4j.nn.components.builders.componentsgraph.InitialComponents3DGraphBuilder;
@@ -8,6 +13,7 @@ import org.ml4j.nn.definitions.Component3Dto3DGraphDefinitionTestBase;
 import org.ml4j.nn.sessions.Session;
 import org.ml4j.nn.sessions.SessionImpl;
 import org.mockito.Mock;
+import org.mockito.Mockito;
 
 public abstract class YOLOv2DefinitionTestBase<T extends NeuralComponent<?>> extends Component3Dto3DGraphDefinitionTestBase<T, YOLOv2Definition> {
 	
@@ -18,6 +24,42 @@ public abstract class YOLOv2DefinitionTestBase<T extends NeuralComponent<?>> ext
 	protected abstract void runAssertionsOnCreatedComponentGraph(YOLOv2Definition yOLOv2Definition, 
 			InitialComponents3DGraphBuilder<T>  componentGraph);
 	
+	@Test
+	public void testComponentGraphCreationAtReducedInputSize() {
+		
+		Session<T> session = createSession(neuralComponentFactory, mockDirectedComponentsContext);
+		
+		// Create a YOLOv2Definition for 416x416 inputs, which uses the same weights as the default 608x608 definition
+		YOLOv2Definition yoloV2Definition = new YOLOv2Definition(mockYOLOv2WeightsLoader, 416);
+		
+		Assert.assertEquals(13, yoloV2Definition.getOutputNeurons().getWidth());
+		Assert.assertEquals(13, yoloV2Definition.getOutputNeurons().getHeight());
+		
+		runAssertionsOnCreatedComponentGraph(yoloV2Definition, session.buildComponentGraph().startWith(yoloV2Definition));
+	}
+	
+	@Test
+	public void testComponentGraphCreationWithInferenceProfile() {
+		
+		AxonsContextConfig axonsContextConfig = Mockito.mock(AxonsContextConfig.class, Mockito.RETURNS_SELF);
+		Session<T> session = createSession(neuralComponentFactory,
+				AxonsContextConfigAssertions.createAxonsContextConfigRecordingContext(axonsContextConfig));
+		
+		// The inference profile changes only how the components are configured, not the structure of the graph
+		YOLOv2Definition yoloV2Definition = new YOLOv2Definition(mockYOLOv2WeightsLoader);
+		yoloV2Definition.setBuildProfile(BuildProfile.INFERENCE);
+		
+		runAssertionsOnCreatedComponentGraph(yoloV2Definition, session.buildComponentGraph().startWith(yoloV2Definition));
+		
+		// Every axons component is frozen out
+		AxonsContextConfigAssertions.assertFrozenOutWithoutRegularisationOrDropout(axonsContextConfig);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testInputSizeMustBeMultipleOfStride() {
+		new YOLOv2Definition(mockYOLOv2WeightsLoader, 400);
+	}
+	
 	@Override
 	protected YOLOv2Definition createDefinitionToTest() {
 		return new YOLOv2Definition(mockYOLOv2WeightsLoader);
@@ -27,5 +69,4 @@ public abstract class YOLOv2DefinitionTestBase<T extends NeuralComponent<?>> ext
 	protected Session<T> createSession(NeuralComponentFactory<T> componentFactory, DirectedComponentsContext context) {
 		return new SessionImpl<>(componentFactory, context);
 	}
-
 }
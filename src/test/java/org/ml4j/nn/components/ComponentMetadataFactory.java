@@ -1,89 +1,220 @@
 package org.ml4j.nn.components;
 
+import java.util.AbstractMap.SimpleEntry;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.stream.Collectors;
 
 import org.ml4j.nn.activationfunctions.ActivationFunctionProperties;
 import org.ml4j.nn.activationfunctions.ActivationFunctionType;
 import org.ml4j.nn.activationfunctions.DifferentiableActivationFunction;
+import org.ml4j.nn.architectures.concat.FilterConcatBuffer;
+import org.ml4j.nn.architectures.concat.InPlaceConcatComponentFactory;
+import org.ml4j.nn.architectures.fusion.ChannelSliceComponentFactory;
+import org.ml4j.nn.architectures.fusion.ConvolutionBatchNormActivationConfig;
+import org.ml4j.nn.architectures.fusion.FusedComponentFactory;
+import org.ml4j.nn.architectures.mobilenet.DepthwiseConvolutionComponentFactory;
+import org.ml4j.nn.architectures.mobilenet.DepthwiseConvolutionConfig;
+import org.ml4j.nn.architectures.mobilenet.ZeroPaddingComponentFactory;
+import org.ml4j.nn.architectures.yolo.yolov2.SpaceToDepth;
+import org.ml4j.nn.architectures.yolo.yolov2.SpaceToDepth.Layout;
+import org.ml4j.nn.architectures.yolo.yolov2.SpaceToDepthComponentFactory;
+import org.ml4j.nn.architectures.yolo.yolov2.YOLOv2Definition;
 import org.ml4j.nn.axons.BatchNormAxonsConfig;
 import org.ml4j.nn.axons.BiasVector;
 import org.ml4j.nn.axons.ConvolutionalAxonsConfig;
 import org.ml4j.nn.axons.FullyConnectedAxonsConfig;
 import org.ml4j.nn.axons.PoolingAxonsConfig;
 import org.ml4j.nn.axons.WeightsMatrix;
-import org.ml4j.nn.components.factories.NeuralComponentFactory;
 import org.ml4j.nn.components.manytoone.PathCombinationStrategy;
 import org.ml4j.nn.neurons.Neurons;
+import org.ml4j.nn.neurons.Neurons3D;
 
 /**
  * An example of using a custom NeuralComponentFactory to create cusom NeuralComponents into InceptionV4 graphs.
  * 
  * Such custom components can be created in InceptionV4 graphs by a InceptionV4Definition in the same way as the default components
  * 
+ * Every component created is recorded, including those nested within parallel paths, so that tests can assert on the
+ * components a definition creates.
+ * 
  * @author Michael Lavelle
  */
-public class ComponentMetadataFactory implements NeuralComponentFactory<ComponentMetadata>{
+public class ComponentMetadataFactory implements FusedComponentFactory<ComponentMetadata>,
+		ChannelSliceComponentFactory<ComponentMetadata>, DepthwiseConvolutionComponentFactory<ComponentMetadata>,
+		ZeroPaddingComponentFactory<ComponentMetadata>, SpaceToDepthComponentFactory<ComponentMetadata>,
+		InPlaceConcatComponentFactory<ComponentMetadata> {
+
+	private List<ComponentMetadata> createdComponents = new ArrayList<>();
+	private List<Entry<String, NeuralComponentType>> createdComponentTypes = new ArrayList<>();
+	private Map<String, DepthwiseConvolutionConfig> depthwiseConvolutionConfigs = new HashMap<>();
+	private Map<String, ConvolutionBatchNormActivationConfig> fusedConfigs = new HashMap<>();
+	private Map<String, int[]> zeroPaddings = new HashMap<>();
+	private Map<String, SpaceToDepth> spaceToDepths = new HashMap<>();
+	private Map<String, FilterConcatBuffer> concatBuffers = new HashMap<>();
+
+	/**
+	 * @return Every component created by this factory, in the order they were created.
+	 */
+	public List<ComponentMetadata> getCreatedComponents() {
+		return createdComponents;
+	}
+
+	/**
+	 * @param componentType A component type.
+	 * @return The names of the components of the type created by createComponent, in the order they were created.
+	 */
+	public List<String> getCreatedComponentNames(NeuralComponentType componentType) {
+		return createdComponentTypes.stream().filter(e -> e.getValue() == componentType).map(Entry::getKey)
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * @param name The name of a depthwise convolution component.
+	 * @return The config the component was created with, or null if no such component has been created.
+	 */
+	public DepthwiseConvolutionConfig getDepthwiseConvolutionConfig(String name) {
+		return depthwiseConvolutionConfigs.get(name);
+	}
+
+	/**
+	 * @param name The name of a fused convolution / batch norm / activation component.
+	 * @return The config the component was created with, or null if no such component has been created.
+	 */
+	public ConvolutionBatchNormActivationConfig getFusedConfig(String name) {
+		return fusedConfigs.get(name);
+	}
+
+	/**
+	 * @param name The name of a zero padding component.
+	 * @return The top, bottom, left and right padding of the component, or null if no such component has been
+	 *         created.
+	 */
+	public int[] getZeroPadding(String name) {
+		return zeroPaddings.get(name);
+	}
+
+	/**
+	 * @param name The name of a space to depth component.
+	 * @return The reorg of the component, or null if no such component has been created.
+	 */
+	public SpaceToDepth getSpaceToDepth(String name) {
+		return spaceToDepths.get(name);
+	}
+
+	/**
+	 * @param name The name of a bipole graph.
+	 * @return The buffer the graph was created with, or null if no such filter concatenation has been created.
+	 */
+	public FilterConcatBuffer getConcatBuffer(String name) {
+		return concatBuffers.get(name);
+	}
+
+	private ComponentMetadata record(ComponentMetadata component) {
+		createdComponents.add(component);
+		return component;
+	}
 
 	@Override
 	public ComponentMetadata createAveragePoolingAxonsComponent(String name, PoolingAxonsConfig arg2) {
-		return new ComponentMetadata(name, arg2.getAxonsConfig().getLeftNeurons(), arg2.getAxonsConfig().getRightNeurons(), 
-				"Average Pooling Axons:" + name);
+		return record(new ComponentMetadata(name, arg2.getAxonsConfig().getLeftNeurons(), arg2.getAxonsConfig().getRightNeurons(), 
+				"Average Pooling Axons:" + name));
 	}
 
 	@Override
 	public <N extends Neurons> ComponentMetadata createBatchNormAxonsComponent(String name, BatchNormAxonsConfig<N> batchNormAxonsConfig) {
-		return new ComponentMetadata(name, batchNormAxonsConfig.getNeurons(), batchNormAxonsConfig.getNeurons(), "Batch Norm Axons:" + name);
+		return record(new ComponentMetadata(name, batchNormAxonsConfig.getNeurons(), batchNormAxonsConfig.getNeurons(), "Batch Norm Axons:" + name));
 	}
 
 	@Override
 	public ComponentMetadata createConvolutionalAxonsComponent(String name, ConvolutionalAxonsConfig arg2,
 			WeightsMatrix arg3, BiasVector arg4) {
-		return new ComponentMetadata(name, arg2.getAxonsConfig().getLeftNeurons(), arg2.getAxonsConfig().getRightNeurons(), "Convolutional Axons:" + name);
+		return record(new ComponentMetadata(name, arg2.getAxonsConfig().getLeftNeurons(), arg2.getAxonsConfig().getRightNeurons(), "Convolutional Axons:" + name));
 	}
 
 	@Override
 	public ComponentMetadata createDifferentiableActivationFunctionComponent(String name, Neurons arg0,
 			DifferentiableActivationFunction arg1) {
-		return new ComponentMetadata(name, arg0, arg0, "Activation Function:" + arg1.getClass() + ":" + name);
+		return record(new ComponentMetadata(name, arg0, arg0, "Activation Function:" + arg1.getClass() + ":" + name));
 	}
 	
 	@Override
 	public ComponentMetadata createDifferentiableActivationFunctionComponent(String name, Neurons arg0,
 			ActivationFunctionType arg1, ActivationFunctionProperties activationFunctionProperties) {
-		return new ComponentMetadata(name, arg0, arg0, "Activation Function:" + arg1.getQualifiedId() + ":" + name);
+		return record(new ComponentMetadata(name, arg0, arg0, "Activation Function:" + arg1.getQualifiedId() + ":" + name));
 	}
 
 	@Override
 	public ComponentMetadata createDirectedComponentBipoleGraph(String name, Neurons arg0, Neurons arg1,
-			List<ComponentMetadata> arg2, PathCombinationStrategy arg3) {
-		return new ComponentMetadata(name, arg0, arg1, "Bipole Graph with strategy:" + arg3);
+			List<ComponentMetadata> arg2, PathCombinationStrategy arg3, FilterConcatBuffer concatBuffer) {
+		if (concatBuffer != null) {
+			concatBuffers.put(name, concatBuffer);
+		}
+		return record(new ComponentMetadata(name, arg0, arg1, "Bipole Graph with strategy:" + arg3));
 	}
 
 	@Override
 	public ComponentMetadata createDirectedComponentChain(List<ComponentMetadata> arg0) {
-		return new ComponentMetadata("ComponentChain", arg0.get(0).getInputNeurons(), arg0.get(arg0.size() -1).getOutputNeurons(), "Component Chain with " + arg0.size() + " components");
+		return record(new ComponentMetadata("ComponentChain", arg0.get(0).getInputNeurons(), arg0.get(arg0.size() -1).getOutputNeurons(), "Component Chain with " + arg0.size() + " components"));
 	}
 
 	@Override
 	public ComponentMetadata createFullyConnectedAxonsComponent(String name, FullyConnectedAxonsConfig axonsConfig, WeightsMatrix arg2, BiasVector arg3) {
-		return new ComponentMetadata(name, axonsConfig.getAxonsConfig().getLeftNeurons(), axonsConfig.getAxonsConfig().getRightNeurons(), "Fully Connected Axons Component:" + name);
+		return record(new ComponentMetadata(name, axonsConfig.getAxonsConfig().getLeftNeurons(), axonsConfig.getAxonsConfig().getRightNeurons(), "Fully Connected Axons Component:" + name));
 	}
 
 	@Override
 	public ComponentMetadata createMaxPoolingAxonsComponent(String name, PoolingAxonsConfig arg2,
 			boolean arg3) {
-		return new ComponentMetadata(name, arg2.getAxonsConfig().getLeftNeurons(), arg2.getAxonsConfig().getRightNeurons(), "Max Pooling Axons Component:" + name);
+		return record(new ComponentMetadata(name, arg2.getAxonsConfig().getLeftNeurons(), arg2.getAxonsConfig().getRightNeurons(), "Max Pooling Axons Component:" + name));
 	}
 
 	@Override
 	public <N extends Neurons> ComponentMetadata createPassThroughAxonsComponent(String name,N arg0, N arg1) {
-		return new ComponentMetadata(name, arg0, arg1, "Pass through Axons Component:" + name);
+		return record(new ComponentMetadata(name, arg0, arg1, "Pass through Axons Component:" + name));
 	}
 
 	@Override
 	public ComponentMetadata createComponent(String name, Neurons arg0, Neurons arg1,
 			NeuralComponentType componentType) {
-		return new ComponentMetadata(name, arg0, arg1, "Component type:" + componentType + ":" + name);
+		createdComponentTypes.add(new SimpleEntry<>(name, componentType));
+		return record(new ComponentMetadata(name, arg0, arg1, "Component type:" + componentType + ":" + name));
+	}
+
+	@Override
+	public ComponentMetadata createConvolutionBatchNormActivationComponent(String name, Neurons3D inputNeurons,
+			Neurons3D outputNeurons, ConvolutionBatchNormActivationConfig config) {
+		fusedConfigs.put(name, config);
+		return createComponent(name, inputNeurons, outputNeurons, CONVOLUTION_BATCH_NORM_ACTIVATION);
+	}
+
+	@Override
+	public ComponentMetadata createDepthwiseConvolutionComponent(String name, Neurons3D inputNeurons,
+			Neurons3D outputNeurons, DepthwiseConvolutionConfig config) {
+		depthwiseConvolutionConfigs.put(name, config);
+		return createComponent(name, inputNeurons, outputNeurons, DEPTHWISE_CONVOLUTION);
+	}
+
+	@Override
+	public ComponentMetadata createZeroPaddingComponent(String name, Neurons3D inputNeurons, Neurons3D outputNeurons,
+			int paddingTop, int paddingBottom, int paddingLeft, int paddingRight) {
+		zeroPaddings.put(name, new int[] { paddingTop, paddingBottom, paddingLeft, paddingRight });
+		return createComponent(name, inputNeurons, outputNeurons, ZERO_PADDING);
+	}
+
+	@Override
+	public ComponentMetadata createChannelSliceComponent(String name, Neurons3D inputNeurons, Neurons3D outputNeurons,
+			int channelOffset) {
+		return createComponent(name, inputNeurons, outputNeurons, CHANNEL_SLICE);
+	}
+
+	@Override
+	public ComponentMetadata createSpaceToDepthComponent(String name, Neurons3D inputNeurons, Neurons3D outputNeurons,
+			int blockSize) {
+		spaceToDepths.put(name, SpaceToDepth.forInputNeurons(inputNeurons, blockSize, Layout.FEATURE_MAJOR));
+		return createComponent(name, inputNeurons, outputNeurons, YOLOv2Definition.SPACE_TO_DEPTH_COMPONENT_TYPE);
 	}
-	
 }
@@ -0,0 +1,360 @@
+#!/usr/bin/env python3
+"""Writes the HDF5 fixtures read by KerasHdf5TensorSourceTest, using only the Python standard library.
+
+    python3 generate_keras_weights.py <output directory>
+
+keras_weights.h5 is laid out as h5py writes Keras weights with its default (earliest) file format:
+a version 0 superblock, version 1 object headers and groups stored as symbol tables.
+
+keras_weights_v108.h5 is laid out as h5py writes them with libver=('v108', ...):
+a version 2 superblock, version 2 object headers with lookup3 checksums and continuation blocks, and groups
+stored as compact link messages. Its datasets cover compact, contiguous and chunked layouts, big-endian and
+double precision data, and the fletcher32 filter - including a chunk whose checksum is deliberately wrong.
+"""
+import itertools
+import os
+import struct
+import sys
+import zlib
+
+UNDEFINED = b'\xff' * 8
+SIGNATURE = b'\x89HDF\r\n\x1a\n'
+
+DEFLATE, SHUFFLE, FLETCHER32 = 1, 2, 3
+
+
+def pad8(data):
+    return data + b'\0' * ((-len(data)) % 8)
+
+
+def lookup3(data, initval=0):
+    """Bob Jenkins' hashlittle, used by HDF5 for the checksums of its version 2 metadata."""
+    mask = 0xffffffff
+
+    def rot(x, k):
+        return ((x << k) | (x >> (32 - k))) & mask
+
+    length = len(data)
+    a = b = c = (0xdeadbeef + length + initval) & mask
+    k = 0
+    while length > 12:
+        a = (a + int.from_bytes(data[k:k + 4], 'little')) & mask
+        b = (b + int.from_bytes(data[k + 4:k + 8], 'little')) & mask
+        c = (c + int.from_bytes(data[k + 8:k + 12], 'little')) & mask
+        a = (a - c) & mask; a ^= rot(c, 4); c = (c + b) & mask
+        b = (b - a) & mask; b ^= rot(a, 6); a = (a + c) & mask
+        c = (c - b) & mask; c ^= rot(b, 8); b = (b + a) & mask
+        a = (a - c) & mask; a ^= rot(c, 16); c = (c + b) & mask
+        b = (b - a) & mask; b ^= rot(a, 19); a = (a + c) & mask
+        c = (c - b) & mask; c ^= rot(b, 4); b = (b + a) & mask
+        length -= 12
+        k += 12
+    if length == 0:
+        return c
+    tail = data[k:k + length] + b'\0' * (12 - length)
+    a = (a + int.from_bytes(tail[0:4], 'little')) & mask
+    b = (b + int.from_bytes(tail[4:8], 'little')) & mask
+    c = (c + int.from_bytes(tail[8:12], 'little')) & mask
+    c ^= b; c = (c - rot(b, 14)) & mask
+    a ^= c; a = (a - rot(c, 11)) & mask
+    b ^= a; b = (b - rot(a, 25)) & mask
+    c ^= b; c = (c - rot(b, 16)) & mask
+    a ^= c; a = (a - rot(c, 4)) & mask
+    b ^= a; b = (b - rot(a, 14)) & mask
+    c ^= b; c = (c - rot(b, 24)) & mask
+    return c
+
+
+def fletcher32(data):
+    """The Fletcher32 checksum of HDF5, which sums big-endian 16 bit words."""
+    sum1 = sum2 = 0
+    words = len(data) // 2
+    position = 0
+    while words:
+        block = min(words, 360)
+        words -= block
+        for _ in range(block):
+            sum1 += (data[position] << 8) | data[position + 1]
+            position += 2
+            sum2 += sum1
+        sum1 = (sum1 & 0xffff) + (sum1 >> 16)
+        sum2 = (sum2 & 0xffff) + (sum2 >> 16)
+    if len(data) % 2:
+        sum1 += data[position] << 8
+        sum2 += sum1
+        sum1 = (sum1 & 0xffff) + (sum1 >> 16)
+        sum2 = (sum2 & 0xffff) + (sum2 >> 16)
+    sum1 = (sum1 & 0xffff) + (sum1 >> 16)
+    sum2 = (sum2 & 0xffff) + (sum2 >> 16)
+    return (sum2 << 16) | sum1
+
+
+class Hdf5Writer(object):
+    """Appends 8-byte aligned blocks to a file image, with room for the superblock at the start."""
+
+    def __init__(self, superblock_size):
+        self.buf = bytearray(superblock_size)
+
+    def alloc(self, data):
+        while len(self.buf) % 8:
+            self.buf += b'\0'
+        address = len(self.buf)
+        self.buf += data
+        return address
+
+    def save(self, path, superblock):
+        self.buf[0:len(superblock)] = superblock
+        with open(path, 'wb') as f:
+            f.write(self.buf)
+
+
+def dataspace(shape, version):
+    if version == 1:
+        return struct.pack('<BBBB4x', 1, len(shape), 0, 0) + b''.join(struct.pack('<Q', d) for d in shape)
+    return struct.pack('<BBBB', 2, len(shape), 0, 1) + b''.join(struct.pack('<Q', d) for d in shape)
+
+
+def float_datatype(size=4, big_endian=False):
+    bits = size * 8
+    if size == 4:
+        properties = struct.pack('<HHBBBBI', 0, 32, 23, 8, 0, 23, 127)
+    else:
+        properties = struct.pack('<HHBBBBI', 0, 64, 52, 11, 0, 52, 1023)
+    return bytes([0x11, 0x20 | (1 if big_endian else 0), bits - 1, 0]) + struct.pack('<I', size) + properties
+
+
+def pack_values(values, size=4, big_endian=False):
+    return struct.pack(('>' if big_endian else '<') + '%d%s' % (len(values), 'f' if size == 4 else 'd'), *values)
+
+
+def shuffle(data, element_size):
+    n = len(data) // element_size
+    return bytes(data[i * element_size + b] for b in range(element_size) for i in range(n))
+
+
+def encode_chunk(raw, filters):
+    for f in filters:
+        if f == SHUFFLE:
+            raw = shuffle(raw, 4)
+        elif f == DEFLATE:
+            raw = zlib.compress(raw)
+        elif f == FLETCHER32:
+            raw = raw + struct.pack('<I', fletcher32(raw))
+    return raw
+
+
+def chunk_btree(w, shape, chunk, values, filters, corrupt=False):
+    """Writes the chunks of a dataset and a version 1 chunk B-tree indexing them, returning its address."""
+    rank = len(shape)
+    strides = [1] * rank
+    for d in range(rank - 2, -1, -1):
+        strides[d] = strides[d + 1] * shape[d + 1]
+    entries = []
+    for offset in itertools.product(*[range(0, shape[d], chunk[d]) for d in range(rank)]):
+        chunk_values = []
+        for index in itertools.product(*[range(c) for c in chunk]):
+            position = [offset[d] + index[d] for d in range(rank)]
+            if all(position[d] < shape[d] for d in range(rank)):
+                chunk_values.append(values[sum(position[d] * strides[d] for d in range(rank))])
+            else:
+                chunk_values.append(0.0)
+        encoded = encode_chunk(pack_values(chunk_values), filters)
+        if corrupt:
+            encoded = bytes([encoded[0] ^ 0x01]) + encoded[1:]
+        entries.append((offset, w.alloc(encoded), len(encoded)))
+    node = b'TREE' + struct.pack('<BBH', 1, 0, len(entries)) + UNDEFINED + UNDEFINED
+    for offset, address, size in entries:
+        node += struct.pack('<II', size, 0) + b''.join(struct.pack('<Q', o) for o in offset) + struct.pack('<Q', 0)
+        node += struct.pack('<Q', address)
+    node += struct.pack('<II', 0, 0) + b''.join(struct.pack('<Q', s) for s in shape) + struct.pack('<Q', 0)
+    return w.alloc(node)
+
+
+def filter_pipeline(filters, version):
+    if version == 1:
+        data = struct.pack('<BB6x', 1, len(filters))
+        for f in filters:
+            if f == DEFLATE:
+                data += struct.pack('<HHHHI4x', DEFLATE, 0, 0, 1, 6)
+            else:
+                data += struct.pack('<HHHH', f, 0, 0, 0)
+        return data
+    data = struct.pack('<BB', 2, len(filters))
+    for f in filters:
+        if f == DEFLATE:
+            data += struct.pack('<HHHI', DEFLATE, 0, 1, 6)
+        else:
+            data += struct.pack('<HHH', f, 0, 0)
+    return data
+
+
+# Version 0 superblock, version 1 object headers and symbol table groups
+
+def v1_message(message_type, data):
+    data = pad8(data)
+    return struct.pack('<HHB3x', message_type, len(data), 0) + data
+
+
+def v1_object_header(messages):
+    body = b''.join(messages)
+    return struct.pack('<BBHII4x', 1, 0, len(messages), 1, len(body)) + body
+
+
+def v1_group(w, children):
+    names = b'\0' * 8
+    name_offsets = []
+    for name, _ in children:
+        name_offsets.append(len(names))
+        names += pad8(name.encode() + b'\0')
+    snod = b'SNOD' + struct.pack('<BBH', 1, 0, len(children))
+    for (name, address), name_offset in zip(children, name_offsets):
+        snod += struct.pack('<QQII16x', name_offset, address, 0, 0)
+    symbols = w.alloc(snod)
+    data = w.alloc(names)
+    heap = w.alloc(b'HEAP' + struct.pack('<B3xQQQ', 0, len(names), 0xffffffffffffffff, data))
+    tree = w.alloc(b'TREE' + struct.pack('<BBH', 0, 0, 1) + UNDEFINED + UNDEFINED
+                   + struct.pack('<QQQ', 0, symbols, name_offsets[-1]))
+    return w.alloc(v1_object_header([v1_message(0x11, struct.pack('<QQ', tree, heap))])), tree, heap
+
+
+def v1_contiguous(w, values):
+    data = pack_values(values)
+    return v1_message(8, struct.pack('<BBQQ', 3, 1, w.alloc(data), len(data)))
+
+
+def v1_chunked(w, shape, chunk, values, filters):
+    address = chunk_btree(w, shape, chunk, values, filters)
+    return v1_message(8, struct.pack('<BBBQ', 3, 2, len(shape) + 1, address)
+                      + b''.join(struct.pack('<I', c) for c in chunk) + struct.pack('<I', 4))
+
+
+def write_earliest(path):
+    w = Hdf5Writer(96)
+    f32 = v1_message(3, float_datatype())
+    hwio = [h * 1000 + x * 100 + i * 10 + o for h in range(2) for x in range(3) for i in range(2) for o in range(4)]
+    kernel = w.alloc(v1_object_header([v1_message(1, dataspace([2, 3, 2, 4], 1)), f32, v1_contiguous(w, hwio)]))
+    bias = w.alloc(v1_object_header([v1_message(1, dataspace([5], 1)), f32,
+                                     v1_message(11, filter_pipeline([DEFLATE], 1)),
+                                     v1_chunked(w, [5], [2], [1., 2., 3., 4., 5.], [DEFLATE])]))
+    dense = w.alloc(v1_object_header([v1_message(1, dataspace([3, 2], 1)), f32,
+                                      v1_message(11, filter_pipeline([SHUFFLE, DEFLATE], 1)),
+                                      v1_chunked(w, [3, 2], [2, 2], [i * 10 + o for i in range(3) for o in range(2)],
+                                                 [SHUFFLE, DEFLATE])]))
+    conv_inner, _, _ = v1_group(w, [('bias:0', bias), ('kernel:0', kernel)])
+    conv, _, _ = v1_group(w, [('conv2d_1', conv_inner)])
+    dense_inner, _, _ = v1_group(w, [('kernel:0', dense)])
+    dense_group, _, _ = v1_group(w, [('dense_1', dense_inner)])
+    root, root_tree, root_heap = v1_group(w, [('conv2d_1', conv), ('dense_1', dense_group)])
+    superblock = SIGNATURE + bytes([0, 0, 0, 0, 0, 8, 8, 0]) + struct.pack('<HHI', 4, 16, 0)
+    superblock += struct.pack('<Q', 0) + UNDEFINED + struct.pack('<Q', len(w.buf)) + UNDEFINED
+    superblock += struct.pack('<QQII', 0, root, 1, 0) + struct.pack('<QQ', root_tree, root_heap)
+    w.save(path, superblock)
+
+
+# Version 2 superblock, version 2 object headers and compact link storage
+
+def v2_message(message_type, data):
+    return struct.pack('<BHB', message_type, len(data), 0) + data
+
+
+def v2_object_header(messages, times=False, continuation=None):
+    """A version 2 object header, optionally moving the given messages into a continuation block."""
+    flags = 0x02 | (0x20 if times else 0)
+    body = b''.join(messages)
+    if continuation is not None:
+        w, continued = continuation
+        block = b'OCHK' + b''.join(continued)
+        block += struct.pack('<I', lookup3(block))
+        body += v2_message(0x10, struct.pack('<QQ', w.alloc(block), len(block)))
+    prefix = b'OHDR' + struct.pack('<BB', 2, flags)
+    if times:
+        prefix += struct.pack('<IIII', 1500000000, 1500000000, 1500000000, 1500000000)
+    header = prefix + struct.pack('<I', len(body)) + body
+    return header + struct.pack('<I', lookup3(header))
+
+
+def v2_group(w, children):
+    link_info = v2_message(0x02, struct.pack('<BB', 0, 0) + UNDEFINED + UNDEFINED)
+    group_info = v2_message(0x0A, struct.pack('<BB', 0, 0))
+    links = []
+    for index, (name, address) in enumerate(children):
+        encoded = name.encode()
+        if index % 2 == 0:
+            # A one byte name length, as h5py writes for short names
+            links.append(v2_message(0x06, struct.pack('<BBB', 1, 0x00, len(encoded)) + encoded
+                                    + struct.pack('<Q', address)))
+        else:
+            # A two byte name length, with the character set and link type present
+            links.append(v2_message(0x06, struct.pack('<BBBBH', 1, 0x19, 0, 1, len(encoded)) + encoded
+                                    + struct.pack('<Q', address)))
+    return w.alloc(v2_object_header([link_info, group_info] + links))
+
+
+def v2_dataset(w, shape, layout, size=4, big_endian=False, filters=None, times=False, continued=False):
+    messages = [v2_message(0x01, dataspace(shape, 2)), v2_message(0x03, float_datatype(size, big_endian)),
+                v2_message(0x05, struct.pack('<BB', 3, 0x09))]
+    if filters:
+        messages.append(v2_message(0x0B, filter_pipeline(filters, 2)))
+    messages.append(v2_message(0x08, layout))
+    if continued:
+        return w.alloc(v2_object_header(messages[:2], times, (w, messages[2:])))
+    return w.alloc(v2_object_header(messages, times))
+
+
+def compact_layout(values, size=4, big_endian=False):
+    data = pack_values(values, size, big_endian)
+    return struct.pack('<BBH', 3, 0, len(data)) + data
+
+
+def contiguous_layout(w, values, size=4, big_endian=False):
+    data = pack_values(values, size, big_endian)
+    return struct.pack('<BBQQ', 3, 1, w.alloc(data), len(data))
+
+
+def chunked_layout(w, shape, chunk, values, filters, corrupt=False):
+    address = chunk_btree(w, shape, chunk, values, filters, corrupt)
+    return (struct.pack('<BBBQ', 3, 2, len(shape) + 1, address)
+            + b''.join(struct.pack('<I', c) for c in chunk) + struct.pack('<I', 4))
+
+
+def write_v108(path):
+    w = Hdf5Writer(48)
+    hwio = [h * 1000 + x * 100 + i * 10 + o for h in range(2) for x in range(3) for i in range(2) for o in range(4)]
+    kernel = v2_dataset(w, [2, 3, 2, 4], contiguous_layout(w, hwio), times=True)
+    bias = v2_dataset(w, [4], compact_layout([1., 2., 3., 4.]))
+    conv = v2_group(w, [('conv2d_1', v2_group(w, [('kernel:0', kernel), ('bias:0', bias)]))])
+
+    gamma = v2_dataset(w, [3], compact_layout([0.5, 1.5, 2.5]))
+    beta = v2_dataset(w, [3], contiguous_layout(w, [-1., -2., -3.], big_endian=True), big_endian=True)
+    mean = v2_dataset(w, [3], contiguous_layout(w, [0.25, 0.5, 0.75], size=8), size=8)
+    variance = v2_dataset(w, [3], chunked_layout(w, [3], [2], [4., 5., 6.], [FLETCHER32]), filters=[FLETCHER32])
+    batch_norm = v2_group(w, [('batch_normalization_1', v2_group(w, [('gamma:0', gamma), ('beta:0', beta),
+                                                                      ('moving_mean:0', mean),
+                                                                      ('moving_variance:0', variance)]))])
+
+    dense_values = [i * 10 + o for i in range(3) for o in range(2)]
+    dense = v2_dataset(w, [3, 2], chunked_layout(w, [3, 2], [2, 2], dense_values, [SHUFFLE, DEFLATE, FLETCHER32]),
+                       filters=[SHUFFLE, DEFLATE, FLETCHER32], continued=True)
+    dense_group = v2_group(w, [('dense_1', v2_group(w, [('kernel:0', dense)]))])
+
+    corrupted = v2_dataset(w, [3, 2], chunked_layout(w, [3, 2], [2, 2], dense_values, [FLETCHER32], corrupt=True),
+                           filters=[FLETCHER32])
+    corrupted_group = v2_group(w, [('corrupted_1', v2_group(w, [('kernel:0', corrupted)]))])
+
+    root = v2_group(w, [('conv2d_1', conv), ('batch_normalization_1', batch_norm), ('dense_1', dense_group),
+                        ('corrupted_1', corrupted_group)])
+    end_of_file = len(w.buf)
+    while end_of_file % 8:
+        end_of_file += 1
+    superblock = SIGNATURE + struct.pack('<BBBB', 2, 8, 8, 0)
+    superblock += struct.pack('<Q', 0) + UNDEFINED + struct.pack('<QQ', end_of_file, root)
+    superblock += struct.pack('<I', lookup3(superblock))
+    w.save(path, superblock)
+
+
+if __name__ == '__main__':
+    assert lookup3(b'') == 0xdeadbeef
+    assert lookup3(b'Four score and seven years ago') == 0x17770551
+    directory = sys.argv[1] if len(sys.argv) > 1 else os.path.dirname(os.path.abspath(__file__))
+    write_earliest(os.path.join(directory, 'keras_weights.h5'))
+    write_v108(os.path.join(directory, 'keras_weights_v108.h5'))